@@ -5,15 +5,30 @@ import android.opengl.EGLContext;
 import android.util.Log;
 
 import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.MediaClock;
 import com.kit.video.generator.base.MediaListener;
 import com.kit.video.generator.input.AudioRecordInputHandler;
 import com.kit.video.generator.input.CameraInputHandler;
+import com.kit.video.generator.out.AudioCodecConfig;
 import com.kit.video.generator.out.MediaCodecOutputHandler;
+import com.kit.video.glutil.FrameReader;
+import com.kit.video.glutil.GlFence;
+import com.kit.video.glutil.filter.GlFilter;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class CameraProcessingPipeline {
+    // 直播分片的目标时长和播放列表中的分片数量，延迟约为 2~3 个分片
+    private static final long LIVE_SEGMENT_DURATION_US = 2_000_000;
+    private static final int LIVE_PLAYLIST_SIZE = 6;
+    // 停止时等待剩余数据写完的最长时间
+    private static final long SHUTDOWN_TIMEOUT_MS = 3000;
 
     private CameraInputHandler cameraInput; // 摄像头输入处理器
     private AudioRecordInputHandler audioInput; // 音频输入处理器
@@ -22,6 +37,10 @@ public class CameraProcessingPipeline {
     private ExecutorService audioExecutor; // 音频处理线程池
     private volatile boolean isRunning = true; // 管道是否正在运行
     private MediaListener mediaListener; // 媒体监听器
+    private final MediaClock mediaClock = new MediaClock(); // 音视频共享的媒体时钟
+    private List<GlFilter> filters = Collections.emptyList(); // 录制画面的滤镜链
+    private FrameReader.Callback frameCallback; // 读回录制画面的回调
+    private volatile Thread videoThread; // 视频处理线程，摄像头输入的 EGL 上下文在其中是当前上下文
 
     /**
      * 设置媒体监听器
@@ -31,6 +50,22 @@ public class CameraProcessingPipeline {
         this.mediaListener = mediaListener;
     }
 
+    /**
+     * 设置录制画面的滤镜链（如颜色查找表、模糊、水印），按顺序应用，需在 start 之前调用
+     * @param filters 滤镜，不传时不使用滤镜
+     */
+    public void setFilters(GlFilter... filters) {
+        this.filters = Arrays.asList(filters);
+    }
+
+    /**
+     * 设置读回录制画面的回调（缩略图、识别、软件编码等），需在 start 之前调用
+     * @param frameCallback 在视频处理线程中调用，处理完后调用 Frame.release() 归还缓冲
+     */
+    public void setFrameCallback(FrameReader.Callback frameCallback) {
+        this.frameCallback = frameCallback;
+    }
+
     /**
      * 启动摄像头处理管道
      * @param parentContext 父EGL上下文
@@ -39,8 +74,24 @@ public class CameraProcessingPipeline {
      * @param outputPath 输出路径
      */
     public void start(EGLContext parentContext, int outputWidth, int outputHeight, String outputPath) {
+        start(parentContext, new MediaCodecOutputHandler(outputPath, outputWidth, outputHeight, true, false)); // 创建媒体编解码输出处理器
+    }
+
+    /**
+     * 启动直播：输出切成 HLS/CMAF 分片写入目录，由 HTTP 服务器提供其中的播放列表即可播放
+     * @param parentContext 父EGL上下文
+     * @param outputWidth 输出宽度
+     * @param outputHeight 输出高度
+     * @param hlsDirectory 分片和播放列表的输出目录
+     */
+    public void startLive(EGLContext parentContext, int outputWidth, int outputHeight, File hlsDirectory) {
+        start(parentContext, new MediaCodecOutputHandler(hlsDirectory, LIVE_SEGMENT_DURATION_US, LIVE_PLAYLIST_SIZE,
+                outputWidth, outputHeight, true, AudioCodecConfig.aacLc()));
+    }
+
+    private void start(EGLContext parentContext, MediaCodecOutputHandler outputHandler) {
         initializeExecutors(); // 初始化线程池
-        initializeHandlers(outputPath, outputWidth, outputHeight); // 初始化处理器
+        initializeHandlers(outputHandler); // 初始化处理器
 
         if (!initializeComponents()) { // 初始化组件
             Log.e("Pipeline", "Initialization failed"); // 初始化失败日志
@@ -62,14 +113,16 @@ public class CameraProcessingPipeline {
 
     /**
      * 初始化处理器
-     * @param outputPath 输出路径
-     * @param outputWidth 输出宽度
-     * @param outputHeight 输出高度
+     * @param outputHandler 输出处理器
      */
-    private void initializeHandlers(String outputPath, int outputWidth, int outputHeight) {
+    private void initializeHandlers(MediaCodecOutputHandler outputHandler) {
         cameraInput = new CameraInputHandler(); // 创建摄像头输入处理器
         audioInput = new AudioRecordInputHandler(); // 创建音频输入处理器
-        output = new MediaCodecOutputHandler(outputPath, outputWidth, outputHeight, true, false); // 创建媒体编解码输出处理器
+        cameraInput.setMediaClock(mediaClock);
+        cameraInput.setFilters(filters);
+        cameraInput.setFrameCallback(frameCallback);
+        audioInput.setMediaClock(mediaClock);
+        output = outputHandler;
     }
 
     /**
@@ -77,6 +130,7 @@ public class CameraProcessingPipeline {
      * @return 初始化是否成功
      */
     private boolean initializeComponents() {
+        mediaClock.start(); // 时间轴从此刻开始
         return output.initialize() && audioInput.initialize(); // 初始化输出处理器和音频输入处理器
     }
 
@@ -86,6 +140,7 @@ public class CameraProcessingPipeline {
      */
     private void startVideoProcessing(EGLContext parentContext) {
         videoExecutor.execute(() -> { // 在视频处理线程池中执行
+            videoThread = Thread.currentThread();
             try {
                 cameraInput.setEglContext(parentContext, output.getInputSurface()); // 设置EGL上下文和输入表面
                 if (cameraInput.initialize()) { // 初始化摄像头输入处理器
@@ -109,7 +164,17 @@ public class CameraProcessingPipeline {
             try {
                 while (isRunning) { // 当管道正在运行时
                     FrameData audioFrame = audioInput.getData(); // 获取音频帧数据
-                    if (audioFrame != null) output.writeAudioFrame(audioFrame); // 写入音频帧数据
+                    if (audioFrame != null) {
+                        output.writeAudioFrame(audioFrame); // 写入音频帧数据
+                        audioFrame.recycle(); // 缓冲区归还给录音输入的缓冲区池
+                    }
+                }
+                // 停止录音后取完环形缓冲区中剩余的数据，结束流帧在此之后写入
+                audioInput.stopRecording();
+                FrameData audioFrame;
+                while ((audioFrame = audioInput.getData()) != null) {
+                    output.writeAudioFrame(audioFrame);
+                    audioFrame.recycle();
                 }
             } catch (Exception e) {
                 Log.e("Pipeline", "Error during audio processing", e); // 音频处理错误日志
@@ -122,9 +187,39 @@ public class CameraProcessingPipeline {
      * @param textureId 纹理ID
      */
     public void drawTexture(int textureId) {
+        drawTexture(textureId, 0);
+    }
+
+    /**
+     * 绘制纹理，在绘制该纹理的 GL 线程中调用
+     * @param textureId 纹理ID
+     * @param timestampNs 帧的采集时间（SurfaceTexture.getTimestamp()），单位：纳秒，0 表示使用当前时刻
+     */
+    public void drawTexture(int textureId, long timestampNs) {
+        final GlFence fence = GlFence.create(); // 调用方的 GL 命令完成后，视频线程的 GPU 命令才读取纹理
         videoExecutor.execute(() -> { // 在视频处理线程池中执行
             try {
-                cameraInput.draw(textureId); // 绘制纹理
+                cameraInput.draw(textureId, timestampNs, fence); // 绘制纹理
+                FrameData videoFrame = cameraInput.getData(); // 获取视频帧数据
+                if (videoFrame != null && isRunning) output.writeVideoFrame(videoFrame); // 写入视频帧数据
+            } catch (Exception e) {
+                Log.e("Pipeline", "Error during drawing texture", e); // 绘制纹理错误日志
+            }
+        });
+    }
+
+    /**
+     * 绘制相机的外部纹理（GL_TEXTURE_EXTERNAL_OES），省去先复制到 2D 纹理的一次绘制，在调用 updateTexImage 的 GL 线程中调用
+     * @param textureId 外部纹理ID
+     * @param transformMatrix SurfaceTexture.getTransformMatrix 得到的变换矩阵，调用后可以立即复用该数组
+     * @param timestampNs 帧的采集时间（SurfaceTexture.getTimestamp()），单位：纳秒，0 表示使用当前时刻
+     */
+    public void drawExternalTexture(int textureId, float[] transformMatrix, long timestampNs) {
+        final float[] transform = transformMatrix.clone(); // 在视频线程中绘制，调用方可能会复用数组
+        final GlFence fence = GlFence.create(); // updateTexImage 完成后，视频线程的 GPU 命令才读取纹理
+        videoExecutor.execute(() -> { // 在视频处理线程池中执行
+            try {
+                cameraInput.drawExternal(textureId, transform, timestampNs, fence); // 绘制纹理
                 FrameData videoFrame = cameraInput.getData(); // 获取视频帧数据
                 if (videoFrame != null && isRunning) output.writeVideoFrame(videoFrame); // 写入视频帧数据
             } catch (Exception e) {
@@ -146,13 +241,41 @@ public class CameraProcessingPipeline {
     private void shutdown() {
         // 写入结束流帧
         writeEndOfStreamFrames();
-        if (videoExecutor != null) videoExecutor.shutdown(); // 关闭视频处理线程池
-        if (audioExecutor != null) audioExecutor.shutdown(); // 关闭音频处理线程池
-        if (cameraInput != null) cameraInput.release(); // 释放摄像头输入处理器
+        if (videoExecutor != null) {
+            if (Thread.currentThread() == videoThread) {
+                // 在视频线程中关闭（视频初始化失败）：上下文就在当前线程，直接释放
+                videoExecutor.shutdown();
+                if (cameraInput != null) cameraInput.release();
+            } else {
+                // 摄像头输入的 EGL 上下文只在视频线程中是当前上下文，在结束流帧之后于该线程中释放
+                videoExecutor.submit(() -> {
+                    if (cameraInput != null) cameraInput.release(); // 释放摄像头输入处理器
+                });
+                videoExecutor.shutdown(); // 关闭视频处理线程池
+                awaitTermination(videoExecutor);
+            }
+        }
+        if (audioExecutor != null) {
+            audioExecutor.shutdown(); // 关闭音频处理线程池
+            awaitTermination(audioExecutor); // 等待剩余的录音数据和结束流帧写完，再释放编码器
+        }
         if (audioInput != null) audioInput.release(); // 释放音频输入处理器
         if (output != null) output.release(); // 释放媒体编解码输出处理器
     }
 
+    /**
+     * 等待线程池中已提交的任务执行完
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.e("Pipeline", "Timed out waiting for pending tasks");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * 写入结束流帧
      */
@@ -4,12 +4,23 @@ import android.media.MediaMetadataRetriever;
 import android.util.Log;
 
 import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.FrameLayout;
+import com.kit.video.generator.base.FrameProcessor;
 import com.kit.video.generator.base.InputHandler;
 import com.kit.video.generator.base.OutputHandler;
+import com.kit.video.generator.base.PcmFormat;
+import com.kit.video.generator.base.PixelFormat;
 import com.kit.video.generator.input.AudioFileInputHandler;
 import com.kit.video.generator.input.VideoFileInputHandler;
 import com.kit.video.generator.out.MediaCodecOutputHandler;
+import com.kit.video.generator.out.SegmentMerger;
+import com.kit.video.generator.process.AudioConvertProcessor;
+import com.kit.video.generator.process.ColorConvertProcessor;
+import com.kit.video.generator.process.ScaleProcessor;
+import com.kit.video.generator.process.YuvScaler;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -24,6 +35,27 @@ public class FileProcessingPipeline {
     private final BlockingQueue<FrameData> videoQueue;
     private final BlockingQueue<FrameData> audioQueue;
     private volatile boolean isRunning = true;
+    private volatile boolean audioInputEnded = false;
+    // 音频队列有新帧或音频输入结束时通知 writeAudioUntil
+    private final Object audioLock = new Object();
+    private boolean hasAudio;
+    // 当前输出是否已提交音频的结束帧
+    private boolean audioEndWritten;
+    // 视频帧处理阶段，在解码线程上按顺序执行
+    private final List<FrameProcessor> videoProcessors = new ArrayList<>();
+    // 音频帧处理阶段，在解码线程上按顺序执行
+    private final List<FrameProcessor> audioProcessors = new ArrayList<>();
+    // 裁剪/缩放/旋转，为 null 时按源尺寸编码
+    private YuvScaler scaler;
+
+    // 分段时长，0 表示不分段（不支持断点续传），单位：微秒
+    private long segmentDurationUs = 0;
+    private TranscodeCheckpoint checkpoint;
+    private String outputPath;
+    private int outputWidth;
+    private int outputHeight;
+    // 当前分段的结束时间戳，单位：微秒
+    private long segmentEndUs = Long.MAX_VALUE;
 
     public FileProcessingPipeline() {
         this.executor = Executors.newFixedThreadPool(3);
@@ -31,24 +63,95 @@ public class FileProcessingPipeline {
         this.audioQueue = new LinkedBlockingQueue<>();
     }
 
+    /**
+     * 开启分段检查点（需在 start 之前调用）
+     * <p>
+     * 输出会按该时长切分为独立的分段文件，每完成一个分段就持久化一次检查点。任务被中断后，
+     * 以相同的输入和输出路径重新调用 start，会从最后一个完成的分段处继续，全部完成后再合并为最终文件。
+     *
+     * @param segmentDurationUs 分段时长，单位：微秒，0 表示关闭
+     */
+    public void setSegmentDurationUs(long segmentDurationUs) {
+        this.segmentDurationUs = segmentDurationUs;
+    }
+
+    /**
+     * 添加视频帧处理阶段（需在 start 之前调用），按添加顺序执行，位于颜色转换阶段之前
+     */
+    public void addVideoProcessor(FrameProcessor processor) {
+        videoProcessors.add(processor);
+    }
+
+    /**
+     * 添加音频帧处理阶段（需在 start 之前调用），按添加顺序执行，位于格式转换阶段之前
+     */
+    public void addAudioProcessor(FrameProcessor processor) {
+        audioProcessors.add(processor);
+    }
+
+    /**
+     * 设置裁剪/缩放/旋转（需在 start 之前调用），输出尺寸由缩放器决定
+     * <p>
+     * 缩放阶段位于解码之后、其他处理阶段之前，直接输出编码器需要的像素格式。
+     *
+     * @param scaler 缩放器，为 null 时按源尺寸编码
+     */
+    public void setScaler(YuvScaler scaler) {
+        this.scaler = scaler;
+    }
+
     public void start(String inputPath, String outputPath) {
         int[] videoDimensions = getVideoDimensions(inputPath);
         if (videoDimensions == null) {
             Log.e(TAG, "Failed to retrieve video dimensions");
             return;
         }
-        int outputWidth = videoDimensions[0];
-        int outputHeight = videoDimensions[1];
+        this.outputPath = outputPath;
+        outputWidth = scaler != null ? scaler.getOutputWidth() : videoDimensions[0];
+        outputHeight = scaler != null ? scaler.getOutputHeight() : videoDimensions[1];
+
+        long resumePtsUs = 0;
+        String segmentPath = outputPath;
+        if (segmentDurationUs > 0) {
+            checkpoint = TranscodeCheckpoint.load(inputPath, outputPath, segmentDurationUs);
+            resumePtsUs = checkpoint.getResumePtsUs();
+            segmentPath = checkpoint.getNextSegmentPath();
+            segmentEndUs = resumePtsUs + segmentDurationUs;
+            if (resumePtsUs == Long.MAX_VALUE) {
+                // 所有分段都已完成，只差合并
+                executor.submit(this::mergeSegments);
+                return;
+            }
+        }
 
-        InputHandler videoInput = new VideoFileInputHandler(inputPath);
-        InputHandler audioInput = new AudioFileInputHandler(inputPath);
-        OutputHandler output = new MediaCodecOutputHandler(outputPath, outputWidth, outputHeight, false,false);
+        VideoFileInputHandler videoInput = new VideoFileInputHandler(inputPath);
+        AudioFileInputHandler audioInput = new AudioFileInputHandler(inputPath);
+        MediaCodecOutputHandler output = new MediaCodecOutputHandler(segmentPath, outputWidth, outputHeight, false, false);
 
         try {
             if (!videoInput.initialize() || !audioInput.initialize() || !output.initialize()) {
                 Log.e(TAG, "Initialization failed");
                 return;
             }
+            // 解码器输出的布局（步长、对齐、NV12/I420）与编码器的输入格式不一定相同
+            PixelFormat encoderFormat = output.getVideoInputPixelFormat();
+            if (encoderFormat != null) {
+                FrameLayout encoderLayout = FrameLayout.packed(encoderFormat, outputWidth, outputHeight);
+                if (scaler != null) {
+                    videoProcessors.add(0, new ScaleProcessor(scaler, encoderLayout));
+                }
+                videoProcessors.add(new ColorConvertProcessor(encoderLayout));
+            }
+            // 解码出的采样率/声道数与编码器的输入格式不一定相同
+            PcmFormat audioFormat = output.getAudioInputFormat();
+            if (audioFormat != null) {
+                audioProcessors.add(new AudioConvertProcessor(audioFormat));
+            }
+            if (resumePtsUs > 0) {
+                Log.i(TAG, "Resuming from checkpoint at " + resumePtsUs + "us");
+                videoInput.seekTo(resumePtsUs);
+                audioInput.seekTo(resumePtsUs);
+            }
 
             submitTasks(videoInput, audioInput, output);
 
@@ -57,6 +160,37 @@ public class FileProcessingPipeline {
         }
     }
 
+    /**
+     * 使用自定义的输入/输出处理器启动管道（不支持分段检查点）
+     * <p>
+     * 配合 {@link com.kit.video.generator.input.RawVideoInputHandler} 和
+     * {@link com.kit.video.generator.out.RawOutputHandler} 等软件实现，可以在没有 MediaCodec 的环境中运行整个管道。
+     *
+     * @param videoInput 视频输入处理器
+     * @param audioInput 音频输入处理器，为 null 时没有音频
+     * @param output     输出处理器
+     * @return 初始化是否成功
+     */
+    public boolean start(InputHandler videoInput, InputHandler audioInput, OutputHandler output) {
+        try {
+            if (!videoInput.initialize() || (audioInput != null && !audioInput.initialize()) || !output.initialize()) {
+                Log.e(TAG, "Initialization failed");
+                return false;
+            }
+            if (audioInput == null) {
+                audioInputEnded = true;
+                executor.submit(() -> processData(videoInput, videoQueue));
+                executor.submit(() -> processOutput(output));
+            } else {
+                submitTasks(videoInput, audioInput, output);
+            }
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error during initialization", e);
+            return false;
+        }
+    }
+
     private int[] getVideoDimensions(String inputPath) {
         try (MediaMetadataRetriever retriever = new MediaMetadataRetriever()) {
             retriever.setDataSource(inputPath);
@@ -74,45 +208,171 @@ public class FileProcessingPipeline {
     }
 
     private void submitTasks(InputHandler videoInput, InputHandler audioInput, OutputHandler output) {
+        hasAudio = true;
         executor.submit(() -> processData(videoInput, videoQueue));
         executor.submit(() -> processData(audioInput, audioQueue));
         executor.submit(() -> processOutput(output));
     }
 
     private void processData(InputHandler inputHandler, BlockingQueue<FrameData> queue) {
+        List<FrameProcessor> processors = queue == videoQueue ? videoProcessors : audioProcessors;
         while (isRunning) {
             FrameData frame = inputHandler.getData();
+            for (int i = 0; frame != null && i < processors.size(); i++) {
+                frame = processors.get(i).process(frame);
+            }
             if (frame != null) {
                 queue.offer(frame);
+                if (queue == audioQueue) {
+                    synchronized (audioLock) {
+                        if (frame.isEndOfStream()) audioInputEnded = true;
+                        audioLock.notifyAll();
+                    }
+                }
             }
         }
         inputHandler.release();
+        for (FrameProcessor processor : processors) {
+            processor.release();
+        }
     }
 
     private void processOutput(OutputHandler output) {
+        boolean completed = false;
         while (isRunning) {
             FrameData videoFrame = videoQueue.poll();
-            FrameData audioFrame = audioQueue.poll();
 
             if (videoFrame != null) {
+                if (checkpoint != null && !videoFrame.isEndOfStream() && videoFrame.getPts() >= segmentEndUs) {
+                    output = nextSegment(output, videoFrame.getPts());
+                    if (output == null) {
+                        isRunning = false;
+                        return;
+                    }
+                }
+                if (videoFrame.isEndOfStream()) {
+                    // 最后一个分段：写完剩余的音频，并提交音频的结束帧，否则编码器中剩余的数据不会输出
+                    writeAudioUntil(output, Long.MAX_VALUE);
+                    FrameData audioEnd = audioQueue.poll();
+                    if (audioEnd != null) {
+                        writeAudioFrame(output, audioEnd);
+                    } else if (hasAudio && !audioEndWritten) {
+                        writeAudioFrame(output, new FrameData(true, videoFrame.getPts()));
+                    }
+                }
                 output.writeVideoFrame(videoFrame);
+                videoFrame.recycle();
                 if (videoFrame.isEndOfStream()) {
                     isRunning = false;
+                    completed = true;
                     Log.d(TAG, "视频编码结束");
                     break;
                 }
             }
-            if (audioFrame != null) {
-                output.writeAudioFrame(audioFrame);
+            // 分段模式下，属于下一个分段的音频帧留在队列中
+            FrameData audioFrame = audioQueue.peek();
+            if (audioFrame != null && (audioFrame.isEndOfStream() || audioFrame.getPts() < segmentEndUs)) {
+                writeAudioFrame(output, audioQueue.poll());
             }
         }
         // 关闭资源
         output.release();
+
+        if (completed && checkpoint != null) {
+            finishSegments();
+        }
+    }
+
+    /**
+     * 结束当前分段并提交检查点，然后开始下一个分段
+     *
+     * @param boundaryUs 分段边界（下一个分段第一帧视频的时间戳），单位：微秒
+     * @return 下一个分段的输出处理器，失败时返回 null
+     */
+    private OutputHandler nextSegment(OutputHandler output, long boundaryUs) {
+        writeAudioUntil(output, boundaryUs);
+        output.writeVideoFrame(new FrameData(true, boundaryUs));
+        if (hasAudio && !audioEndWritten) {
+            output.writeAudioFrame(new FrameData(true, boundaryUs));
+        }
+        output.release();
+        audioEndWritten = false;
+        try {
+            checkpoint.commitSegment(boundaryUs);
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to save checkpoint", e);
+            return null;
+        }
+        segmentEndUs = boundaryUs + segmentDurationUs;
+        Log.d(TAG, "Segment " + (checkpoint.getCompletedSegments() - 1) + " committed at " + boundaryUs + "us");
+
+        OutputHandler next = new MediaCodecOutputHandler(checkpoint.getNextSegmentPath(), outputWidth, outputHeight, false, false);
+        if (!next.initialize()) {
+            Log.e(TAG, "Segment output initialization failed");
+            return null;
+        }
+        return next;
+    }
+
+    /**
+     * 把时间戳早于边界的音频帧全部写入当前分段（音频解码可能落后于视频，需要等待）
+     */
+    private void writeAudioUntil(OutputHandler output, long boundaryUs) {
+        while (isRunning) {
+            FrameData audioFrame = audioQueue.peek();
+            if (audioFrame == null) {
+                synchronized (audioLock) {
+                    if (audioInputEnded) break;
+                    try {
+                        while (audioQueue.isEmpty() && !audioInputEnded && isRunning) {
+                            audioLock.wait();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                continue;
+            }
+            if (audioFrame.isEndOfStream() || audioFrame.getPts() >= boundaryUs) break;
+            writeAudioFrame(output, audioQueue.poll());
+        }
+    }
+
+    private void writeAudioFrame(OutputHandler output, FrameData audioFrame) {
+        output.writeAudioFrame(audioFrame);
+        if (audioFrame.isEndOfStream()) audioEndWritten = true;
+        audioFrame.recycle();
+    }
+
+    /**
+     * 提交最后一个分段，将所有分段合并为最终输出文件，并清理检查点
+     */
+    private void finishSegments() {
+        try {
+            checkpoint.commitSegment(Long.MAX_VALUE);
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to save checkpoint", e);
+        }
+        mergeSegments();
+    }
+
+    private void mergeSegments() {
+        try {
+            SegmentMerger.merge(checkpoint.getSegmentPaths(), checkpoint.getSegmentStartsUs(), outputPath);
+            checkpoint.delete();
+            Log.d(TAG, "Segments merged into " + outputPath);
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to merge segments", e);
+        }
     }
 
 
     public void stop() {
         isRunning = false;
+        synchronized (audioLock) {
+            audioLock.notifyAll();
+        }
         executor.shutdown(); // Attempt to stop all actively executing tasks
         Log.d(TAG, "Stopping pipeline...");
     }
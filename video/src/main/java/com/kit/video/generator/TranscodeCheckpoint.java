@@ -0,0 +1,206 @@
+package com.kit.video.generator;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 转码检查点
+ * <p>
+ * 记录已经完整写出的分段以及续传位置，以属性文件的形式保存在输出文件旁边（outputPath + ".ckpt"）。
+ * 每个分段都是一个独立的 MP4 文件（outputPath + ".seg" + index），任务被杀死后重新启动时，
+ * 从最后一个完成的分段边界继续，最多损失一个分段的工作量。
+ */
+public class TranscodeCheckpoint {
+    private static final String TAG = "TranscodeCheckpoint";
+    private static final String KEY_INPUT_PATH = "input.path";
+    private static final String KEY_INPUT_LENGTH = "input.length";
+    private static final String KEY_INPUT_MODIFIED = "input.modified";
+    private static final String KEY_SEGMENT_DURATION = "segment.duration";
+    private static final String KEY_SEGMENT_COUNT = "segment.count";
+    private static final String KEY_SEGMENT_START = "segment.start.";
+    private static final String KEY_RESUME_PTS = "resume.pts";
+
+    private final File file;
+    private final String outputPath;
+    private final Properties identity;
+    // 已完成分段的起始时间戳，单位：微秒
+    private final List<Long> segmentStartsUs = new ArrayList<>();
+    // 下一个分段的起始时间戳（即续传位置），单位：微秒
+    private long resumePtsUs;
+
+    private TranscodeCheckpoint(String outputPath, Properties identity) {
+        this.file = new File(outputPath + ".ckpt");
+        this.outputPath = outputPath;
+        this.identity = identity;
+    }
+
+    /**
+     * 加载检查点。如果检查点不存在，或者记录的输入文件/分段时长与当前任务不一致，则从头开始。
+     *
+     * @param inputPath         输入文件路径
+     * @param outputPath        最终输出文件路径
+     * @param segmentDurationUs 分段时长，单位：微秒
+     */
+    public static TranscodeCheckpoint load(String inputPath, String outputPath, long segmentDurationUs) {
+        File input = new File(inputPath);
+        Properties identity = new Properties();
+        identity.setProperty(KEY_INPUT_PATH, input.getAbsolutePath());
+        identity.setProperty(KEY_INPUT_LENGTH, String.valueOf(input.length()));
+        identity.setProperty(KEY_INPUT_MODIFIED, String.valueOf(input.lastModified()));
+        identity.setProperty(KEY_SEGMENT_DURATION, String.valueOf(segmentDurationUs));
+
+        TranscodeCheckpoint checkpoint = new TranscodeCheckpoint(outputPath, identity);
+        if (!checkpoint.file.exists()) {
+            return checkpoint;
+        }
+        Properties saved = new Properties();
+        try (FileInputStream in = new FileInputStream(checkpoint.file)) {
+            saved.load(in);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read checkpoint, starting over", e);
+            checkpoint.delete();
+            return checkpoint;
+        }
+        for (String key : identity.stringPropertyNames()) {
+            if (!identity.getProperty(key).equals(saved.getProperty(key))) {
+                Log.i(TAG, "Checkpoint does not match current job, starting over");
+                checkpoint.delete(saved);
+                return checkpoint;
+            }
+        }
+        int count = Integer.parseInt(saved.getProperty(KEY_SEGMENT_COUNT, "0"));
+        for (int i = 0; i < count; i++) {
+            if (!new File(checkpoint.getSegmentPath(i)).exists()) {
+                // 分段文件丢失，之后的分段都无法使用
+                break;
+            }
+            checkpoint.segmentStartsUs.add(Long.parseLong(saved.getProperty(KEY_SEGMENT_START + i)));
+        }
+        if (checkpoint.segmentStartsUs.size() == count) {
+            checkpoint.resumePtsUs = Long.parseLong(saved.getProperty(KEY_RESUME_PTS, "0"));
+        } else if (!checkpoint.segmentStartsUs.isEmpty()) {
+            // 只能从最后一个完整分段的下一个分段的起点继续
+            int lastIndex = checkpoint.segmentStartsUs.size();
+            checkpoint.resumePtsUs = Long.parseLong(saved.getProperty(KEY_SEGMENT_START + lastIndex));
+        }
+        Log.i(TAG, "Resuming after " + checkpoint.segmentStartsUs.size() + " segments at " + checkpoint.resumePtsUs + "us");
+        return checkpoint;
+    }
+
+    /**
+     * 获取续传位置
+     *
+     * @return 下一个分段的起始时间戳，单位：微秒
+     */
+    public long getResumePtsUs() {
+        return resumePtsUs;
+    }
+
+    /**
+     * 获取已完成的分段数量
+     */
+    public int getCompletedSegments() {
+        return segmentStartsUs.size();
+    }
+
+    /**
+     * 获取指定分段的文件路径
+     */
+    public String getSegmentPath(int index) {
+        return outputPath + ".seg" + index;
+    }
+
+    /**
+     * 获取下一个（正在写入的）分段的文件路径
+     */
+    public String getNextSegmentPath() {
+        return getSegmentPath(segmentStartsUs.size());
+    }
+
+    /**
+     * 获取所有已完成分段的文件路径
+     */
+    public List<String> getSegmentPaths() {
+        List<String> paths = new ArrayList<>(segmentStartsUs.size());
+        for (int i = 0; i < segmentStartsUs.size(); i++) {
+            paths.add(getSegmentPath(i));
+        }
+        return paths;
+    }
+
+    /**
+     * 获取所有已完成分段的起始时间戳，单位：微秒
+     */
+    public List<Long> getSegmentStartsUs() {
+        return new ArrayList<>(segmentStartsUs);
+    }
+
+    /**
+     * 当前分段已完整写出（muxer 已停止），记录并持久化检查点
+     *
+     * @param endPtsUs 当前分段的结束时间戳（即下一个分段的起始时间戳），单位：微秒
+     */
+    public void commitSegment(long endPtsUs) throws IOException {
+        segmentStartsUs.add(resumePtsUs);
+        resumePtsUs = endPtsUs;
+        save();
+    }
+
+    /**
+     * 删除检查点文件以及所有分段文件
+     */
+    public void delete() {
+        for (String path : getSegmentPaths()) {
+            deleteFile(new File(path));
+        }
+        deleteFile(new File(getNextSegmentPath()));
+        deleteFile(file);
+        segmentStartsUs.clear();
+        resumePtsUs = 0;
+    }
+
+    private void delete(Properties saved) {
+        int count = Integer.parseInt(saved.getProperty(KEY_SEGMENT_COUNT, "0"));
+        for (int i = 0; i <= count; i++) {
+            deleteFile(new File(getSegmentPath(i)));
+        }
+        deleteFile(file);
+    }
+
+    /**
+     * 先写入临时文件再重命名，保证检查点文件始终是完整的
+     */
+    private void save() throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(identity);
+        properties.setProperty(KEY_SEGMENT_COUNT, String.valueOf(segmentStartsUs.size()));
+        for (int i = 0; i < segmentStartsUs.size(); i++) {
+            properties.setProperty(KEY_SEGMENT_START + i, String.valueOf(segmentStartsUs.get(i)));
+        }
+        // 同时记录下一个分段的起点，以便在最后一个分段损坏时回退
+        properties.setProperty(KEY_SEGMENT_START + segmentStartsUs.size(), String.valueOf(resumePtsUs));
+        properties.setProperty(KEY_RESUME_PTS, String.valueOf(resumePtsUs));
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            properties.store(out, null);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Unable to rename " + tmp + " to " + file);
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Unable to delete " + file);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.kit.video.generator.base;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 固定大小的直接缓冲区池，线程安全，获取和归还都不会产生分配（池为空时才分配新的缓冲区）
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final ArrayBlockingQueue<ByteBuffer> free;
+
+    /**
+     * @param bufferSize 每个缓冲区的字节数
+     * @param maxPooled  最多缓存的空闲缓冲区数量，超出的缓冲区归还时直接丢弃
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * 获取一个已清空（position 为 0，limit 为容量）的缓冲区
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区，容量不匹配的缓冲区会被忽略
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == bufferSize) {
+            free.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -18,6 +18,15 @@ public class FrameData {
     // 是否为流结束标记
     boolean endOfStream;
 
+    // 字节数据的布局，未知时为 null
+    FrameLayout layout;
+
+    // 音频数据的 PCM 格式，未知时为 null
+    PcmFormat pcmFormat;
+
+    // 字节数据所属的缓冲区池，为 null 时不需要归还
+    BufferPool pool;
+
     /**
      * 构造函数，用于初始化带有字节缓冲区的数据帧
      *
@@ -29,6 +38,19 @@ public class FrameData {
         this.pts = pts;
     }
 
+    /**
+     * 构造函数，用于初始化来自缓冲区池的数据帧，使用完毕后需要调用 {@link #recycle()}
+     *
+     * @param data 视频帧数据
+     * @param pts  呈现时间戳，单位：微秒
+     * @param pool 数据所属的缓冲区池
+     */
+    public FrameData(ByteBuffer data, long pts, BufferPool pool) {
+        this.data = data;
+        this.pts = pts;
+        this.pool = pool;
+    }
+
     /**
      * 构造函数，用于初始化带有纹理ID的数据帧
      *
@@ -94,4 +116,51 @@ public class FrameData {
     public boolean isEndOfStream() {
         return endOfStream;
     }
+
+    /**
+     * 获取字节数据的布局
+     *
+     * @return 布局，未知时返回 null
+     */
+    public FrameLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 设置字节数据的布局
+     *
+     * @param layout 布局
+     */
+    public void setLayout(FrameLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * 获取音频数据的 PCM 格式
+     *
+     * @return PCM 格式，未知时返回 null
+     */
+    public PcmFormat getPcmFormat() {
+        return pcmFormat;
+    }
+
+    /**
+     * 设置音频数据的 PCM 格式
+     *
+     * @param pcmFormat PCM 格式
+     */
+    public void setPcmFormat(PcmFormat pcmFormat) {
+        this.pcmFormat = pcmFormat;
+    }
+
+    /**
+     * 将字节数据归还给所属的缓冲区池，之后不能再访问数据
+     */
+    public void recycle() {
+        if (pool != null) {
+            pool.release(data);
+            pool = null;
+            data = null;
+        }
+    }
 }
@@ -0,0 +1,151 @@
+package com.kit.video.generator.base;
+
+/**
+ * 原始视频帧在缓冲区中的布局：像素格式、可见区域、行跨度、平面高度和裁剪偏移
+ * <p>
+ * 所有偏移都相对于缓冲区的第 0 个字节（而不是 position）。
+ */
+public final class FrameLayout {
+    private final PixelFormat pixelFormat;
+    // 可见区域的宽高
+    private final int width;
+    private final int height;
+    // 亮度平面（RGBA 时为整个图像）的行跨度，单位：字节
+    private final int stride;
+    // 亮度平面的行数（含填充行）
+    private final int sliceHeight;
+    // 可见区域左上角在平面中的位置
+    private final int cropLeft;
+    private final int cropTop;
+
+    public FrameLayout(PixelFormat pixelFormat, int width, int height, int stride, int sliceHeight, int cropLeft, int cropTop) {
+        if (cropLeft % 2 != 0 || cropTop % 2 != 0) {
+            throw new IllegalArgumentException("Crop offset must be even");
+        }
+        this.pixelFormat = pixelFormat;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+        this.sliceHeight = sliceHeight;
+        this.cropLeft = cropLeft;
+        this.cropTop = cropTop;
+    }
+
+    /**
+     * 创建紧密排列（无行填充、无裁剪）的布局
+     */
+    public static FrameLayout packed(PixelFormat pixelFormat, int width, int height) {
+        int stride = pixelFormat == PixelFormat.RGBA ? width * 4 : width;
+        return new FrameLayout(pixelFormat, width, height, stride, height, 0, 0);
+    }
+
+    public PixelFormat getPixelFormat() {
+        return pixelFormat;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getSliceHeight() {
+        return sliceHeight;
+    }
+
+    public int getCropLeft() {
+        return cropLeft;
+    }
+
+    public int getCropTop() {
+        return cropTop;
+    }
+
+    /**
+     * 色度平面的行跨度，单位：字节（I420 为单个 U/V 平面，NV12/NV21 为交错的 UV 平面）
+     */
+    public int getChromaStride() {
+        switch (pixelFormat) {
+            case I420:
+                return (stride + 1) / 2;
+            case NV12:
+            case NV21:
+                return 2 * ((stride + 1) / 2);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 可见区域第 row 行的第一个像素在亮度（或 RGBA）平面中的偏移
+     */
+    public int getRowOffset(int row) {
+        int bytesPerPixel = pixelFormat == PixelFormat.RGBA ? 4 : 1;
+        return (cropTop + row) * stride + cropLeft * bytesPerPixel;
+    }
+
+    /**
+     * 可见区域第 chromaRow 行色度的偏移（I420 为 U 平面，NV12/NV21 为交错平面）
+     */
+    public int getChromaRowOffset(int chromaRow) {
+        int bytesPerChroma = pixelFormat == PixelFormat.I420 ? 1 : 2;
+        return stride * sliceHeight + (cropTop / 2 + chromaRow) * getChromaStride() + (cropLeft / 2) * bytesPerChroma;
+    }
+
+    /**
+     * I420 中可见区域第 chromaRow 行 V 分量的偏移
+     */
+    public int getVRowOffset(int chromaRow) {
+        return getChromaRowOffset(chromaRow) + getChromaStride() * ((sliceHeight + 1) / 2);
+    }
+
+    /**
+     * 容纳整个布局所需的字节数
+     */
+    public int getFrameSize() {
+        int lumaSize = stride * sliceHeight;
+        switch (pixelFormat) {
+            case I420:
+                return lumaSize + 2 * getChromaStride() * ((sliceHeight + 1) / 2);
+            case NV12:
+            case NV21:
+                return lumaSize + getChromaStride() * ((sliceHeight + 1) / 2);
+            default:
+                return lumaSize;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FrameLayout)) return false;
+        FrameLayout that = (FrameLayout) o;
+        return pixelFormat == that.pixelFormat && width == that.width && height == that.height
+                && stride == that.stride && sliceHeight == that.sliceHeight
+                && cropLeft == that.cropLeft && cropTop == that.cropTop;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = pixelFormat.hashCode();
+        result = 31 * result + width;
+        result = 31 * result + height;
+        result = 31 * result + stride;
+        result = 31 * result + sliceHeight;
+        result = 31 * result + cropLeft;
+        result = 31 * result + cropTop;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return pixelFormat + " " + width + "x" + height + " stride=" + stride + " sliceHeight=" + sliceHeight
+                + " crop=(" + cropLeft + "," + cropTop + ")";
+    }
+}
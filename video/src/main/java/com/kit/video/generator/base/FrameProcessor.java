@@ -0,0 +1,18 @@
+package com.kit.video.generator.base;
+
+/**
+ * 帧处理阶段接口，位于输入和输出之间（如颜色转换、缩放裁剪、重采样）
+ * <p>
+ * 处理阶段消费输入帧：如果返回了新的帧（或 null），需要对输入帧调用 {@link FrameData#recycle()}。
+ */
+public interface FrameProcessor {
+    /**
+     * 处理一帧数据
+     *
+     * @param frame 输入帧
+     * @return 处理后的帧，可以是输入帧本身；返回 null 表示暂时没有输出（如正在积累数据）
+     */
+    FrameData process(FrameData frame);
+
+    void release();
+}
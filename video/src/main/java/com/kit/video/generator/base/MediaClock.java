@@ -0,0 +1,174 @@
+package com.kit.video.generator.base;
+
+/**
+ * 音视频共享的媒体时钟
+ * <p>
+ * 所有时间戳都以 {@link #start()} 的时刻为零点，单位为微秒：
+ * <ul>
+ *     <li>音频 PTS 由累计的采样数推算（而不是读取完成的时刻），不受阻塞读取和调度抖动的影响；</li>
+ *     <li>视频 PTS 由帧的采集时间（如 SurfaceTexture.getTimestamp()，与 System.nanoTime() 同一时基）映射而来。</li>
+ * </ul>
+ * 音频设备的采样时钟与系统时钟之间存在频偏，长时间录制后两者会逐渐错开。时钟会持续测量音频时间轴相对系统时钟的漂移，
+ * 在开启校正时以很小的步长（每个音频块不超过其时长的 1/4）平滑地调整音频时间轴，保证音频 PTS 单调递增且没有跳变；
+ * 漂移超过阈值（如录音溢出丢失了采样）时直接向前重新对齐。
+ * <p>
+ * 时间来源可以注入，便于用模拟时钟测试。
+ */
+public class MediaClock {
+    // 超过该值的正向误差视为丢失了采样，直接重新对齐，单位：微秒
+    private static final long RESYNC_THRESHOLD_US = 200_000;
+    // 允许的漂移，超出后开始校正，单位：微秒
+    private static final long DRIFT_TOLERANCE_US = 10_000;
+    // 每个音频块最多校正的量，单位：微秒
+    private static final long MAX_SLEW_US = 1_000;
+    // 漂移测量的平滑系数（1/N）
+    private static final int DRIFT_SMOOTHING = 16;
+
+    /**
+     * 时间来源
+     */
+    public interface TimeSource {
+        /**
+         * @return 单调递增的时间，单位：纳秒
+         */
+        long nanoTime();
+    }
+
+    private final TimeSource timeSource;
+    private long baseNanos;
+    private boolean started;
+
+    // 音频时间轴
+    private int sampleRate;
+    private long totalSamples;
+    private long audioAnchorUs = -1;
+    private long driftUs;
+    private boolean driftCorrection = true;
+
+    // 视频时间轴
+    private long lastVideoPtsUs = -1;
+
+    public MediaClock() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param timeSource 时间来源
+     */
+    public MediaClock(TimeSource timeSource) {
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * 以当前时刻为时间轴的零点。未显式调用时，第一次获取时间戳时自动开始。
+     */
+    public synchronized void start() {
+        baseNanos = timeSource.nanoTime();
+        started = true;
+        totalSamples = 0;
+        audioAnchorUs = -1;
+        driftUs = 0;
+        lastVideoPtsUs = -1;
+    }
+
+    /**
+     * 当前时刻在时间轴上的位置，单位：微秒
+     */
+    public synchronized long getTimeUs() {
+        ensureStarted();
+        return (timeSource.nanoTime() - baseNanos) / 1000;
+    }
+
+    /**
+     * 设置音频采样率（需在第一次调用 {@link #nextAudioPtsUs(int)} 之前设置）
+     */
+    public synchronized void setAudioSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * 是否开启漂移校正，默认开启
+     */
+    public synchronized void setDriftCorrection(boolean enabled) {
+        this.driftCorrection = enabled;
+    }
+
+    /**
+     * 计算刚读取完成的一块音频的 PTS（该块第一个采样的时间）
+     * <p>
+     * 应在读取完成后立即调用，调用时刻用于测量漂移。
+     *
+     * @param sampleCount 这一块的采样数（每个声道计一次）
+     * @return 呈现时间戳，单位：微秒
+     */
+    public synchronized long nextAudioPtsUs(int sampleCount) {
+        if (sampleRate <= 0) {
+            throw new IllegalStateException("Audio sample rate not set");
+        }
+        long nowUs = getTimeUs();
+        long blockUs = samplesToUs(sampleCount);
+        if (audioAnchorUs < 0) {
+            // 第一块：读取完成时刻减去这一块的时长，即第一个采样的采集时刻
+            audioAnchorUs = Math.max(0, nowUs - blockUs);
+        }
+        long ptsUs = audioAnchorUs + samplesToUs(totalSamples);
+        totalSamples += sampleCount;
+
+        // 正数表示音频时间轴落后于系统时钟
+        long errorUs = nowUs - (audioAnchorUs + samplesToUs(totalSamples));
+        if (errorUs > RESYNC_THRESHOLD_US) {
+            // 丢失了采样，下一块从当前时刻继续
+            audioAnchorUs += errorUs;
+            driftUs = 0;
+            return ptsUs;
+        }
+        driftUs += (errorUs - driftUs) / DRIFT_SMOOTHING;
+        if (driftCorrection && Math.abs(driftUs) > DRIFT_TOLERANCE_US) {
+            long maxStep = Math.min(MAX_SLEW_US, blockUs / 4);
+            long step = Math.max(-maxStep, Math.min(maxStep, driftUs));
+            audioAnchorUs += step;
+            driftUs -= step;
+        }
+        return ptsUs;
+    }
+
+    /**
+     * 将视频帧的采集时间映射到时间轴上，保证单调递增
+     *
+     * @param timestampNs 采集时间（与 System.nanoTime() 同一时基），单位：纳秒；小于等于 0 时使用当前时刻
+     * @return 呈现时间戳，单位：微秒
+     */
+    public synchronized long mapVideoTimestampUs(long timestampNs) {
+        ensureStarted();
+        long ptsUs = timestampNs > 0 ? (timestampNs - baseNanos) / 1000 : getTimeUs();
+        if (ptsUs <= lastVideoPtsUs) {
+            ptsUs = lastVideoPtsUs + 1;
+        }
+        lastVideoPtsUs = ptsUs;
+        return ptsUs;
+    }
+
+    /**
+     * 当前测量到的音频时间轴相对系统时钟的漂移（平滑后），正数表示音频落后，单位：微秒
+     */
+    public synchronized long getDriftUs() {
+        return driftUs;
+    }
+
+    /**
+     * 已计入音频时间轴的采样数
+     */
+    public synchronized long getAudioSampleCount() {
+        return totalSamples;
+    }
+
+    private long samplesToUs(long samples) {
+        return samples * 1_000_000L / sampleRate;
+    }
+
+    private void ensureStarted() {
+        if (!started) {
+            start();
+        }
+    }
+}
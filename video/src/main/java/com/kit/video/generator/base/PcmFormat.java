@@ -0,0 +1,59 @@
+package com.kit.video.generator.base;
+
+/**
+ * 音频帧的 PCM 格式：采样率和声道数（16 位有符号整数，多声道交错排列，本机字节序）
+ */
+public final class PcmFormat {
+    public static final int BYTES_PER_SAMPLE = 2;
+
+    private final int sampleRate;
+    private final int channelCount;
+
+    public PcmFormat(int sampleRate, int channelCount) {
+        if (sampleRate <= 0 || channelCount <= 0) {
+            throw new IllegalArgumentException("Invalid PCM format: " + sampleRate + "Hz x" + channelCount);
+        }
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * 每个采样帧（所有声道）的字节数
+     */
+    public int getBytesPerFrame() {
+        return BYTES_PER_SAMPLE * channelCount;
+    }
+
+    /**
+     * 将采样帧数换算为时长，单位：微秒
+     */
+    public long framesToUs(long frames) {
+        return frames * 1_000_000L / sampleRate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PcmFormat)) return false;
+        PcmFormat that = (PcmFormat) o;
+        return sampleRate == that.sampleRate && channelCount == that.channelCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sampleRate + channelCount;
+    }
+
+    @Override
+    public String toString() {
+        return sampleRate + "Hz x" + channelCount;
+    }
+}
@@ -0,0 +1,127 @@
+package com.kit.video.generator.base;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单生产者单消费者（SPSC）的无锁 PCM 环形缓冲区
+ * <p>
+ * 缓冲区由固定数量的槽组成，每个槽是一块预先分配的直接缓冲区并附带该块的 PTS。
+ * 生产者填充 {@link #beginWrite()} 返回的槽后调用 {@link #endWrite(long)} 发布，
+ * 消费者读取 {@link #peek()} 返回的槽后调用 {@link #advance()} 归还。
+ * 读写序号是单调递增的 long，只由各自的一方写入，发布时使用 lazySet（release 语义），
+ * 读取对方序号时使用 get（acquire 语义），因此槽内的数据和 PTS 在发布后对另一方可见。
+ * 运行期间不产生分配，也不会阻塞任何一方。
+ */
+public class PcmRingBuffer {
+    private final ByteBuffer[] slots;
+    // 每个槽的只读视图，交给消费者，消费者修改 position/limit 不影响生产者的槽
+    private final ByteBuffer[] readViews;
+    private final long[] ptsUs;
+    private final int mask;
+    private final int slotSize;
+
+    // 下一个要写入的序号，只由生产者修改
+    private final AtomicLong writeSequence = new AtomicLong();
+    // 下一个要读取的序号，只由消费者修改
+    private final AtomicLong readSequence = new AtomicLong();
+
+    /**
+     * @param slotCount 槽数量，向上取整为 2 的幂
+     * @param slotSize  每个槽的字节数
+     */
+    public PcmRingBuffer(int slotCount, int slotSize) {
+        if (slotCount <= 0 || slotSize <= 0) {
+            throw new IllegalArgumentException("Invalid ring buffer size");
+        }
+        int capacity = Integer.highestOneBit(slotCount);
+        if (capacity < slotCount) capacity <<= 1;
+        this.slots = new ByteBuffer[capacity];
+        this.readViews = new ByteBuffer[capacity];
+        this.ptsUs = new long[capacity];
+        this.mask = capacity - 1;
+        this.slotSize = slotSize;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = ByteBuffer.allocateDirect(slotSize);
+            readViews[i] = slots[i].asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * 生产者：获取下一个可写的槽（已清空），缓冲区已满时返回 null
+     */
+    public ByteBuffer beginWrite() {
+        long write = writeSequence.get();
+        if (write - readSequence.get() >= slots.length) {
+            return null;
+        }
+        ByteBuffer slot = slots[(int) write & mask];
+        slot.clear();
+        return slot;
+    }
+
+    /**
+     * 生产者：发布 {@link #beginWrite()} 返回的槽，槽的 limit 应已设置为有效数据的长度
+     *
+     * @param presentationTimeUs 该块第一个采样的时间，单位：微秒
+     */
+    public void endWrite(long presentationTimeUs) {
+        long write = writeSequence.get();
+        ptsUs[(int) write & mask] = presentationTimeUs;
+        writeSequence.lazySet(write + 1);
+    }
+
+    /**
+     * 消费者：获取最早的已发布槽的只读视图，position 到 limit 为有效数据，缓冲区为空时返回 null
+     * <p>
+     * 视图属于消费者，可以随意移动 position（如直接 put 到其他缓冲区），在 {@link #advance()} 之前有效。
+     */
+    public ByteBuffer peek() {
+        long read = readSequence.get();
+        if (read >= writeSequence.get()) {
+            return null;
+        }
+        int index = (int) read & mask;
+        ByteBuffer slot = slots[index];
+        ByteBuffer view = readViews[index];
+        view.limit(slot.limit());
+        view.position(slot.position());
+        return view;
+    }
+
+    /**
+     * 消费者：{@link #peek()} 返回的槽的 PTS
+     */
+    public long peekPtsUs() {
+        return ptsUs[(int) readSequence.get() & mask];
+    }
+
+    /**
+     * 消费者：归还 {@link #peek()} 返回的槽
+     */
+    public void advance() {
+        readSequence.lazySet(readSequence.get() + 1);
+    }
+
+    /**
+     * 当前已发布但还未读取的槽数量（近似值，仅用于统计）
+     */
+    public int size() {
+        return (int) (writeSequence.get() - readSequence.get());
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    /**
+     * 丢弃所有未读取的数据，只能在生产者和消费者都停止时调用
+     */
+    public void clear() {
+        readSequence.set(writeSequence.get());
+    }
+}
@@ -0,0 +1,70 @@
+package com.kit.video.generator.base;
+
+/**
+ * 原始视频帧的像素布局
+ */
+public enum PixelFormat {
+    /**
+     * YUV 4:2:0 三平面：Y、U、V
+     */
+    I420,
+    /**
+     * YUV 4:2:0 双平面：Y、UV 交错
+     */
+    NV12,
+    /**
+     * YUV 4:2:0 双平面：Y、VU 交错
+     */
+    NV21,
+    /**
+     * 每像素 4 字节：R、G、B、A
+     */
+    RGBA;
+
+    // MediaCodecInfo.CodecCapabilities 中的颜色格式，在本地定义使该类不依赖 Android 框架，可以在普通 JVM 上使用
+    private static final int COLOR_FormatYUV420Planar = 19;
+    private static final int COLOR_FormatYUV420PackedPlanar = 20;
+    private static final int COLOR_FormatYUV420SemiPlanar = 21;
+    private static final int COLOR_FormatYUV420PackedSemiPlanar = 39;
+    private static final int COLOR_TI_FormatYUV420PackedSemiPlanar = 0x7f000100;
+    private static final int COLOR_QCOM_FormatYUV420SemiPlanar = 0x7fa30c00;
+
+    /**
+     * 计算紧密排列（无行填充）时一帧的字节数
+     *
+     * @param width  宽度
+     * @param height 高度
+     * @return 一帧的字节数
+     */
+    public int getFrameSize(int width, int height) {
+        if (this == RGBA) {
+            return width * height * 4;
+        }
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    public boolean isYuv() {
+        return this != RGBA;
+    }
+
+    /**
+     * 将 MediaCodec 的颜色格式映射为像素布局
+     *
+     * @param colorFormat {@code MediaCodecInfo.CodecCapabilities} 中的颜色格式
+     * @return 对应的像素布局，无法识别（如厂商私有的分块格式）时返回 null
+     */
+    public static PixelFormat fromColorFormat(int colorFormat) {
+        switch (colorFormat) {
+            case COLOR_FormatYUV420Planar:
+            case COLOR_FormatYUV420PackedPlanar:
+                return I420;
+            case COLOR_FormatYUV420SemiPlanar:
+            case COLOR_FormatYUV420PackedSemiPlanar:
+            case COLOR_TI_FormatYUV420PackedSemiPlanar:
+            case COLOR_QCOM_FormatYUV420SemiPlanar:
+                return NV12;
+            default:
+                return null;
+        }
+    }
+}
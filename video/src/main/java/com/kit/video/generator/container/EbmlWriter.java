@@ -0,0 +1,191 @@
+package com.kit.video.generator.container;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * EBML（Matroska/WebM 的二进制格式）元素序列化，写入可自动增长的内存缓冲区
+ * <p>
+ * 主元素（master element）先用 {@link #startMaster(int)} 写入 ID 和 8 字节的长度占位，子元素写完后由
+ * {@link #endMaster(int)} 回填长度，因此不需要预先计算子元素的大小。不依赖 Android，可以在 JVM 上直接测试。
+ */
+public class EbmlWriter {
+    // 8 字节长度字段能表示的“未知长度”
+    static final long UNKNOWN_SIZE = 0x01FFFFFFFFFFFFFFL;
+
+    private ByteBuffer buffer;
+
+    public EbmlWriter(int initialCapacity) {
+        buffer = ByteBuffer.allocate(initialCapacity).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    public int size() {
+        return buffer.position();
+    }
+
+    /**
+     * 清空已写入的内容，保留已分配的空间
+     */
+    public void reset() {
+        buffer.clear();
+    }
+
+    /**
+     * 已写入内容的只读视图（position 为 0，limit 为已写入的字节数）
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer view = buffer.duplicate();
+        view.flip();
+        return view;
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.BIG_ENDIAN);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * 写入元素 ID（ID 本身已包含长度标记，按其最高非零字节确定长度）
+     */
+    public void writeId(int id) {
+        ensure(4);
+        if ((id & 0xFF000000) != 0) buffer.put((byte) (id >>> 24));
+        if ((id & 0xFFFF0000) != 0) buffer.put((byte) (id >>> 16));
+        if ((id & 0xFFFFFF00) != 0) buffer.put((byte) (id >>> 8));
+        buffer.put((byte) id);
+    }
+
+    /**
+     * 以最短的可变长度整数（vint）写入元素长度
+     */
+    public void writeSize(long size) {
+        int length = 1;
+        // 全 1 的值保留给“未知长度”，因此每种长度能表示的最大值是 2^(7n) - 2
+        while (length < 8 && size >= (1L << (7 * length)) - 1) {
+            length++;
+        }
+        writeSize(size, length);
+    }
+
+    /**
+     * 以指定的字节数写入元素长度
+     */
+    public void writeSize(long size, int length) {
+        ensure(length);
+        long value = size | (1L << (7 * length));
+        for (int i = length - 1; i >= 0; i--) {
+            buffer.put((byte) (value >>> (8 * i)));
+        }
+    }
+
+    public void writeUInt(int id, long value) {
+        int length = 1;
+        while (length < 8 && (value >>> (8 * length)) != 0) {
+            length++;
+        }
+        writeUInt(id, value, length);
+    }
+
+    /**
+     * 以固定的字节数写入无符号整数，用于之后需要原地改写的元素
+     */
+    public void writeUInt(int id, long value, int length) {
+        writeId(id);
+        writeSize(length);
+        ensure(length);
+        for (int i = length - 1; i >= 0; i--) {
+            buffer.put((byte) (value >>> (8 * i)));
+        }
+    }
+
+    public void writeFloat(int id, double value) {
+        writeId(id);
+        writeSize(8);
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    public void writeString(int id, String value) {
+        writeBinary(id, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void writeBinary(int id, byte[] data) {
+        writeId(id);
+        writeSize(data.length);
+        ensure(data.length);
+        buffer.put(data);
+    }
+
+    /**
+     * 写入二进制元素，读取 data 的 position 到 limit 之间的内容，不改变 data 的 position
+     */
+    public void writeBinary(int id, ByteBuffer data) {
+        writeId(id);
+        writeSize(data.remaining());
+        writeRaw(data);
+    }
+
+    /**
+     * 直接写入字节，不改变 data 的 position
+     */
+    public void writeRaw(ByteBuffer data) {
+        ensure(data.remaining());
+        buffer.put(data.duplicate());
+    }
+
+    public void writeByte(int value) {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    public void writeShort(int value) {
+        ensure(2);
+        buffer.putShort((short) value);
+    }
+
+    /**
+     * 写入总长度为 totalSize 字节的 Void 元素（用于预留空间），totalSize 不能小于 2
+     */
+    public void writeVoid(int totalSize) {
+        if (totalSize < 2) {
+            throw new IllegalArgumentException("Void element needs at least 2 bytes");
+        }
+        // 长度字段用 1 字节能表示 126 以内的数据长度，否则用 8 字节
+        int sizeLength = totalSize - 2 <= 126 ? 1 : 8;
+        int dataSize = totalSize - 1 - sizeLength;
+        writeId(MatroskaIds.VOID);
+        writeSize(dataSize, sizeLength);
+        ensure(dataSize);
+        buffer.put(new byte[dataSize]);
+    }
+
+    /**
+     * 开始一个主元素
+     *
+     * @return 标记，传给 {@link #endMaster(int)}
+     */
+    public int startMaster(int id) {
+        writeId(id);
+        int mark = buffer.position();
+        writeSize(UNKNOWN_SIZE, 8);
+        return mark;
+    }
+
+    /**
+     * 结束主元素，回填其长度
+     */
+    public void endMaster(int mark) {
+        long size = buffer.position() - mark - 8;
+        long value = size | (1L << 56);
+        buffer.putLong(mark, value);
+    }
+}
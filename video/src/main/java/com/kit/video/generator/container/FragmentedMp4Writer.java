@@ -0,0 +1,605 @@
+package com.kit.video.generator.container;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 流式分片 MP4（fMP4/CMAF）写入器，支持 H.264 视频和 AAC 音频，只顺序写入，不需要定位
+ * <p>
+ * 输出由初始化段（ftyp + moov，不含样本表）和一系列分片（moof + mdat）组成，因此可以直接写入网络连接、管道等
+ * 任意 {@link WritableByteChannel}，接收方边收边解析。有视频轨道时分片从视频关键帧开始，并且至少持续
+ * fragmentDurationUs；只有音频时按时长切分。每个分片在内存中组装好后一次写出。
+ * <p>
+ * H.264 样本可以是 Annex-B 格式（MediaCodec 的输出，带起始码），写入时转换为 4 字节长度前缀格式。
+ * 样本按解码顺序写入；有 B 帧时同时传入解码时间，显示时间与解码时间之差写为 trun 中的合成时间偏移（version 1，可以为负），
+ * 解码时间整体平移到第一个样本的显示时间，使显示时间轴从第一帧开始。不依赖 Android，可以在 JVM 上直接测试。
+ */
+public class FragmentedMp4Writer implements Closeable {
+    public static final long DEFAULT_FRAGMENT_DURATION_US = 1_000_000;
+
+    private static final int VIDEO_TIMESCALE = 90000;
+    private static final int MOVIE_TIMESCALE = 1000;
+    // 单个分片的数据超过该值时不等关键帧直接切分，限制内存占用
+    private static final int MAX_FRAGMENT_SIZE = 16 * 1024 * 1024;
+    // 样本标志：不依赖其他样本（同步样本） / 依赖其他样本（非同步样本）
+    private static final int SAMPLE_FLAGS_SYNC = 0x02000000;
+    private static final int SAMPLE_FLAGS_NON_SYNC = 0x01010000;
+    private static final int NAL_TYPE_AUD = 9;
+
+    /**
+     * 分片写出的回调
+     */
+    public interface FragmentListener {
+        /**
+         * @param sequenceNumber 分片序号，从 1 开始
+         * @param startUs        分片中第一个样本的解码时间，单位：微秒
+         * @param durationUs     分片时长，单位：微秒
+         * @param independent    分片是否从关键帧开始（可以独立解码）
+         * @param size           分片的字节数
+         */
+        void onFragmentWritten(int sequenceNumber, long startUs, long durationUs, boolean independent, int size);
+    }
+
+    private static final class Track {
+        final int id;
+        final boolean video;
+        final int timescale;
+        // 视频
+        int width;
+        int height;
+        byte[] sps;
+        byte[] pps;
+        // 音频
+        int sampleRate;
+        int channelCount;
+        byte[] audioSpecificConfig;
+
+        // 当前分片的样本
+        final Mp4BoxWriter data = new Mp4BoxWriter(256 * 1024);
+        int sampleCount;
+        long[] dts = new long[64];
+        int[] sizes = new int[64];
+        int[] compositionOffsets = new int[64];
+        boolean[] sync = new boolean[64];
+        long lastDts = Long.MIN_VALUE;
+        long lastDuration;
+        // 解码时间的平移量，使第一个样本的解码时间等于显示时间（解码时间不能为负）
+        long dtsShift;
+
+        Track(int id, boolean video, int timescale) {
+            this.id = id;
+            this.video = video;
+            this.timescale = timescale;
+        }
+
+        void addSample(long dtsTicks, int size, int compositionOffset, boolean isSync) {
+            if (sampleCount == dts.length) {
+                int capacity = sampleCount * 2;
+                dts = Arrays.copyOf(dts, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                compositionOffsets = Arrays.copyOf(compositionOffsets, capacity);
+                sync = Arrays.copyOf(sync, capacity);
+            }
+            dts[sampleCount] = dtsTicks;
+            sizes[sampleCount] = size;
+            compositionOffsets[sampleCount] = compositionOffset;
+            sync[sampleCount] = isSync;
+            sampleCount++;
+        }
+
+        long duration(int index) {
+            return index + 1 < sampleCount ? dts[index + 1] - dts[index] : lastDuration;
+        }
+
+        long toTicks(long us) {
+            return Math.round(us * (double) timescale / 1_000_000);
+        }
+
+        long toUs(long ticks) {
+            return ticks * 1_000_000 / timescale;
+        }
+    }
+
+    private final WritableByteChannel sink;
+    private final long fragmentDurationUs;
+    private final List<Track> tracks = new ArrayList<>();
+    private final Mp4BoxWriter box = new Mp4BoxWriter(64 * 1024);
+    private Track videoTrack;
+    private FragmentListener listener;
+    private boolean started;
+    private boolean closed;
+    private int sequenceNumber;
+    private long fragmentStartUs = -1;
+
+    public FragmentedMp4Writer(WritableByteChannel sink) {
+        this(sink, DEFAULT_FRAGMENT_DURATION_US);
+    }
+
+    /**
+     * @param sink               输出，close 时不关闭
+     * @param fragmentDurationUs 分片的目标时长，单位：微秒
+     */
+    public FragmentedMp4Writer(WritableByteChannel sink, long fragmentDurationUs) {
+        this.sink = sink;
+        this.fragmentDurationUs = fragmentDurationUs;
+    }
+
+    public void setFragmentListener(FragmentListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 添加 H.264 视频轨道（需在 start 之前调用）
+     *
+     * @param sps 序列参数集，可以带起始码
+     * @param pps 图像参数集，可以带起始码
+     * @return 轨道索引
+     */
+    public int addVideoTrack(int width, int height, byte[] sps, byte[] pps) {
+        Track track = addTrack(true, VIDEO_TIMESCALE);
+        track.width = width;
+        track.height = height;
+        track.sps = stripStartCode(sps);
+        track.pps = stripStartCode(pps);
+        track.lastDuration = VIDEO_TIMESCALE / 30;
+        if (videoTrack == null) videoTrack = track;
+        return tracks.size() - 1;
+    }
+
+    /**
+     * 添加 AAC 音频轨道（需在 start 之前调用）
+     *
+     * @param audioSpecificConfig AudioSpecificConfig（MediaCodec 输出格式的 csd-0）
+     * @return 轨道索引
+     */
+    public int addAudioTrack(int sampleRate, int channelCount, byte[] audioSpecificConfig) {
+        Track track = addTrack(false, sampleRate);
+        track.sampleRate = sampleRate;
+        track.channelCount = channelCount;
+        track.audioSpecificConfig = audioSpecificConfig;
+        track.lastDuration = 1024;
+        return tracks.size() - 1;
+    }
+
+    private Track addTrack(boolean video, int timescale) {
+        if (started) {
+            throw new IllegalStateException("Tracks must be added before start");
+        }
+        Track track = new Track(tracks.size() + 1, video, timescale);
+        tracks.add(track);
+        return track;
+    }
+
+    /**
+     * 写出初始化段（ftyp + moov）
+     */
+    public void start() throws IOException {
+        if (started) return;
+        if (tracks.isEmpty()) {
+            throw new IllegalStateException("No tracks");
+        }
+        box.reset();
+        writeInitSegment(box);
+        writeFully(box.toByteBuffer());
+        box.reset();
+        started = true;
+    }
+
+    /**
+     * 初始化段的内容，可以单独保存（如 HLS 的 EXT-X-MAP）
+     */
+    public ByteBuffer getInitSegment() {
+        Mp4BoxWriter init = new Mp4BoxWriter(1024);
+        writeInitSegment(init);
+        return init.toByteBuffer();
+    }
+
+    /**
+     * 写入一个没有重排序的编码帧，解码时间等于显示时间
+     *
+     * @param trackIndex 轨道索引
+     * @param data       编码数据，读取 position 到 limit 之间的内容，不改变 data 的 position
+     * @param ptsUs      显示时间戳，单位：微秒
+     * @param keyFrame   是否关键帧
+     */
+    public void writeSample(int trackIndex, ByteBuffer data, long ptsUs, boolean keyFrame) throws IOException {
+        writeSample(trackIndex, data, ptsUs, ptsUs, keyFrame);
+    }
+
+    /**
+     * 写入一个编码帧，编码帧必须按解码顺序写入
+     *
+     * @param ptsUs 显示时间戳，单位：微秒
+     * @param dtsUs 解码时间戳，不晚于 ptsUs，单位：微秒
+     */
+    public void writeSample(int trackIndex, ByteBuffer data, long ptsUs, long dtsUs, boolean keyFrame) throws IOException {
+        if (!started) {
+            throw new IllegalStateException("start() has not been called");
+        }
+        Track track = tracks.get(trackIndex);
+        boolean cut;
+        if (videoTrack != null) {
+            cut = track == videoTrack && keyFrame && fragmentStartUs >= 0 && dtsUs - fragmentStartUs >= fragmentDurationUs - fragmentDurationUs / 20;
+        } else {
+            cut = fragmentStartUs >= 0 && dtsUs - fragmentStartUs >= fragmentDurationUs - fragmentDurationUs / 20;
+        }
+        if (cut || pendingBytes() + data.remaining() > MAX_FRAGMENT_SIZE) {
+            flush();
+        }
+        if (fragmentStartUs < 0) {
+            fragmentStartUs = dtsUs;
+        }
+
+        long ptsTicks = track.toTicks(ptsUs);
+        long rawDtsTicks = track.toTicks(dtsUs);
+        if (track.lastDts == Long.MIN_VALUE) {
+            track.dtsShift = Math.max(0, ptsTicks - rawDtsTicks);
+        }
+        // 解码时间必须严格递增
+        long dtsTicks = rawDtsTicks + track.dtsShift;
+        if (track.lastDts != Long.MIN_VALUE) {
+            dtsTicks = Math.max(dtsTicks, track.lastDts + 1);
+        }
+        if (track.sampleCount > 0) {
+            track.lastDuration = dtsTicks - track.dts[track.sampleCount - 1];
+        } else if (track.lastDts != Long.MIN_VALUE) {
+            track.lastDuration = dtsTicks - track.lastDts;
+        }
+        track.lastDts = dtsTicks;
+
+        int before = track.data.size();
+        if (track.video) {
+            appendAvcSample(track.data, data);
+        } else {
+            track.data.putBuffer(data);
+        }
+        track.addSample(dtsTicks, track.data.size() - before, (int) (ptsTicks - dtsTicks), keyFrame || !track.video);
+    }
+
+    private int pendingBytes() {
+        int total = 0;
+        for (Track track : tracks) {
+            total += track.data.size();
+        }
+        return total;
+    }
+
+    /**
+     * 立即写出当前分片（moof + mdat）
+     */
+    public void flush() throws IOException {
+        if (!started || pendingBytes() == 0) return;
+        sequenceNumber++;
+        box.reset();
+
+        // moof
+        int moof = box.startBox("moof");
+        int mfhd = box.startFullBox("mfhd", 0, 0);
+        box.putInt(sequenceNumber);
+        box.endBox(mfhd);
+        int[] dataOffsetPositions = new int[tracks.size()];
+        long startUs = Long.MAX_VALUE;
+        long endUs = Long.MIN_VALUE;
+        boolean independent = videoTrack == null || (videoTrack.sampleCount > 0 && videoTrack.sync[0]);
+        for (int t = 0; t < tracks.size(); t++) {
+            Track track = tracks.get(t);
+            dataOffsetPositions[t] = -1;
+            if (track.sampleCount == 0) continue;
+            int traf = box.startBox("traf");
+            // default-base-is-moof：样本数据的偏移量相对 moof 的起始位置
+            int tfhd = box.startFullBox("tfhd", 0, 0x020000);
+            box.putInt(track.id);
+            box.endBox(tfhd);
+            int tfdt = box.startFullBox("tfdt", 1, 0);
+            box.putLong(track.dts[0]);
+            box.endBox(tfdt);
+            // data-offset、sample-duration、sample-size、sample-flags、sample-composition-time-offset
+            int trun = box.startFullBox("trun", 1, 0x000001 | 0x000100 | 0x000200 | 0x000400 | 0x000800);
+            box.putInt(track.sampleCount);
+            dataOffsetPositions[t] = box.size();
+            box.putInt(0);
+            long duration = 0;
+            for (int i = 0; i < track.sampleCount; i++) {
+                long sampleDuration = track.duration(i);
+                duration += sampleDuration;
+                box.putInt((int) sampleDuration);
+                box.putInt(track.sizes[i]);
+                box.putInt(track.sync[i] ? SAMPLE_FLAGS_SYNC : SAMPLE_FLAGS_NON_SYNC);
+                box.putInt(track.compositionOffsets[i]);
+            }
+            box.endBox(trun);
+            box.endBox(traf);
+            startUs = Math.min(startUs, track.toUs(track.dts[0]));
+            endUs = Math.max(endUs, track.toUs(track.dts[0] + duration));
+        }
+        box.endBox(moof);
+
+        // mdat：各轨道的数据按 traf 的顺序排列
+        int offset = box.size() + 8;
+        for (int t = 0; t < tracks.size(); t++) {
+            if (dataOffsetPositions[t] < 0) continue;
+            box.setInt(dataOffsetPositions[t], offset);
+            offset += tracks.get(t).data.size();
+        }
+        int mdat = box.startBox("mdat");
+        for (Track track : tracks) {
+            if (track.sampleCount == 0) continue;
+            box.putBuffer(track.data.toByteBuffer());
+            track.data.reset();
+            track.sampleCount = 0;
+        }
+        box.endBox(mdat);
+
+        int size = box.size();
+        writeFully(box.toByteBuffer());
+        box.reset();
+        fragmentStartUs = -1;
+        if (listener != null) {
+            listener.onFragmentWritten(sequenceNumber, startUs, endUs - startUs, independent, size);
+        }
+    }
+
+    /**
+     * 写出最后一个分片，不关闭 sink
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        flush();
+    }
+
+    private void writeInitSegment(Mp4BoxWriter out) {
+        int ftyp = out.startBox("ftyp");
+        out.putFourCc("iso6");
+        out.putInt(0);
+        out.putFourCc("iso6");
+        out.putFourCc("cmfc");
+        out.putFourCc("mp41");
+        out.endBox(ftyp);
+
+        int moov = out.startBox("moov");
+        int mvhd = out.startFullBox("mvhd", 0, 0);
+        out.putInt(0);                    // creation_time
+        out.putInt(0);                    // modification_time
+        out.putInt(MOVIE_TIMESCALE);
+        out.putInt(0);                    // duration：分片文件中为 0
+        out.putInt(0x00010000);           // rate 1.0
+        out.putShort(0x0100);             // volume 1.0
+        out.putZeros(10);
+        writeMatrix(out);
+        out.putZeros(24);                 // pre_defined
+        out.putInt(tracks.size() + 1);    // next_track_ID
+        out.endBox(mvhd);
+        for (Track track : tracks) {
+            writeTrak(out, track);
+        }
+        int mvex = out.startBox("mvex");
+        for (Track track : tracks) {
+            int trex = out.startFullBox("trex", 0, 0);
+            out.putInt(track.id);
+            out.putInt(1);                // default_sample_description_index
+            out.putInt(0);
+            out.putInt(0);
+            out.putInt(0);
+            out.endBox(trex);
+        }
+        out.endBox(mvex);
+        out.endBox(moov);
+    }
+
+    private void writeTrak(Mp4BoxWriter out, Track track) {
+        int trak = out.startBox("trak");
+        int tkhd = out.startFullBox("tkhd", 0, 0x000003); // enabled | in_movie
+        out.putInt(0);
+        out.putInt(0);
+        out.putInt(track.id);
+        out.putInt(0);
+        out.putInt(0);                    // duration
+        out.putZeros(8);
+        out.putShort(0);                  // layer
+        out.putShort(0);                  // alternate_group
+        out.putShort(track.video ? 0 : 0x0100);
+        out.putShort(0);
+        writeMatrix(out);
+        out.putInt(track.video ? track.width << 16 : 0);
+        out.putInt(track.video ? track.height << 16 : 0);
+        out.endBox(tkhd);
+
+        int mdia = out.startBox("mdia");
+        int mdhd = out.startFullBox("mdhd", 0, 0);
+        out.putInt(0);
+        out.putInt(0);
+        out.putInt(track.timescale);
+        out.putInt(0);
+        out.putShort(0x55C4);             // language: und
+        out.putShort(0);
+        out.endBox(mdhd);
+        int hdlr = out.startFullBox("hdlr", 0, 0);
+        out.putInt(0);
+        out.putFourCc(track.video ? "vide" : "soun");
+        out.putZeros(12);
+        out.putBytes((track.video ? "VideoHandler\0" : "SoundHandler\0").getBytes(StandardCharsets.US_ASCII));
+        out.endBox(hdlr);
+
+        int minf = out.startBox("minf");
+        if (track.video) {
+            int vmhd = out.startFullBox("vmhd", 0, 1);
+            out.putZeros(8);
+            out.endBox(vmhd);
+        } else {
+            int smhd = out.startFullBox("smhd", 0, 0);
+            out.putInt(0);
+            out.endBox(smhd);
+        }
+        int dinf = out.startBox("dinf");
+        int dref = out.startFullBox("dref", 0, 0);
+        out.putInt(1);
+        int url = out.startFullBox("url ", 0, 1); // 数据在同一文件中
+        out.endBox(url);
+        out.endBox(dref);
+        out.endBox(dinf);
+
+        int stbl = out.startBox("stbl");
+        int stsd = out.startFullBox("stsd", 0, 0);
+        out.putInt(1);
+        if (track.video) {
+            writeAvc1(out, track);
+        } else {
+            writeMp4a(out, track);
+        }
+        out.endBox(stsd);
+        // 样本都在分片中，样本表为空
+        for (String type : new String[]{"stts", "stsc", "stco"}) {
+            int empty = out.startFullBox(type, 0, 0);
+            out.putInt(0);
+            out.endBox(empty);
+        }
+        int stsz = out.startFullBox("stsz", 0, 0);
+        out.putInt(0);
+        out.putInt(0);
+        out.endBox(stsz);
+        out.endBox(stbl);
+        out.endBox(minf);
+        out.endBox(mdia);
+        out.endBox(trak);
+    }
+
+    private static void writeAvc1(Mp4BoxWriter out, Track track) {
+        int avc1 = out.startBox("avc1");
+        out.putZeros(6);
+        out.putShort(1);                  // data_reference_index
+        out.putZeros(16);
+        out.putShort(track.width);
+        out.putShort(track.height);
+        out.putInt(0x00480000);           // 72 dpi
+        out.putInt(0x00480000);
+        out.putInt(0);
+        out.putShort(1);                  // frame_count
+        out.putZeros(32);                 // compressorname
+        out.putShort(0x0018);             // depth
+        out.putShort(0xFFFF);             // pre_defined = -1
+        int avcC = out.startBox("avcC");
+        out.putByte(1);                   // configurationVersion
+        out.putByte(track.sps.length > 1 ? track.sps[1] : 0x42);  // profile
+        out.putByte(track.sps.length > 2 ? track.sps[2] : 0);     // profile compatibility
+        out.putByte(track.sps.length > 3 ? track.sps[3] : 0x1F);  // level
+        out.putByte(0xFF);                // 4 字节长度前缀
+        out.putByte(0xE1);                // 1 个 SPS
+        out.putShort(track.sps.length);
+        out.putBytes(track.sps);
+        out.putByte(1);                   // 1 个 PPS
+        out.putShort(track.pps.length);
+        out.putBytes(track.pps);
+        out.endBox(avcC);
+        out.endBox(avc1);
+    }
+
+    private static void writeMp4a(Mp4BoxWriter out, Track track) {
+        int mp4a = out.startBox("mp4a");
+        out.putZeros(6);
+        out.putShort(1);                  // data_reference_index
+        out.putZeros(8);
+        out.putShort(track.channelCount);
+        out.putShort(16);                 // samplesize
+        out.putZeros(4);
+        out.putInt(track.sampleRate << 16);
+        int esds = out.startFullBox("esds", 0, 0);
+        byte[] asc = track.audioSpecificConfig != null ? track.audioSpecificConfig : new byte[0];
+        // ES_Descriptor：ES_ID 和标志、DecoderConfigDescriptor（含 2 字节的标签和长度）、SLConfigDescriptor
+        out.putByte(0x03);
+        out.putByte(3 + 2 + 15 + asc.length + 3);
+        out.putShort(0);                  // ES_ID
+        out.putByte(0);
+        // DecoderConfigDescriptor
+        out.putByte(0x04);
+        out.putByte(13 + 2 + asc.length);
+        out.putByte(0x40);                // MPEG-4 Audio
+        out.putByte(0x15);                // AudioStream
+        out.putByte(0);                   // bufferSizeDB
+        out.putShort(0);
+        out.putInt(0);                    // maxBitrate
+        out.putInt(0);                    // avgBitrate
+        // DecoderSpecificInfo
+        out.putByte(0x05);
+        out.putByte(asc.length);
+        out.putBytes(asc);
+        // SLConfigDescriptor
+        out.putByte(0x06);
+        out.putByte(1);
+        out.putByte(0x02);
+        out.endBox(esds);
+        out.endBox(mp4a);
+    }
+
+    private static void writeMatrix(Mp4BoxWriter out) {
+        int[] matrix = {0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000};
+        for (int value : matrix) {
+            out.putInt(value);
+        }
+    }
+
+    /**
+     * 把 Annex-B 格式的样本转换为 4 字节长度前缀格式写入 out；不以起始码开头的样本视为已经是长度前缀格式，原样写入
+     */
+    static void appendAvcSample(Mp4BoxWriter out, ByteBuffer sample) {
+        int start = sample.position();
+        int end = sample.limit();
+        int first = findStartCode(sample, start, end);
+        if (first != start && !(first == start + 1 && sample.get(start) == 0)) {
+            out.putBuffer(sample);
+            return;
+        }
+        int nal = first + 3;
+        while (nal < end) {
+            int next = findStartCode(sample, nal, end);
+            int nalEnd = next;
+            // 4 字节起始码的前导 0 以及 NAL 之间的填充 0 不属于 NAL
+            while (nalEnd > nal && sample.get(nalEnd - 1) == 0) nalEnd--;
+            if (nalEnd > nal && (sample.get(nal) & 0x1F) != NAL_TYPE_AUD) {
+                ByteBuffer unit = sample.duplicate();
+                unit.position(nal);
+                unit.limit(nalEnd);
+                out.putInt(nalEnd - nal);
+                out.putBuffer(unit);
+            }
+            nal = next + 3;
+        }
+    }
+
+    /**
+     * 查找 00 00 01 起始码的位置，找不到时返回 end
+     */
+    private static int findStartCode(ByteBuffer data, int from, int end) {
+        for (int i = from; i + 2 < end; i++) {
+            if ((data.get(i + 2) & 0xFF) > 1) {
+                i += 2;
+            } else if (data.get(i) == 0 && data.get(i + 1) == 0 && data.get(i + 2) == 1) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static byte[] stripStartCode(byte[] nal) {
+        int offset = 0;
+        if (nal.length >= 4 && nal[0] == 0 && nal[1] == 0 && nal[2] == 0 && nal[3] == 1) {
+            offset = 4;
+        } else if (nal.length >= 3 && nal[0] == 0 && nal[1] == 0 && nal[2] == 1) {
+            offset = 3;
+        }
+        return Arrays.copyOfRange(nal, offset, nal.length);
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            sink.write(data);
+        }
+    }
+}
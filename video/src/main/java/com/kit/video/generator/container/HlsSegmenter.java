@@ -0,0 +1,241 @@
+package com.kit.video.generator.container;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * 直播用的 HLS 切片器：把编码数据切成 CMAF 分片（fMP4），并维护滚动的 HLS 播放列表
+ * <p>
+ * 目录中的文件：初始化段 {@value #INIT_SEGMENT_NAME}、分片 segmentN.m4s 和播放列表 {@value #PLAYLIST_NAME}。
+ * 每个分片从视频关键帧开始，时长接近 targetDurationUs；编码器的关键帧间隔较长时，通过
+ * {@link #setKeyFrameRequester(Runnable)} 请求编码器尽快输出关键帧。所有文件都先写入临时文件再重命名，
+ * 播放器（或 HTTP 服务器）不会读到写了一半的内容。播放列表只保留最近 playlistSize 个分片，更早的分片会被删除。
+ * <p>
+ * 不依赖 Android，可以在 JVM 上直接测试。
+ */
+public class HlsSegmenter implements Closeable {
+    public static final String PLAYLIST_NAME = "playlist.m3u8";
+    public static final String INIT_SEGMENT_NAME = "init.mp4";
+    // 移出播放列表的分片再保留几个，避免刚拿到旧播放列表的播放器请求失败
+    private static final int RETAINED_SEGMENTS = 2;
+
+    private static final class Segment {
+        final int sequenceNumber;
+        final long durationUs;
+
+        Segment(int sequenceNumber, long durationUs) {
+            this.sequenceNumber = sequenceNumber;
+            this.durationUs = durationUs;
+        }
+    }
+
+    /**
+     * 收集写入器输出的一个初始化段或分片
+     */
+    private static final class BufferChannel implements WritableByteChannel {
+        final Mp4BoxWriter buffer = new Mp4BoxWriter(256 * 1024);
+
+        @Override
+        public int write(ByteBuffer src) {
+            int size = src.remaining();
+            buffer.putBuffer(src);
+            src.position(src.limit());
+            return size;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final File directory;
+    private final long targetDurationUs;
+    private final int playlistSize;
+    private final BufferChannel output = new BufferChannel();
+    private final FragmentedMp4Writer writer;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private int videoTrackIndex = -1;
+    private Runnable keyFrameRequester;
+    private long segmentStartUs = -1;
+    private boolean keyFrameRequested;
+    private long maxSegmentDurationUs;
+    private IOException segmentError;
+    private boolean closed;
+
+    /**
+     * @param directory        输出目录，不存在时自动创建
+     * @param targetDurationUs 分片的目标时长，单位：微秒
+     * @param playlistSize     播放列表中保留的分片数量
+     */
+    public HlsSegmenter(File directory, long targetDurationUs, int playlistSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        this.directory = directory;
+        this.targetDurationUs = targetDurationUs;
+        this.playlistSize = Math.max(1, playlistSize);
+        this.writer = new FragmentedMp4Writer(output, targetDurationUs);
+        writer.setFragmentListener(this::onSegment);
+    }
+
+    /**
+     * 设置请求关键帧的回调（如 {@code VideoEncoder#requestKeyFrame}），分片达到目标时长仍没有关键帧时调用
+     */
+    public void setKeyFrameRequester(Runnable requester) {
+        this.keyFrameRequester = requester;
+    }
+
+    public File getPlaylistFile() {
+        return new File(directory, PLAYLIST_NAME);
+    }
+
+    /**
+     * 添加 H.264 视频轨道（需在 start 之前调用）
+     *
+     * @return 轨道索引
+     */
+    public int addVideoTrack(int width, int height, byte[] sps, byte[] pps) {
+        int index = writer.addVideoTrack(width, height, sps, pps);
+        if (videoTrackIndex < 0) videoTrackIndex = index;
+        return index;
+    }
+
+    /**
+     * 添加 AAC 音频轨道（需在 start 之前调用）
+     *
+     * @return 轨道索引
+     */
+    public int addAudioTrack(int sampleRate, int channelCount, byte[] audioSpecificConfig) {
+        return writer.addAudioTrack(sampleRate, channelCount, audioSpecificConfig);
+    }
+
+    /**
+     * 写出初始化段
+     */
+    public void start() throws IOException {
+        writer.start();
+        writeAtomically(INIT_SEGMENT_NAME, output.buffer.toByteBuffer());
+        output.buffer.reset();
+    }
+
+    /**
+     * 写入一个编码帧（没有 B 帧），凑满一个分片时写出分片并更新播放列表
+     *
+     * @param data 编码数据，读取 position 到 limit 之间的内容，不改变 data 的 position
+     */
+    public void writeSample(int trackIndex, ByteBuffer data, long ptsUs, boolean keyFrame) throws IOException {
+        writeSample(trackIndex, data, ptsUs, ptsUs, keyFrame);
+    }
+
+    /**
+     * 写入一个编码帧，编码帧按解码顺序写入
+     *
+     * @param dtsUs 解码时间戳，有 B 帧时早于 ptsUs，单位：微秒
+     */
+    public void writeSample(int trackIndex, ByteBuffer data, long ptsUs, long dtsUs, boolean keyFrame) throws IOException {
+        if (trackIndex == videoTrackIndex && !keyFrame && !keyFrameRequested && keyFrameRequester != null
+                && segmentStartUs >= 0 && dtsUs - segmentStartUs >= targetDurationUs - targetDurationUs / 20) {
+            keyFrameRequested = true;
+            keyFrameRequester.run();
+        }
+        writer.writeSample(trackIndex, data, ptsUs, dtsUs, keyFrame);
+        throwSegmentError();
+        if (segmentStartUs < 0) segmentStartUs = dtsUs;
+    }
+
+    /**
+     * 写出最后一个分片，并在播放列表末尾标记结束
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        writer.close();
+        throwSegmentError();
+        writePlaylist(true);
+    }
+
+    private void onSegment(int sequenceNumber, long startUs, long durationUs, boolean independent, int size) {
+        segmentStartUs = -1;
+        keyFrameRequested = false;
+        try {
+            writeAtomically(getSegmentName(sequenceNumber), output.buffer.toByteBuffer());
+            output.buffer.reset();
+            segments.addLast(new Segment(sequenceNumber, durationUs));
+            maxSegmentDurationUs = Math.max(maxSegmentDurationUs, durationUs);
+            while (segments.size() > playlistSize) {
+                Segment removed = segments.removeFirst();
+                File expired = new File(directory, getSegmentName(removed.sequenceNumber - RETAINED_SEGMENTS));
+                if (expired.exists() && !expired.delete()) {
+                    segmentError = new IOException("Unable to delete " + expired);
+                    return;
+                }
+            }
+            writePlaylist(false);
+        } catch (IOException e) {
+            // 回调中不能抛出受检异常，由 writeSample 转抛
+            segmentError = e;
+        }
+    }
+
+    private void throwSegmentError() throws IOException {
+        if (segmentError != null) {
+            IOException e = segmentError;
+            segmentError = null;
+            throw e;
+        }
+    }
+
+    private void writePlaylist(boolean ended) throws IOException {
+        // EXT-X-TARGETDURATION 不能小于任何分片的时长（取整后）
+        long targetSeconds = Math.max((targetDurationUs + 999_999) / 1_000_000, Math.round(maxSegmentDurationUs / 1_000_000.0));
+        StringBuilder playlist = new StringBuilder(256);
+        playlist.append("#EXTM3U\n");
+        playlist.append("#EXT-X-VERSION:7\n");
+        playlist.append("#EXT-X-TARGETDURATION:").append(targetSeconds).append('\n');
+        playlist.append("#EXT-X-MEDIA-SEQUENCE:").append(segments.isEmpty() ? 0 : segments.peekFirst().sequenceNumber).append('\n');
+        playlist.append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        playlist.append("#EXT-X-MAP:URI=\"").append(INIT_SEGMENT_NAME).append("\"\n");
+        for (Segment segment : segments) {
+            playlist.append(String.format(Locale.US, "#EXTINF:%.3f,\n", segment.durationUs / 1_000_000.0));
+            playlist.append(getSegmentName(segment.sequenceNumber)).append('\n');
+        }
+        if (ended) {
+            playlist.append("#EXT-X-ENDLIST\n");
+        }
+        writeAtomically(PLAYLIST_NAME, ByteBuffer.wrap(playlist.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 先写入临时文件再重命名（同一目录内的重命名是原子操作）
+     */
+    private void writeAtomically(String name, ByteBuffer data) throws IOException {
+        File temp = new File(directory, name + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            FileChannel channel = stream.getChannel();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        if (!temp.renameTo(new File(directory, name))) {
+            throw new IOException("Unable to rename " + temp + " to " + name);
+        }
+    }
+
+    static String getSegmentName(int sequenceNumber) {
+        return "segment" + sequenceNumber + ".m4s";
+    }
+}
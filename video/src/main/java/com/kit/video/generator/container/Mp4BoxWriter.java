@@ -0,0 +1,136 @@
+package com.kit.video.generator.container;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ISO BMFF（MP4）box 序列化，写入可自动增长的内存缓冲区
+ * <p>
+ * {@link #startBox(String)} 写入 4 字节的长度占位和类型，内容写完后由 {@link #endBox(int)} 回填长度。
+ * 所有整数都是大端序。不依赖 Android，可以在 JVM 上直接测试。
+ */
+public class Mp4BoxWriter {
+    private ByteBuffer buffer;
+
+    public Mp4BoxWriter(int initialCapacity) {
+        buffer = ByteBuffer.allocate(initialCapacity).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    public int size() {
+        return buffer.position();
+    }
+
+    /**
+     * 清空已写入的内容，保留已分配的空间
+     */
+    public void reset() {
+        buffer.clear();
+    }
+
+    /**
+     * 已写入内容的只读视图（position 为 0，limit 为已写入的字节数）
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer view = buffer.duplicate();
+        view.flip();
+        return view;
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.BIG_ENDIAN);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * 开始一个 box
+     *
+     * @param type 4 个字符的类型
+     * @return 标记，传给 {@link #endBox(int)}
+     */
+    public int startBox(String type) {
+        int mark = buffer.position();
+        putInt(0);
+        putFourCc(type);
+        return mark;
+    }
+
+    /**
+     * 开始一个 full box（带版本号和标志）
+     */
+    public int startFullBox(String type, int version, int flags) {
+        int mark = startBox(type);
+        putInt((version << 24) | (flags & 0xFFFFFF));
+        return mark;
+    }
+
+    /**
+     * 结束 box，回填其长度
+     */
+    public void endBox(int mark) {
+        buffer.putInt(mark, buffer.position() - mark);
+    }
+
+    /**
+     * 在已写入的内容中改写一个 32 位整数（用于回填偏移量）
+     */
+    public void setInt(int offset, int value) {
+        buffer.putInt(offset, value);
+    }
+
+    public void putFourCc(String type) {
+        ensure(4);
+        buffer.put(type.getBytes(StandardCharsets.US_ASCII), 0, 4);
+    }
+
+    public void putByte(int value) {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    public void putShort(int value) {
+        ensure(2);
+        buffer.putShort((short) value);
+    }
+
+    public void putInt(int value) {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    public void putLong(long value) {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    public void putBytes(byte[] data) {
+        ensure(data.length);
+        buffer.put(data);
+    }
+
+    /**
+     * 写入 count 个 0 字节
+     */
+    public void putZeros(int count) {
+        ensure(count);
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * 直接写入字节，不改变 data 的 position
+     */
+    public void putBuffer(ByteBuffer data) {
+        ensure(data.remaining());
+        buffer.put(data.duplicate());
+    }
+}
@@ -0,0 +1,375 @@
+package com.kit.video.generator.container;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式 WebM 写入器（纯 Java，不依赖 MediaMuxer）
+ * <p>
+ * 文件结构：EBML 头、Segment（先写为未知长度）、预留给 SeekHead 的 Void、Info、Tracks，之后是按时间排列的 Cluster，
+ * 最后是 Cues。每个 Cluster 在内存中组装好后一次写入文件，因此写入过程中文件始终是可以边写边播放的合法 WebM；
+ * {@link #close()} 时再回填 Segment 长度、时长和 SeekHead，使播放器可以定位。
+ * <p>
+ * 有视频轨道时，Cluster 从视频关键帧开始（并为其生成 Cue）；Cluster 的时长和大小也有上限，
+ * 保证块的相对时间戳在 16 位范围内。时间刻度为 1 毫秒。
+ */
+public class WebmWriter implements Closeable {
+    public static final String CODEC_VP8 = "V_VP8";
+    public static final String CODEC_VP9 = "V_VP9";
+    public static final String CODEC_AV1 = "V_AV1";
+    public static final String CODEC_OPUS = "A_OPUS";
+
+    private static final long TIMECODE_SCALE_NS = 1_000_000;
+    // 关键帧至少间隔该时长才开始新的 Cluster，单位：毫秒
+    private static final long MIN_CLUSTER_DURATION_MS = 1000;
+    // Cluster 的最大时长，单位：毫秒（块的相对时间戳是 16 位有符号整数）
+    private static final long MAX_CLUSTER_DURATION_MS = 5000;
+    private static final int MAX_CLUSTER_SIZE = 4 * 1024 * 1024;
+    // 预留给 SeekHead 的空间（3 个 Seek 项需要 96 字节）
+    private static final int SEEK_HEAD_RESERVED = 128;
+    private static final String APP_NAME = "VideoKit";
+
+    private static final class Track {
+        final int number;
+        final int type;
+        final String codecId;
+        final byte[] codecPrivate;
+        int width;
+        int height;
+        int sampleRate;
+        int channelCount;
+        long codecDelayNs;
+        long seekPreRollNs;
+
+        Track(int number, int type, String codecId, byte[] codecPrivate) {
+            this.number = number;
+            this.type = type;
+            this.codecId = codecId;
+            this.codecPrivate = codecPrivate;
+        }
+    }
+
+    private static final class CuePoint {
+        final long timeMs;
+        final int track;
+        final long clusterPosition;
+
+        CuePoint(long timeMs, int track, long clusterPosition) {
+            this.timeMs = timeMs;
+            this.track = track;
+            this.clusterPosition = clusterPosition;
+        }
+    }
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final List<Track> tracks = new ArrayList<>();
+    private final List<CuePoint> cues = new ArrayList<>();
+    private final EbmlWriter ebml = new EbmlWriter(64 * 1024);
+    private Track videoTrack;
+    private boolean started;
+    private boolean closed;
+
+    // 文件中需要回填的位置
+    private long segmentSizeOffset;
+    private long segmentDataOffset;
+    private long seekHeadOffset;
+    private long infoOffset;
+    private long durationOffset;
+    private long tracksOffset;
+
+    // 当前 Cluster
+    private boolean clusterOpen;
+    private int clusterMark;
+    private long clusterTimecodeMs;
+    private long maxTimeMs;
+
+    /**
+     * 写入新文件（已存在时覆盖）
+     */
+    public WebmWriter(String path) throws IOException {
+        this(FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), true);
+    }
+
+    /**
+     * 从 channel 的当前位置开始写入，close 时不关闭 channel
+     */
+    public WebmWriter(FileChannel channel) {
+        this(channel, false);
+    }
+
+    private WebmWriter(FileChannel channel, boolean ownsChannel) {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+    }
+
+    /**
+     * 添加视频轨道（需在 start 之前调用）
+     *
+     * @param codecId      Matroska 编码 ID，如 {@link #CODEC_VP9}
+     * @param codecPrivate 编码私有数据，没有时为 null
+     * @return 轨道索引
+     */
+    public int addVideoTrack(String codecId, int width, int height, byte[] codecPrivate) {
+        Track track = addTrack(MatroskaIds.TRACK_TYPE_VIDEO, codecId, codecPrivate);
+        track.width = width;
+        track.height = height;
+        if (videoTrack == null) videoTrack = track;
+        return track.number - 1;
+    }
+
+    /**
+     * 添加音频轨道（需在 start 之前调用）
+     *
+     * @param codecId       Matroska 编码 ID，如 {@link #CODEC_OPUS}
+     * @param codecPrivate  编码私有数据（Opus 为 OpusHead），没有时为 null
+     * @param codecDelayNs  编码器延迟（Opus 的 pre-skip），单位：纳秒
+     * @param seekPreRollNs 定位后需要预先解码的时长，单位：纳秒
+     * @return 轨道索引
+     */
+    public int addAudioTrack(String codecId, int sampleRate, int channelCount, byte[] codecPrivate,
+                             long codecDelayNs, long seekPreRollNs) {
+        Track track = addTrack(MatroskaIds.TRACK_TYPE_AUDIO, codecId, codecPrivate);
+        track.sampleRate = sampleRate;
+        track.channelCount = channelCount;
+        track.codecDelayNs = codecDelayNs;
+        track.seekPreRollNs = seekPreRollNs;
+        return track.number - 1;
+    }
+
+    private Track addTrack(int type, String codecId, byte[] codecPrivate) {
+        if (started) {
+            throw new IllegalStateException("Tracks must be added before start");
+        }
+        Track track = new Track(tracks.size() + 1, type, codecId, codecPrivate);
+        tracks.add(track);
+        return track;
+    }
+
+    /**
+     * 写入文件头，之后只能写入数据
+     */
+    public void start() throws IOException {
+        if (started) return;
+        if (tracks.isEmpty()) {
+            throw new IllegalStateException("No tracks");
+        }
+        long base = channel.position();
+        ebml.reset();
+
+        int header = ebml.startMaster(MatroskaIds.EBML);
+        ebml.writeUInt(MatroskaIds.EBML_VERSION, 1);
+        ebml.writeUInt(MatroskaIds.EBML_READ_VERSION, 1);
+        ebml.writeUInt(MatroskaIds.EBML_MAX_ID_LENGTH, 4);
+        ebml.writeUInt(MatroskaIds.EBML_MAX_SIZE_LENGTH, 8);
+        ebml.writeString(MatroskaIds.DOC_TYPE, "webm");
+        ebml.writeUInt(MatroskaIds.DOC_TYPE_VERSION, 4);
+        ebml.writeUInt(MatroskaIds.DOC_TYPE_READ_VERSION, 2);
+        ebml.endMaster(header);
+
+        ebml.writeId(MatroskaIds.SEGMENT);
+        segmentSizeOffset = base + ebml.size();
+        ebml.writeSize(EbmlWriter.UNKNOWN_SIZE, 8);
+        segmentDataOffset = base + ebml.size();
+
+        seekHeadOffset = base + ebml.size();
+        ebml.writeVoid(SEEK_HEAD_RESERVED);
+
+        infoOffset = base + ebml.size();
+        int info = ebml.startMaster(MatroskaIds.INFO);
+        ebml.writeUInt(MatroskaIds.TIMECODE_SCALE, TIMECODE_SCALE_NS);
+        ebml.writeId(MatroskaIds.DURATION);
+        ebml.writeSize(8);
+        durationOffset = base + ebml.size();
+        ebml.writeRaw(ByteBuffer.wrap(doubleBytes(0)));
+        ebml.writeString(MatroskaIds.MUXING_APP, APP_NAME);
+        ebml.writeString(MatroskaIds.WRITING_APP, APP_NAME);
+        ebml.endMaster(info);
+
+        tracksOffset = base + ebml.size();
+        int trackList = ebml.startMaster(MatroskaIds.TRACKS);
+        for (Track track : tracks) {
+            writeTrackEntry(track);
+        }
+        ebml.endMaster(trackList);
+
+        writeFully(ebml.toByteBuffer());
+        ebml.reset();
+        started = true;
+    }
+
+    private void writeTrackEntry(Track track) {
+        int entry = ebml.startMaster(MatroskaIds.TRACK_ENTRY);
+        ebml.writeUInt(MatroskaIds.TRACK_NUMBER, track.number);
+        ebml.writeUInt(MatroskaIds.TRACK_UID, track.number);
+        ebml.writeUInt(MatroskaIds.TRACK_TYPE, track.type);
+        ebml.writeUInt(MatroskaIds.FLAG_LACING, 0);
+        ebml.writeString(MatroskaIds.CODEC_ID, track.codecId);
+        if (track.codecPrivate != null && track.codecPrivate.length > 0) {
+            ebml.writeBinary(MatroskaIds.CODEC_PRIVATE, track.codecPrivate);
+        }
+        if (track.type == MatroskaIds.TRACK_TYPE_VIDEO) {
+            int video = ebml.startMaster(MatroskaIds.VIDEO);
+            ebml.writeUInt(MatroskaIds.PIXEL_WIDTH, track.width);
+            ebml.writeUInt(MatroskaIds.PIXEL_HEIGHT, track.height);
+            ebml.endMaster(video);
+        } else {
+            if (track.codecDelayNs > 0) ebml.writeUInt(MatroskaIds.CODEC_DELAY, track.codecDelayNs);
+            if (track.seekPreRollNs > 0) ebml.writeUInt(MatroskaIds.SEEK_PRE_ROLL, track.seekPreRollNs);
+            int audio = ebml.startMaster(MatroskaIds.AUDIO);
+            ebml.writeFloat(MatroskaIds.SAMPLING_FREQUENCY, track.sampleRate);
+            ebml.writeUInt(MatroskaIds.CHANNELS, track.channelCount);
+            ebml.endMaster(audio);
+        }
+        ebml.endMaster(entry);
+    }
+
+    /**
+     * 写入一个编码帧
+     *
+     * @param trackIndex 轨道索引
+     * @param data       编码数据，读取 position 到 limit 之间的内容，不改变 data 的 position
+     * @param ptsUs      显示时间戳，单位：微秒
+     * @param keyFrame   是否关键帧
+     */
+    public void writeSample(int trackIndex, ByteBuffer data, long ptsUs, boolean keyFrame) throws IOException {
+        if (!started) {
+            throw new IllegalStateException("start() has not been called");
+        }
+        Track track = tracks.get(trackIndex);
+        long timeMs = Math.max(0, ptsUs / 1000);
+        boolean videoKeyFrame = keyFrame && track == videoTrack;
+
+        if (clusterOpen) {
+            long relative = timeMs - clusterTimecodeMs;
+            if (relative > MAX_CLUSTER_DURATION_MS || relative < Short.MIN_VALUE
+                    || ebml.size() + data.remaining() > MAX_CLUSTER_SIZE
+                    || (videoKeyFrame && relative >= MIN_CLUSTER_DURATION_MS)
+                    || (videoTrack == null && relative >= MIN_CLUSTER_DURATION_MS)) {
+                flushCluster();
+            }
+        }
+        if (!clusterOpen) {
+            openCluster(timeMs, videoKeyFrame || videoTrack == null ? track.number : 0);
+        }
+
+        // SimpleBlock：轨道号（vint）、16 位相对时间戳、标志、数据
+        ebml.writeId(MatroskaIds.SIMPLE_BLOCK);
+        ebml.writeSize(4 + data.remaining());
+        ebml.writeSize(track.number, 1);
+        ebml.writeShort((int) (timeMs - clusterTimecodeMs));
+        // 音频帧都可以独立解码
+        boolean independent = keyFrame || track.type == MatroskaIds.TRACK_TYPE_AUDIO;
+        ebml.writeByte(independent ? 0x80 : 0);
+        ebml.writeRaw(data);
+        maxTimeMs = Math.max(maxTimeMs, timeMs);
+    }
+
+    /**
+     * @param cueTrack 为该 Cluster 生成 Cue 的轨道号，0 表示不生成
+     */
+    private void openCluster(long timeMs, int cueTrack) throws IOException {
+        if (cueTrack > 0) {
+            cues.add(new CuePoint(timeMs, cueTrack, channel.position() - segmentDataOffset));
+        }
+        clusterMark = ebml.startMaster(MatroskaIds.CLUSTER);
+        ebml.writeUInt(MatroskaIds.TIMECODE, timeMs);
+        clusterTimecodeMs = timeMs;
+        clusterOpen = true;
+    }
+
+    private void flushCluster() throws IOException {
+        if (!clusterOpen) return;
+        ebml.endMaster(clusterMark);
+        writeFully(ebml.toByteBuffer());
+        ebml.reset();
+        clusterOpen = false;
+    }
+
+    /**
+     * 写出当前 Cluster、Cues，并回填文件头（时长、Segment 长度和 SeekHead）
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            if (!started) return;
+            flushCluster();
+
+            long cuesOffset = -1;
+            if (!cues.isEmpty()) {
+                cuesOffset = channel.position();
+                int cueList = ebml.startMaster(MatroskaIds.CUES);
+                for (CuePoint cue : cues) {
+                    int point = ebml.startMaster(MatroskaIds.CUE_POINT);
+                    ebml.writeUInt(MatroskaIds.CUE_TIME, cue.timeMs);
+                    int positions = ebml.startMaster(MatroskaIds.CUE_TRACK_POSITIONS);
+                    ebml.writeUInt(MatroskaIds.CUE_TRACK, cue.track);
+                    ebml.writeUInt(MatroskaIds.CUE_CLUSTER_POSITION, cue.clusterPosition);
+                    ebml.endMaster(positions);
+                    ebml.endMaster(point);
+                }
+                ebml.endMaster(cueList);
+                writeFully(ebml.toByteBuffer());
+                ebml.reset();
+            }
+            long end = channel.position();
+
+            // 回填时长
+            writeAt(ByteBuffer.wrap(doubleBytes(maxTimeMs)), durationOffset);
+            // 回填 Segment 长度
+            ByteBuffer size = ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN);
+            size.putLong((end - segmentDataOffset) | (1L << 56));
+            size.flip();
+            writeAt(size, segmentSizeOffset);
+            // 用 SeekHead 替换预留的 Void
+            int seekHead = ebml.startMaster(MatroskaIds.SEEK_HEAD);
+            writeSeek(MatroskaIds.INFO, infoOffset);
+            writeSeek(MatroskaIds.TRACKS, tracksOffset);
+            if (cuesOffset >= 0) writeSeek(MatroskaIds.CUES, cuesOffset);
+            ebml.endMaster(seekHead);
+            ebml.writeVoid(SEEK_HEAD_RESERVED - ebml.size());
+            writeAt(ebml.toByteBuffer(), seekHeadOffset);
+            ebml.reset();
+            channel.position(end);
+        } finally {
+            if (ownsChannel) {
+                channel.close();
+            }
+        }
+    }
+
+    private void writeSeek(int id, long offset) {
+        int seek = ebml.startMaster(MatroskaIds.SEEK);
+        ByteBuffer idBytes = ByteBuffer.allocate(4).putInt(id);
+        idBytes.flip();
+        ebml.writeBinary(MatroskaIds.SEEK_ID, idBytes);
+        ebml.writeUInt(MatroskaIds.SEEK_POSITION, offset - segmentDataOffset, 8);
+        ebml.endMaster(seek);
+    }
+
+    private static byte[] doubleBytes(double value) {
+        return ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN).putDouble(value).array();
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    private void writeAt(ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+}
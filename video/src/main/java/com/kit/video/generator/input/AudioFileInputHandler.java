@@ -5,19 +5,30 @@ import android.media.MediaExtractor;
 import android.media.MediaFormat;
 import android.util.Log;
 
+import com.kit.video.generator.base.BufferPool;
 import com.kit.video.generator.base.FrameData;
 import com.kit.video.generator.base.InputHandler;
+import com.kit.video.generator.base.PcmFormat;
 
 import java.nio.ByteBuffer;
 
 /**
  * 音频输入处理（从视频文件中提取音频数据）
+ * <p>
+ * 解码后的 PCM 会拷贝到缓冲区池中（解码器的输出缓冲区释放后会被复用），并通过 {@link FrameData#getPcmFormat()}
+ * 携带解码器实际输出的采样率和声道数，由后续的格式转换阶段转换为编码器需要的格式。
  */
 public class AudioFileInputHandler implements InputHandler {
+    private static final int MAX_POOLED_BUFFERS = 8;
     private MediaExtractor extractor;
     private MediaCodec decoder;
     private final String inputPath;
     private boolean endOfStream;
+    // 早于该时间戳的解码帧会被丢弃（断点续传时使用），单位：微秒
+    private long skipUntilUs = 0;
+    // 解码器输出的 PCM 格式
+    private PcmFormat pcmFormat;
+    private BufferPool pool;
 
     public AudioFileInputHandler(String inputPath) {
         this.inputPath = inputPath;
@@ -33,6 +44,8 @@ public class AudioFileInputHandler implements InputHandler {
                 String mime = format.getString(MediaFormat.KEY_MIME);
                 if (mime.startsWith("audio/")) {
                     extractor.selectTrack(i);
+                    pcmFormat = new PcmFormat(format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                            format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
                     decoder = MediaCodec.createDecoderByType(mime);
                     decoder.configure(format, null, null, 0);
                     decoder.start();
@@ -46,10 +59,27 @@ public class AudioFileInputHandler implements InputHandler {
         }
     }
 
+    /**
+     * 定位到指定时间之前最近的同步帧，并丢弃解码出的早于该时间的帧
+     *
+     * @param timeUs 目标时间戳，单位：微秒
+     */
+    public void seekTo(long timeUs) {
+        if (decoder == null) return;
+        extractor.seekTo(timeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        decoder.flush();
+        skipUntilUs = timeUs;
+    }
+
     @Override
     public FrameData getData() {
         // 如果已经到达流的末尾
         if (endOfStream) return null;
+        // 没有音频轨道，直接结束
+        if (decoder == null) {
+            endOfStream = true;
+            return new FrameData(true, 0);
+        }
 
         int inIndex = decoder.dequeueInputBuffer(10000);
         if (inIndex >= 0) {
@@ -67,13 +97,23 @@ public class AudioFileInputHandler implements InputHandler {
 
         MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
         int outIndex = decoder.dequeueOutputBuffer(info, 10000);
+        if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            MediaFormat format = decoder.getOutputFormat();
+            pcmFormat = new PcmFormat(format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                    format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+            Log.d("AudioInputHandler", "Decoder output format: " + pcmFormat);
+            return null;
+        }
         if (outIndex >= 0) {
-            ByteBuffer buffer = decoder.getOutputBuffer(outIndex);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) == 0 && info.presentationTimeUs < skipUntilUs) {
+                decoder.releaseOutputBuffer(outIndex, false);
+                return null;
+            }
             FrameData frame;
             if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-                frame = new FrameData(buffer, info.presentationTimeUs);
-            } else {
                 frame = new FrameData(true, info.presentationTimeUs);
+            } else {
+                frame = copyOutput(outIndex, info);
             }
             decoder.releaseOutputBuffer(outIndex, false);
             return frame;
@@ -82,6 +122,34 @@ public class AudioFileInputHandler implements InputHandler {
         return null;
     }
 
+    /**
+     * 将解码器的输出缓冲区拷贝到缓冲区池中
+     */
+    private FrameData copyOutput(int outIndex, MediaCodec.BufferInfo info) {
+        ByteBuffer buffer = decoder.getOutputBuffer(outIndex);
+        if (buffer == null) return null;
+        buffer.position(info.offset);
+        buffer.limit(info.offset + info.size);
+        if (pool == null || pool.getBufferSize() < info.size) {
+            pool = new BufferPool(info.size, MAX_POOLED_BUFFERS);
+        }
+        ByteBuffer copy = pool.acquire();
+        copy.put(buffer);
+        copy.flip();
+        FrameData frame = new FrameData(copy, info.presentationTimeUs, pool);
+        frame.setPcmFormat(pcmFormat);
+        return frame;
+    }
+
+    /**
+     * 获取解码器输出的 PCM 格式
+     *
+     * @return PCM 格式，没有音频轨道时返回 null
+     */
+    public PcmFormat getPcmFormat() {
+        return pcmFormat;
+    }
+
     @Override
     public void release() {
         if (decoder != null) {
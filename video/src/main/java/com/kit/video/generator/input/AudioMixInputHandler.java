@@ -0,0 +1,438 @@
+package com.kit.video.generator.input;
+
+import android.util.Log;
+
+import com.kit.video.generator.base.BufferPool;
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.InputHandler;
+import com.kit.video.generator.base.PcmFormat;
+import com.kit.video.generator.process.AudioConvertProcessor;
+import com.kit.video.generator.process.GainEnvelope;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多轨音频混合输入：从多个音频输入（背景音乐、麦克风、源文件音轨等）拉取数据，混合为一路 PCM
+ * <p>
+ * 每一轨先转换为统一的 PCM 格式，再按 PTS 放到共同的时间轴上（轨道之间的空隙补静音，重叠部分丢弃）。
+ * 每一轨可以设置固定增益、增益包络（淡入淡出等）以及闪避（当另一轨有声音时自动压低音量）。
+ * 输出按固定的块大小进行，混合循环使用预先分配的数组，稳定后不产生分配。
+ * <p>
+ * 某一轨暂时没有数据时（如解码器还没有输出），本次 getData 返回 null，由调用方稍后重试。
+ */
+public class AudioMixInputHandler implements InputHandler {
+    private static final String TAG = "AudioMixInputHandler";
+    // 每次输出的采样帧数（与 AAC 的帧长一致）
+    private static final int BLOCK_FRAMES = 1024;
+    private static final int MAX_POOLED_BUFFERS = 8;
+    // 单次 getData 中某一轨连续没有数据的最大尝试次数
+    private static final int MAX_EMPTY_PULLS = 16;
+    // 补静音的最大长度，更长的空隙等待待混合的采样用完后从新的位置重新开始，避免分配大块内存
+    private static final int MAX_GAP_FRAMES = BLOCK_FRAMES * 64;
+    // 闪避检测的电平阈值（RMS，16 位满幅为 32768）
+    private static final float DEFAULT_DUCK_THRESHOLD = 500f;
+
+    /**
+     * 混合中的一轨
+     */
+    public static final class Track {
+        private final InputHandler input;
+        private final AudioConvertProcessor converter;
+        private final GainEnvelope envelope = new GainEnvelope();
+        private volatile float gain = 1f;
+        private long startOffsetUs;
+        // 闪避：key 有声音时把本轨压低到 duckGain
+        private Track duckKey;
+        private float duckGain = 1f;
+        private long attackUs;
+        private long releaseUs;
+        private float duckThreshold = DEFAULT_DUCK_THRESHOLD;
+        private float currentDuck = 1f;
+
+        // 待混合的采样（交错），[readPos, writePos) 对应时间轴上从 headFrame 开始的采样帧
+        private short[] samples = new short[BLOCK_FRAMES * 4];
+        private int readPos;
+        private int writePos;
+        private long headFrame = -1;
+        private boolean ended;
+        // 与待混合的采样之间空隙过大的一帧，待混合的采样用完后再追加
+        private FrameData deferred;
+        // 当前块的电平（RMS）
+        private float level;
+        private float lastGain = -1f;
+
+        private Track(InputHandler input, PcmFormat format) {
+            this.input = input;
+            this.converter = new AudioConvertProcessor(format);
+        }
+
+        /**
+         * 设置固定增益（线性，1 为原始音量）
+         */
+        public Track setGain(float gain) {
+            this.gain = gain;
+            return this;
+        }
+
+        /**
+         * 设置本轨在时间轴上的偏移，输入 PTS 加上该值后参与混合（如背景音乐从第 5 秒开始）
+         */
+        public Track setStartOffsetUs(long startOffsetUs) {
+            this.startOffsetUs = startOffsetUs;
+            return this;
+        }
+
+        /**
+         * 获取增益包络（时间为混合后时间轴上的时间）
+         */
+        public GainEnvelope getEnvelope() {
+            return envelope;
+        }
+
+        /**
+         * 当 key 有声音时压低本轨的音量（如人声出现时压低背景音乐）
+         *
+         * @param key       触发闪避的轨道
+         * @param duckGain  闪避时的增益
+         * @param attackUs  压低的过渡时间，单位：微秒
+         * @param releaseUs 恢复的过渡时间，单位：微秒
+         */
+        public Track duckUnder(Track key, float duckGain, long attackUs, long releaseUs) {
+            this.duckKey = key;
+            this.duckGain = duckGain;
+            this.attackUs = attackUs;
+            this.releaseUs = releaseUs;
+            return this;
+        }
+
+        /**
+         * 设置触发闪避的电平阈值（RMS，16 位满幅为 32768）
+         */
+        public Track setDuckThreshold(float threshold) {
+            this.duckThreshold = threshold;
+            return this;
+        }
+
+        private int available(int channels) {
+            return (writePos - readPos) / channels;
+        }
+    }
+
+    private final PcmFormat format;
+    private final List<Track> tracks = new ArrayList<>();
+    private Track endTrack;
+    private final BufferPool pool;
+    private final float[] mix;
+    // 时间轴的起点（第一块输出的第一个采样帧）和已经输出的采样帧数
+    private long originFrame = -1;
+    private long outputFrames;
+    private boolean endOfStream;
+
+    /**
+     * @param format 输出的 PCM 格式（通常为编码器的输入格式）
+     */
+    public AudioMixInputHandler(PcmFormat format) {
+        this.format = format;
+        this.pool = new BufferPool(BLOCK_FRAMES * format.getBytesPerFrame(), MAX_POOLED_BUFFERS);
+        this.mix = new float[BLOCK_FRAMES * format.getChannelCount()];
+    }
+
+    /**
+     * 添加一轨（需在 initialize 之前调用）
+     */
+    public Track addTrack(InputHandler input) {
+        Track track = new Track(input, format);
+        tracks.add(track);
+        return track;
+    }
+
+    /**
+     * 指定某一轨结束时整个混合结束（如以源文件的音轨为准，背景音乐更长时截断）。默认所有轨道都结束时才结束。
+     */
+    public void setEndTrack(Track track) {
+        this.endTrack = track;
+    }
+
+    public PcmFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public boolean initialize() {
+        for (Track track : tracks) {
+            if (!track.input.initialize()) {
+                Log.e(TAG, "Track initialization failed");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public FrameData getData() {
+        if (endOfStream) return null;
+        int channels = format.getChannelCount();
+        // 所有轨道都准备好当前块（或已结束）之后才输出
+        for (int t = 0; t < tracks.size(); t++) {
+            if (!fill(tracks.get(t), channels)) {
+                return null;
+            }
+        }
+        if (originFrame < 0) {
+            originFrame = earliestHeadFrame();
+            if (originFrame < 0) {
+                // 所有轨道都没有数据就结束了
+                endOfStream = true;
+                return new FrameData(true, 0);
+            }
+            // 时间轴确定后，每一轨还需要覆盖第一块
+            for (int t = 0; t < tracks.size(); t++) {
+                if (!fill(tracks.get(t), channels)) {
+                    return null;
+                }
+            }
+        }
+        if (isFinished(channels)) {
+            endOfStream = true;
+            return new FrameData(true, framesToUs(originFrame + outputFrames));
+        }
+
+        long blockStartUs = framesToUs(originFrame + outputFrames);
+        long blockEndUs = framesToUs(originFrame + outputFrames + BLOCK_FRAMES);
+        int count = BLOCK_FRAMES * channels;
+        for (int i = 0; i < count; i++) {
+            mix[i] = 0f;
+        }
+        for (int t = 0; t < tracks.size(); t++) {
+            tracks.get(t).level = measureLevel(tracks.get(t), channels);
+        }
+        for (int t = 0; t < tracks.size(); t++) {
+            mixTrack(tracks.get(t), channels, blockStartUs, blockEndUs);
+        }
+
+        ByteBuffer out = pool.acquire().order(ByteOrder.nativeOrder());
+        for (int i = 0; i < count; i++) {
+            int value = Math.round(mix[i]);
+            out.putShort((short) Math.max(-32768, Math.min(32767, value)));
+        }
+        out.flip();
+        outputFrames += BLOCK_FRAMES;
+        FrameData frame = new FrameData(out, blockStartUs, pool);
+        frame.setPcmFormat(format);
+        return frame;
+    }
+
+    /**
+     * 从输入拉取数据，直到覆盖当前块或输入结束
+     *
+     * @return 是否已准备好
+     */
+    private boolean fill(Track track, int channels) {
+        long blockEnd = originFrame < 0 ? -1 : originFrame + outputFrames + BLOCK_FRAMES;
+        if (track.deferred != null && track.available(channels) == 0) {
+            FrameData deferred = track.deferred;
+            track.deferred = null;
+            append(track, deferred, channels);
+            deferred.recycle();
+        }
+        int emptyPulls = 0;
+        while (!track.ended && track.deferred == null
+                && (track.headFrame < 0 || track.headFrame + track.available(channels) < blockEnd)) {
+            FrameData frame = track.input.getData();
+            if (frame != null) {
+                frame = track.converter.process(frame);
+            }
+            if (frame == null) {
+                if (++emptyPulls > MAX_EMPTY_PULLS) return false;
+                continue;
+            }
+            emptyPulls = 0;
+            if (frame.isEndOfStream()) {
+                track.ended = true;
+            } else if (!append(track, frame, channels)) {
+                track.deferred = frame;
+                break;
+            }
+            frame.recycle();
+            if (originFrame < 0 && track.headFrame >= 0) {
+                // 时间轴还没有确定：每一轨有一块数据即可
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将一帧数据追加到轨道的待混合采样中，处理空隙和重叠
+     * <p>
+     * 时间戳换算为采样帧时会有舍入误差，与待混合采样的末尾相差不超过 1 帧时视为连续，不补静音也不丢弃采样。
+     *
+     * @return 是否已追加；空隙超过 {@link #MAX_GAP_FRAMES} 时返回 false，由调用方在待混合的采样用完后重新追加
+     */
+    private boolean append(Track track, FrameData frame, int channels) {
+        ByteBuffer data = frame.getByteBuffer().duplicate().order(ByteOrder.nativeOrder());
+        int frames = data.remaining() / format.getBytesPerFrame();
+        long startFrame = frameIndex(frame.getPts() + track.startOffsetUs);
+        long endFrame = track.headFrame + track.available(channels);
+        if (track.headFrame >= 0 && Math.abs(startFrame - endFrame) <= 1) {
+            startFrame = endFrame;
+        }
+        int skip = 0;
+        if (track.headFrame < 0 || track.available(channels) == 0) {
+            // 没有待混合的采样，直接从这一帧的位置开始
+            track.headFrame = startFrame;
+            track.readPos = 0;
+            track.writePos = 0;
+        } else {
+            if (startFrame - endFrame > MAX_GAP_FRAMES) {
+                return false;
+            } else if (startFrame > endFrame) {
+                // 空隙：补静音
+                int gap = (int) (startFrame - endFrame);
+                ensureSpace(track, gap * channels);
+                for (int i = 0; i < gap * channels; i++) {
+                    track.samples[track.writePos++] = 0;
+                }
+            } else if (startFrame < endFrame) {
+                // 重叠：丢弃已经有的部分
+                skip = (int) Math.min(frames, endFrame - startFrame);
+            }
+        }
+        int length = (frames - skip) * channels;
+        if (length <= 0) return true;
+        ensureSpace(track, length);
+        data.position(data.position() + skip * format.getBytesPerFrame());
+        data.asShortBuffer().get(track.samples, track.writePos, length);
+        track.writePos += length;
+        return true;
+    }
+
+    private static void ensureSpace(Track track, int length) {
+        if (track.writePos + length <= track.samples.length) return;
+        // 先把已经混合过的部分移走，仍然不够时再扩容
+        int pending = track.writePos - track.readPos;
+        if (pending + length > track.samples.length) {
+            short[] grown = new short[Math.max(track.samples.length * 2, pending + length)];
+            System.arraycopy(track.samples, track.readPos, grown, 0, pending);
+            track.samples = grown;
+        } else {
+            System.arraycopy(track.samples, track.readPos, track.samples, 0, pending);
+        }
+        track.readPos = 0;
+        track.writePos = pending;
+    }
+
+    /**
+     * 计算轨道在当前块内的电平（RMS），用于闪避检测
+     */
+    private float measureLevel(Track track, int channels) {
+        long blockStart = originFrame + outputFrames;
+        int offset = (int) (blockStart - track.headFrame);
+        int available = track.available(channels);
+        if (track.headFrame < 0 || offset >= available || offset + BLOCK_FRAMES <= 0) return 0f;
+        int from = Math.max(0, offset);
+        int to = Math.min(available, offset + BLOCK_FRAMES);
+        double sum = 0;
+        for (int i = track.readPos + from * channels; i < track.readPos + to * channels; i++) {
+            float s = track.samples[i];
+            sum += s * s;
+        }
+        return (float) Math.sqrt(sum / Math.max(1, (to - from) * channels));
+    }
+
+    /**
+     * 将一轨在当前块内的采样乘以增益后累加到混合缓冲区，然后丢弃已经用过的采样
+     */
+    private void mixTrack(Track track, int channels, long blockStartUs, long blockEndUs) {
+        float target = track.gain * track.envelope.getGain(blockEndUs);
+        if (track.duckKey != null) {
+            boolean active = track.duckKey.level > track.duckThreshold;
+            float duckTarget = active ? track.duckGain : 1f;
+            long timeUs = active ? track.attackUs : track.releaseUs;
+            float coefficient = timeUs <= 0 ? 1f
+                    : (float) (1 - Math.exp(-(double) (blockEndUs - blockStartUs) / timeUs));
+            track.currentDuck += (duckTarget - track.currentDuck) * coefficient;
+            target *= track.currentDuck;
+        }
+        // 增益在块内线性过渡，避免跳变产生咔嗒声
+        float startGain = track.lastGain < 0 ? track.gain * track.envelope.getGain(blockStartUs) : track.lastGain;
+        track.lastGain = target;
+        if (track.headFrame < 0) return;
+
+        long blockStart = originFrame + outputFrames;
+        int offset = (int) (blockStart - track.headFrame);
+        int available = track.available(channels);
+        int from = Math.max(0, -offset);
+        int to = Math.min(BLOCK_FRAMES, available - offset);
+        float step = (target - startGain) / BLOCK_FRAMES;
+        short[] samples = track.samples;
+        for (int i = from; i < to; i++) {
+            float g = startGain + step * i;
+            int src = track.readPos + (offset + i) * channels;
+            int dst = i * channels;
+            for (int c = 0; c < channels; c++) {
+                mix[dst + c] += samples[src + c] * g;
+            }
+        }
+        // 丢弃当前块结束之前的采样
+        int consumed = Math.max(0, Math.min(available, offset + BLOCK_FRAMES));
+        track.readPos += consumed * channels;
+        track.headFrame += consumed;
+    }
+
+    private boolean isFinished(int channels) {
+        if (endTrack != null) {
+            return endTrack.ended && remainingFrames(endTrack, channels) <= 0;
+        }
+        for (int t = 0; t < tracks.size(); t++) {
+            Track track = tracks.get(t);
+            if (!track.ended || remainingFrames(track, channels) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long remainingFrames(Track track, int channels) {
+        if (track.deferred != null) return 1;
+        if (track.headFrame < 0) return 0;
+        return track.headFrame + track.available(channels) - (originFrame + outputFrames);
+    }
+
+    private long earliestHeadFrame() {
+        long earliest = Long.MAX_VALUE;
+        for (int t = 0; t < tracks.size(); t++) {
+            Track track = tracks.get(t);
+            if (track.headFrame >= 0) {
+                earliest = Math.min(earliest, track.headFrame);
+            }
+        }
+        return earliest == Long.MAX_VALUE ? -1 : earliest;
+    }
+
+    private long framesToUs(long frames) {
+        return frames * 1_000_000L / format.getSampleRate();
+    }
+
+    /**
+     * 时间换算为采样帧，四舍五入：上游按采样数推算的 PTS 是截断的，截断会使连续的数据错开一帧
+     */
+    private long frameIndex(long timeUs) {
+        return Math.floorDiv(timeUs * format.getSampleRate() + 500_000L, 1_000_000L);
+    }
+
+    @Override
+    public void release() {
+        for (Track track : tracks) {
+            if (track.deferred != null) {
+                track.deferred.recycle();
+                track.deferred = null;
+            }
+            track.input.release();
+            track.converter.release();
+        }
+    }
+}
@@ -3,17 +3,28 @@ package com.kit.video.generator.input;
 import android.media.AudioFormat;
 import android.media.AudioRecord;
 import android.media.MediaRecorder;
+import android.os.Process;
 import android.util.Log;
 
+import com.kit.video.generator.base.BufferPool;
 import com.kit.video.generator.base.FrameData;
 import com.kit.video.generator.base.InputHandler;
+import com.kit.video.generator.base.MediaClock;
+import com.kit.video.generator.base.PcmFormat;
+import com.kit.video.generator.base.PcmRingBuffer;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 录音输入处理（从麦克风录音中提取音频数据）
+ * <p>
+ * 录音在独立的采集线程中进行，采集线程把数据写入预先分配的无锁环形缓冲区 {@link PcmRingBuffer}，
+ * {@link #getData()} 在编码线程中从环形缓冲区取出数据。编码器暂时阻塞时采集不受影响，
+ * 只有环形缓冲区写满时才会丢弃数据（溢出），丢弃的采样仍计入时间轴，之后的 PTS 保持正确。
  */
 public class AudioRecordInputHandler implements InputHandler {
+    private static final String TAG = "AudioRecordInputHandler";
 
     // 可用的音频源列表
     private static final int[] AUDIO_SOURCES = new int[]{
@@ -23,80 +34,211 @@ public class AudioRecordInputHandler implements InputHandler {
             MediaRecorder.AudioSource.VOICE_COMMUNICATION,
             MediaRecorder.AudioSource.VOICE_RECOGNITION,
     };
+    private static final int SAMPLE_RATE = 44100;
+    // 每次读取的采样帧数（与 AAC 一帧的采样数相同）
+    private static final int FRAMES_PER_READ = 1024;
+    // 默认的环形缓冲区时长，单位：毫秒
+    private static final int DEFAULT_BUFFER_DURATION_MS = 2000;
+    private static final int MAX_POOLED_BUFFERS = 8;
 
+    private final int bufferDurationMs;
     private AudioRecord audioRecord;
-    private int bufferSize;
-    private boolean isRecording;
-    private long lastPresentationTimeUs = 0;
+    private volatile boolean isRecording;
+    private MediaClock mediaClock = new MediaClock();
+    private final PcmFormat pcmFormat = new PcmFormat(SAMPLE_RATE, 1);
+
+    private PcmRingBuffer ringBuffer;
+    private BufferPool bufferPool;
+    private Thread captureThread;
+
+    // 统计
+    private volatile long overrunCount;
+    private volatile long droppedFrames;
+    private volatile long underrunCount;
+
+    public AudioRecordInputHandler() {
+        this(DEFAULT_BUFFER_DURATION_MS);
+    }
+
+    /**
+     * @param bufferDurationMs 环形缓冲区能容纳的录音时长，即编码线程最长可以停顿多久而不丢失数据，单位：毫秒
+     */
+    public AudioRecordInputHandler(int bufferDurationMs) {
+        this.bufferDurationMs = bufferDurationMs;
+    }
+
+    /**
+     * 设置与视频共享的媒体时钟（需在 initialize 之前调用）
+     */
+    public void setMediaClock(MediaClock mediaClock) {
+        this.mediaClock = mediaClock;
+    }
 
     @Override
     public boolean initialize() {
         try {
-            int sampleRateInHz = 44100;
             int channelConfig = AudioFormat.CHANNEL_IN_MONO;
             int audioFormat = AudioFormat.ENCODING_PCM_16BIT;
-            bufferSize = AudioRecord.getMinBufferSize(sampleRateInHz, channelConfig, audioFormat);
+            int chunkSize = FRAMES_PER_READ * pcmFormat.getBytesPerFrame();
+            // AudioRecord 内部缓冲区至少能容纳几次读取，给采集线程的调度留出余量
+            int bufferSize = Math.max(AudioRecord.getMinBufferSize(SAMPLE_RATE, channelConfig, audioFormat), chunkSize * 4);
+            mediaClock.setAudioSampleRate(SAMPLE_RATE);
+
+            int slotCount = (int) ((long) SAMPLE_RATE * bufferDurationMs / 1000 / FRAMES_PER_READ) + 1;
+            ringBuffer = new PcmRingBuffer(slotCount, chunkSize);
+            bufferPool = new BufferPool(chunkSize, MAX_POOLED_BUFFERS);
 
             // 尝试初始化 AudioRecord
             for (final int audioSources : AUDIO_SOURCES) {
-                audioRecord = new AudioRecord(audioSources, sampleRateInHz, channelConfig, audioFormat, bufferSize);
+                audioRecord = new AudioRecord(audioSources, SAMPLE_RATE, channelConfig, audioFormat, bufferSize);
                 if (audioRecord.getState() == AudioRecord.STATE_INITIALIZED) {
                     audioRecord.startRecording();
                     isRecording = true;
+                    captureThread = new Thread(this::captureLoop, "AudioCapture");
+                    captureThread.start();
                     return true;
                 }
+                audioRecord.release();
             }
-            Log.e("AudioRecordInputHandler", "AudioRecord initialization failed");
+            audioRecord = null;
+            Log.e(TAG, "AudioRecord initialization failed");
             return false;
 
         } catch (Exception e) {
-            Log.e("AudioRecordInputHandler", "Initialization failed", e);
+            Log.e(TAG, "Initialization failed", e);
             return false;
         }
     }
 
+    /**
+     * 采集线程：不断读取录音数据写入环形缓冲区
+     */
+    private void captureLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        int chunkSize = ringBuffer.getSlotSize();
+        // 环形缓冲区满时仍要把数据从 AudioRecord 中读走，否则溢出会转移到 AudioRecord 内部
+        ByteBuffer scratch = ByteBuffer.allocateDirect(chunkSize);
+        while (isRecording) {
+            ByteBuffer slot = ringBuffer.beginWrite();
+            ByteBuffer target = slot != null ? slot : scratch;
+            target.clear();
+            int bytesRead = audioRecord.read(target, chunkSize);
+            if (bytesRead <= 0) {
+                if (!isRecording) break;
+                Log.e(TAG, "Error reading audio data: " + bytesRead);
+                if (bytesRead == AudioRecord.ERROR_INVALID_OPERATION) break;
+                continue;
+            }
+            // 由累计采样数推算 PTS，而不是读取完成的时刻；丢弃的数据同样计入
+            int frames = bytesRead / pcmFormat.getBytesPerFrame();
+            long timestampUs = mediaClock.nextAudioPtsUs(frames);
+            if (slot != null) {
+                slot.limit(bytesRead);
+                ringBuffer.endWrite(timestampUs);
+            } else {
+                if (overrunCount == 0) {
+                    Log.w(TAG, "Ring buffer overrun, encoder is falling behind");
+                }
+                overrunCount++;
+                droppedFrames += frames;
+            }
+        }
+    }
+
+    /**
+     * 从环形缓冲区取出一块录音数据
+     * <p>
+     * 停止录音后仍会返回环形缓冲区中剩余的数据，取完后才返回 null，调用方据此写入结束流帧。
+     *
+     * @return 数据块；录音中暂时没有数据，或已停止且取完时返回 null
+     */
     @Override
     public FrameData getData() {
-        if (!isRecording) return null;
-
-        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
-        int bytesRead = audioRecord.read(buffer, bufferSize);
-        if (bytesRead > 0) {
-            buffer.limit(bytesRead);
-            long timestampUs = System.nanoTime() / 1000; // Convert to microseconds
-            return new FrameData(buffer, timestampUs);
-        } else {
-            Log.e("AudioRecordInputHandler", "Error reading audio data: " + bytesRead);
-            return null;
+        if (ringBuffer == null) return null;
+
+        ByteBuffer slot = ringBuffer.peek();
+        if (slot == null) {
+            if (!isRecording) return null;
+            underrunCount++;
+            // 等待大约半次读取的时长，避免调用方空转
+            LockSupport.parkNanos(pcmFormat.framesToUs(FRAMES_PER_READ / 2) * 1000);
+            slot = ringBuffer.peek();
+            if (slot == null) return null;
         }
+        ByteBuffer buffer = bufferPool.acquire();
+        buffer.put(slot);
+        buffer.flip();
+        long timestampUs = ringBuffer.peekPtsUs();
+        ringBuffer.advance();
+
+        FrameData frame = new FrameData(buffer, timestampUs, bufferPool);
+        frame.setPcmFormat(pcmFormat);
+        return frame;
     }
 
     public FrameData getEndOfStreamData() {
-        return new FrameData(true, getLastPresentationTimeUs());
+        return new FrameData(true, mediaClock.getTimeUs());
     }
 
-    @Override
-    public void release() {
+    /**
+     * 采集线程因环形缓冲区已满而丢弃数据的次数
+     */
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    /**
+     * 因溢出丢弃的采样帧总数
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * 编码线程取数据时环形缓冲区为空的次数（编码跟得上采集时这是正常现象）
+     */
+    public long getUnderrunCount() {
+        return underrunCount;
+    }
+
+    /**
+     * 环形缓冲区中等待编码的数据块数量
+     */
+    public int getBufferedChunks() {
+        return ringBuffer != null ? ringBuffer.size() : 0;
+    }
+
+    public PcmFormat getPcmFormat() {
+        return pcmFormat;
+    }
+
+    /**
+     * 停止录音并等待采集线程退出，环形缓冲区中的数据保留，之后由 {@link #getData()} 取完
+     */
+    public synchronized void stopRecording() {
         if (isRecording) {
-            audioRecord.stop();
             isRecording = false;
+            audioRecord.stop();
+        }
+        if (captureThread != null) {
+            try {
+                captureThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            captureThread = null;
         }
-        audioRecord.release();
     }
 
-    /**
-     * 获取下一帧的时间戳，确保单调递增。
-     *
-     * @return 时间戳（单位：微秒）。
-     */
-    private long getLastPresentationTimeUs() {
-        long result = System.nanoTime() / 1000L;
-        //时间应该是单调的
-        //否则muxer写入失败
-        if (result < lastPresentationTimeUs) {
-            result = (lastPresentationTimeUs - result) + result;
+    @Override
+    public synchronized void release() {
+        stopRecording();
+        if (audioRecord != null) {
+            audioRecord.release();
+            audioRecord = null;
+        }
+        if (overrunCount > 0) {
+            Log.w(TAG, "Audio overruns: " + overrunCount + ", dropped frames: " + droppedFrames);
         }
-        lastPresentationTimeUs = result;
-        return lastPresentationTimeUs;
     }
 }
@@ -1,30 +1,74 @@
 package com.kit.video.generator.input;
 
 import android.opengl.EGLContext;
-import android.opengl.GLES20;
+import android.util.Log;
 import android.view.Surface;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import com.kit.video.generator.base.FrameData;
 import com.kit.video.generator.base.InputHandler;
+import com.kit.video.generator.base.MediaClock;
 import com.kit.video.glutil.EglSurface;
 import com.kit.video.glutil.EglWrapper;
+import com.kit.video.glutil.FrameReader;
+import com.kit.video.glutil.GlFence;
+import com.kit.video.glutil.Gles20Binding;
+import com.kit.video.glutil.GlStateCache;
+import com.kit.video.glutil.TexturePool;
 import com.kit.video.glutil.TextureRenderer;
+import com.kit.video.glutil.filter.FilterGraph;
+import com.kit.video.glutil.filter.GlFilter;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 摄像头输入处理（OpenGL纹理数据）
  */
 public class CameraInputHandler implements InputHandler {
+    private static final String TAG = "CameraInputHandler";
 
     private EGLContext parentContext;
     private Surface outputSurface;
     private EglWrapper eglWrapper;
     private EglSurface eglSurface;
     private TextureRenderer textureRenderer;
+    private FilterGraph filterGraph;
+    private TexturePool texturePool;
+    private FrameReader frameReader;
+    private FrameReader.Callback frameCallback;
+    private final List<GlFilter> filters = new ArrayList<>();
     private int textureId;
-    private long lastPresentationTimeUs = 0;
+    // 最近一次绘制的帧在共享时间轴上的 PTS，单位：微秒
+    private long framePtsUs;
+    private MediaClock mediaClock = new MediaClock();
+
 
+    /**
+     * 设置与音频共享的媒体时钟（需在 initialize 之前调用）
+     */
+    public void setMediaClock(MediaClock mediaClock) {
+        this.mediaClock = mediaClock;
+    }
+
+    /**
+     * 设置滤镜链，按顺序应用到每一帧（需在 initialize 之前调用）
+     */
+    public void setFilters(List<GlFilter> filters) {
+        this.filters.clear();
+        this.filters.addAll(filters);
+    }
+
+    /**
+     * 设置读回录制画面的回调（缩略图、识别等），每帧在 swap 之前读取，需在 initialize 之前调用
+     *
+     * @param callback 在渲染线程中调用，OpenGL ES 3.0 以上时比绘制晚 1~2 帧送达
+     */
+    public void setFrameCallback(FrameReader.Callback callback) {
+        this.frameCallback = callback;
+    }
 
     public void setEglContext(EGLContext parentContext, Surface outputSurface) {
         this.parentContext = parentContext;
@@ -34,7 +78,7 @@ public class CameraInputHandler implements InputHandler {
 
 
     /**
-     * 初始化 EGL 环境和渲染器
+     * 初始化 EGL 环境和渲染器（EGL 上下文从 EglManager 的空闲池中获取，重复开始录制时不需要重新创建）
      */
     @WorkerThread
     @Override
@@ -42,8 +86,22 @@ public class CameraInputHandler implements InputHandler {
         eglRelease();  // 释放之前的资源
         eglWrapper = new EglWrapper(parentContext, false, true);
         eglSurface = eglWrapper.createFromSurface(outputSurface);
-        textureRenderer = new TextureRenderer();  // 创建渲染器
+        // 渲染器和滤镜链共用同一个状态缓存
+        GlStateCache gl = new GlStateCache(Gles20Binding.INSTANCE);
+        textureRenderer = new TextureRenderer(gl);  // 创建渲染器
         textureRenderer.setup();  // 初始化渲染器
+        if (!filters.isEmpty()) {
+            texturePool = new TexturePool(gl);
+            filterGraph = new FilterGraph(gl, texturePool);
+            for (GlFilter filter : filters) {
+                filterGraph.addFilter(filter);
+            }
+            filterGraph.setup();
+        }
+        if (frameCallback != null) {
+            frameReader = new FrameReader(gl, eglSurface.getWidth(), eglSurface.getHeight(), frameCallback);
+            frameReader.setup();
+        }
         return true;
     }
 
@@ -51,23 +109,118 @@ public class CameraInputHandler implements InputHandler {
     // 执行渲染
     @WorkerThread
     public void draw(int textureId) {
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);     // 清除颜色缓冲区
-        textureRenderer.render(textureId, true);  // 渲染纹理
-        eglSurface.swap();  // 交换缓冲区
+        draw(textureId, 0);
+    }
+
+    /**
+     * 执行渲染
+     *
+     * @param textureId   纹理 ID
+     * @param timestampNs 帧的采集时间（如 SurfaceTexture.getTimestamp()），单位：纳秒，0 表示使用当前时刻
+     */
+    @WorkerThread
+    public void draw(int textureId, long timestampNs) {
+        draw(textureId, timestampNs, null);
+    }
+
+    /**
+     * 执行渲染
+     *
+     * @param textureId   纹理 ID
+     * @param timestampNs 帧的采集时间（如 SurfaceTexture.getTimestamp()），单位：纳秒，0 表示使用当前时刻
+     * @param inputFence  生产者绘制完纹理后创建的栅栏，GPU 等待它之后再读取纹理，可以为 null
+     */
+    @WorkerThread
+    public void draw(int textureId, long timestampNs, @Nullable GlFence inputFence) {
+        waitForInput(inputFence);
+        if (filterGraph != null) {
+            renderFilters(textureId, false, null);
+        } else {
+            textureRenderer.render(textureId, false);  // 渲染纹理（包括清除颜色缓冲区），swap 时会提交命令
+        }
+        present(textureId, timestampNs);
+    }
+
+    /**
+     * 直接渲染相机的外部纹理，不需要先复制到 2D 纹理
+     *
+     * @param textureId       GL_TEXTURE_EXTERNAL_OES 纹理 ID（需与父 EGL 上下文共享）
+     * @param transformMatrix SurfaceTexture.getTransformMatrix 得到的纹理坐标变换矩阵
+     * @param timestampNs     帧的采集时间（SurfaceTexture.getTimestamp()），单位：纳秒，0 表示使用当前时刻
+     */
+    @WorkerThread
+    public void drawExternal(int textureId, float[] transformMatrix, long timestampNs) {
+        drawExternal(textureId, transformMatrix, timestampNs, null);
+    }
+
+    /**
+     * 直接渲染相机的外部纹理，不需要先复制到 2D 纹理
+     *
+     * @param inputFence 生产者调用 updateTexImage 后创建的栅栏，GPU 等待它之后再读取纹理，可以为 null
+     */
+    @WorkerThread
+    public void drawExternal(int textureId, float[] transformMatrix, long timestampNs, @Nullable GlFence inputFence) {
+        waitForInput(inputFence);
+        if (filterGraph != null) {
+            renderFilters(textureId, true, transformMatrix);
+        } else {
+            textureRenderer.renderExternal(textureId, transformMatrix, false);  // 渲染纹理（包括清除颜色缓冲区）
+        }
+        present(textureId, timestampNs);
+    }
+
+    /**
+     * GPU 端等待生产者的命令完成，渲染线程不阻塞
+     */
+    private static void waitForInput(@Nullable GlFence inputFence) {
+        if (inputFence != null) {
+            inputFence.waitOnGpu();
+            inputFence.release();
+        }
+    }
+
+    /**
+     * 把帧的 PTS 设置为编码器输入 Surface 的时间戳后交换缓冲区，编码输出的时间戳与 getData 返回的一致
+     */
+    private void present(int textureId, long timestampNs) {
+        readFrame(timestampNs);
+        // PTS单位为微秒，映射到与音频共享的时间轴上
+        framePtsUs = mediaClock.mapVideoTimestampUs(timestampNs);
+        eglSurface.swap(framePtsUs * 1000);  // 交换缓冲区
         this.textureId = textureId;
     }
 
+    private void readFrame(long timestampNs) {
+        if (frameReader != null) {
+            frameReader.read(0, timestampNs);
+        }
+    }
+
+    /**
+     * 经过滤镜链绘制到编码器的输入 Surface，输入与输出尺寸相同
+     */
+    private void renderFilters(int textureId, boolean external, float[] transformMatrix) {
+        int width = eglSurface.getWidth();
+        int height = eglSurface.getHeight();
+        filterGraph.render(textureId, external, transformMatrix, width, height, 0, width, height);
+    }
+
     @WorkerThread
     @Override
     public FrameData getData() {
-        long timestampUs = getLastPresentationTimeUs();
-        // PTS单位为微秒
-        return new FrameData(textureId, timestampUs);
+        return new FrameData(textureId, framePtsUs);
     }
 
 
+    /**
+     * 结束流帧，在渲染线程中调用：先送达回读中还未完成的最后几帧
+     */
+    @WorkerThread
     public FrameData getEndOfStreamData() {
-        return new FrameData(true, getLastPresentationTimeUs());
+        if (frameReader != null) {
+            frameReader.flush();
+        }
+        return new FrameData(true, mediaClock.mapVideoTimestampUs(0));
     }
 
     @Override
@@ -82,34 +235,41 @@ public class CameraInputHandler implements InputHandler {
      * 释放 EGL 环境和渲染器
      */
     private void eglRelease() {
+        // 上下文会被 EglManager 复用，要在它仍是当前上下文时删除渲染器的 GL 对象
+        boolean current = eglWrapper == null || eglWrapper.isCurrent();
+        if (!current) {
+            // 不在渲染线程中：GL 对象无法删除，上下文随之销毁而不是放回空闲池
+            Log.e(TAG, "EGL context is not current, discarding it instead of pooling");
+            frameReader = null;
+            filterGraph = null;
+            texturePool = null;
+            textureRenderer = null;
+        }
+        if (frameReader != null) {
+            // 最后几帧已在 getEndOfStreamData 中送达，这里丢弃剩余的读取
+            frameReader.release();
+            frameReader = null;
+        }
+        if (filterGraph != null) {
+            filterGraph.release();
+            filterGraph = null;
+        }
+        if (texturePool != null) {
+            texturePool.clear();
+            texturePool = null;
+        }
+        if (textureRenderer != null) {
+            textureRenderer.release();
+            textureRenderer = null;
+        }
         if (eglSurface != null) {
             eglSurface.release();  // 释放输入 Surface
             eglSurface = null;
         }
         if (eglWrapper != null) {
-            eglWrapper.release();  // 释放 EGL 环境
+            eglWrapper.release(current);  // 释放 EGL 环境
             eglWrapper = null;
         }
-        if (textureRenderer != null) {
-            textureRenderer.release();
-            textureRenderer = null;
-        }
     }
 
-
-    /**
-     * 获取下一帧的时间戳，确保单调递增。
-     *
-     * @return 时间戳（单位：微秒）。
-     */
-    private long getLastPresentationTimeUs() {
-        long result = System.nanoTime() / 1000L;
-        //时间应该是单调的
-        //否则muxer写入失败
-        if (result < lastPresentationTimeUs) {
-            result = (lastPresentationTimeUs - result) + result;
-        }
-        lastPresentationTimeUs = result;
-        return lastPresentationTimeUs;
-    }
 }
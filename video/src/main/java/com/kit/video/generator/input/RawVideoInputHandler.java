@@ -0,0 +1,111 @@
+package com.kit.video.generator.input;
+
+import android.util.Log;
+
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.InputHandler;
+import com.kit.video.generator.base.PixelFormat;
+import com.kit.video.generator.raw.FrameFiles;
+import com.kit.video.generator.raw.FrameReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 原始视频文件输入处理（YUV4MPEG2 或无文件头的 I420/NV12/NV21 文件，字节数据）
+ * <p>
+ * 不依赖 MediaCodec，可以在没有编解码器的模拟器或者普通 JVM 上驱动整个处理管道。
+ * 文件通过内存映射读取，每一帧都是映射区的只读切片，读取本身没有拷贝，可作为测量管道开销的基准。
+ */
+public class RawVideoInputHandler implements InputHandler {
+    private static final String TAG = "RawVideoInputHandler";
+    private final String inputPath;
+    private final int width;
+    private final int height;
+    private final PixelFormat pixelFormat;
+    private final int frameRateNum;
+    private final int frameRateDen;
+    private FrameReader reader;
+    private boolean endOfStream;
+
+    /**
+     * 读取 YUV4MPEG2 文件，宽高和帧率从文件头获取
+     */
+    public RawVideoInputHandler(String inputPath) {
+        this(inputPath, 0, 0, PixelFormat.I420, 30, 1);
+    }
+
+    /**
+     * 读取无文件头的原始 YUV 文件（.y4m 文件以文件头为准）
+     */
+    public RawVideoInputHandler(String inputPath, int width, int height, PixelFormat pixelFormat,
+                                int frameRateNum, int frameRateDen) {
+        this.inputPath = inputPath;
+        this.width = width;
+        this.height = height;
+        this.pixelFormat = pixelFormat;
+        this.frameRateNum = frameRateNum;
+        this.frameRateDen = frameRateDen;
+    }
+
+    @Override
+    public boolean initialize() {
+        try {
+            reader = FrameFiles.openReader(inputPath, width, height, pixelFormat, frameRateNum, frameRateDen);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Initialization failed", e);
+            return false;
+        }
+    }
+
+    @Override
+    public FrameData getData() {
+        if (endOfStream) return null;
+        try {
+            long pts = reader.getPresentationTimeUs(reader.getFrameIndex());
+            ByteBuffer frame = reader.readFrame();
+            if (frame == null) {
+                endOfStream = true;
+                return new FrameData(true, pts);
+            }
+            return new FrameData(frame, pts);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading frame", e);
+            endOfStream = true;
+            return new FrameData(true, reader.getPresentationTimeUs(reader.getFrameIndex()));
+        }
+    }
+
+    public int getWidth() {
+        return reader.getWidth();
+    }
+
+    public int getHeight() {
+        return reader.getHeight();
+    }
+
+    public PixelFormat getPixelFormat() {
+        return reader.getPixelFormat();
+    }
+
+    public int getFrameRateNum() {
+        return reader.getFrameRateNum();
+    }
+
+    public int getFrameRateDen() {
+        return reader.getFrameRateDen();
+    }
+
+    @Override
+    public void release() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing reader", e);
+            }
+            reader = null;
+        }
+    }
+}
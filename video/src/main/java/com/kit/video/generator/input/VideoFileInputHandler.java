@@ -1,23 +1,44 @@
 package com.kit.video.generator.input;
 
+import android.graphics.Rect;
+import android.media.Image;
 import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
 import android.media.MediaExtractor;
 import android.media.MediaFormat;
 import android.util.Log;
 
+import com.kit.video.generator.base.BufferPool;
 import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.FrameLayout;
 import com.kit.video.generator.base.InputHandler;
+import com.kit.video.generator.base.PixelFormat;
 
 import java.nio.ByteBuffer;
 
 /**
  * 视频文件输入处理（字节数据）
+ * <p>
+ * 解码后的帧会拷贝到缓冲区池中（解码器的输出缓冲区释放后会被复用），并通过 {@link FrameData#getLayout()}
+ * 携带解码器实际输出的布局，由后续的颜色转换阶段转换为编码器需要的格式。
  */
 public class VideoFileInputHandler implements InputHandler {
+    private static final int MAX_POOLED_BUFFERS = 8;
+    // MediaFormat 中的裁剪参数（API 33 之前没有公开常量）
+    private static final String KEY_CROP_LEFT = "crop-left";
+    private static final String KEY_CROP_TOP = "crop-top";
+    private static final String KEY_CROP_RIGHT = "crop-right";
+    private static final String KEY_CROP_BOTTOM = "crop-bottom";
     private MediaExtractor extractor;
     private MediaCodec decoder;
     private final String inputPath;
     private boolean endOfStream;
+    // 早于该时间戳的解码帧会被丢弃（断点续传时使用），单位：微秒
+    private long skipUntilUs = 0;
+    // 解码器输出缓冲区的布局，无法识别的颜色格式为 null（改为通过 Image 接口读取）
+    private FrameLayout outputLayout;
+    private BufferPool pool;
+    private byte[] rowBuffer;
 
     public VideoFileInputHandler(String inputPath) {
         this.inputPath = inputPath;
@@ -34,6 +55,11 @@ public class VideoFileInputHandler implements InputHandler {
                 if (mime.startsWith("video/")) {
                     extractor.selectTrack(i);
                     decoder = MediaCodec.createDecoderByType(mime);
+                    if (supportsFlexibleYuv(decoder, mime)) {
+                        // 避免解码器输出厂商私有的分块格式
+                        format.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                                MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible);
+                    }
                     decoder.configure(format, null, null, 0);
                     decoder.start();
                     break;
@@ -46,6 +72,17 @@ public class VideoFileInputHandler implements InputHandler {
         }
     }
 
+    /**
+     * 定位到指定时间之前最近的关键帧，并丢弃解码出的早于该时间的帧
+     *
+     * @param timeUs 目标时间戳，单位：微秒
+     */
+    public void seekTo(long timeUs) {
+        extractor.seekTo(timeUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+        decoder.flush();
+        skipUntilUs = timeUs;
+    }
+
     @Override
     public FrameData getData() {
         if (endOfStream) return null;
@@ -74,15 +111,21 @@ public class VideoFileInputHandler implements InputHandler {
         MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
         // 获取解码器的输出缓冲区索引
         int outIndex = decoder.dequeueOutputBuffer(info, 10000);
+        if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            updateOutputLayout(decoder.getOutputFormat());
+            return null;
+        }
         if (outIndex >= 0) {
-            // 获取输出缓冲区
-            ByteBuffer buffer = decoder.getOutputBuffer(outIndex);
-            // 创建 FrameData 对象，包含缓冲区和时间戳
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) == 0 && info.presentationTimeUs < skipUntilUs) {
+                // 续传位置之前的帧已经编码过，直接丢弃
+                decoder.releaseOutputBuffer(outIndex, false);
+                return null;
+            }
             FrameData frame;
             if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
                 frame = new FrameData(true, info.presentationTimeUs);
             } else {
-                frame = new FrameData(buffer, info.presentationTimeUs);
+                frame = copyOutput(outIndex, info);
             }
             // 释放输出缓冲区
             decoder.releaseOutputBuffer(outIndex, false);
@@ -94,6 +137,119 @@ public class VideoFileInputHandler implements InputHandler {
         return null;
     }
 
+    /**
+     * 将解码器的输出缓冲区拷贝到缓冲区池中
+     */
+    private FrameData copyOutput(int outIndex, MediaCodec.BufferInfo info) {
+        if (outputLayout != null) {
+            ByteBuffer buffer = decoder.getOutputBuffer(outIndex);
+            if (buffer == null) return null;
+            buffer.position(info.offset);
+            buffer.limit(info.offset + info.size);
+            ByteBuffer copy = acquire(info.size);
+            copy.put(buffer);
+            copy.flip();
+            FrameData frame = new FrameData(copy, info.presentationTimeUs, pool);
+            frame.setLayout(outputLayout);
+            return frame;
+        }
+        // 无法识别的颜色格式：通过 Image 接口按平面读取，拷贝为紧密排列的 I420
+        Image image = decoder.getOutputImage(outIndex);
+        if (image == null) {
+            Log.w("VideoFileInputHandler", "Unsupported decoder output format");
+            return null;
+        }
+        try {
+            Rect crop = image.getCropRect();
+            FrameLayout layout = FrameLayout.packed(PixelFormat.I420, crop.width(), crop.height());
+            ByteBuffer copy = acquire(layout.getFrameSize());
+            copyImage(image, crop, copy, layout);
+            copy.position(0);
+            copy.limit(layout.getFrameSize());
+            FrameData frame = new FrameData(copy, info.presentationTimeUs, pool);
+            frame.setLayout(layout);
+            return frame;
+        } finally {
+            image.close();
+        }
+    }
+
+    private void copyImage(Image image, Rect crop, ByteBuffer dst, FrameLayout layout) {
+        Image.Plane[] planes = image.getPlanes();
+        for (int p = 0; p < 3; p++) {
+            int shift = p == 0 ? 0 : 1;
+            int width = (layout.getWidth() + shift) >> shift;
+            int height = (layout.getHeight() + shift) >> shift;
+            int dstOffset = p == 0 ? layout.getRowOffset(0) : p == 1 ? layout.getChromaRowOffset(0) : layout.getVRowOffset(0);
+            int dstStride = p == 0 ? layout.getStride() : layout.getChromaStride();
+            ByteBuffer src = planes[p].getBuffer();
+            int rowStride = planes[p].getRowStride();
+            int pixelStride = planes[p].getPixelStride();
+            int rowBytes = (width - 1) * pixelStride + 1;
+            if (rowBuffer == null || rowBuffer.length < rowBytes) {
+                rowBuffer = new byte[rowBytes];
+            }
+            for (int row = 0; row < height; row++) {
+                src.position(((crop.top >> shift) + row) * rowStride + (crop.left >> shift) * pixelStride);
+                src.get(rowBuffer, 0, rowBytes);
+                dst.position(dstOffset + row * dstStride);
+                if (pixelStride == 1) {
+                    dst.put(rowBuffer, 0, width);
+                } else {
+                    for (int x = 0; x < width; x++) {
+                        dst.put(rowBuffer[x * pixelStride]);
+                    }
+                }
+            }
+        }
+    }
+
+    private ByteBuffer acquire(int size) {
+        if (pool == null || pool.getBufferSize() < size) {
+            pool = new BufferPool(size, MAX_POOLED_BUFFERS);
+        }
+        return pool.acquire();
+    }
+
+    /**
+     * 根据解码器的输出格式计算输出缓冲区的布局
+     */
+    private void updateOutputLayout(MediaFormat format) {
+        int width = format.getInteger(MediaFormat.KEY_WIDTH);
+        int height = format.getInteger(MediaFormat.KEY_HEIGHT);
+        int stride = format.containsKey(MediaFormat.KEY_STRIDE) ? format.getInteger(MediaFormat.KEY_STRIDE) : width;
+        int sliceHeight = format.containsKey(MediaFormat.KEY_SLICE_HEIGHT) ? format.getInteger(MediaFormat.KEY_SLICE_HEIGHT) : height;
+        int cropLeft = 0;
+        int cropTop = 0;
+        if (format.containsKey(KEY_CROP_RIGHT) && format.containsKey(KEY_CROP_BOTTOM)) {
+            cropLeft = format.containsKey(KEY_CROP_LEFT) ? format.getInteger(KEY_CROP_LEFT) : 0;
+            cropTop = format.containsKey(KEY_CROP_TOP) ? format.getInteger(KEY_CROP_TOP) : 0;
+            width = format.getInteger(KEY_CROP_RIGHT) - cropLeft + 1;
+            height = format.getInteger(KEY_CROP_BOTTOM) - cropTop + 1;
+        }
+        PixelFormat pixelFormat = PixelFormat.fromColorFormat(format.getInteger(MediaFormat.KEY_COLOR_FORMAT));
+        if (pixelFormat == null) {
+            outputLayout = null;
+        } else {
+            outputLayout = new FrameLayout(pixelFormat, width, height, Math.max(stride, width),
+                    Math.max(sliceHeight, height), cropLeft & ~1, cropTop & ~1);
+        }
+        Log.d("VideoFileInputHandler", "Decoder output layout: " + outputLayout);
+    }
+
+    private static boolean supportsFlexibleYuv(MediaCodec codec, String mime) {
+        try {
+            for (int colorFormat : codec.getCodecInfo().getCapabilitiesForType(mime).colorFormats) {
+                if (colorFormat == MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible) {
+                    return true;
+                }
+            }
+        } catch (Exception e) {
+            Log.w("VideoFileInputHandler", "Unable to query decoder capabilities", e);
+        }
+        return false;
+    }
+
     @Override
     public void release() {
         decoder.stop();
@@ -0,0 +1,214 @@
+package com.kit.video.generator.out;
+
+import android.media.AudioFormat;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+import android.util.Log;
+
+import com.kit.video.generator.base.PcmFormat;
+
+/**
+ * 音频编码配置：编码格式、采样率、声道数和码率
+ * <p>
+ * 通过静态工厂方法创建常用配置，例如语音较多的录制可以使用 {@code AudioCodecConfig.opus(24000)}，
+ * 码率只有 AAC 的几分之一。{@link #findEncoder()} 会检查设备的编码器列表（MIME 类型、采样率、声道数和 Profile），
+ * 不支持时 {@link MediaCodecOutputHandler} 会退回默认的 AAC-LC 配置。
+ */
+public final class AudioCodecConfig {
+    private static final String TAG = "AudioCodecConfig";
+
+    public enum Codec {
+        AAC_LC(MediaFormat.MIMETYPE_AUDIO_AAC, 1024),
+        // HE-AAC 一帧对应 2048 个输入采样（SBR 以一半的采样率编码核心层）
+        HE_AAC(MediaFormat.MIMETYPE_AUDIO_AAC, 2048),
+        // 20ms @ 48kHz
+        OPUS(MediaFormat.MIMETYPE_AUDIO_OPUS, 960),
+        // 不压缩，直接写入 WAV 文件
+        PCM(MediaFormat.MIMETYPE_AUDIO_RAW, 1024);
+
+        final String mimeType;
+        final int framesPerBuffer;
+
+        Codec(String mimeType, int framesPerBuffer) {
+            this.mimeType = mimeType;
+            this.framesPerBuffer = framesPerBuffer;
+        }
+    }
+
+    private final Codec codec;
+    private final int sampleRate;
+    private final int channelCount;
+    private final int bitRate;
+
+    /**
+     * @param codec        编码格式
+     * @param sampleRate   采样率
+     * @param channelCount 声道数
+     * @param bitRate      码率（bps），PCM 忽略该值
+     */
+    public AudioCodecConfig(Codec codec, int sampleRate, int channelCount, int bitRate) {
+        if (sampleRate <= 0 || channelCount <= 0) {
+            throw new IllegalArgumentException("Invalid audio format");
+        }
+        this.codec = codec;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.bitRate = bitRate;
+    }
+
+    /**
+     * 默认配置：AAC-LC，44.1kHz 单声道，64kbps
+     */
+    public static AudioCodecConfig aacLc() {
+        return new AudioCodecConfig(Codec.AAC_LC, 44100, 1, 64000);
+    }
+
+    /**
+     * HE-AAC，44.1kHz 立体声，适合 32~48kbps 的音乐
+     */
+    public static AudioCodecConfig heAac(int bitRate) {
+        return new AudioCodecConfig(Codec.HE_AAC, 44100, 2, bitRate);
+    }
+
+    /**
+     * Opus，48kHz 单声道（Opus 编码器只接受 8/12/16/24/48kHz），语音 16~32kbps 即可
+     */
+    public static AudioCodecConfig opus(int bitRate) {
+        return new AudioCodecConfig(Codec.OPUS, 48000, 1, bitRate);
+    }
+
+    /**
+     * 不压缩的 16 位 PCM，写入 WAV 文件
+     */
+    public static AudioCodecConfig pcm(int sampleRate, int channelCount) {
+        return new AudioCodecConfig(Codec.PCM, sampleRate, channelCount, 0);
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    public String getMimeType() {
+        return codec.mimeType;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    /**
+     * 每个编码器输入缓冲区装入的采样帧数（一个编码帧）
+     */
+    public int getFramesPerBuffer() {
+        return codec.framesPerBuffer;
+    }
+
+    /**
+     * 编码器需要的输入 PCM 格式
+     */
+    public PcmFormat getInputFormat() {
+        return new PcmFormat(sampleRate, channelCount);
+    }
+
+    /**
+     * 是否需要 MediaCodec 编码（PCM 直接写入文件）
+     */
+    public boolean isEncoded() {
+        return codec != Codec.PCM;
+    }
+
+    /**
+     * 编码结果能否写入指定格式的 MediaMuxer 容器
+     *
+     * @param muxerOutputFormat {@link MediaMuxer.OutputFormat} 中的常量
+     */
+    public boolean isMuxerCompatible(int muxerOutputFormat) {
+        switch (codec) {
+            case AAC_LC:
+            case HE_AAC:
+                return muxerOutputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4
+                        || muxerOutputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_3GPP;
+            case OPUS:
+                // MP4 中的 Opus 从 Android 12 开始支持
+                return muxerOutputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM
+                        || muxerOutputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_OGG
+                        || (muxerOutputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4
+                        && Build.VERSION.SDK_INT >= Build.VERSION_CODES.S);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 创建编码器的输出格式
+     */
+    public MediaFormat createMediaFormat() {
+        MediaFormat format = MediaFormat.createAudioFormat(codec.mimeType, sampleRate, channelCount);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+        format.setInteger(MediaFormat.KEY_CHANNEL_MASK,
+                channelCount == 1 ? AudioFormat.CHANNEL_IN_MONO : AudioFormat.CHANNEL_IN_STEREO);
+        format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, codec.framesPerBuffer * PcmFormat.BYTES_PER_SAMPLE * channelCount);
+        if (codec == Codec.AAC_LC) {
+            format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        } else if (codec == Codec.HE_AAC) {
+            format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectHE);
+        }
+        return format;
+    }
+
+    /**
+     * 查找支持该配置的编码器
+     *
+     * @return 匹配的编码器信息，如果没有（或是 PCM）则返回 null
+     */
+    public MediaCodecInfo findEncoder() {
+        if (!isEncoded()) return null;
+        MediaCodecList list = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        for (MediaCodecInfo codecInfo : list.getCodecInfos()) {
+            if (!codecInfo.isEncoder()) {
+                continue; // 跳过解码器
+            }
+            for (String type : codecInfo.getSupportedTypes()) {
+                if (type.equalsIgnoreCase(codec.mimeType) && isSupportedBy(codecInfo.getCapabilitiesForType(type))) {
+                    Log.i(TAG, "找到编码器: " + codecInfo.getName() + ", " + this);
+                    return codecInfo;
+                }
+            }
+        }
+        Log.w(TAG, "No encoder for " + this);
+        return null;
+    }
+
+    private boolean isSupportedBy(MediaCodecInfo.CodecCapabilities capabilities) {
+        MediaCodecInfo.AudioCapabilities audio = capabilities.getAudioCapabilities();
+        if (audio == null || !audio.isSampleRateSupported(sampleRate)
+                || audio.getMaxInputChannelCount() < channelCount) {
+            return false;
+        }
+        if (codec == Codec.HE_AAC && capabilities.profileLevels != null && capabilities.profileLevels.length > 0) {
+            for (MediaCodecInfo.CodecProfileLevel profileLevel : capabilities.profileLevels) {
+                if (profileLevel.profile == MediaCodecInfo.CodecProfileLevel.AACObjectHE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return codec + " " + sampleRate + "Hz x" + channelCount + (isEncoded() ? " @" + bitRate + "bps" : "");
+    }
+}
@@ -1,12 +1,12 @@
 package com.kit.video.generator.out;
 
-import android.media.AudioFormat;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
 import android.util.Log;
 
 import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.PcmFormat;
 
 import java.nio.ByteBuffer;
 
@@ -15,46 +15,150 @@ public class AudioEncoder implements MediaCodecEncoder {
     private static final int TIMEOUT_USEC = 10000;    // 10[msec]
     private MediaCodec audioEncoder;
     private int trackIndex;
-    private final MediaMuxerHandler muxerHandler;
+    private final MuxerHandler muxerHandler;
+    private final AudioCodecConfig config;
+    // 输入时间戳与推算的时间戳相差超过该值时重新对齐，单位：微秒
+    private static final long RESYNC_THRESHOLD_US = 100_000;
+    // 没有空闲的输入缓冲区时，取走编码输出后重试的次数
+    private static final int MAX_INPUT_RETRIES = 5;
+    // 音频编码没有重排序，但一个输入缓冲区可能产生多个输出包
+    private final PtsTracker ptsTracker = new PtsTracker(0);
+    private final PcmFormat inputFormat;
+
+    // 正在填充的编码器输入缓冲区，跨 writeFrame 调用保留
+    private int pendingIndex = -1;
+    private ByteBuffer pendingBuffer;
+    // 每个输入缓冲区的目标字节数
+    private int chunkBytes;
+    // 时间戳推算：anchorPtsUs 之后已接收的采样帧数（包括还在 pendingBuffer 中的）
+    private long anchorPtsUs = -1;
+    private long acceptedFrames;
+
+    public AudioEncoder(MuxerHandler muxerHandler) {
+        this(muxerHandler, AudioCodecConfig.aacLc());
+    }
 
-    public AudioEncoder(MediaMuxerHandler muxerHandler) {
+    /**
+     * @param config 编码配置，不能是 PCM
+     */
+    public AudioEncoder(MuxerHandler muxerHandler, AudioCodecConfig config) {
+        if (!config.isEncoded()) {
+            throw new IllegalArgumentException("PCM output is written by PcmAudioEncoder");
+        }
         this.muxerHandler = muxerHandler; // 传入 muxerHandler
+        this.config = config;
+        this.inputFormat = config.getInputFormat();
     }
 
     @Override
     public void initialize() throws Exception {
-        String audioMimeType = "audio/mp4a-latm";
-        int sampleRate = 44100;
-        int channelCount = 1;
-        int audioBitrate = 64000;
-        MediaFormat audioFormat = MediaFormat.createAudioFormat(audioMimeType, sampleRate, channelCount);
-        audioFormat.setInteger(MediaFormat.KEY_BIT_RATE, audioBitrate);
-        audioFormat.setInteger(MediaFormat.KEY_CHANNEL_MASK, AudioFormat.CHANNEL_IN_MONO);
-        audioFormat.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
-
-        audioEncoder = MediaCodec.createEncoderByType(audioMimeType);
+        MediaFormat audioFormat = config.createMediaFormat();
+        MediaCodecInfo codecInfo = config.findEncoder();
+        audioEncoder = codecInfo != null
+                ? MediaCodec.createByCodecName(codecInfo.getName())
+                : MediaCodec.createEncoderByType(config.getMimeType());
         audioEncoder.configure(audioFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
         audioEncoder.start();
+        chunkBytes = config.getFramesPerBuffer() * inputFormat.getBytesPerFrame();
     }
 
+    /**
+     * 写入 PCM 数据
+     * <p>
+     * 输入帧的大小不必与编码器的输入缓冲区一致：数据被依次装入输入缓冲区，每装满一个编码帧（{@link AudioCodecConfig#getFramesPerBuffer()}）
+     * 提交一次，剩余部分留在缓冲区中等待下一次调用。提交的 PTS 由累计的采样数推算，输入时间戳不连续时重新对齐。
+     * 结束帧会把未装满的缓冲区连同结束标志一起提交。
+     */
     @Override
     public void writeFrame(FrameData frame) throws Exception {
         if (frame == null || audioEncoder == null) return;
 
-        int inputBufferIndex = audioEncoder.dequeueInputBuffer(-1);
-        if (inputBufferIndex >= 0) {
-            ByteBuffer inputBuffer = audioEncoder.getInputBuffer(inputBufferIndex);
-            assert inputBuffer != null;
-            inputBuffer.clear();
-            if (!frame.isEndOfStream()) {
-                inputBuffer.put(frame.getByteBuffer());
+        boolean queued = false;
+        if (frame.isEndOfStream()) {
+            if (pendingIndex < 0 && !dequeuePending()) {
+                Log.e(TAG, "No encoder input buffer for end of stream");
+                return;
+            }
+            queuePending(MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            queued = true;
+        } else {
+            ByteBuffer data = frame.getByteBuffer().duplicate();
+            long expectedPtsUs = anchorPtsUs + inputFormat.framesToUs(acceptedFrames);
+            if (anchorPtsUs < 0 || Math.abs(frame.getPts() - expectedPtsUs) > RESYNC_THRESHOLD_US) {
+                // 时间轴不连续：先提交之前不完整的缓冲区，再从该帧重新推算
+                if (pendingIndex >= 0 && pendingBuffer.position() > 0) {
+                    queuePending(0);
+                    queued = true;
+                }
+                anchorPtsUs = frame.getPts();
+                acceptedFrames = 0;
+            }
+            while (data.hasRemaining()) {
+                if (pendingIndex < 0 && !dequeuePending()) {
+                    Log.w(TAG, "No encoder input buffer, dropping " + data.remaining() + " bytes");
+                    // 丢弃的采样仍占用时间轴，之后的 PTS 不能因此提前
+                    acceptedFrames += data.remaining() / inputFormat.getBytesPerFrame();
+                    break;
+                }
+                int space = pendingBuffer.limit() - pendingBuffer.position();
+                int count = Math.min(space, data.remaining());
+                int oldLimit = data.limit();
+                data.limit(data.position() + count);
+                pendingBuffer.put(data);
+                data.limit(oldLimit);
+                acceptedFrames += count / inputFormat.getBytesPerFrame();
+                if (!pendingBuffer.hasRemaining()) {
+                    queuePending(0);
+                    queued = true;
+                }
             }
-            audioEncoder.queueInputBuffer(inputBufferIndex, 0, frame.getByteBuffer().limit(), frame.getPts(),
-                    frame.isEndOfStream() ? MediaCodec.BUFFER_FLAG_END_OF_STREAM : 0);
         }
 
-        // 处理编码后的输出
-        processEncodedFrame(frame, audioEncoder);
+        // 只有提交了输入才可能有新的输出
+        if (queued) {
+            processEncodedFrame(frame.isEndOfStream(), audioEncoder);
+        }
+    }
+
+    /**
+     * 获取一个新的输入缓冲区作为正在填充的缓冲区
+     * <p>
+     * 每次最多等待 TIMEOUT_USEC；输入缓冲区都被占用时，先取走已编码的输出（编码器因输出未被取走而停顿时不会归还输入缓冲区）再重试。
+     *
+     * @return 是否获取到，重试 {@link #MAX_INPUT_RETRIES} 次仍没有时返回 false
+     */
+    private boolean dequeuePending() {
+        for (int attempt = 0; attempt <= MAX_INPUT_RETRIES; attempt++) {
+            int index = audioEncoder.dequeueInputBuffer(TIMEOUT_USEC);
+            if (index >= 0) {
+                ByteBuffer buffer = audioEncoder.getInputBuffer(index);
+                if (buffer == null) return false;
+                buffer.clear();
+                // 编码器的输入缓冲区可能比一帧小，按采样帧对齐
+                int capacity = buffer.capacity() - buffer.capacity() % inputFormat.getBytesPerFrame();
+                buffer.limit(Math.min(chunkBytes, capacity));
+                pendingIndex = index;
+                pendingBuffer = buffer;
+                return true;
+            }
+            processEncodedFrame(false, audioEncoder);
+        }
+        return false;
+    }
+
+    /**
+     * 提交正在填充的缓冲区，PTS 为其中第一个采样帧的时间
+     */
+    private void queuePending(int flags) {
+        int size = pendingBuffer.position();
+        long bufferFrames = size / inputFormat.getBytesPerFrame();
+        long ptsUs = Math.max(anchorPtsUs, 0) + inputFormat.framesToUs(acceptedFrames - bufferFrames);
+        if (size > 0) {
+            ptsTracker.onInput(ptsUs);
+        }
+        audioEncoder.queueInputBuffer(pendingIndex, 0, size, ptsUs, flags);
+        pendingIndex = -1;
+        pendingBuffer = null;
     }
 
     @Override
@@ -64,6 +168,8 @@ public class AudioEncoder implements MediaCodecEncoder {
             audioEncoder.release();
             audioEncoder = null;
         }
+        pendingIndex = -1;
+        pendingBuffer = null;
     }
 
     @Override
@@ -71,7 +177,18 @@ public class AudioEncoder implements MediaCodecEncoder {
         return audioEncoder;
     }
 
-    private void processEncodedFrame(FrameData frameData, MediaCodec encoder) {
+    /**
+     * 获取编码器需要的输入 PCM 格式
+     */
+    public PcmFormat getInputFormat() {
+        return inputFormat;
+    }
+
+    public AudioCodecConfig getConfig() {
+        return config;
+    }
+
+    private void processEncodedFrame(boolean endOfStream, MediaCodec encoder) {
         MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
         int waitCount = 0;
 
@@ -82,7 +199,7 @@ public class AudioEncoder implements MediaCodecEncoder {
             int encoderStatus = encoder.dequeueOutputBuffer(bufferInfo, TIMEOUT_USEC);
             if (encoderStatus == MediaCodec.INFO_TRY_AGAIN_LATER) {
                 // 等待5次(=TIMEOUT_USEC x 5 = 50msec)，直到数据/EOS到来
-                if (!frameData.isEndOfStream()) {
+                if (!endOfStream) {
                     if (++waitCount > 5) break LOOP;
                 }
             } else if (encoderStatus == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
@@ -113,8 +230,9 @@ public class AudioEncoder implements MediaCodecEncoder {
                 if (bufferInfo.size != 0) {
                     // 编码数据已准备好，清除等待计数器
                     waitCount = 0;
-                    //写入编码数据到混频器(需要调整presentationTimeUs)。
-                    bufferInfo.presentationTimeUs = frameData.getPts();
+                    //写入编码数据到混频器，使用编码器按采样数推算的时间戳，并保证严格递增
+                    ptsTracker.onOutput(bufferInfo.presentationTimeUs);
+                    bufferInfo.presentationTimeUs = ptsTracker.getPtsUs();
                     muxerHandler.writeSampleData(trackIndex, encodedData, bufferInfo);
                 }
                 // 将缓冲区返回给编码器
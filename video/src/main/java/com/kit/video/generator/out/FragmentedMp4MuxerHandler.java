@@ -0,0 +1,98 @@
+package com.kit.video.generator.out;
+
+import android.media.MediaFormat;
+
+import com.kit.video.generator.container.FragmentedMp4Writer;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 分片 MP4 封装器：把编码数据以 fMP4 的形式顺序写入任意输出（网络连接、管道、ParcelFileDescriptor 等），
+ * 不需要先在磁盘上生成完整的文件。支持 H.264 视频和 AAC 音频。
+ */
+public class FragmentedMp4MuxerHandler extends StreamingMuxerHandler {
+    private final FragmentedMp4Writer writer;
+    private final WritableByteChannel sink;
+
+    /**
+     * @param sink       输出，stop 时关闭
+     * @param trackCount 轨道数量（有音频时为 2，否则为 1）
+     */
+    public FragmentedMp4MuxerHandler(WritableByteChannel sink, int trackCount) {
+        this(sink, trackCount, FragmentedMp4Writer.DEFAULT_FRAGMENT_DURATION_US);
+    }
+
+    /**
+     * @param fragmentDurationUs 分片的目标时长，越短延迟越低，单位：微秒
+     */
+    public FragmentedMp4MuxerHandler(WritableByteChannel sink, int trackCount, long fragmentDurationUs) {
+        super(trackCount);
+        this.sink = sink;
+        this.writer = new FragmentedMp4Writer(sink, fragmentDurationUs);
+    }
+
+    /**
+     * 写入文件描述符（可以是管道或套接字，不需要支持定位）
+     */
+    public FragmentedMp4MuxerHandler(FileDescriptor fd, int trackCount) {
+        this(new FileOutputStream(fd).getChannel(), trackCount);
+    }
+
+    public FragmentedMp4MuxerHandler(OutputStream outputStream, int trackCount) {
+        this(Channels.newChannel(outputStream), trackCount);
+    }
+
+    /**
+     * 设置分片写出的回调（如统计上传进度）
+     */
+    public void setFragmentListener(FragmentedMp4Writer.FragmentListener listener) {
+        writer.setFragmentListener(listener);
+    }
+
+    @Override
+    protected int onAddVideoTrack(MediaFormat videoFormat) {
+        String mimeType = videoFormat.getString(MediaFormat.KEY_MIME);
+        if (!MediaFormat.MIMETYPE_VIDEO_AVC.equals(mimeType)) {
+            throw new IllegalArgumentException("Unsupported fMP4 video codec: " + mimeType);
+        }
+        // H.264：csd-0 为 SPS，csd-1 为 PPS
+        return writer.addVideoTrack(videoFormat.getInteger(MediaFormat.KEY_WIDTH), videoFormat.getInteger(MediaFormat.KEY_HEIGHT),
+                getCodecSpecificData(videoFormat, "csd-0"), getCodecSpecificData(videoFormat, "csd-1"));
+    }
+
+    @Override
+    protected int onAddAudioTrack(MediaFormat audioFormat) {
+        String mimeType = audioFormat.getString(MediaFormat.KEY_MIME);
+        if (!MediaFormat.MIMETYPE_AUDIO_AAC.equals(mimeType)) {
+            throw new IllegalArgumentException("Unsupported fMP4 audio codec: " + mimeType);
+        }
+        // AAC：csd-0 为 AudioSpecificConfig
+        return writer.addAudioTrack(audioFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                audioFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT), getCodecSpecificData(audioFormat, "csd-0"));
+    }
+
+    @Override
+    protected void onStart() throws IOException {
+        writer.start();
+    }
+
+    @Override
+    protected void onWriteSample(int trackIndex, ByteBuffer data, long ptsUs, long dtsUs, boolean keyFrame) throws IOException {
+        writer.writeSample(trackIndex, data, ptsUs, dtsUs, keyFrame);
+    }
+
+    @Override
+    protected void onStop() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            sink.close();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.kit.video.generator.out;
+
+import android.media.MediaFormat;
+
+import com.kit.video.generator.container.HlsSegmenter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * HLS 直播封装器：通过 {@link HlsSegmenter} 把 H.264 + AAC 编码数据切成 CMAF 分片并维护滚动播放列表
+ */
+public class HlsMuxerHandler extends StreamingMuxerHandler {
+    private final HlsSegmenter segmenter;
+
+    /**
+     * @param directory         输出目录，播放列表为其中的 {@value HlsSegmenter#PLAYLIST_NAME}
+     * @param segmentDurationUs 分片的目标时长，单位：微秒
+     * @param playlistSize      播放列表中保留的分片数量
+     * @param trackCount        轨道数量（有音频时为 2，否则为 1）
+     */
+    public HlsMuxerHandler(File directory, long segmentDurationUs, int playlistSize, int trackCount) throws IOException {
+        super(trackCount);
+        this.segmenter = new HlsSegmenter(directory, segmentDurationUs, playlistSize);
+    }
+
+    /**
+     * 设置请求关键帧的回调，分片超过目标时长仍没有关键帧时调用
+     */
+    public void setKeyFrameRequester(Runnable requester) {
+        segmenter.setKeyFrameRequester(requester);
+    }
+
+    public File getPlaylistFile() {
+        return segmenter.getPlaylistFile();
+    }
+
+    @Override
+    protected int onAddVideoTrack(MediaFormat videoFormat) {
+        String mimeType = videoFormat.getString(MediaFormat.KEY_MIME);
+        if (!MediaFormat.MIMETYPE_VIDEO_AVC.equals(mimeType)) {
+            throw new IllegalArgumentException("Unsupported HLS video codec: " + mimeType);
+        }
+        return segmenter.addVideoTrack(videoFormat.getInteger(MediaFormat.KEY_WIDTH), videoFormat.getInteger(MediaFormat.KEY_HEIGHT),
+                getCodecSpecificData(videoFormat, "csd-0"), getCodecSpecificData(videoFormat, "csd-1"));
+    }
+
+    @Override
+    protected int onAddAudioTrack(MediaFormat audioFormat) {
+        String mimeType = audioFormat.getString(MediaFormat.KEY_MIME);
+        if (!MediaFormat.MIMETYPE_AUDIO_AAC.equals(mimeType)) {
+            throw new IllegalArgumentException("Unsupported HLS audio codec: " + mimeType);
+        }
+        return segmenter.addAudioTrack(audioFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                audioFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT), getCodecSpecificData(audioFormat, "csd-0"));
+    }
+
+    @Override
+    protected void onStart() throws IOException {
+        segmenter.start();
+    }
+
+    @Override
+    protected void onWriteSample(int trackIndex, ByteBuffer data, long ptsUs, long dtsUs, boolean keyFrame) throws IOException {
+        segmenter.writeSample(trackIndex, data, ptsUs, dtsUs, keyFrame);
+    }
+
+    @Override
+    protected void onStop() throws IOException {
+        segmenter.close();
+    }
+}
@@ -13,9 +13,13 @@ import androidx.annotation.Nullable;
 
 import com.kit.video.generator.base.FrameData;
 import com.kit.video.generator.base.OutputHandler;
+import com.kit.video.generator.base.PcmFormat;
+import com.kit.video.generator.base.PixelFormat;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * 音视频编码输出处理类
@@ -23,26 +27,154 @@ import java.nio.ByteBuffer;
 public class MediaCodecOutputHandler implements OutputHandler {
     private static final String TAG = "MediaCodecOutputHandler";
     private VideoEncoder videoEncoder;
-    private AudioEncoder audioEncoder;
-    private MediaMuxerHandler muxerHandler;
+    private MediaCodecEncoder audioEncoder;
+    private PcmFormat audioInputFormat;
+    private MuxerHandler muxerHandler;
+    private int outputFormat = MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
     private boolean isInitialized = false;
 
     public MediaCodecOutputHandler(String outputPath, int outputWidth, int outputHeight, boolean needInputSurface, boolean isMute) {
+        this(outputPath, outputWidth, outputHeight, needInputSurface, isMute, 0);
+    }
+
+    /**
+     * @param maxBFrames 最大连续 B 帧数，0 表示不使用 B 帧
+     */
+    public MediaCodecOutputHandler(String outputPath, int outputWidth, int outputHeight, boolean needInputSurface, boolean isMute, int maxBFrames) {
+        this(outputPath, outputWidth, outputHeight, needInputSurface, isMute ? null : AudioCodecConfig.aacLc(), maxBFrames);
+    }
+
+    /**
+     * @param audioConfig 音频编码配置，为 null 时不输出音频。设备不支持或容器无法写入该编码时退回默认的 AAC-LC；
+     *                    PCM 不经过编码，写入与 outputPath 同名的 .wav 文件
+     * @param maxBFrames  最大连续 B 帧数，0 表示不使用 B 帧
+     */
+    public MediaCodecOutputHandler(String outputPath, int outputWidth, int outputHeight, boolean needInputSurface,
+                                   @Nullable AudioCodecConfig audioConfig, int maxBFrames) {
+        this(outputPath, outputWidth, outputHeight, needInputSurface, audioConfig, maxBFrames,
+                MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    }
+
+    /**
+     * @param outputFormat 容器格式：{@link MediaMuxer.OutputFormat#MUXER_OUTPUT_MPEG_4}（H.264 + AAC）或
+     *                     {@link MediaMuxer.OutputFormat#MUXER_OUTPUT_WEBM}（VP9，不支持时 VP8 + Opus）。
+     *                     WebM 优先使用 MediaMuxer，无法创建时改用纯 Java 的 {@link WebmMuxerHandler}
+     */
+    public MediaCodecOutputHandler(String outputPath, int outputWidth, int outputHeight, boolean needInputSurface,
+                                   @Nullable AudioCodecConfig audioConfig, int maxBFrames, int outputFormat) {
+        try {
+            boolean hasAudio = audioConfig != null && audioConfig.isEncoded();
+            MuxerHandler muxer = createMuxer(outputPath, outputFormat, hasAudio ? 2 : 1);
+            setup(muxer, outputPath, outputWidth, outputHeight, needInputSurface, audioConfig, maxBFrames, outputFormat);
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to set up encoders for " + outputPath, e);
+        }
+    }
+
+    /**
+     * 以分片 MP4（H.264 + AAC）的形式边编码边写入任意输出，如上传连接或本地套接字，不在磁盘上生成完整文件
+     *
+     * @param sink        输出，release 时关闭
+     * @param audioConfig 音频编码配置，为 null 时不输出音频；不支持的编码（包括 PCM）退回默认的 AAC-LC
+     */
+    public MediaCodecOutputHandler(WritableByteChannel sink, int outputWidth, int outputHeight, boolean needInputSurface,
+                                   @Nullable AudioCodecConfig audioConfig) {
+        this(sink, outputWidth, outputHeight, needInputSurface, audioConfig, 0);
+    }
+
+    /**
+     * @param maxBFrames 最大连续 B 帧数，0 表示不使用 B 帧；分片写入器按编码器的解码时间写出合成时间偏移
+     */
+    public MediaCodecOutputHandler(WritableByteChannel sink, int outputWidth, int outputHeight, boolean needInputSurface,
+                                   @Nullable AudioCodecConfig audioConfig, int maxBFrames) {
+        try {
+            MuxerHandler muxer = new FragmentedMp4MuxerHandler(sink, audioConfig != null ? 2 : 1);
+            setup(muxer, null, outputWidth, outputHeight, needInputSurface, audioConfig, maxBFrames,
+                    MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to set up fragmented MP4 output", e);
+        }
+    }
+
+    /**
+     * 直播输出：切成 HLS/CMAF 分片（H.264 + AAC）写入目录，并维护滚动播放列表
+     *
+     * @param hlsDirectory      输出目录，播放列表为其中的 {@value com.kit.video.generator.container.HlsSegmenter#PLAYLIST_NAME}
+     * @param segmentDurationUs 分片的目标时长，单位：微秒
+     * @param playlistSize      播放列表中保留的分片数量
+     * @param audioConfig       音频编码配置，为 null 时不输出音频；不支持的编码（包括 PCM）退回默认的 AAC-LC
+     */
+    public MediaCodecOutputHandler(File hlsDirectory, long segmentDurationUs, int playlistSize, int outputWidth, int outputHeight,
+                                   boolean needInputSurface, @Nullable AudioCodecConfig audioConfig) {
+        this(hlsDirectory, segmentDurationUs, playlistSize, outputWidth, outputHeight, needInputSurface, audioConfig, 0);
+    }
+
+    /**
+     * @param maxBFrames 最大连续 B 帧数，0 表示不使用 B 帧（B 帧会增加直播延迟）
+     */
+    public MediaCodecOutputHandler(File hlsDirectory, long segmentDurationUs, int playlistSize, int outputWidth, int outputHeight,
+                                   boolean needInputSurface, @Nullable AudioCodecConfig audioConfig, int maxBFrames) {
         try {
-            muxerHandler = new MediaMuxerHandler(outputPath);
-            videoEncoder = new VideoEncoder(muxerHandler, outputWidth, outputHeight, needInputSurface);
-            videoEncoder.initialize();
-
-            if (!isMute) {
-                audioEncoder = new AudioEncoder(muxerHandler);
-                audioEncoder.initialize();
-            }
+            HlsMuxerHandler muxer = new HlsMuxerHandler(hlsDirectory, segmentDurationUs, playlistSize, audioConfig != null ? 2 : 1);
+            setup(muxer, null, outputWidth, outputHeight, needInputSurface, audioConfig, maxBFrames,
+                    MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            // 编码器的关键帧间隔比分片长时，在分片边界处请求关键帧
+            muxer.setKeyFrameRequester(videoEncoder::requestKeyFrame);
         } catch (Exception e) {
-            e.printStackTrace();
-            isInitialized = true;
+            Log.e(TAG, "Unable to set up HLS output in " + hlsDirectory, e);
         }
     }
 
+    private void setup(MuxerHandler muxer, @Nullable String outputPath, int outputWidth, int outputHeight, boolean needInputSurface,
+                       @Nullable AudioCodecConfig audioConfig, int maxBFrames, int outputFormat) throws Exception {
+        this.outputFormat = outputFormat;
+        this.muxerHandler = muxer;
+        String videoMimeType = MediaFormat.MIMETYPE_VIDEO_AVC;
+        if (outputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM) {
+            videoMimeType = VideoEncoder.hasEncoder(MediaFormat.MIMETYPE_VIDEO_VP9)
+                    ? MediaFormat.MIMETYPE_VIDEO_VP9 : MediaFormat.MIMETYPE_VIDEO_VP8;
+        }
+        videoEncoder = new VideoEncoder(muxerHandler, outputWidth, outputHeight, needInputSurface, maxBFrames, videoMimeType);
+        videoEncoder.initialize();
+
+        if (audioConfig != null) {
+            audioEncoder = createAudioEncoder(outputPath, audioConfig);
+            audioEncoder.initialize();
+        }
+        isInitialized = true;
+    }
+
+    private MediaCodecEncoder createAudioEncoder(@Nullable String outputPath, AudioCodecConfig config) {
+        if (!config.isEncoded() && outputPath != null) {
+            audioInputFormat = config.getInputFormat();
+            return new PcmAudioEncoder(getWavPath(outputPath), config.getSampleRate(), config.getChannelCount());
+        }
+        if (!config.isEncoded() || !config.isMuxerCompatible(outputFormat) || config.findEncoder() == null) {
+            AudioCodecConfig fallback = outputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM
+                    ? AudioCodecConfig.opus(64000) : AudioCodecConfig.aacLc();
+            Log.w(TAG, config + " is not supported, falling back to " + fallback);
+            config = fallback;
+        }
+        audioInputFormat = config.getInputFormat();
+        return new AudioEncoder(muxerHandler, config);
+    }
+
+    private static MuxerHandler createMuxer(String outputPath, int outputFormat, int trackCount) throws IOException {
+        try {
+            return new MediaMuxerHandler(outputPath, outputFormat, trackCount);
+        } catch (IOException | RuntimeException e) {
+            if (outputFormat != MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM) throw e;
+            Log.w(TAG, "MediaMuxer WebM output unavailable, using WebmMuxerHandler", e);
+            return new WebmMuxerHandler(outputPath, trackCount);
+        }
+    }
+
+    private static String getWavPath(String outputPath) {
+        int dot = outputPath.lastIndexOf('.');
+        int slash = outputPath.lastIndexOf('/');
+        return (dot > slash ? outputPath.substring(0, dot) : outputPath) + ".wav";
+    }
+
     @Override
     public boolean initialize() {
         return isInitialized;
@@ -86,6 +218,24 @@ public class MediaCodecOutputHandler implements OutputHandler {
     }
 
 
+    /**
+     * 获取字节缓冲区模式下视频编码器需要的输入像素格式
+     *
+     * @return 像素格式，Surface 模式下返回 null
+     */
+    public PixelFormat getVideoInputPixelFormat() {
+        return videoEncoder.getInputPixelFormat();
+    }
+
+    /**
+     * 获取音频编码器需要的输入 PCM 格式
+     *
+     * @return PCM 格式，静音时返回 null
+     */
+    public PcmFormat getAudioInputFormat() {
+        return audioEncoder != null ? audioInputFormat : null;
+    }
+
     public long getFrameInterval() {
         return 1000000L / videoEncoder.getFrameRate();
     }
@@ -3,48 +3,117 @@ package com.kit.video.generator.out;
 import android.media.MediaCodec;
 import android.media.MediaFormat;
 import android.media.MediaMuxer;
+import android.util.Log;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
-public class MediaMuxerHandler {
+/**
+ * 基于系统 MediaMuxer 的封装器
+ * <p>
+ * MediaMuxer 启动后不能再添加轨道，因此要等 trackCount 个轨道都添加后才启动，
+ * 在此之前到达的编码数据会先复制一份暂存。方法是同步的，音视频编码器可以在不同线程中调用。
+ */
+public class MediaMuxerHandler implements MuxerHandler {
+    private static final String TAG = "MediaMuxerHandler";
+    // 启动前最多暂存的编码帧数
+    private static final int MAX_PENDING_SAMPLES = 256;
+
+    private static final class PendingSample {
+        final int trackIndex;
+        final ByteBuffer data;
+        final MediaCodec.BufferInfo bufferInfo;
+
+        PendingSample(int trackIndex, ByteBuffer data, MediaCodec.BufferInfo bufferInfo) {
+            this.trackIndex = trackIndex;
+            this.data = data;
+            this.bufferInfo = bufferInfo;
+        }
+    }
+
+    private final int trackCount;
+    private final List<PendingSample> pendingSamples = new ArrayList<>();
     private MediaMuxer muxer;
+    private int addedTracks;
     private boolean isMuxerStarted;
 
-    public MediaMuxerHandler(String outputPath) throws IOException {
-        muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    /**
+     * @param outputFormat {@link MediaMuxer.OutputFormat} 中的常量
+     * @param trackCount   轨道数量（有音频时为 2，否则为 1）
+     */
+    public MediaMuxerHandler(String outputPath, int outputFormat, int trackCount) throws IOException {
+        muxer = new MediaMuxer(outputPath, outputFormat);
+        this.trackCount = trackCount;
     }
 
-    public int addVideoTrack(MediaFormat videoFormat) {
-        return muxer.addTrack(videoFormat);
+    @Override
+    public synchronized int addVideoTrack(MediaFormat videoFormat) {
+        int index = muxer.addTrack(videoFormat);
+        addedTracks++;
+        return index;
     }
 
-    public int addAudioTrack(MediaFormat audioFormat) {
-        return muxer.addTrack(audioFormat);
+    @Override
+    public synchronized int addAudioTrack(MediaFormat audioFormat) {
+        int index = muxer.addTrack(audioFormat);
+        addedTracks++;
+        return index;
     }
 
-    public void startMuxing() {
-        if (!isMuxerStarted) {
-            muxer.start();
-            isMuxerStarted = true;
+    /**
+     * 所有轨道都添加后启动 MediaMuxer，并写入暂存的编码数据
+     */
+    @Override
+    public synchronized void startMuxing() {
+        if (isMuxerStarted || muxer == null || addedTracks < trackCount) return;
+        muxer.start();
+        isMuxerStarted = true;
+        for (PendingSample sample : pendingSamples) {
+            muxer.writeSampleData(sample.trackIndex, sample.data, sample.bufferInfo);
         }
+        pendingSamples.clear();
     }
 
-    public void writeSampleData(int trackIndex, ByteBuffer buffer, MediaCodec.BufferInfo bufferInfo) {
+    @Override
+    public synchronized void writeSampleData(int trackIndex, ByteBuffer buffer, MediaCodec.BufferInfo bufferInfo) {
+        if (muxer == null) return;
         if (isMuxerStarted) {
             muxer.writeSampleData(trackIndex, buffer, bufferInfo);
+            return;
+        }
+        if (pendingSamples.size() >= MAX_PENDING_SAMPLES) {
+            Log.w(TAG, "Too many samples before all tracks were added, dropping");
+            return;
         }
+        ByteBuffer data = buffer.duplicate();
+        data.position(bufferInfo.offset);
+        data.limit(bufferInfo.offset + bufferInfo.size);
+        ByteBuffer copy = ByteBuffer.allocateDirect(bufferInfo.size);
+        copy.put(data);
+        copy.flip();
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        info.set(0, bufferInfo.size, bufferInfo.presentationTimeUs, bufferInfo.flags);
+        pendingSamples.add(new PendingSample(trackIndex, copy, info));
     }
 
-    public void stop() {
-        if (isMuxerStarted && muxer != null) {
-            try {
+    @Override
+    public synchronized void stop() {
+        if (muxer == null) return;
+        if (!isMuxerStarted && !pendingSamples.isEmpty()) {
+            Log.e(TAG, "Stopped before all " + trackCount + " tracks were added, discarding " + pendingSamples.size() + " samples");
+        }
+        pendingSamples.clear();
+        try {
+            if (isMuxerStarted) {
                 muxer.stop();
-                muxer.release();
-                muxer = null;
-            } catch (Exception e) {
-                e.printStackTrace();
             }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to stop MediaMuxer", e);
+        } finally {
+            muxer.release();
+            muxer = null;
         }
     }
-}
\ No newline at end of file
+}
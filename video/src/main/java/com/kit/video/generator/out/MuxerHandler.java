@@ -0,0 +1,32 @@
+package com.kit.video.generator.out;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 封装器：编码器把输出格式和编码数据交给封装器写入容器文件
+ */
+public interface MuxerHandler {
+    int addVideoTrack(MediaFormat videoFormat);
+
+    int addAudioTrack(MediaFormat audioFormat);
+
+    void startMuxing();
+
+    void writeSampleData(int trackIndex, ByteBuffer buffer, MediaCodec.BufferInfo bufferInfo);
+
+    /**
+     * 写入编码数据，同时给出解码时间戳（有 B 帧重排序时早于 bufferInfo.presentationTimeUs）
+     * <p>
+     * 默认忽略解码时间戳：MediaMuxer 会自行推算，Matroska 不记录解码时间。分片 MP4 用它写出合成时间偏移。
+     *
+     * @param dtsUs 解码时间戳，单位：微秒，严格递增
+     */
+    default void writeSampleData(int trackIndex, ByteBuffer buffer, MediaCodec.BufferInfo bufferInfo, long dtsUs) {
+        writeSampleData(trackIndex, buffer, bufferInfo);
+    }
+
+    void stop();
+}
@@ -0,0 +1,55 @@
+package com.kit.video.generator.out;
+
+import android.media.MediaCodec;
+import android.util.Log;
+
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.raw.WavWriter;
+
+/**
+ * 软件音频“编码器”：不做压缩，直接把 16 位 PCM 写入 WAV 文件
+ */
+public class PcmAudioEncoder implements MediaCodecEncoder {
+    private static final String TAG = "PcmAudioEncoder";
+    private final String outputPath;
+    private final int sampleRate;
+    private final int channelCount;
+    private WavWriter writer;
+
+    public PcmAudioEncoder(String outputPath, int sampleRate, int channelCount) {
+        this.outputPath = outputPath;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        writer = new WavWriter(outputPath, sampleRate, channelCount);
+    }
+
+    @Override
+    public void writeFrame(FrameData frame) throws Exception {
+        if (frame == null || writer == null || frame.isEndOfStream()) return;
+        writer.write(frame.getByteBuffer());
+    }
+
+    @Override
+    public void release() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (Exception e) {
+                Log.e(TAG, "Unable to close " + outputPath, e);
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * 软件编码器没有对应的 MediaCodec
+     */
+    @Override
+    public MediaCodec getEncoder() {
+        return null;
+    }
+}
@@ -0,0 +1,149 @@
+package com.kit.video.generator.out;
+
+import android.util.Log;
+
+/**
+ * 编码器输出时间戳跟踪
+ * <p>
+ * 编码器有延迟，开启 B 帧时输出还会重排序，因此不能把“当前写入的帧”的 PTS 直接用于输出包。
+ * 这里用一个基本类型数组实现的环形表记录已经送入编码器、尚未输出的 PTS，输出时按以下顺序还原：
+ * <ol>
+ *     <li>输出 PTS 与某个待输出的输入 PTS 完全相同（编码器透传了时间戳）时，直接使用；</li>
+ *     <li>否则认为编码器（或输入 Surface）的时间戳与输入之间相差一个固定偏移：第一次无法匹配时，
+ *     以最早的待输出输入为基准求出偏移，之后的输出都减去该偏移，并对齐到误差范围内最接近的输入 PTS。</li>
+ * </ol>
+ * DTS 在没有重排序时等于 PTS（并保证 PTS 严格递增）；有重排序时按解码顺序依次取输入 PTS，再减去重排序延迟。
+ * 两种情况下 DTS 都严格递增，通过 {@link MuxerHandler#writeSampleData(int, java.nio.ByteBuffer, android.media.MediaCodec.BufferInfo, long)}
+ * 交给封装器。预热之后不产生分配。
+ */
+final class PtsTracker {
+    private static final String TAG = "PtsTracker";
+    private static final int CAPACITY = 64;
+    private static final int MASK = CAPACITY - 1;
+    // 偏移模式下，与输入 PTS 相差不超过该值的输出视为同一帧（吸收 Surface 时间戳的抖动），单位：微秒
+    private static final long SNAP_TOLERANCE_US = 5_000;
+
+    // 输入 PTS 环形表（按输入顺序），consumed 标记已经匹配到输出的项
+    private final long[] inputPts = new long[CAPACITY];
+    private final boolean[] consumed = new boolean[CAPACITY];
+    private int matchHead;
+    private int dtsHead;
+    private int tail;
+
+    // 有 B 帧时的重排序延迟，单位：微秒，0 表示没有重排序
+    private final long reorderDelayUs;
+    private boolean offsetKnown;
+    // 偏移是推算出来的（而不是精确匹配得到的），此时允许在误差范围内对齐
+    private boolean snap;
+    private long offsetUs;
+    private long lastPtsUs = Long.MIN_VALUE;
+    private long lastDtsUs = Long.MIN_VALUE;
+
+    private long ptsUs;
+    private long dtsUs;
+
+    /**
+     * @param reorderDelayUs 重排序延迟（最大 B 帧数 × 帧间隔），单位：微秒，没有 B 帧时为 0
+     */
+    PtsTracker(long reorderDelayUs) {
+        this.reorderDelayUs = reorderDelayUs;
+    }
+
+    /**
+     * 记录送入编码器的一帧
+     */
+    void onInput(long ptsUs) {
+        if (tail - Math.min(matchHead, dtsHead) == CAPACITY) {
+            // 编码器丢弃了输入，或者输出与输入不是一一对应（如音频），丢掉最早的记录
+            if (matchHead == tail - CAPACITY) advanceMatchHead(true);
+            if (dtsHead == tail - CAPACITY) dtsHead++;
+        }
+        inputPts[tail & MASK] = ptsUs;
+        consumed[tail & MASK] = false;
+        tail++;
+    }
+
+    /**
+     * 还原一个输出包的时间戳，结果通过 {@link #getPtsUs()} 和 {@link #getDtsUs()} 获取
+     *
+     * @param outputPtsUs 编码器输出的 BufferInfo.presentationTimeUs
+     */
+    void onOutput(long outputPtsUs) {
+        long pts = outputPtsUs;
+        if (offsetKnown) {
+            pts -= offsetUs;
+        }
+        int index = find(pts, snap ? SNAP_TOLERANCE_US : 0);
+        if (index < 0 && !offsetKnown && matchHead < tail) {
+            offsetUs = outputPtsUs - inputPts[matchHead & MASK];
+            offsetKnown = true;
+            snap = true;
+            index = matchHead;
+            Log.d(TAG, "Encoder timestamp offset: " + offsetUs + "us");
+        } else if (index >= 0) {
+            offsetKnown = true;
+        }
+        if (index >= 0) {
+            pts = inputPts[index & MASK];
+            consumed[index & MASK] = true;
+            advanceMatchHead(false);
+        }
+
+        long dts;
+        if (reorderDelayUs == 0) {
+            // 没有重排序：PTS 必须严格递增
+            if (pts <= lastPtsUs) {
+                pts = lastPtsUs + 1;
+            }
+            dts = pts;
+            dtsHead = matchHead;
+        } else {
+            dts = dtsHead < tail ? inputPts[dtsHead & MASK] - reorderDelayUs : pts - reorderDelayUs;
+            if (dtsHead < tail) dtsHead++;
+        }
+        if (dts <= lastDtsUs) {
+            dts = lastDtsUs + 1;
+        }
+        lastPtsUs = pts;
+        lastDtsUs = dts;
+        ptsUs = pts;
+        dtsUs = dts;
+    }
+
+    long getPtsUs() {
+        return ptsUs;
+    }
+
+    long getDtsUs() {
+        return dtsUs;
+    }
+
+    /**
+     * 在待输出的输入中查找误差范围内最接近的 PTS
+     *
+     * @return 序号，找不到时返回 -1
+     */
+    private int find(long pts, long toleranceUs) {
+        int result = -1;
+        long best = toleranceUs;
+        for (int i = matchHead; i < tail; i++) {
+            if (consumed[i & MASK]) continue;
+            long diff = Math.abs(inputPts[i & MASK] - pts);
+            if (diff <= best) {
+                best = diff;
+                result = i;
+                if (diff == 0) break;
+            }
+        }
+        return result;
+    }
+
+    private void advanceMatchHead(boolean force) {
+        if (force) {
+            matchHead++;
+        }
+        while (matchHead < tail && consumed[matchHead & MASK]) {
+            matchHead++;
+        }
+    }
+}
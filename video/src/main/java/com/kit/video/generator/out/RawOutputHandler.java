@@ -0,0 +1,79 @@
+package com.kit.video.generator.out;
+
+import android.util.Log;
+
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.OutputHandler;
+import com.kit.video.generator.base.PixelFormat;
+
+/**
+ * 软件输出处理类：视频写入 YUV4MPEG2（.y4m）或原始 YUV 文件，音频写入 WAV 文件，不依赖 MediaCodec/MediaMuxer
+ */
+public class RawOutputHandler implements OutputHandler {
+    private static final String TAG = "RawOutputHandler";
+    private final RawVideoEncoder videoEncoder;
+    private final PcmAudioEncoder audioEncoder;
+
+    public RawOutputHandler(String videoPath, String audioPath, int width, int height, int frameRateNum, int frameRateDen,
+                            int sampleRate, int channelCount) {
+        this(videoPath, audioPath, width, height, PixelFormat.I420, frameRateNum, frameRateDen, sampleRate, channelCount);
+    }
+
+    /**
+     * @param videoPath    视频输出路径（.y4m 或原始 YUV）
+     * @param audioPath    音频输出路径（.wav），为 null 时丢弃音频
+     * @param width        视频宽度
+     * @param height       视频高度
+     * @param pixelFormat  视频像素布局（.y4m 只支持 I420）
+     * @param frameRateNum 帧率分子
+     * @param frameRateDen 帧率分母
+     * @param sampleRate   音频采样率
+     * @param channelCount 音频声道数
+     */
+    public RawOutputHandler(String videoPath, String audioPath, int width, int height, PixelFormat pixelFormat,
+                            int frameRateNum, int frameRateDen, int sampleRate, int channelCount) {
+        videoEncoder = new RawVideoEncoder(videoPath, width, height, pixelFormat, frameRateNum, frameRateDen);
+        audioEncoder = audioPath != null ? new PcmAudioEncoder(audioPath, sampleRate, channelCount) : null;
+    }
+
+    @Override
+    public boolean initialize() {
+        try {
+            videoEncoder.initialize();
+            if (audioEncoder != null) {
+                audioEncoder.initialize();
+            }
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Initialization failed", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void writeVideoFrame(FrameData frame) {
+        try {
+            videoEncoder.writeFrame(frame);
+        } catch (Exception e) {
+            Log.e(TAG, "Error writing video frame", e);
+        }
+    }
+
+    @Override
+    public void writeAudioFrame(FrameData frame) {
+        if (audioEncoder == null) return;
+        try {
+            audioEncoder.writeFrame(frame);
+        } catch (Exception e) {
+            Log.e(TAG, "Error writing audio frame", e);
+        }
+    }
+
+    @Override
+    public void release() {
+        videoEncoder.release();
+        if (audioEncoder != null) {
+            audioEncoder.release();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.kit.video.generator.out;
+
+import android.media.MediaCodec;
+import android.util.Log;
+
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.PixelFormat;
+import com.kit.video.generator.raw.FrameFiles;
+import com.kit.video.generator.raw.FrameWriter;
+
+/**
+ * 软件视频“编码器”：不做压缩，直接把原始帧写入 YUV4MPEG2 文件（.y4m）或无文件头的原始 YUV 文件
+ * <p>
+ * 用于没有 MediaCodec 的环境（单元测试、无编解码器的模拟器），以及把管道本身的开销与编解码开销分开测量。
+ */
+public class RawVideoEncoder implements MediaCodecEncoder {
+    private static final String TAG = "RawVideoEncoder";
+    private final String outputPath;
+    private final int width;
+    private final int height;
+    private final PixelFormat pixelFormat;
+    private final int frameRateNum;
+    private final int frameRateDen;
+    private FrameWriter writer;
+    private int frameCount;
+
+    public RawVideoEncoder(String outputPath, int width, int height, int frameRateNum, int frameRateDen) {
+        this(outputPath, width, height, PixelFormat.I420, frameRateNum, frameRateDen);
+    }
+
+    public RawVideoEncoder(String outputPath, int width, int height, PixelFormat pixelFormat, int frameRateNum, int frameRateDen) {
+        this.outputPath = outputPath;
+        this.width = width;
+        this.height = height;
+        this.pixelFormat = pixelFormat;
+        this.frameRateNum = frameRateNum;
+        this.frameRateDen = frameRateDen;
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        writer = FrameFiles.openWriter(outputPath, width, height, pixelFormat, frameRateNum, frameRateDen);
+    }
+
+    @Override
+    public void writeFrame(FrameData frame) throws Exception {
+        if (frame == null || writer == null || frame.isEndOfStream()) return;
+        writer.writeFrame(frame.getByteBuffer());
+        frameCount++;
+    }
+
+    @Override
+    public void release() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (Exception e) {
+                Log.e(TAG, "Unable to close " + outputPath, e);
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * 软件编码器没有对应的 MediaCodec
+     */
+    @Override
+    public MediaCodec getEncoder() {
+        return null;
+    }
+
+    /**
+     * 获取已写入的帧数
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+}
@@ -0,0 +1,92 @@
+package com.kit.video.generator.out;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 分段合并：将多个独立的 MP4 分段按时间顺序重新封装为一个文件（不重新编码）
+ */
+public class SegmentMerger {
+    private static final String TAG = "SegmentMerger";
+    private static final int DEFAULT_BUFFER_SIZE = 2 * 1024 * 1024;
+
+    /**
+     * 合并分段
+     *
+     * @param segmentPaths    分段文件路径，按时间顺序排列
+     * @param segmentStartsUs 每个分段在最终时间轴上的起始时间戳，单位：微秒
+     * @param outputPath      输出文件路径
+     */
+    public static void merge(List<String> segmentPaths, List<Long> segmentStartsUs, String outputPath) throws IOException {
+        MediaMuxer muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        int videoTrack = -1;
+        int audioTrack = -1;
+        boolean started = false;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE);
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        try {
+            for (int i = 0; i < segmentPaths.size(); i++) {
+                MediaExtractor extractor = new MediaExtractor();
+                try {
+                    extractor.setDataSource(segmentPaths.get(i));
+                    // 分段内轨道索引 -> 输出轨道索引
+                    int[] trackMap = new int[extractor.getTrackCount()];
+                    for (int t = 0; t < trackMap.length; t++) {
+                        MediaFormat format = extractor.getTrackFormat(t);
+                        String mime = format.getString(MediaFormat.KEY_MIME);
+                        trackMap[t] = -1;
+                        if (mime == null) continue;
+                        if (mime.startsWith("video/")) {
+                            if (videoTrack < 0 && !started) videoTrack = muxer.addTrack(format);
+                            trackMap[t] = videoTrack;
+                        } else if (mime.startsWith("audio/")) {
+                            if (audioTrack < 0 && !started) audioTrack = muxer.addTrack(format);
+                            trackMap[t] = audioTrack;
+                        }
+                        if (trackMap[t] >= 0) {
+                            extractor.selectTrack(t);
+                            if (format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
+                                    && format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE) > buffer.capacity()) {
+                                buffer = ByteBuffer.allocateDirect(format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE));
+                            }
+                        }
+                    }
+                    if (!started) {
+                        muxer.start();
+                        started = true;
+                    }
+                    // 分段文件内的时间戳以第一个样本为基准，映射到最终时间轴
+                    long baseUs = extractor.getSampleTime();
+                    long offsetUs = segmentStartsUs.get(i) - Math.max(baseUs, 0);
+                    while (true) {
+                        int size = extractor.readSampleData(buffer, 0);
+                        if (size < 0) break;
+                        int track = trackMap[extractor.getSampleTrackIndex()];
+                        if (track >= 0) {
+                            int flags = (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                                    ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+                            info.set(0, size, extractor.getSampleTime() + offsetUs, flags);
+                            muxer.writeSampleData(track, buffer, info);
+                        }
+                        extractor.advance();
+                    }
+                } finally {
+                    extractor.release();
+                }
+                Log.d(TAG, "Merged segment " + i);
+            }
+        } finally {
+            if (started) {
+                muxer.stop();
+            }
+            muxer.release();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.kit.video.generator.out;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 纯 Java 流式封装器的公共部分
+ * <p>
+ * 流式容器的文件头需要包含全部轨道，因此要等 trackCount 个轨道都添加后才真正开始写入，
+ * 在此之前到达的编码数据会先复制一份暂存。方法是同步的，音视频编码器可以在不同线程中调用。
+ */
+abstract class StreamingMuxerHandler implements MuxerHandler {
+    private static final String TAG = "StreamingMuxerHandler";
+    // 开始写入前最多暂存的编码帧数
+    private static final int MAX_PENDING_SAMPLES = 256;
+
+    private static final class PendingSample {
+        final int trackIndex;
+        final ByteBuffer data;
+        final long ptsUs;
+        final long dtsUs;
+        final boolean keyFrame;
+
+        PendingSample(int trackIndex, ByteBuffer data, long ptsUs, long dtsUs, boolean keyFrame) {
+            this.trackIndex = trackIndex;
+            this.data = data;
+            this.ptsUs = ptsUs;
+            this.dtsUs = dtsUs;
+            this.keyFrame = keyFrame;
+        }
+    }
+
+    private final int trackCount;
+    private final List<PendingSample> pendingSamples = new ArrayList<>();
+    private int addedTracks;
+    private boolean isMuxerStarted;
+    private boolean isStopped;
+
+    /**
+     * @param trackCount 轨道数量（有音频时为 2，否则为 1）
+     */
+    StreamingMuxerHandler(int trackCount) {
+        this.trackCount = trackCount;
+    }
+
+    /**
+     * 添加视频轨道
+     *
+     * @return 轨道索引
+     */
+    protected abstract int onAddVideoTrack(MediaFormat videoFormat);
+
+    /**
+     * 添加音频轨道
+     *
+     * @return 轨道索引
+     */
+    protected abstract int onAddAudioTrack(MediaFormat audioFormat);
+
+    /**
+     * 写出文件头
+     */
+    protected abstract void onStart() throws IOException;
+
+    /**
+     * 写入一个编码帧，data 只在调用期间有效；编码帧按解码顺序到达，没有 B 帧时 dtsUs 等于 ptsUs
+     */
+    protected abstract void onWriteSample(int trackIndex, ByteBuffer data, long ptsUs, long dtsUs, boolean keyFrame) throws IOException;
+
+    /**
+     * 写出剩余数据并结束
+     */
+    protected abstract void onStop() throws IOException;
+
+    @Override
+    public synchronized int addVideoTrack(MediaFormat videoFormat) {
+        int index = onAddVideoTrack(videoFormat);
+        addedTracks++;
+        return index;
+    }
+
+    @Override
+    public synchronized int addAudioTrack(MediaFormat audioFormat) {
+        int index = onAddAudioTrack(audioFormat);
+        addedTracks++;
+        return index;
+    }
+
+    /**
+     * 所有轨道都添加后开始写入
+     */
+    @Override
+    public synchronized void startMuxing() {
+        if (isMuxerStarted || isStopped || addedTracks < trackCount) return;
+        try {
+            onStart();
+            isMuxerStarted = true;
+            for (PendingSample sample : pendingSamples) {
+                onWriteSample(sample.trackIndex, sample.data, sample.ptsUs, sample.dtsUs, sample.keyFrame);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start output", e);
+        }
+        pendingSamples.clear();
+    }
+
+    @Override
+    public void writeSampleData(int trackIndex, ByteBuffer buffer, MediaCodec.BufferInfo bufferInfo) {
+        writeSampleData(trackIndex, buffer, bufferInfo, bufferInfo.presentationTimeUs);
+    }
+
+    @Override
+    public synchronized void writeSampleData(int trackIndex, ByteBuffer buffer, MediaCodec.BufferInfo bufferInfo, long dtsUs) {
+        if (isStopped) return;
+        ByteBuffer data = buffer.duplicate();
+        data.position(bufferInfo.offset);
+        data.limit(bufferInfo.offset + bufferInfo.size);
+        boolean keyFrame = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+        if (!isMuxerStarted) {
+            if (pendingSamples.size() >= MAX_PENDING_SAMPLES) {
+                Log.w(TAG, "Too many samples before all tracks were added, dropping");
+                return;
+            }
+            ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+            copy.put(data);
+            copy.flip();
+            pendingSamples.add(new PendingSample(trackIndex, copy, bufferInfo.presentationTimeUs, dtsUs, keyFrame));
+            return;
+        }
+        try {
+            onWriteSample(trackIndex, data, bufferInfo.presentationTimeUs, dtsUs, keyFrame);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write sample", e);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (isStopped) return;
+        isStopped = true;
+        try {
+            onStop();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to finish output", e);
+        }
+    }
+
+    /**
+     * 读取 MediaFormat 中的编码私有数据（csd-N），没有时返回 null
+     */
+    static byte[] getCodecSpecificData(MediaFormat format, String key) {
+        if (!format.containsKey(key)) return null;
+        ByteBuffer csd = format.getByteBuffer(key).duplicate();
+        byte[] data = new byte[csd.remaining()];
+        csd.get(data);
+        return data;
+    }
+}
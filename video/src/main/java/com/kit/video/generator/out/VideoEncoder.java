@@ -4,10 +4,13 @@ import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaCodecList;
 import android.media.MediaFormat;
+import android.os.Build;
+import android.os.Bundle;
 import android.util.Log;
 import android.view.Surface;
 
 import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.PixelFormat;
 
 import java.nio.ByteBuffer;
 
@@ -18,14 +21,38 @@ public class VideoEncoder implements MediaCodecEncoder {
     private Surface inputSurface;
     private int trackIndex;
     private final boolean needInputSurface;
-    private final MediaMuxerHandler muxerHandler;
+    private final MuxerHandler muxerHandler;
     private final int outputWidth;
     private final int outputHeight;
+    // 最大连续 B 帧数，0 表示不使用 B 帧
+    private final int maxBFrames;
+    private final String mimeType;
+    private PtsTracker ptsTracker;
+    // 编码器的输入颜色格式（Surface 模式下为 COLOR_FormatSurface）
+    private int colorFormat;
     int frameRate;
     int iFrameInterval;
     int videoBitRate;
 
-    public VideoEncoder(MediaMuxerHandler muxerHandler, int outputWidth, int outputHeight, boolean needInputSurface) {
+    public VideoEncoder(MuxerHandler muxerHandler, int outputWidth, int outputHeight, boolean needInputSurface) {
+        this(muxerHandler, outputWidth, outputHeight, needInputSurface, 0);
+    }
+
+    /**
+     * @param maxBFrames 最大连续 B 帧数（需要 Android 10 及以上，并且编码器支持 High Profile），0 表示不使用 B 帧
+     */
+    public VideoEncoder(MuxerHandler muxerHandler, int outputWidth, int outputHeight, boolean needInputSurface, int maxBFrames) {
+        this(muxerHandler, outputWidth, outputHeight, needInputSurface, maxBFrames, MediaFormat.MIMETYPE_VIDEO_AVC);
+    }
+
+    /**
+     * @param maxBFrames 最大连续 B 帧数（只对 H.264 有效），0 表示不使用 B 帧
+     * @param mimeType   视频编码格式，如 {@link MediaFormat#MIMETYPE_VIDEO_AVC}、{@link MediaFormat#MIMETYPE_VIDEO_VP9}
+     */
+    public VideoEncoder(MuxerHandler muxerHandler, int outputWidth, int outputHeight, boolean needInputSurface, int maxBFrames,
+                        String mimeType) {
+        this.mimeType = mimeType;
+        this.maxBFrames = maxBFrames;
         this.needInputSurface = needInputSurface;
         this.muxerHandler = muxerHandler; // 传入 muxerHandler
         this.outputWidth = outputWidth;
@@ -34,21 +61,37 @@ public class VideoEncoder implements MediaCodecEncoder {
 
     @Override
     public void initialize() throws Exception {
-        String videoMimeType = "video/avc";
+        String videoMimeType = mimeType;
         MediaCodecInfo videoCodecInfo = checkVideoCodec(videoMimeType);
         if (videoCodecInfo == null) {
-            throw new RuntimeException("Unable to find H.264 video encoder");
+            throw new RuntimeException("Unable to find video encoder for " + videoMimeType);
         }
         frameRate = 60;
         iFrameInterval = 1;
         videoBitRate = (int) (0.25f * frameRate * outputWidth * outputHeight);
         MediaFormat videoFormat = MediaFormat.createVideoFormat(videoMimeType, outputWidth, outputHeight);
-        videoFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        videoFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT, colorFormat);
         videoFormat.setInteger(MediaFormat.KEY_BIT_RATE, videoBitRate);
         videoFormat.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
         videoFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, iFrameInterval);
+        int bFrames = 0;
+        if (maxBFrames > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                && MediaFormat.MIMETYPE_VIDEO_AVC.equals(videoMimeType)) {
+            MediaCodecInfo.CodecProfileLevel high = findProfileLevel(videoCodecInfo, videoMimeType,
+                    MediaCodecInfo.CodecProfileLevel.AVCProfileHigh);
+            if (high != null) {
+                // Baseline Profile 不支持 B 帧
+                videoFormat.setInteger(MediaFormat.KEY_PROFILE, high.profile);
+                videoFormat.setInteger(MediaFormat.KEY_LEVEL, high.level);
+                videoFormat.setInteger(MediaFormat.KEY_MAX_B_FRAMES, maxBFrames);
+                bFrames = maxBFrames;
+            } else {
+                Log.w(TAG, "High profile not supported, B-frames disabled");
+            }
+        }
+        ptsTracker = new PtsTracker(bFrames * 1000000L / frameRate);
 
-        videoEncoder = MediaCodec.createEncoderByType(videoMimeType);
+        videoEncoder = MediaCodec.createByCodecName(videoCodecInfo.getName());
         videoEncoder.configure(videoFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
         if (needInputSurface) {
             inputSurface = videoEncoder.createInputSurface();
@@ -64,6 +107,8 @@ public class VideoEncoder implements MediaCodecEncoder {
             if (frame.isEndOfStream()) {
                 videoEncoder.signalEndOfInputStream();
                 Log.d(TAG, "signalEndOfInputStream");
+            } else {
+                ptsTracker.onInput(frame.getPts());
             }
         } else {
             int inputBufferIndex = videoEncoder.dequeueInputBuffer(-1);
@@ -71,10 +116,14 @@ public class VideoEncoder implements MediaCodecEncoder {
                 ByteBuffer inputBuffer = videoEncoder.getInputBuffer(inputBufferIndex);
                 assert inputBuffer != null;
                 inputBuffer.clear();
+                int size = 0;
                 if (!frame.isEndOfStream()) {
-                    inputBuffer.put(frame.getByteBuffer());
+                    ByteBuffer data = frame.getByteBuffer();
+                    size = data.remaining();
+                    inputBuffer.put(data);
+                    ptsTracker.onInput(frame.getPts());
                 }
-                videoEncoder.queueInputBuffer(inputBufferIndex, 0, frame.getByteBuffer().limit(), frame.getPts(),
+                videoEncoder.queueInputBuffer(inputBufferIndex, 0, size, frame.getPts(),
                         frame.isEndOfStream() ? MediaCodec.BUFFER_FLAG_END_OF_STREAM : 0);
             }
         }
@@ -132,10 +181,10 @@ public class VideoEncoder implements MediaCodecEncoder {
                 if (bufferInfo.size != 0) {
                     // 编码数据已准备好，清除等待计数器
                     waitCount = 0;
-                    //写入编码数据到混频器(需要调整presentationTimeUs)。
-                    bufferInfo.presentationTimeUs = frameData.getPts();
-                    Log.w(TAG, frameData.isEndOfStream() + "=writeSampleData=" + frameData.getPts());
-                    muxerHandler.writeSampleData(trackIndex, encodedData, bufferInfo);
+                    //写入编码数据到混频器，时间戳还原为对应输入帧的 PTS（编码器有延迟，可能还有 B 帧重排序）
+                    ptsTracker.onOutput(bufferInfo.presentationTimeUs);
+                    bufferInfo.presentationTimeUs = ptsTracker.getPtsUs();
+                    muxerHandler.writeSampleData(trackIndex, encodedData, bufferInfo, ptsTracker.getDtsUs());
                 }
                 // 将缓冲区返回给编码器
                 encoder.releaseOutputBuffer(encoderStatus, false);
@@ -162,6 +211,16 @@ public class VideoEncoder implements MediaCodecEncoder {
         return videoEncoder;
     }
 
+    /**
+     * 请求编码器尽快输出一个关键帧（如直播切片需要在分片边界处开始新的 GOP）
+     */
+    public void requestKeyFrame() {
+        if (videoEncoder == null) return;
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+        videoEncoder.setParameters(params);
+    }
+
     public Surface getInputSurface() {
         return inputSurface;
     }
@@ -170,6 +229,29 @@ public class VideoEncoder implements MediaCodecEncoder {
         return frameRate;
     }
 
+    /**
+     * 获取字节缓冲区模式下编码器需要的输入像素格式
+     *
+     * @return 像素格式，Surface 模式下返回 null
+     */
+    public PixelFormat getInputPixelFormat() {
+        return needInputSurface ? null : PixelFormat.fromColorFormat(colorFormat);
+    }
+
+    /**
+     * 设备上是否有指定 MIME 类型的视频编码器
+     */
+    public static boolean hasEncoder(final String mimeType) {
+        MediaCodecList list = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        for (MediaCodecInfo codecInfo : list.getCodecInfos()) {
+            if (!codecInfo.isEncoder()) continue;
+            for (String type : codecInfo.getSupportedTypes()) {
+                if (type.equalsIgnoreCase(mimeType)) return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 查找支持特定 MIME 类型的编码器
      *
@@ -189,6 +271,7 @@ public class VideoEncoder implements MediaCodecEncoder {
                     Log.i(TAG, "找到编码器: " + codecInfo.getName() + ", MIME=" + type);
                     int format = selectColorFormat(codecInfo, mimeType);
                     if (format > 0) {
+                        colorFormat = format;
                         return codecInfo;
                     }
                 }
@@ -197,8 +280,26 @@ public class VideoEncoder implements MediaCodecEncoder {
         return null;
     }
 
+    /**
+     * 查找编码器支持的指定 Profile 的最高 Level
+     *
+     * @return 匹配的 Profile/Level，如果没有则返回 null
+     */
+    private MediaCodecInfo.CodecProfileLevel findProfileLevel(final MediaCodecInfo codecInfo, final String mimeType, int profile) {
+        MediaCodecInfo.CodecProfileLevel result = null;
+        for (MediaCodecInfo.CodecProfileLevel profileLevel : codecInfo.getCapabilitiesForType(mimeType).profileLevels) {
+            if (profileLevel.profile == profile && (result == null || profileLevel.level > result.level)) {
+                result = profileLevel;
+            }
+        }
+        return result;
+    }
+
     /**
      * 选择编码器支持的颜色格式
+     * <p>
+     * Surface 模式下需要 COLOR_FormatSurface；字节缓冲区模式下优先选择 NV12（多数硬件编码器的原生格式），
+     * 其次是 I420，再其次是其他可以识别布局的 YUV 格式。
      *
      * @param codecInfo 编解码器信息
      * @param mimeType  MIME 类型
@@ -206,10 +307,29 @@ public class VideoEncoder implements MediaCodecEncoder {
      */
     private int selectColorFormat(final MediaCodecInfo codecInfo, final String mimeType) {
         final MediaCodecInfo.CodecCapabilities caps = codecInfo.getCapabilitiesForType(mimeType);
-        for (int colorFormat : caps.colorFormats) {
-            // 检查颜色格式是否为 Surface 格式
-            if (colorFormat == MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface) {
-                return colorFormat;
+        if (needInputSurface) {
+            for (int colorFormat : caps.colorFormats) {
+                // 检查颜色格式是否为 Surface 格式
+                if (colorFormat == MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface) {
+                    return colorFormat;
+                }
+            }
+        } else {
+            int[] preferred = {
+                    MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420SemiPlanar,
+                    MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Planar
+            };
+            for (int wanted : preferred) {
+                for (int colorFormat : caps.colorFormats) {
+                    if (colorFormat == wanted) {
+                        return colorFormat;
+                    }
+                }
+            }
+            for (int colorFormat : caps.colorFormats) {
+                if (PixelFormat.fromColorFormat(colorFormat) != null) {
+                    return colorFormat;
+                }
             }
         }
         Log.e(TAG, "无法找到合适的颜色格式: " + codecInfo.getName() + " / " + mimeType);
@@ -0,0 +1,75 @@
+package com.kit.video.generator.out;
+
+import android.media.MediaFormat;
+
+import com.kit.video.generator.container.WebmWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 基于纯 Java {@link WebmWriter} 的 WebM 封装器，用于 MediaMuxer 不可用的场景
+ * <p>
+ * 支持 VP8/VP9/AV1 视频和 Opus 音频。
+ */
+public class WebmMuxerHandler extends StreamingMuxerHandler {
+    private final WebmWriter writer;
+
+    /**
+     * @param outputPath 输出路径
+     * @param trackCount 轨道数量（有音频时为 2，否则为 1）
+     */
+    public WebmMuxerHandler(String outputPath, int trackCount) throws IOException {
+        super(trackCount);
+        this.writer = new WebmWriter(outputPath);
+    }
+
+    @Override
+    protected int onAddVideoTrack(MediaFormat videoFormat) {
+        String codecId = getVideoCodecId(videoFormat.getString(MediaFormat.KEY_MIME));
+        return writer.addVideoTrack(codecId, videoFormat.getInteger(MediaFormat.KEY_WIDTH),
+                videoFormat.getInteger(MediaFormat.KEY_HEIGHT), getCodecSpecificData(videoFormat, "csd-0"));
+    }
+
+    @Override
+    protected int onAddAudioTrack(MediaFormat audioFormat) {
+        String mimeType = audioFormat.getString(MediaFormat.KEY_MIME);
+        if (!MediaFormat.MIMETYPE_AUDIO_OPUS.equals(mimeType)) {
+            throw new IllegalArgumentException("Unsupported WebM audio codec: " + mimeType);
+        }
+        // Opus：csd-0 为 OpusHead，csd-1/csd-2 为编码器延迟和定位预解码时长（纳秒，本机字节序的 64 位整数）
+        return writer.addAudioTrack(WebmWriter.CODEC_OPUS, audioFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                audioFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT), getCodecSpecificData(audioFormat, "csd-0"),
+                getCodecSpecificLong(audioFormat, "csd-1"), getCodecSpecificLong(audioFormat, "csd-2"));
+    }
+
+    @Override
+    protected void onStart() throws IOException {
+        writer.start();
+    }
+
+    @Override
+    protected void onWriteSample(int trackIndex, ByteBuffer data, long ptsUs, long dtsUs, boolean keyFrame) throws IOException {
+        // Matroska 的块只记录显示时间，按到达（解码）顺序写入即可
+        writer.writeSample(trackIndex, data, ptsUs, keyFrame);
+    }
+
+    @Override
+    protected void onStop() throws IOException {
+        writer.close();
+    }
+
+    private static String getVideoCodecId(String mimeType) {
+        if (MediaFormat.MIMETYPE_VIDEO_VP9.equals(mimeType)) return WebmWriter.CODEC_VP9;
+        if (MediaFormat.MIMETYPE_VIDEO_VP8.equals(mimeType)) return WebmWriter.CODEC_VP8;
+        if (MediaFormat.MIMETYPE_VIDEO_AV1.equals(mimeType)) return WebmWriter.CODEC_AV1;
+        throw new IllegalArgumentException("Unsupported WebM video codec: " + mimeType);
+    }
+
+    private static long getCodecSpecificLong(MediaFormat format, String key) {
+        if (!format.containsKey(key)) return 0;
+        ByteBuffer csd = format.getByteBuffer(key).duplicate().order(ByteOrder.nativeOrder());
+        return csd.remaining() >= 8 ? csd.getLong(csd.position()) : 0;
+    }
+}
@@ -0,0 +1,143 @@
+package com.kit.video.generator.process;
+
+import android.util.Log;
+
+import com.kit.video.generator.base.BufferPool;
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.FrameProcessor;
+import com.kit.video.generator.base.PcmFormat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 音频格式转换阶段：把输入帧（按 {@link FrameData#getPcmFormat()} 描述的格式）转换为编码器需要的采样率和声道数
+ * <p>
+ * 声道数减少时先混合再重采样，增加时先重采样再混合，以减少重采样的计算量。
+ * 输出 PTS 由累计输出的采样数推算，输入时间戳不连续（如定位）时重新对齐。
+ * 格式未知或与目标相同的帧直接透传。中间数组和输出缓冲区都会复用，稳定后不产生分配。
+ */
+public class AudioConvertProcessor implements FrameProcessor {
+    private static final String TAG = "AudioConvertProcessor";
+    private static final int MAX_POOLED_BUFFERS = 8;
+    // 输入时间戳与推算的时间戳相差超过该值时重新对齐，单位：微秒
+    private static final long RESYNC_THRESHOLD_US = 100_000;
+
+    private final PcmFormat targetFormat;
+    private final AudioResampler.Quality quality;
+    private PcmFormat sourceFormat;
+    private ChannelMixer mixer;
+    private AudioResampler resampler;
+    private BufferPool pool;
+    private short[] input = new short[0];
+    private short[] mixed = new short[0];
+    private short[] output = new short[0];
+
+    // 时间戳推算
+    private long anchorPtsUs = -1;
+    private long outputFrames;
+    private long expectedInputPtsUs;
+
+    public AudioConvertProcessor(PcmFormat targetFormat) {
+        this(targetFormat, AudioResampler.Quality.MEDIUM);
+    }
+
+    public AudioConvertProcessor(PcmFormat targetFormat, AudioResampler.Quality quality) {
+        this.targetFormat = targetFormat;
+        this.quality = quality;
+    }
+
+    @Override
+    public FrameData process(FrameData frame) {
+        PcmFormat format = frame.getPcmFormat();
+        if (frame.isEndOfStream() || frame.getByteBuffer() == null
+                || format == null || format.equals(targetFormat)) {
+            return frame;
+        }
+        if (!format.equals(sourceFormat)) {
+            configure(format);
+        }
+        ByteBuffer data = frame.getByteBuffer();
+        int frames = data.remaining() / format.getBytesPerFrame();
+        input = ensure(input, frames * format.getChannelCount());
+        data.duplicate().order(ByteOrder.nativeOrder()).asShortBuffer().get(input, 0, frames * format.getChannelCount());
+
+        // 先把声道数较少的一侧交给重采样器
+        int inChannels = format.getChannelCount();
+        int outChannels = targetFormat.getChannelCount();
+        short[] resampleInput = input;
+        if (outChannels < inChannels) {
+            mixed = ensure(mixed, frames * outChannels);
+            mixer.mix(input, frames, mixed);
+            resampleInput = mixed;
+        }
+        int outFrames = frames;
+        short[] result = resampleInput;
+        if (resampler != null) {
+            output = ensure(output, resampler.getMaxOutputFrames(frames) * resampler.getChannels());
+            outFrames = resampler.process(resampleInput, frames, output);
+            result = output;
+        }
+        if (outChannels > inChannels) {
+            mixed = ensure(mixed, outFrames * outChannels);
+            mixer.mix(result, outFrames, mixed);
+            result = mixed;
+        }
+
+        long ptsUs = nextPts(frame.getPts(), format, frames, outFrames);
+        if (outFrames == 0) {
+            // 重采样器还在积累历史采样
+            frame.recycle();
+            return null;
+        }
+        int bytes = outFrames * targetFormat.getBytesPerFrame();
+        if (pool == null || pool.getBufferSize() < bytes) {
+            pool = new BufferPool(Math.max(bytes, 8192), MAX_POOLED_BUFFERS);
+        }
+        ByteBuffer out = pool.acquire().order(ByteOrder.nativeOrder());
+        out.asShortBuffer().put(result, 0, outFrames * outChannels);
+        out.limit(bytes);
+        FrameData converted = new FrameData(out, ptsUs, pool);
+        converted.setPcmFormat(targetFormat);
+        frame.recycle();
+        return converted;
+    }
+
+    /**
+     * 计算输出块的 PTS（第一个采样的时间）
+     */
+    private long nextPts(long inputPtsUs, PcmFormat format, int inputFrames, int producedFrames) {
+        if (anchorPtsUs < 0 || Math.abs(inputPtsUs - expectedInputPtsUs) > RESYNC_THRESHOLD_US) {
+            anchorPtsUs = inputPtsUs;
+            outputFrames = 0;
+        }
+        expectedInputPtsUs = inputPtsUs + format.framesToUs(inputFrames);
+        long ptsUs = anchorPtsUs + targetFormat.framesToUs(outputFrames);
+        outputFrames += producedFrames;
+        return ptsUs;
+    }
+
+    private void configure(PcmFormat format) {
+        Log.d(TAG, "Converting " + format + " -> " + targetFormat);
+        sourceFormat = format;
+        int inChannels = format.getChannelCount();
+        int outChannels = targetFormat.getChannelCount();
+        mixer = inChannels != outChannels ? new ChannelMixer(inChannels, outChannels) : null;
+        resampler = format.getSampleRate() != targetFormat.getSampleRate()
+                ? new AudioResampler(format.getSampleRate(), targetFormat.getSampleRate(), Math.min(inChannels, outChannels), quality)
+                : null;
+        anchorPtsUs = -1;
+    }
+
+    private static short[] ensure(short[] array, int length) {
+        return array.length >= length ? array : new short[length];
+    }
+
+    public PcmFormat getTargetFormat() {
+        return targetFormat;
+    }
+
+    @Override
+    public void release() {
+    }
+}
@@ -0,0 +1,189 @@
+package com.kit.video.generator.process;
+
+import java.util.Arrays;
+
+/**
+ * 流式采样率转换：多相（polyphase）加窗 sinc 插值，输入输出都是交错排列的 16 位 PCM
+ * <p>
+ * 滤波器系数在构造时按相位预先计算（Blackman 窗，每个相位归一化为单位直流增益），降采样时截止频率随之降低以抑制混叠。
+ * 输入的尾部保留在内部的历史缓冲区中，跨调用连续处理；输出的第 0 个采样与输入的第 0 个采样对齐。
+ * 历史缓冲区只在输入块变大时增长，稳定后不产生分配。
+ */
+public class AudioResampler {
+
+    /**
+     * 质量档位：零点数越多、相位越多，阻带衰减越大，计算量也越大
+     */
+    public enum Quality {
+        LOW(8, 64),
+        MEDIUM(16, 256),
+        HIGH(32, 1024);
+
+        // 单侧的 sinc 零点数
+        final int zeroCrossings;
+        // 每个输入采样间隔内的相位数
+        final int phases;
+
+        Quality(int zeroCrossings, int phases) {
+            this.zeroCrossings = zeroCrossings;
+            this.phases = phases;
+        }
+    }
+
+    // 截止频率相对奈奎斯特频率的比例，为过渡带留出空间
+    private static final double ROLLOFF = 0.95;
+
+    private final int inputRate;
+    private final int outputRate;
+    private final int channels;
+    private final int phases;
+    // 单侧的抽头数（以输入采样计）和总抽头数
+    private final int halfWidth;
+    private final int taps;
+    // 系数表：coefficients[phase * taps + k]，共 phases + 1 个相位
+    private final float[] coefficients;
+    // 每个输出采样在输入上前进的距离，32.32 定点
+    private final long step;
+
+    // 各声道的历史采样
+    private float[][] history;
+    private int buffered;
+    // 下一个输出采样在历史缓冲区中的位置，32.32 定点
+    private long position;
+
+    public AudioResampler(int inputRate, int outputRate, int channels, Quality quality) {
+        if (inputRate <= 0 || outputRate <= 0 || channels <= 0) {
+            throw new IllegalArgumentException("Invalid resampler parameters");
+        }
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        this.channels = channels;
+        this.phases = quality.phases;
+        double cutoff = Math.min(1.0, (double) outputRate / inputRate) * ROLLOFF;
+        this.halfWidth = (int) Math.ceil(quality.zeroCrossings / cutoff);
+        this.taps = 2 * halfWidth;
+        this.coefficients = createCoefficients(cutoff);
+        this.step = ((long) inputRate << 32) / outputRate;
+        this.history = new float[channels][taps + 4096];
+        reset();
+    }
+
+    private float[] createCoefficients(double cutoff) {
+        float[] table = new float[(phases + 1) * taps];
+        for (int p = 0; p <= phases; p++) {
+            double fraction = (double) p / phases;
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                // 抽头 k 对应的输入采样与插值位置之间的距离
+                double d = k - halfWidth + 1 - fraction;
+                double x = cutoff * d;
+                double sinc = Math.abs(x) < 1e-9 ? 1.0 : Math.sin(Math.PI * x) / (Math.PI * x);
+                double t = d / halfWidth;
+                double window = Math.abs(t) >= 1 ? 0
+                        : 0.42 + 0.5 * Math.cos(Math.PI * t) + 0.08 * Math.cos(2 * Math.PI * t);
+                double value = cutoff * sinc * window;
+                table[p * taps + k] = (float) value;
+                sum += value;
+            }
+            for (int k = 0; k < taps; k++) {
+                table[p * taps + k] /= (float) sum;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 清空历史，重新开始（如定位之后）
+     */
+    public void reset() {
+        // 预先填充 halfWidth - 1 个静音采样，使第一个输出采样对齐第一个输入采样
+        for (float[] channel : history) {
+            Arrays.fill(channel, 0, halfWidth - 1, 0f);
+        }
+        buffered = halfWidth - 1;
+        position = (long) (halfWidth - 1) << 32;
+    }
+
+    public int getInputRate() {
+        return inputRate;
+    }
+
+    public int getOutputRate() {
+        return outputRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * 处理 inputFrames 个输入采样帧最多能产生的输出采样帧数，用于确定输出数组的大小
+     */
+    public int getMaxOutputFrames(int inputFrames) {
+        return (int) (((long) inputFrames + taps) * outputRate / inputRate) + 2;
+    }
+
+    /**
+     * 处理一块输入
+     *
+     * @param in          输入采样（交错）
+     * @param inputFrames 输入采样帧数
+     * @param out         输出采样（交错），长度不小于 getMaxOutputFrames(inputFrames) * channels
+     * @return 输出的采样帧数
+     */
+    public int process(short[] in, int inputFrames, short[] out) {
+        append(in, inputFrames);
+        int produced = 0;
+        int lastIndex = buffered - halfWidth;
+        while ((int) (position >>> 32) < lastIndex) {
+            int index = (int) (position >>> 32);
+            long fraction = position & 0xFFFFFFFFL;
+            int phase = (int) ((fraction * phases + (1L << 31)) >>> 32);
+            int row = phase * taps;
+            int start = index - halfWidth + 1;
+            for (int c = 0; c < channels; c++) {
+                float[] samples = history[c];
+                float acc = 0;
+                for (int k = 0; k < taps; k++) {
+                    acc += samples[start + k] * coefficients[row + k];
+                }
+                int value = Math.round(acc);
+                out[produced * channels + c] = (short) Math.max(-32768, Math.min(32767, value));
+            }
+            produced++;
+            position += step;
+        }
+        compact();
+        return produced;
+    }
+
+    private void append(short[] in, int frames) {
+        int required = buffered + frames;
+        if (history[0].length < required) {
+            for (int c = 0; c < channels; c++) {
+                history[c] = Arrays.copyOf(history[c], required + taps);
+            }
+        }
+        for (int c = 0; c < channels; c++) {
+            float[] samples = history[c];
+            for (int i = 0; i < frames; i++) {
+                samples[buffered + i] = in[i * channels + c];
+            }
+        }
+        buffered = required;
+    }
+
+    /**
+     * 丢弃之后不再需要的历史采样
+     */
+    private void compact() {
+        int drop = (int) (position >>> 32) - (halfWidth - 1);
+        if (drop <= 0) return;
+        drop = Math.min(drop, buffered);
+        for (int c = 0; c < channels; c++) {
+            System.arraycopy(history[c], drop, history[c], 0, buffered - drop);
+        }
+        buffered -= drop;
+        position -= (long) drop << 32;
+    }
+}
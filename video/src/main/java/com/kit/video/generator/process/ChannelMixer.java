@@ -0,0 +1,93 @@
+package com.kit.video.generator.process;
+
+/**
+ * 声道混合：在交错排列的 16 位 PCM 之间做上混/下混
+ * <p>
+ * 混合矩阵在构造时确定：
+ * <ul>
+ *     <li>下混为单声道：所有声道取平均；</li>
+ *     <li>单声道上混：复制到所有声道；</li>
+ *     <li>其他情况：输入声道 i 混入输出声道 i % outputChannels，每个输出声道对混入的声道取平均。</li>
+ * </ul>
+ * 混合过程不产生分配。
+ */
+public class ChannelMixer {
+    private final int inputChannels;
+    private final int outputChannels;
+    // 混合矩阵，Q15 定点：matrix[out * inputChannels + in]
+    private final int[] matrix;
+
+    public ChannelMixer(int inputChannels, int outputChannels) {
+        if (inputChannels <= 0 || outputChannels <= 0) {
+            throw new IllegalArgumentException("Invalid channel count");
+        }
+        this.inputChannels = inputChannels;
+        this.outputChannels = outputChannels;
+        this.matrix = new int[outputChannels * inputChannels];
+        for (int out = 0; out < outputChannels; out++) {
+            int count = 0;
+            for (int in = 0; in < inputChannels; in++) {
+                if (contributes(in, out)) count++;
+            }
+            for (int in = 0; in < inputChannels; in++) {
+                if (contributes(in, out)) {
+                    matrix[out * inputChannels + in] = (1 << 15) / count;
+                }
+            }
+        }
+    }
+
+    private boolean contributes(int in, int out) {
+        if (outputChannels == 1 || inputChannels == 1) {
+            return true;
+        }
+        return in % outputChannels == out;
+    }
+
+    public int getInputChannels() {
+        return inputChannels;
+    }
+
+    public int getOutputChannels() {
+        return outputChannels;
+    }
+
+    /**
+     * 混合
+     *
+     * @param in     输入采样（交错）
+     * @param frames 采样帧数
+     * @param out    输出采样（交错），长度不小于 frames * outputChannels，不能与 in 相同
+     */
+    public void mix(short[] in, int frames, short[] out) {
+        if (inputChannels == outputChannels) {
+            System.arraycopy(in, 0, out, 0, frames * inputChannels);
+            return;
+        }
+        if (outputChannels == 1 && inputChannels == 2) {
+            for (int i = 0; i < frames; i++) {
+                out[i] = (short) ((in[2 * i] + in[2 * i + 1]) >> 1);
+            }
+            return;
+        }
+        if (inputChannels == 1 && outputChannels == 2) {
+            for (int i = 0; i < frames; i++) {
+                out[2 * i] = in[i];
+                out[2 * i + 1] = in[i];
+            }
+            return;
+        }
+        for (int i = 0; i < frames; i++) {
+            int inBase = i * inputChannels;
+            int outBase = i * outputChannels;
+            for (int o = 0; o < outputChannels; o++) {
+                int acc = 0;
+                int row = o * inputChannels;
+                for (int c = 0; c < inputChannels; c++) {
+                    acc += in[inBase + c] * matrix[row + c];
+                }
+                out[outBase + o] = (short) (acc >> 15);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.kit.video.generator.process;
+
+import com.kit.video.generator.base.BufferPool;
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.FrameLayout;
+import com.kit.video.generator.base.FrameProcessor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 颜色转换阶段：把输入帧（按 {@link FrameData#getLayout()} 描述的布局）转换为编码器需要的布局
+ * <p>
+ * 布局未知或与目标相同的帧直接透传。输出缓冲区来自内部的缓冲区池。
+ */
+public class ColorConvertProcessor implements FrameProcessor {
+    private static final int MAX_POOLED_BUFFERS = 8;
+    private final FrameLayout targetLayout;
+    private final ColorConverter converter;
+    private final BufferPool pool;
+
+    public ColorConvertProcessor(FrameLayout targetLayout) {
+        this(targetLayout, new ColorConverter());
+    }
+
+    public ColorConvertProcessor(FrameLayout targetLayout, ColorConverter converter) {
+        this.targetLayout = targetLayout;
+        this.converter = converter;
+        this.pool = new BufferPool(targetLayout.getFrameSize(), MAX_POOLED_BUFFERS);
+    }
+
+    @Override
+    public FrameData process(FrameData frame) {
+        FrameLayout sourceLayout = frame.getLayout();
+        if (frame.isEndOfStream() || frame.getByteBuffer() == null
+                || sourceLayout == null || sourceLayout.equals(targetLayout)) {
+            return frame;
+        }
+        ByteBuffer output = pool.acquire();
+        converter.convert(frame.getByteBuffer(), sourceLayout, output, targetLayout);
+        output.position(0);
+        output.limit(targetLayout.getFrameSize());
+        FrameData result = new FrameData(output, frame.getPts(), pool);
+        result.setLayout(targetLayout);
+        frame.recycle();
+        return result;
+    }
+
+    public FrameLayout getTargetLayout() {
+        return targetLayout;
+    }
+
+    @Override
+    public void release() {
+    }
+}
@@ -0,0 +1,272 @@
+package com.kit.video.generator.process;
+
+import com.kit.video.generator.base.FrameLayout;
+import com.kit.video.generator.base.PixelFormat;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 纯 Java 颜色转换：I420/NV12/NV21/RGBA 之间互相转换（BT.601 有限范围）
+ * <p>
+ * 以“行对”（两行亮度 + 一行色度）为单位处理，支持行跨度、平面高度和裁剪偏移。每个行对按列分块，
+ * 先批量读入线程私有的 byte 数组，再用无分支的简单循环计算，最后批量写出，便于 JIT 自动向量化；
+ * 不同的行对在 {@link ForkJoinPool} 上并行处理。预热之后转换过程不产生缓冲区分配。
+ */
+public class ColorConverter {
+    // 列分块宽度（偶数），保证每个分块的中间数组都能放进 L1 缓存
+    private static final int TILE_WIDTH = 1024;
+    // 每个并行任务至少处理的行对数
+    private static final int MIN_PAIRS_PER_TASK = 16;
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Tile> tiles = new ThreadLocal<Tile>() {
+        @Override
+        protected Tile initialValue() {
+            return new Tile();
+        }
+    };
+
+    public ColorConverter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool 执行并行任务的线程池
+     */
+    public ColorConverter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 转换一帧。两种布局的可见宽高必须一致。
+     *
+     * @param src       源数据
+     * @param srcLayout 源布局
+     * @param dst       目标缓冲区，容量不小于 dstLayout.getFrameSize()
+     * @param dstLayout 目标布局
+     */
+    public void convert(ByteBuffer src, FrameLayout srcLayout, ByteBuffer dst, FrameLayout dstLayout) {
+        if (srcLayout.getWidth() != dstLayout.getWidth() || srcLayout.getHeight() != dstLayout.getHeight()) {
+            throw new IllegalArgumentException("Size mismatch: " + srcLayout + " -> " + dstLayout);
+        }
+        int pairs = (srcLayout.getHeight() + 1) / 2;
+        if (pairs <= MIN_PAIRS_PER_TASK || pool.getParallelism() <= 1) {
+            convertPairs(src, srcLayout, dst, dstLayout, 0, pairs);
+        } else {
+            pool.invoke(new PairTask(src, srcLayout, dst, dstLayout, 0, pairs));
+        }
+    }
+
+    private void convertPairs(ByteBuffer src, FrameLayout srcLayout, ByteBuffer dst, FrameLayout dstLayout,
+                              int pairStart, int pairEnd) {
+        ByteBuffer in = src.duplicate();
+        ByteBuffer out = dst.duplicate();
+        out.clear();
+        Tile tile = tiles.get();
+        int width = srcLayout.getWidth();
+        int height = srcLayout.getHeight();
+        for (int pair = pairStart; pair < pairEnd; pair++) {
+            int row0 = pair * 2;
+            // 奇数高度时最后一个行对只有一行
+            int rows = row0 + 1 < height ? 2 : 1;
+            for (int x = 0; x < width; x += TILE_WIDTH) {
+                int count = Math.min(TILE_WIDTH, width - x);
+                read(in, srcLayout, pair, rows, x, count, tile);
+                write(out, dstLayout, pair, rows, x, count, tile);
+            }
+        }
+    }
+
+    /**
+     * 将一个分块读入 tile 的平面数组（RGBA 源会在这里转换为 YUV，RGBA→RGBA 直接保留 RGBA 数据）
+     */
+    private static void read(ByteBuffer in, FrameLayout layout, int pair, int rows, int x, int count, Tile tile) {
+        int row0 = pair * 2;
+        int chromaCount = (count + 1) / 2;
+        PixelFormat format = layout.getPixelFormat();
+        if (format == PixelFormat.RGBA) {
+            get(in, layout.getRowOffset(row0) + x * 4, tile.rgba0, count * 4);
+            if (rows > 1) {
+                get(in, layout.getRowOffset(row0 + 1) + x * 4, tile.rgba1, count * 4);
+            } else {
+                System.arraycopy(tile.rgba0, 0, tile.rgba1, 0, count * 4);
+            }
+            tile.rgbaValid = true;
+            rgbaToYuv(tile, count);
+            return;
+        }
+        tile.rgbaValid = false;
+        get(in, layout.getRowOffset(row0) + x, tile.y0, count);
+        if (rows > 1) {
+            get(in, layout.getRowOffset(row0 + 1) + x, tile.y1, count);
+        }
+        if (format == PixelFormat.I420) {
+            get(in, layout.getChromaRowOffset(pair) + x / 2, tile.u, chromaCount);
+            get(in, layout.getVRowOffset(pair) + x / 2, tile.v, chromaCount);
+        } else {
+            get(in, layout.getChromaRowOffset(pair) + x, tile.uv, chromaCount * 2);
+            deinterleave(tile.uv, format == PixelFormat.NV12 ? tile.u : tile.v,
+                    format == PixelFormat.NV12 ? tile.v : tile.u, chromaCount);
+        }
+    }
+
+    /**
+     * 将 tile 中的平面数组写出到目标布局
+     */
+    private static void write(ByteBuffer out, FrameLayout layout, int pair, int rows, int x, int count, Tile tile) {
+        int row0 = pair * 2;
+        int chromaCount = (count + 1) / 2;
+        PixelFormat format = layout.getPixelFormat();
+        if (format == PixelFormat.RGBA) {
+            if (!tile.rgbaValid) {
+                yuvToRgba(tile.y0, tile, tile.rgba0, count);
+                if (rows > 1) yuvToRgba(tile.y1, tile, tile.rgba1, count);
+            }
+            put(out, layout.getRowOffset(row0) + x * 4, tile.rgba0, count * 4);
+            if (rows > 1) put(out, layout.getRowOffset(row0 + 1) + x * 4, tile.rgba1, count * 4);
+            return;
+        }
+        put(out, layout.getRowOffset(row0) + x, tile.y0, count);
+        if (rows > 1) {
+            put(out, layout.getRowOffset(row0 + 1) + x, tile.y1, count);
+        }
+        if (format == PixelFormat.I420) {
+            put(out, layout.getChromaRowOffset(pair) + x / 2, tile.u, chromaCount);
+            put(out, layout.getVRowOffset(pair) + x / 2, tile.v, chromaCount);
+        } else {
+            interleave(format == PixelFormat.NV12 ? tile.u : tile.v,
+                    format == PixelFormat.NV12 ? tile.v : tile.u, tile.uv, chromaCount);
+            put(out, layout.getChromaRowOffset(pair) + x, tile.uv, chromaCount * 2);
+        }
+    }
+
+    private static void get(ByteBuffer buffer, int offset, byte[] dst, int length) {
+        buffer.position(offset);
+        buffer.get(dst, 0, length);
+    }
+
+    private static void put(ByteBuffer buffer, int offset, byte[] src, int length) {
+        buffer.position(offset);
+        buffer.put(src, 0, length);
+    }
+
+    private static void deinterleave(byte[] src, byte[] first, byte[] second, int count) {
+        for (int i = 0; i < count; i++) {
+            first[i] = src[2 * i];
+            second[i] = src[2 * i + 1];
+        }
+    }
+
+    private static void interleave(byte[] first, byte[] second, byte[] dst, int count) {
+        for (int i = 0; i < count; i++) {
+            dst[2 * i] = first[i];
+            dst[2 * i + 1] = second[i];
+        }
+    }
+
+    /**
+     * 一行 YUV 转 RGBA。色度先按列展开到全分辨率，使主循环没有下标移位和分支。
+     */
+    private static void yuvToRgba(byte[] y, Tile tile, byte[] rgba, int count) {
+        int[] du = tile.du;
+        int[] dv = tile.dv;
+        for (int i = 0; i < count; i++) {
+            du[i] = (tile.u[i >> 1] & 0xFF) - 128;
+            dv[i] = (tile.v[i >> 1] & 0xFF) - 128;
+        }
+        for (int i = 0; i < count; i++) {
+            int c = ((y[i] & 0xFF) - 16) * 298 + 128;
+            int d = du[i];
+            int e = dv[i];
+            int r = (c + 409 * e) >> 8;
+            int g = (c - 100 * d - 208 * e) >> 8;
+            int b = (c + 516 * d) >> 8;
+            rgba[4 * i] = (byte) Math.min(255, Math.max(0, r));
+            rgba[4 * i + 1] = (byte) Math.min(255, Math.max(0, g));
+            rgba[4 * i + 2] = (byte) Math.min(255, Math.max(0, b));
+            rgba[4 * i + 3] = (byte) 0xFF;
+        }
+    }
+
+    /**
+     * 两行 RGBA 转 YUV，色度取 2x2 像素的平均值
+     */
+    private static void rgbaToYuv(Tile tile, int count) {
+        rgbaToLuma(tile.rgba0, tile.y0, count);
+        rgbaToLuma(tile.rgba1, tile.y1, count);
+        int chromaCount = (count + 1) / 2;
+        byte[] a = tile.rgba0;
+        byte[] b = tile.rgba1;
+        for (int i = 0; i < chromaCount; i++) {
+            int p0 = 8 * i;
+            // 奇数宽度时最后一列没有右侧像素，复用左侧像素
+            int p1 = Math.min(p0 + 4, (count - 1) * 4);
+            int r = (a[p0] & 0xFF) + (a[p1] & 0xFF) + (b[p0] & 0xFF) + (b[p1] & 0xFF);
+            int g = (a[p0 + 1] & 0xFF) + (a[p1 + 1] & 0xFF) + (b[p0 + 1] & 0xFF) + (b[p1 + 1] & 0xFF);
+            int bl = (a[p0 + 2] & 0xFF) + (a[p1 + 2] & 0xFF) + (b[p0 + 2] & 0xFF) + (b[p1 + 2] & 0xFF);
+            tile.u[i] = (byte) (((-38 * r - 74 * g + 112 * bl + 512) >> 10) + 128);
+            tile.v[i] = (byte) (((112 * r - 94 * g - 18 * bl + 512) >> 10) + 128);
+        }
+    }
+
+    private static void rgbaToLuma(byte[] rgba, byte[] y, int count) {
+        for (int i = 0; i < count; i++) {
+            int r = rgba[4 * i] & 0xFF;
+            int g = rgba[4 * i + 1] & 0xFF;
+            int b = rgba[4 * i + 2] & 0xFF;
+            y[i] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+        }
+    }
+
+    /**
+     * 线程私有的分块中间数组
+     */
+    private static final class Tile {
+        final byte[] y0 = new byte[TILE_WIDTH];
+        final byte[] y1 = new byte[TILE_WIDTH];
+        final byte[] u = new byte[TILE_WIDTH / 2];
+        final byte[] v = new byte[TILE_WIDTH / 2];
+        final byte[] uv = new byte[TILE_WIDTH];
+        final byte[] rgba0 = new byte[TILE_WIDTH * 4];
+        final byte[] rgba1 = new byte[TILE_WIDTH * 4];
+        final int[] du = new int[TILE_WIDTH];
+        final int[] dv = new int[TILE_WIDTH];
+        boolean rgbaValid;
+    }
+
+    /**
+     * 按行对二分的并行任务
+     */
+    private final class PairTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer src;
+        private final FrameLayout srcLayout;
+        private final ByteBuffer dst;
+        private final FrameLayout dstLayout;
+        private final int start;
+        private final int end;
+
+        PairTask(ByteBuffer src, FrameLayout srcLayout, ByteBuffer dst, FrameLayout dstLayout, int start, int end) {
+            this.src = src;
+            this.srcLayout = srcLayout;
+            this.dst = dst;
+            this.dstLayout = dstLayout;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= MIN_PAIRS_PER_TASK) {
+                convertPairs(src, srcLayout, dst, dstLayout, start, end);
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new PairTask(src, srcLayout, dst, dstLayout, start, mid),
+                    new PairTask(src, srcLayout, dst, dstLayout, mid, end));
+        }
+    }
+}
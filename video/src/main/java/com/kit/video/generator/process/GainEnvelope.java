@@ -0,0 +1,71 @@
+package com.kit.video.generator.process;
+
+import java.util.Arrays;
+
+/**
+ * 增益包络：按时间排列的关键点，关键点之间线性插值，第一个关键点之前和最后一个关键点之后保持端点的增益
+ * <p>
+ * 没有关键点时增益恒为 1。查询不产生分配。
+ */
+public class GainEnvelope {
+    private long[] timesUs = new long[4];
+    private float[] gains = new float[4];
+    private int size;
+
+    /**
+     * 添加关键点
+     *
+     * @param timeUs 时间，单位：微秒
+     * @param gain   线性增益（1 为原始音量）
+     */
+    public synchronized GainEnvelope addPoint(long timeUs, float gain) {
+        if (size == timesUs.length) {
+            timesUs = Arrays.copyOf(timesUs, size * 2);
+            gains = Arrays.copyOf(gains, size * 2);
+        }
+        // 插入排序，保持按时间排列
+        int i = size;
+        while (i > 0 && timesUs[i - 1] > timeUs) {
+            timesUs[i] = timesUs[i - 1];
+            gains[i] = gains[i - 1];
+            i--;
+        }
+        timesUs[i] = timeUs;
+        gains[i] = gain;
+        size++;
+        return this;
+    }
+
+    /**
+     * 添加淡入：从 startUs 的静音线性过渡到 startUs + durationUs 的原始音量
+     */
+    public GainEnvelope fadeIn(long startUs, long durationUs) {
+        return addPoint(startUs, 0f).addPoint(startUs + durationUs, 1f);
+    }
+
+    /**
+     * 添加淡出：从 endUs - durationUs 的原始音量线性过渡到 endUs 的静音
+     */
+    public GainEnvelope fadeOut(long endUs, long durationUs) {
+        return addPoint(endUs - durationUs, 1f).addPoint(endUs, 0f);
+    }
+
+    public synchronized void clear() {
+        size = 0;
+    }
+
+    /**
+     * 查询指定时间的增益
+     */
+    public synchronized float getGain(long timeUs) {
+        if (size == 0) return 1f;
+        if (timeUs <= timesUs[0]) return gains[0];
+        if (timeUs >= timesUs[size - 1]) return gains[size - 1];
+        int index = Arrays.binarySearch(timesUs, 0, size, timeUs);
+        if (index >= 0) return gains[index];
+        int next = -index - 1;
+        int prev = next - 1;
+        float t = (float) (timeUs - timesUs[prev]) / (timesUs[next] - timesUs[prev]);
+        return gains[prev] + (gains[next] - gains[prev]) * t;
+    }
+}
@@ -0,0 +1,60 @@
+package com.kit.video.generator.process;
+
+import com.kit.video.generator.base.BufferPool;
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.FrameLayout;
+import com.kit.video.generator.base.FrameProcessor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 裁剪/缩放/旋转阶段：用 {@link YuvScaler} 把输入帧处理为目标布局，输出缓冲区来自内部的缓冲区池
+ * <p>
+ * 目标布局的格式可以直接选用编码器的输入格式，这样后面的颜色转换阶段就可以直接透传。
+ * 布局未知或不是 YUV 的帧直接透传。
+ */
+public class ScaleProcessor implements FrameProcessor {
+    private static final int MAX_POOLED_BUFFERS = 8;
+    private final YuvScaler scaler;
+    private final FrameLayout targetLayout;
+    private final BufferPool pool;
+
+    /**
+     * @param scaler       缩放器
+     * @param targetLayout 目标布局，可见宽高必须等于缩放器的输出宽高
+     */
+    public ScaleProcessor(YuvScaler scaler, FrameLayout targetLayout) {
+        if (!targetLayout.getPixelFormat().isYuv()
+                || targetLayout.getWidth() != scaler.getOutputWidth() || targetLayout.getHeight() != scaler.getOutputHeight()) {
+            throw new IllegalArgumentException("Invalid target layout: " + targetLayout);
+        }
+        this.scaler = scaler;
+        this.targetLayout = targetLayout;
+        this.pool = new BufferPool(targetLayout.getFrameSize(), MAX_POOLED_BUFFERS);
+    }
+
+    @Override
+    public FrameData process(FrameData frame) {
+        FrameLayout sourceLayout = frame.getLayout();
+        if (frame.isEndOfStream() || frame.getByteBuffer() == null
+                || sourceLayout == null || !sourceLayout.getPixelFormat().isYuv()) {
+            return frame;
+        }
+        ByteBuffer output = pool.acquire();
+        scaler.scale(frame.getByteBuffer(), sourceLayout, output, targetLayout);
+        output.position(0);
+        output.limit(targetLayout.getFrameSize());
+        FrameData result = new FrameData(output, frame.getPts(), pool);
+        result.setLayout(targetLayout);
+        frame.recycle();
+        return result;
+    }
+
+    public FrameLayout getTargetLayout() {
+        return targetLayout;
+    }
+
+    @Override
+    public void release() {
+    }
+}
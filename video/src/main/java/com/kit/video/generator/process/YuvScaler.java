@@ -0,0 +1,417 @@
+package com.kit.video.generator.process;
+
+import com.kit.video.generator.base.FrameLayout;
+import com.kit.video.generator.base.PixelFormat;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 纯 Java 的 YUV 缩放：裁剪、缩放（双线性/区域平均）和旋转（0/90/180/270 度，顺时针）一次完成
+ * <p>
+ * 源和目标可以是 I420/NV12/NV21 中的任意一种，各平面分别处理。采样坐标表在构造时预先计算，
+ * 每一行先做垂直方向的插值（或累加），再做水平方向的插值（或平均），最后按旋转方向写出。
+ * 行在 {@link ForkJoinPool} 上并行处理，中间数组是线程私有的，预热之后不产生缓冲区分配。
+ */
+public class YuvScaler {
+    // 每个并行任务至少处理的行数
+    private static final int MIN_ROWS_PER_TASK = 16;
+
+    /**
+     * 缩放滤波方式
+     */
+    public enum Filter {
+        /**
+         * 双线性插值
+         */
+        BILINEAR,
+        /**
+         * 区域平均，适合大比例缩小（放大时退化为双线性插值）
+         */
+        AREA
+    }
+
+    private final int cropLeft;
+    private final int cropTop;
+    private final int cropWidth;
+    private final int cropHeight;
+    private final int outputWidth;
+    private final int outputHeight;
+    private final int rotation;
+    // 旋转之前的缩放尺寸
+    private final int scaledWidth;
+    private final int scaledHeight;
+    // 采样坐标表：[0] 亮度，[1] 色度
+    private final Axis[] axisX = new Axis[2];
+    private final Axis[] axisY = new Axis[2];
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Tile> tiles = new ThreadLocal<Tile>() {
+        @Override
+        protected Tile initialValue() {
+            return new Tile();
+        }
+    };
+
+    /**
+     * 不裁剪，只缩放和旋转
+     *
+     * @param sourceWidth  源可见宽度
+     * @param sourceHeight 源可见高度
+     * @param outputWidth  输出宽度（旋转之后）
+     * @param outputHeight 输出高度（旋转之后）
+     * @param rotation     顺时针旋转角度：0、90、180 或 270
+     * @param filter       缩放滤波方式
+     */
+    public YuvScaler(int sourceWidth, int sourceHeight, int outputWidth, int outputHeight, int rotation, Filter filter) {
+        this(0, 0, sourceWidth, sourceHeight, outputWidth, outputHeight, rotation, filter, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param cropLeft     裁剪区域在源可见区域中的左边界（偶数）
+     * @param cropTop      裁剪区域在源可见区域中的上边界（偶数）
+     * @param cropWidth    裁剪宽度
+     * @param cropHeight   裁剪高度
+     * @param outputWidth  输出宽度（旋转之后）
+     * @param outputHeight 输出高度（旋转之后）
+     * @param rotation     顺时针旋转角度：0、90、180 或 270
+     * @param filter       缩放滤波方式
+     * @param pool         执行并行任务的线程池
+     */
+    public YuvScaler(int cropLeft, int cropTop, int cropWidth, int cropHeight, int outputWidth, int outputHeight,
+                     int rotation, Filter filter, ForkJoinPool pool) {
+        if (cropLeft % 2 != 0 || cropTop % 2 != 0) {
+            throw new IllegalArgumentException("Crop offset must be even");
+        }
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Unsupported rotation: " + rotation);
+        }
+        if (cropWidth <= 0 || cropHeight <= 0 || outputWidth <= 0 || outputHeight <= 0) {
+            throw new IllegalArgumentException("Invalid size");
+        }
+        this.cropLeft = cropLeft;
+        this.cropTop = cropTop;
+        this.cropWidth = cropWidth;
+        this.cropHeight = cropHeight;
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+        this.rotation = rotation;
+        this.pool = pool;
+        boolean swap = rotation == 90 || rotation == 270;
+        scaledWidth = swap ? outputHeight : outputWidth;
+        scaledHeight = swap ? outputWidth : outputHeight;
+        // 只有两个方向都是缩小时才使用区域平均
+        boolean area = filter == Filter.AREA && scaledWidth <= cropWidth && scaledHeight <= cropHeight;
+        axisX[0] = createAxis(cropWidth, scaledWidth, area);
+        axisY[0] = createAxis(cropHeight, scaledHeight, area);
+        axisX[1] = createAxis((cropWidth + 1) / 2, (scaledWidth + 1) / 2, area);
+        axisY[1] = createAxis((cropHeight + 1) / 2, (scaledHeight + 1) / 2, area);
+    }
+
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    /**
+     * 处理一帧
+     *
+     * @param src       源数据
+     * @param srcLayout 源布局，裁剪区域必须位于其可见区域内
+     * @param dst       目标缓冲区，容量不小于 dstLayout.getFrameSize()
+     * @param dstLayout 目标布局，可见宽高必须等于输出宽高
+     */
+    public void scale(ByteBuffer src, FrameLayout srcLayout, ByteBuffer dst, FrameLayout dstLayout) {
+        if (!srcLayout.getPixelFormat().isYuv() || !dstLayout.getPixelFormat().isYuv()) {
+            throw new IllegalArgumentException("Only YUV layouts are supported: " + srcLayout + " -> " + dstLayout);
+        }
+        if (cropLeft + cropWidth > srcLayout.getWidth() || cropTop + cropHeight > srcLayout.getHeight()) {
+            throw new IllegalArgumentException("Crop rectangle exceeds source: " + srcLayout);
+        }
+        if (dstLayout.getWidth() != outputWidth || dstLayout.getHeight() != outputHeight) {
+            throw new IllegalArgumentException("Output size mismatch: " + dstLayout);
+        }
+        for (int plane = 0; plane < 3; plane++) {
+            int rows = plane == 0 ? scaledHeight : (scaledHeight + 1) / 2;
+            if (rows <= MIN_ROWS_PER_TASK || pool.getParallelism() <= 1) {
+                scaleRows(src, srcLayout, dst, dstLayout, plane, 0, rows);
+            } else {
+                pool.invoke(new RowTask(src, srcLayout, dst, dstLayout, plane, 0, rows));
+            }
+        }
+    }
+
+    /**
+     * 处理某个平面中旋转之前的第 [rowStart, rowEnd) 行
+     */
+    private void scaleRows(ByteBuffer src, FrameLayout srcLayout, ByteBuffer dst, FrameLayout dstLayout,
+                           int plane, int rowStart, int rowEnd) {
+        ByteBuffer in = src.duplicate();
+        ByteBuffer out = dst.duplicate();
+        out.clear();
+        int chroma = plane == 0 ? 0 : 1;
+        Axis ax = axisX[chroma];
+        Axis ay = axisY[chroma];
+        int srcPixelStride = pixelStride(srcLayout, plane);
+        int left = (cropLeft >> chroma) * srcPixelStride;
+        int top = cropTop >> chroma;
+        int srcCount = ax.sourceLength;
+        int dstCount = ax.length;
+        Tile tile = tiles.get();
+        tile.ensureCapacity((srcCount - 1) * srcPixelStride + 1, srcCount, dstCount);
+        boolean area = ax.area;
+        for (int row = rowStart; row < rowEnd; row++) {
+            if (area) {
+                int ys = ay.index0[row];
+                int ye = ay.index1[row];
+                readRow(in, srcLayout, plane, top + ys, left, srcPixelStride, srcCount, tile.row0, tile.acc, true);
+                for (int y = ys + 1; y < ye; y++) {
+                    readRow(in, srcLayout, plane, top + y, left, srcPixelStride, srcCount, tile.row0, tile.acc, false);
+                }
+                averageRow(tile.acc, ax, ye - ys, tile.out);
+            } else {
+                readRow(in, srcLayout, plane, top + ay.index0[row], left, srcPixelStride, srcCount, tile.row0, tile.acc, true);
+                readRow(in, srcLayout, plane, top + ay.index1[row], left, srcPixelStride, srcCount, tile.row1, tile.acc2, true);
+                blendRow(tile.acc, tile.acc2, ay.weight[row], ax, tile.out);
+            }
+            writeRow(out, dstLayout, plane, row, ay.length, tile.out, dstCount);
+        }
+    }
+
+    /**
+     * 读取源平面中的一行（裁剪区域内），写入或累加到 acc
+     */
+    private static void readRow(ByteBuffer in, FrameLayout layout, int plane, int row, int left, int pixelStride,
+                                int count, byte[] bytes, int[] acc, boolean overwrite) {
+        in.position(rowOffset(layout, plane, row) + left);
+        in.get(bytes, 0, (count - 1) * pixelStride + 1);
+        if (overwrite) {
+            for (int i = 0; i < count; i++) {
+                acc[i] = bytes[i * pixelStride] & 0xFF;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                acc[i] += bytes[i * pixelStride] & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * 双线性插值：先垂直混合两行，再按水平坐标表插值
+     */
+    private static void blendRow(int[] row0, int[] row1, int wy, Axis ax, byte[] out) {
+        int count = ax.sourceLength;
+        int iwy = 256 - wy;
+        for (int i = 0; i < count; i++) {
+            row0[i] = row0[i] * iwy + row1[i] * wy;
+        }
+        int[] x0 = ax.index0;
+        int[] x1 = ax.index1;
+        int[] wx = ax.weight;
+        for (int i = 0; i < ax.length; i++) {
+            int w = wx[i];
+            out[i] = (byte) ((row0[x0[i]] * (256 - w) + row0[x1[i]] * w + 32768) >> 16);
+        }
+    }
+
+    /**
+     * 区域平均：按水平坐标表对累加后的行求平均
+     */
+    private static void averageRow(int[] acc, Axis ax, int rows, byte[] out) {
+        int[] xs = ax.index0;
+        int[] xe = ax.index1;
+        for (int i = 0; i < ax.length; i++) {
+            int sum = 0;
+            for (int x = xs[i]; x < xe[i]; x++) {
+                sum += acc[x];
+            }
+            int n = (xe[i] - xs[i]) * rows;
+            out[i] = (byte) ((sum + n / 2) / n);
+        }
+    }
+
+    /**
+     * 按旋转方向写出旋转之前的第 row 行（共 rows 行，每行 count 个像素）
+     */
+    private void writeRow(ByteBuffer out, FrameLayout layout, int plane, int row, int rows, byte[] data, int count) {
+        int pixelStride = pixelStride(layout, plane);
+        switch (rotation) {
+            case 0:
+                putRow(out, rowOffset(layout, plane, row), pixelStride, data, count);
+                break;
+            case 180:
+                reverse(data, count);
+                putRow(out, rowOffset(layout, plane, rows - 1 - row), pixelStride, data, count);
+                break;
+            case 90: {
+                // 旋转之前的第 row 行成为输出的第 (rows - 1 - row) 列
+                int column = (rows - 1 - row) * pixelStride;
+                for (int i = 0; i < count; i++) {
+                    out.put(rowOffset(layout, plane, i) + column, data[i]);
+                }
+                break;
+            }
+            default: {
+                // 270 度：旋转之前的第 row 行成为输出的第 row 列，自下而上
+                int column = row * pixelStride;
+                for (int i = 0; i < count; i++) {
+                    out.put(rowOffset(layout, plane, count - 1 - i) + column, data[i]);
+                }
+                break;
+            }
+        }
+    }
+
+    private static void putRow(ByteBuffer out, int offset, int pixelStride, byte[] data, int count) {
+        if (pixelStride == 1) {
+            out.position(offset);
+            out.put(data, 0, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                out.put(offset + i * pixelStride, data[i]);
+            }
+        }
+    }
+
+    private static void reverse(byte[] data, int count) {
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            byte tmp = data[i];
+            data[i] = data[j];
+            data[j] = tmp;
+        }
+    }
+
+    /**
+     * 平面中可见区域第 row 行第一个像素的偏移（0 为 Y，1 为 U，2 为 V）
+     */
+    private static int rowOffset(FrameLayout layout, int plane, int row) {
+        if (plane == 0) {
+            return layout.getRowOffset(row);
+        }
+        PixelFormat format = layout.getPixelFormat();
+        if (format == PixelFormat.I420) {
+            return plane == 1 ? layout.getChromaRowOffset(row) : layout.getVRowOffset(row);
+        }
+        // NV12 为 UVUV...，NV21 为 VUVU...
+        boolean second = (plane == 2) == (format == PixelFormat.NV12);
+        return layout.getChromaRowOffset(row) + (second ? 1 : 0);
+    }
+
+    private static int pixelStride(FrameLayout layout, int plane) {
+        return plane == 0 || layout.getPixelFormat() == PixelFormat.I420 ? 1 : 2;
+    }
+
+    /**
+     * 计算一个方向上的采样坐标表
+     */
+    private static Axis createAxis(int sourceLength, int length, boolean area) {
+        Axis axis = new Axis(sourceLength, length, area);
+        for (int i = 0; i < length; i++) {
+            if (axis.area) {
+                int start = (int) ((long) i * sourceLength / length);
+                int end = (int) ((long) (i + 1) * sourceLength / length);
+                axis.index0[i] = start;
+                axis.index1[i] = Math.max(start + 1, end);
+            } else {
+                // 像素中心对齐，1/256 精度
+                long pos = ((2L * i + 1) * sourceLength * 256) / (2L * length) - 128;
+                if (pos < 0) pos = 0;
+                int index = (int) (pos >> 8);
+                int weight = (int) (pos & 0xFF);
+                if (index >= sourceLength - 1) {
+                    index = sourceLength - 1;
+                    weight = 0;
+                }
+                axis.index0[i] = index;
+                axis.index1[i] = Math.min(index + 1, sourceLength - 1);
+                axis.weight[i] = weight;
+            }
+        }
+        return axis;
+    }
+
+    /**
+     * 一个方向上的采样坐标表。双线性时为相邻两个源坐标和权重（0~256），区域平均时为源区间 [index0, index1)。
+     */
+    private static final class Axis {
+        final int sourceLength;
+        final int length;
+        final boolean area;
+        final int[] index0;
+        final int[] index1;
+        final int[] weight;
+
+        Axis(int sourceLength, int length, boolean area) {
+            this.sourceLength = sourceLength;
+            this.length = length;
+            this.area = area;
+            this.index0 = new int[length];
+            this.index1 = new int[length];
+            this.weight = new int[length];
+        }
+    }
+
+    /**
+     * 线程私有的中间数组，按需增长
+     */
+    private static final class Tile {
+        byte[] row0 = new byte[0];
+        byte[] row1 = new byte[0];
+        int[] acc = new int[0];
+        int[] acc2 = new int[0];
+        byte[] out = new byte[0];
+
+        void ensureCapacity(int rowBytes, int sourceCount, int count) {
+            if (row0.length < rowBytes) {
+                row0 = new byte[rowBytes];
+                row1 = new byte[rowBytes];
+            }
+            if (acc.length < sourceCount) {
+                acc = new int[sourceCount];
+                acc2 = new int[sourceCount];
+            }
+            if (out.length < count) {
+                out = new byte[count];
+            }
+        }
+    }
+
+    /**
+     * 按行二分的并行任务
+     */
+    private final class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer src;
+        private final FrameLayout srcLayout;
+        private final ByteBuffer dst;
+        private final FrameLayout dstLayout;
+        private final int plane;
+        private final int start;
+        private final int end;
+
+        RowTask(ByteBuffer src, FrameLayout srcLayout, ByteBuffer dst, FrameLayout dstLayout, int plane, int start, int end) {
+            this.src = src;
+            this.srcLayout = srcLayout;
+            this.dst = dst;
+            this.dstLayout = dstLayout;
+            this.plane = plane;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= MIN_ROWS_PER_TASK) {
+                scaleRows(src, srcLayout, dst, dstLayout, plane, start, end);
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new RowTask(src, srcLayout, dst, dstLayout, plane, start, mid),
+                    new RowTask(src, srcLayout, dst, dstLayout, plane, mid, end));
+        }
+    }
+}
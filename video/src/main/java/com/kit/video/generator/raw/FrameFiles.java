@@ -0,0 +1,51 @@
+package com.kit.video.generator.raw;
+
+import com.kit.video.generator.base.PixelFormat;
+
+import java.io.IOException;
+
+/**
+ * 根据文件扩展名创建原始视频读写器：.y4m 使用 YUV4MPEG2，其他扩展名视为无文件头的原始 YUV
+ */
+public class FrameFiles {
+    private static final String Y4M_EXTENSION = ".y4m";
+
+    private FrameFiles() {
+    }
+
+    public static boolean isY4m(String path) {
+        return path.toLowerCase().endsWith(Y4M_EXTENSION);
+    }
+
+    /**
+     * 打开 YUV4MPEG2 文件（宽高、帧率从文件头读取）
+     */
+    public static FrameReader openReader(String path) throws IOException {
+        return new Y4mReader(path);
+    }
+
+    /**
+     * 打开原始视频文件；YUV4MPEG2 文件会忽略传入的参数，以文件头为准
+     */
+    public static FrameReader openReader(String path, int width, int height, PixelFormat pixelFormat,
+                                         int frameRateNum, int frameRateDen) throws IOException {
+        if (isY4m(path)) {
+            return new Y4mReader(path);
+        }
+        return new RawYuvReader(path, width, height, pixelFormat, frameRateNum, frameRateDen);
+    }
+
+    /**
+     * 创建原始视频写入器；YUV4MPEG2 只支持 I420
+     */
+    public static FrameWriter openWriter(String path, int width, int height, PixelFormat pixelFormat,
+                                         int frameRateNum, int frameRateDen) throws IOException {
+        if (isY4m(path)) {
+            if (pixelFormat != PixelFormat.I420) {
+                throw new IllegalArgumentException("YUV4MPEG2 only supports I420, got " + pixelFormat);
+            }
+            return new Y4mWriter(path, width, height, frameRateNum, frameRateDen);
+        }
+        return new RawYuvWriter(path, width, height, pixelFormat);
+    }
+}
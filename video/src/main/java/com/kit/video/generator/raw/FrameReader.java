@@ -0,0 +1,39 @@
+package com.kit.video.generator.raw;
+
+import com.kit.video.generator.base.PixelFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 原始视频帧读取接口
+ */
+public interface FrameReader extends Closeable {
+    /**
+     * 读取下一帧
+     *
+     * @return 帧数据（文件映射区的切片，只读），文件结束时返回 null
+     */
+    ByteBuffer readFrame() throws IOException;
+
+    /**
+     * 获取下一帧的序号
+     */
+    int getFrameIndex();
+
+    /**
+     * 根据帧序号计算呈现时间戳，单位：微秒
+     */
+    long getPresentationTimeUs(int index);
+
+    int getWidth();
+
+    int getHeight();
+
+    PixelFormat getPixelFormat();
+
+    int getFrameRateNum();
+
+    int getFrameRateDen();
+}
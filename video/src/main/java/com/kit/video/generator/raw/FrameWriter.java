@@ -0,0 +1,15 @@
+package com.kit.video.generator.raw;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 原始视频帧写入接口
+ */
+public interface FrameWriter extends Closeable {
+    /**
+     * 写入一帧，读取 frame 的 position 到 limit 之间的内容，不改变 frame 的 position
+     */
+    void writeFrame(ByteBuffer frame) throws IOException;
+}
@@ -0,0 +1,83 @@
+package com.kit.video.generator.raw;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射文件窗口
+ * <p>
+ * 按需映射文件中的一段区域（窗口），读写的帧数据都是映射区的切片，不需要在堆上拷贝。
+ * 请求的区域超出当前窗口时重新映射，因此也支持大于 2GB 的文件。
+ */
+class MappedFile implements Closeable {
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long windowEnd;
+
+    MappedFile(String path, boolean writable) throws IOException {
+        this.writable = writable;
+        if (writable) {
+            channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } else {
+            channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        }
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * 获取文件中 [offset, offset + length) 区域的切片
+     * <p>
+     * 只读模式下区域超出文件末尾时抛出 {@link EOFException}；写入模式下文件会自动增长。
+     */
+    ByteBuffer slice(long offset, int length) throws IOException {
+        if (window == null || offset < windowStart || offset + length > windowEnd) {
+            map(offset, length);
+        }
+        ByteBuffer slice = window.duplicate();
+        int start = (int) (offset - windowStart);
+        slice.position(start);
+        slice.limit(start + length);
+        return slice.slice();
+    }
+
+    private void map(long offset, int length) throws IOException {
+        long size = Math.max(length, WINDOW_SIZE);
+        if (!writable) {
+            size = Math.min(size, channel.size() - offset);
+            if (size < length) {
+                throw new EOFException("Region " + offset + "+" + length + " beyond end of file");
+            }
+        }
+        window = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, offset, size);
+        windowStart = offset;
+        windowEnd = offset + size;
+    }
+
+    /**
+     * 写入模式下按实际写入的长度截断文件（映射窗口会把文件扩展到窗口末尾）
+     */
+    void truncate(long size) throws IOException {
+        window = null;
+        channel.truncate(size);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.kit.video.generator.raw;
+
+import com.kit.video.generator.base.PixelFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 无文件头的原始 YUV 文件读取器（I420/NV12/NV21 紧密排列的连续帧）
+ * <p>
+ * 文件通过内存映射读取，返回的每一帧都是映射区的切片，不做拷贝。
+ */
+public class RawYuvReader implements FrameReader {
+    private final MappedFile file;
+    private final int width;
+    private final int height;
+    private final PixelFormat pixelFormat;
+    private final int frameRateNum;
+    private final int frameRateDen;
+    private final int frameSize;
+    private final long frameCount;
+    private int frameIndex;
+
+    public RawYuvReader(String path, int width, int height, PixelFormat pixelFormat, int frameRateNum, int frameRateDen)
+            throws IOException {
+        this.width = width;
+        this.height = height;
+        this.pixelFormat = pixelFormat;
+        this.frameRateNum = frameRateNum;
+        this.frameRateDen = frameRateDen;
+        frameSize = pixelFormat.getFrameSize(width, height);
+        file = new MappedFile(path, false);
+        frameCount = file.size() / frameSize;
+    }
+
+    @Override
+    public ByteBuffer readFrame() throws IOException {
+        if (frameIndex >= frameCount) return null;
+        ByteBuffer frame = file.slice((long) frameIndex * frameSize, frameSize);
+        frameIndex++;
+        return frame.asReadOnlyBuffer();
+    }
+
+    /**
+     * 定位到指定帧，下一次 {@link #readFrame()} 返回该帧
+     */
+    public void seekToFrame(int index) {
+        frameIndex = (int) Math.max(0, Math.min(index, frameCount));
+    }
+
+    /**
+     * 获取文件中的总帧数
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public long getPresentationTimeUs(int index) {
+        return index * 1000000L * frameRateDen / frameRateNum;
+    }
+
+    @Override
+    public int getFrameIndex() {
+        return frameIndex;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public PixelFormat getPixelFormat() {
+        return pixelFormat;
+    }
+
+    @Override
+    public int getFrameRateNum() {
+        return frameRateNum;
+    }
+
+    @Override
+    public int getFrameRateDen() {
+        return frameRateDen;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
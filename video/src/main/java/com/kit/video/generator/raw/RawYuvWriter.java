@@ -0,0 +1,40 @@
+package com.kit.video.generator.raw;
+
+import com.kit.video.generator.base.PixelFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 无文件头的原始 YUV 文件写入器（I420/NV12/NV21 紧密排列的连续帧）
+ * <p>
+ * 文件通过内存映射写入，帧数据直接放入映射区。
+ */
+public class RawYuvWriter implements FrameWriter {
+    private final MappedFile file;
+    private final int frameSize;
+    private long offset;
+
+    public RawYuvWriter(String path, int width, int height, PixelFormat pixelFormat) throws IOException {
+        frameSize = pixelFormat.getFrameSize(width, height);
+        file = new MappedFile(path, true);
+    }
+
+    @Override
+    public void writeFrame(ByteBuffer frame) throws IOException {
+        if (frame.remaining() != frameSize) {
+            throw new IllegalArgumentException("Frame size " + frame.remaining() + " != " + frameSize);
+        }
+        file.slice(offset, frameSize).put(frame.duplicate());
+        offset += frameSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            file.truncate(offset);
+        } finally {
+            file.close();
+        }
+    }
+}
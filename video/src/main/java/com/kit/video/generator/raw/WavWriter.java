@@ -0,0 +1,74 @@
+package com.kit.video.generator.raw;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * WAV 文件写入器，写入 16 位有符号小端 PCM 数据。文件头中的长度在 close 时回填。
+ */
+public class WavWriter implements Closeable {
+    private static final int HEADER_SIZE = 44;
+
+    private final FileChannel channel;
+    private final int sampleRate;
+    private final int channelCount;
+    private long dataSize;
+
+    public WavWriter(String path, int sampleRate, int channelCount) throws IOException {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writeHeader();
+    }
+
+    /**
+     * 写入 PCM 数据，读取 pcm 的 position 到 limit 之间的内容，不改变 pcm 的 position
+     */
+    public void write(ByteBuffer pcm) throws IOException {
+        ByteBuffer data = pcm.duplicate();
+        dataSize += data.remaining();
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        int bytesPerFrame = channelCount * 2;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'});
+        header.putInt((int) Math.min(0xFFFFFFFFL, HEADER_SIZE - 8 + dataSize));
+        header.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+        header.putInt(16);                          // fmt 块长度
+        header.putShort((short) 1);                 // PCM
+        header.putShort((short) channelCount);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * bytesPerFrame);  // 字节率
+        header.putShort((short) bytesPerFrame);     // 块对齐
+        header.putShort((short) 16);                // 位深
+        header.put(new byte[]{'d', 'a', 't', 'a'});
+        header.putInt((int) Math.min(0xFFFFFFFFL, dataSize));
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        if (channel.position() < HEADER_SIZE) {
+            channel.position(HEADER_SIZE);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeHeader();
+        } finally {
+            channel.close();
+        }
+    }
+}
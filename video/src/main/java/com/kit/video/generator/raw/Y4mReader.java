@@ -0,0 +1,155 @@
+package com.kit.video.generator.raw;
+
+import com.kit.video.generator.base.PixelFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * YUV4MPEG2（.y4m）文件读取器，只支持 4:2:0 采样（I420 平面布局）
+ * <p>
+ * 文件通过内存映射读取，返回的每一帧都是映射区的切片，不做拷贝。
+ */
+public class Y4mReader implements FrameReader {
+    static final String SIGNATURE = "YUV4MPEG2";
+    static final String FRAME_TAG = "FRAME";
+    private static final int MAX_LINE = 256;
+
+    private final MappedFile file;
+    private final long fileSize;
+    private final byte[] lineBytes = new byte[MAX_LINE];
+    private long offset;
+    private int width;
+    private int height;
+    private int frameRateNum = 30;
+    private int frameRateDen = 1;
+    private int frameSize;
+    private int frameIndex;
+
+    public Y4mReader(String path) throws IOException {
+        file = new MappedFile(path, false);
+        try {
+            fileSize = file.size();
+            parseHeader(readLine());
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+        frameSize = PixelFormat.I420.getFrameSize(width, height);
+    }
+
+    private void parseHeader(String header) throws IOException {
+        if (header == null) {
+            throw new IOException("Empty file");
+        }
+        String[] tokens = header.split(" ");
+        if (!SIGNATURE.equals(tokens[0])) {
+            throw new IOException("Not a YUV4MPEG2 file");
+        }
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.isEmpty()) continue;
+            String value = token.substring(1);
+            switch (token.charAt(0)) {
+                case 'W':
+                    width = Integer.parseInt(value);
+                    break;
+                case 'H':
+                    height = Integer.parseInt(value);
+                    break;
+                case 'F':
+                    String[] rate = value.split(":");
+                    frameRateNum = Integer.parseInt(rate[0]);
+                    frameRateDen = Integer.parseInt(rate[1]);
+                    break;
+                case 'C':
+                    if (!value.startsWith("420")) {
+                        throw new IOException("Unsupported colorspace: " + value);
+                    }
+                    break;
+                default:
+                    // 忽略隔行、宽高比等参数
+                    break;
+            }
+        }
+        if (width <= 0 || height <= 0 || frameRateNum <= 0 || frameRateDen <= 0) {
+            throw new IOException("Invalid YUV4MPEG2 header: " + header);
+        }
+    }
+
+    /**
+     * 从当前位置读取一行文本（不包括换行符），遇到文件末尾时返回 null
+     */
+    private String readLine() throws IOException {
+        if (offset >= fileSize) return null;
+        ByteBuffer line = file.slice(offset, (int) Math.min(MAX_LINE, fileSize - offset));
+        int length = 0;
+        while (line.hasRemaining()) {
+            byte b = line.get();
+            if (b == '\n') {
+                offset += length + 1;
+                return new String(lineBytes, 0, length, StandardCharsets.US_ASCII);
+            }
+            lineBytes[length++] = b;
+        }
+        throw new IOException("Unterminated line at offset " + offset);
+    }
+
+    @Override
+    public ByteBuffer readFrame() throws IOException {
+        String line = readLine();
+        if (line == null) return null;
+        if (!line.startsWith(FRAME_TAG)) {
+            throw new IOException("Missing FRAME marker at frame " + frameIndex);
+        }
+        ByteBuffer frame = file.slice(offset, frameSize);
+        offset += frameSize;
+        frameIndex++;
+        return frame.asReadOnlyBuffer();
+    }
+
+    @Override
+    public long getPresentationTimeUs(int index) {
+        return index * 1000000L * frameRateDen / frameRateNum;
+    }
+
+    @Override
+    public int getFrameIndex() {
+        return frameIndex;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public PixelFormat getPixelFormat() {
+        return PixelFormat.I420;
+    }
+
+    @Override
+    public int getFrameRateNum() {
+        return frameRateNum;
+    }
+
+    @Override
+    public int getFrameRateDen() {
+        return frameRateDen;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,50 @@
+package com.kit.video.generator.raw;
+
+import com.kit.video.generator.base.PixelFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * YUV4MPEG2（.y4m）文件写入器，写入 I420 平面布局的帧
+ * <p>
+ * 文件通过内存映射写入，帧数据直接放入映射区。
+ */
+public class Y4mWriter implements FrameWriter {
+    private static final byte[] FRAME_HEADER = (Y4mReader.FRAME_TAG + "\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final MappedFile file;
+    private final int frameSize;
+    private long offset;
+
+    public Y4mWriter(String path, int width, int height, int frameRateNum, int frameRateDen) throws IOException {
+        frameSize = PixelFormat.I420.getFrameSize(width, height);
+        file = new MappedFile(path, true);
+        String header = Y4mReader.SIGNATURE + " W" + width + " H" + height
+                + " F" + frameRateNum + ":" + frameRateDen + " Ip A1:1 C420jpeg\n";
+        byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+        file.slice(0, headerBytes.length).put(headerBytes);
+        offset = headerBytes.length;
+    }
+
+    @Override
+    public void writeFrame(ByteBuffer frame) throws IOException {
+        if (frame.remaining() != frameSize) {
+            throw new IllegalArgumentException("Frame size " + frame.remaining() + " != " + frameSize);
+        }
+        ByteBuffer target = file.slice(offset, FRAME_HEADER.length + frameSize);
+        target.put(FRAME_HEADER);
+        target.put(frame.duplicate());
+        offset += FRAME_HEADER.length + frameSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            file.truncate(offset);
+        } finally {
+            file.close();
+        }
+    }
+}
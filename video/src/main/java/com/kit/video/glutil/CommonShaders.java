@@ -76,7 +76,7 @@ public class CommonShaders {
     public static final String FRAGMENT_SHADER_EXTERNAL_CLAMP_TO_BORDER =
             "#extension GL_OES_EGL_image_external : require\n"
                     + "varying mediump vec2 sample_coordinate;\n"
-                    + "uniform sampler2D video_frame;\n"
+                    + "uniform samplerExternalOES video_frame;\n"
                     + "\n"
                     + "void main() {\n"
                     + " gl_FragColor = vec4(0.0, 0.0, 0.0, 0.0);\n"
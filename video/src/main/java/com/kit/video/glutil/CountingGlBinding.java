@@ -0,0 +1,268 @@
+package com.kit.video.glutil;
+
+import java.nio.Buffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 统计 GL 调用次数的 {@link GlBinding}，用于检查每帧实际发出的 GL 调用
+ * <p>
+ * 调用转发给 delegate（测试中可以是不依赖 GPU 的假实现），按方法名计数。
+ * 例如渲染两帧后比较第二帧的调用次数，可以确认状态缓存跳过了重复的绑定和参数设置。
+ */
+public class CountingGlBinding implements GlBinding {
+    private final GlBinding delegate;
+    private final Map<String, int[]> counts = new HashMap<>();
+    private int totalCount;
+
+    public CountingGlBinding(GlBinding delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 指定方法（如 "glBindTexture"）自上次 {@link #reset()} 以来的调用次数
+     */
+    public int getCallCount(String name) {
+        int[] count = counts.get(name);
+        return count != null ? count[0] : 0;
+    }
+
+    /**
+     * 自上次 {@link #reset()} 以来所有 GL 调用的次数
+     */
+    public int getTotalCallCount() {
+        return totalCount;
+    }
+
+    public void reset() {
+        counts.clear();
+        totalCount = 0;
+    }
+
+    private void count(String name) {
+        int[] count = counts.get(name);
+        if (count == null) {
+            count = new int[1];
+            counts.put(name, count);
+        }
+        count[0]++;
+        totalCount++;
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        count("glActiveTexture");
+        delegate.glActiveTexture(texture);
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        count("glBindTexture");
+        delegate.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        count("glTexParameteri");
+        delegate.glTexParameteri(target, pname, param);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        count("glGenTextures");
+        delegate.glGenTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format,
+                             int type, Buffer pixels) {
+        count("glTexImage2D");
+        delegate.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        count("glDeleteTextures");
+        delegate.glDeleteTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        count("glUseProgram");
+        delegate.glUseProgram(program);
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        count("glDeleteProgram");
+        delegate.glDeleteProgram(program);
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        count("glUniform1i");
+        delegate.glUniform1i(location, x);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        count("glUniformMatrix4fv");
+        delegate.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        count("glEnableVertexAttribArray");
+        delegate.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        count("glDisableVertexAttribArray");
+        delegate.glDisableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        count("glVertexAttribPointer");
+        delegate.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        count("glVertexAttribPointer");
+        delegate.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        count("glGenBuffers");
+        delegate.glGenBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        count("glBindBuffer");
+        delegate.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        count("glBufferData");
+        delegate.glBufferData(target, size, data, usage);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        count("glDeleteBuffers");
+        delegate.glDeleteBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glGenVertexArrays(int n, int[] arrays, int offset) {
+        count("glGenVertexArrays");
+        delegate.glGenVertexArrays(n, arrays, offset);
+    }
+
+    @Override
+    public void glBindVertexArray(int array) {
+        count("glBindVertexArray");
+        delegate.glBindVertexArray(array);
+    }
+
+    @Override
+    public void glDeleteVertexArrays(int n, int[] arrays, int offset) {
+        count("glDeleteVertexArrays");
+        delegate.glDeleteVertexArrays(n, arrays, offset);
+    }
+
+    @Override
+    public String glGetString(int name) {
+        count("glGetString");
+        return delegate.glGetString(name);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        count("glGetUniformLocation");
+        return delegate.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        count("glUniform1f");
+        delegate.glUniform1f(location, x);
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        count("glUniform2f");
+        delegate.glUniform2f(location, x, y);
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+        count("glUniform4f");
+        delegate.glUniform4f(location, x, y, z, w);
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        count("glGenFramebuffers");
+        delegate.glGenFramebuffers(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        count("glBindFramebuffer");
+        delegate.glBindFramebuffer(target, framebuffer);
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        count("glFramebufferTexture2D");
+        delegate.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        count("glCheckFramebufferStatus");
+        return delegate.glCheckFramebufferStatus(target);
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        count("glDeleteFramebuffers");
+        delegate.glDeleteFramebuffers(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        count("glViewport");
+        delegate.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        count("glClear");
+        delegate.glClear(mask);
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        count("glDrawArrays");
+        delegate.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void glFlush() {
+        count("glFlush");
+        delegate.glFlush();
+    }
+
+    @Override
+    public int glGetError() {
+        count("glGetError");
+        return delegate.glGetError();
+    }
+}
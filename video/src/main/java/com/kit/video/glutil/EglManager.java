@@ -0,0 +1,271 @@
+package com.kit.video.glutil;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 进程内共享的 EGL 显示、配置和上下文管理
+ * <p>
+ * EGLDisplay 在进程内是同一个对象，eglTerminate 会使所有使用它的上下文失效，因此这里用引用计数管理：
+ * 第一次 {@link #acquireDisplay()} 时初始化，最后一个 {@link #releaseDisplay()} 时才终止。
+ * EGLConfig 按属性缓存；释放的上下文放入空闲池（最多 {@value #MAX_IDLE_CONTEXTS} 个），
+ * 下次以相同的共享上下文和配置申请时直接复用，省去 eglCreateContext 的开销。
+ * 池中的上下文同样持有显示的引用，调用 {@link #trimContextPool()} 销毁它们。
+ * <p>
+ * 配置和上下文优先使用 OpenGL ES 3.x，设备或共享的上下文不支持时退回 2.0；渲染器通过 {@link GlCapabilities} 判断可用的功能。
+ */
+public class EglManager {
+    private static final String TAG = "EglManager";
+    // 定义用于可记录Surface的EGL属性
+    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
+    private static final int MAX_IDLE_CONTEXTS = 2;
+
+    private static final EglManager INSTANCE = new EglManager();
+
+    private static final class ContextEntry {
+        final EGLContext context;
+        final EGLContext sharedContext;
+        final EGLConfig config;
+        final int clientVersion;
+
+        ContextEntry(EGLContext context, EGLContext sharedContext, EGLConfig config, int clientVersion) {
+            this.context = context;
+            this.sharedContext = sharedContext;
+            this.config = config;
+            this.clientVersion = clientVersion;
+        }
+    }
+
+    private EGLDisplay eglDisplay = EGL14.EGL_NO_DISPLAY;
+    private int displayRefCount;
+    private final Map<String, EGLConfig> configs = new HashMap<>();
+    private final Map<EGLContext, ContextEntry> activeContexts = new HashMap<>();
+    private final List<ContextEntry> idleContexts = new ArrayList<>();
+
+    private EglManager() {
+    }
+
+    public static EglManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 获取 EGL 显示，引用计数加一，用完后调用 {@link #releaseDisplay()}
+     */
+    public synchronized EGLDisplay acquireDisplay() {
+        if (displayRefCount == 0) {
+            EGLDisplay display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+            if (display == EGL14.EGL_NO_DISPLAY) {
+                throw new RuntimeException("eglGetDisplay failed");
+            }
+            final int[] version = new int[2];
+            if (!EGL14.eglInitialize(display, version, 0, version, 1)) {
+                throw new RuntimeException("eglInitialize failed");
+            }
+            eglDisplay = display;
+        }
+        displayRefCount++;
+        return eglDisplay;
+    }
+
+    /**
+     * 引用计数减一，没有任何使用者时终止 EGL 显示
+     */
+    public synchronized void releaseDisplay() {
+        if (displayRefCount == 0) {
+            Log.w(TAG, "releaseDisplay called without acquireDisplay");
+            return;
+        }
+        if (--displayRefCount == 0) {
+            EGL14.eglTerminate(eglDisplay);
+            eglDisplay = EGL14.EGL_NO_DISPLAY;
+            // 配置属于已终止的显示，不能再使用
+            configs.clear();
+        }
+    }
+
+    /**
+     * 选择 EGL 配置，结果按属性缓存（需持有显示的引用）
+     * <p>
+     * 依次尝试：支持 OpenGL ES 3 的 RGBA8888、支持 OpenGL ES 2 的 RGBA8888、支持 OpenGL ES 2 的 RGB888。
+     *
+     * @return 匹配的配置，如果都没有则返回 null
+     */
+    public synchronized EGLConfig chooseConfig(final boolean withDepthBuffer, final boolean isRecordable) {
+        String key = withDepthBuffer + "/" + isRecordable;
+        EGLConfig config = configs.get(key);
+        if (config != null) return config;
+
+        config = chooseConfig(EGLExt.EGL_OPENGL_ES3_BIT_KHR, 8, withDepthBuffer, isRecordable);
+        if (config == null) {
+            config = chooseConfig(EGL14.EGL_OPENGL_ES2_BIT, 8, withDepthBuffer, isRecordable);
+        }
+        if (config == null) {
+            config = chooseConfig(EGL14.EGL_OPENGL_ES2_BIT, 0, withDepthBuffer, isRecordable);
+        }
+        if (config == null) {
+            Log.w(TAG, "unable to find EGLConfig, depth=" + withDepthBuffer + " recordable=" + isRecordable);
+            return null;
+        }
+        configs.put(key, config);
+        return config;
+    }
+
+    private EGLConfig chooseConfig(int renderableType, int alphaSize, boolean withDepthBuffer, boolean isRecordable) {
+        final int[] attribList = new int[15];
+        int offset = 0;
+        attribList[offset++] = EGL14.EGL_RENDERABLE_TYPE;
+        attribList[offset++] = renderableType;
+        attribList[offset++] = EGL14.EGL_RED_SIZE;
+        attribList[offset++] = 8;
+        attribList[offset++] = EGL14.EGL_GREEN_SIZE;
+        attribList[offset++] = 8;
+        attribList[offset++] = EGL14.EGL_BLUE_SIZE;
+        attribList[offset++] = 8;
+        attribList[offset++] = EGL14.EGL_ALPHA_SIZE;
+        attribList[offset++] = alphaSize;
+        if (withDepthBuffer) {
+            attribList[offset++] = EGL14.EGL_DEPTH_SIZE;
+            attribList[offset++] = 16;
+        }
+        if (isRecordable) {
+            // MediaCodec 的输入 Surface 需要此标志
+            attribList[offset++] = EGL_RECORDABLE_ANDROID;
+            attribList[offset++] = 1;
+        }
+        attribList[offset] = EGL14.EGL_NONE;
+
+        final EGLConfig[] result = new EGLConfig[1];
+        final int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(eglDisplay, attribList, 0, result, 0, result.length, numConfigs, 0)
+                || numConfigs[0] == 0) {
+            return null;
+        }
+        return result[0];
+    }
+
+    /**
+     * 获取一个 OpenGL ES 上下文，优先复用空闲池中共享上下文和配置都相同的上下文
+     * <p>
+     * 配置支持 OpenGL ES 3 时先请求 3.x，失败（如共享的上下文是 2.0）再请求 2.0。
+     * 上下文持有显示的引用，用完后调用 {@link #releaseContext(EGLContext)}。
+     *
+     * @param sharedContext 共享的上下文，为 null 时不共享
+     */
+    public synchronized EGLContext acquireContext(EGLContext sharedContext, EGLConfig config) {
+        if (sharedContext == null) sharedContext = EGL14.EGL_NO_CONTEXT;
+        for (Iterator<ContextEntry> it = idleContexts.iterator(); it.hasNext(); ) {
+            ContextEntry entry = it.next();
+            if (entry.sharedContext.equals(sharedContext) && entry.config.equals(config)) {
+                it.remove();
+                activeContexts.put(entry.context, entry);
+                return entry.context;
+            }
+        }
+
+        EGLDisplay display = acquireDisplay();
+        final int[] renderableType = new int[1];
+        EGL14.eglGetConfigAttrib(display, config, EGL14.EGL_RENDERABLE_TYPE, renderableType, 0);
+        int clientVersion = 3;
+        EGLContext context = EGL14.EGL_NO_CONTEXT;
+        if ((renderableType[0] & EGLExt.EGL_OPENGL_ES3_BIT_KHR) != 0) {
+            context = createContext(display, config, sharedContext, 3);
+        }
+        if (context == EGL14.EGL_NO_CONTEXT) {
+            clientVersion = 2;
+            context = createContext(display, config, sharedContext, 2);
+        }
+        if (context == EGL14.EGL_NO_CONTEXT) {
+            releaseDisplay();
+            throw new RuntimeException("eglCreateContext failed");
+        }
+        activeContexts.put(context, new ContextEntry(context, sharedContext, config, clientVersion));
+        return context;
+    }
+
+    /**
+     * 上下文创建时请求的 OpenGL ES 主版本（3 或 2），未知的上下文返回 0
+     */
+    public synchronized int getClientVersion(EGLContext context) {
+        ContextEntry entry = activeContexts.get(context);
+        return entry != null ? entry.clientVersion : 0;
+    }
+
+    /**
+     * @return 创建失败时返回 EGL_NO_CONTEXT
+     */
+    private static EGLContext createContext(EGLDisplay display, EGLConfig config, EGLContext sharedContext,
+                                            int clientVersion) {
+        final int[] attribList = {
+                EGL14.EGL_CONTEXT_CLIENT_VERSION, clientVersion,
+                EGL14.EGL_NONE
+        };
+        EGLContext context = EGL14.eglCreateContext(display, config, sharedContext, attribList, 0);
+        int error = EGL14.eglGetError();
+        if (context == null || context == EGL14.EGL_NO_CONTEXT || error != EGL14.EGL_SUCCESS) {
+            Log.w(TAG, "eglCreateContext(OpenGL ES " + clientVersion + "): EGL error: 0x" + Integer.toHexString(error));
+            return EGL14.EGL_NO_CONTEXT;
+        }
+        return context;
+    }
+
+    /**
+     * 归还上下文，空闲池未满时保留以便复用，否则销毁
+     * <p>
+     * 调用前上下文不能在其他线程中处于当前状态；如果在当前线程中处于当前状态，会先解除绑定。
+     */
+    public void releaseContext(EGLContext context) {
+        releaseContext(context, true);
+    }
+
+    /**
+     * 归还上下文
+     *
+     * @param reusable 为 false 时直接销毁，不放入空闲池（如不在渲染线程中释放，上下文中的 GL 对象没能删除）
+     */
+    public synchronized void releaseContext(EGLContext context, boolean reusable) {
+        ContextEntry entry = activeContexts.remove(context);
+        if (entry == null) {
+            Log.w(TAG, "releaseContext: unknown context " + context);
+            return;
+        }
+        if (context.equals(EGL14.eglGetCurrentContext())) {
+            EGL14.eglMakeCurrent(eglDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        }
+        if (reusable && idleContexts.size() < MAX_IDLE_CONTEXTS) {
+            idleContexts.add(entry);
+        } else {
+            destroyContext(entry);
+        }
+    }
+
+    /**
+     * 销毁空闲池中的所有上下文（如应用进入后台时），没有其他使用者时显示随之终止
+     */
+    public synchronized void trimContextPool() {
+        for (ContextEntry entry : idleContexts) {
+            destroyContext(entry);
+        }
+        idleContexts.clear();
+    }
+
+    private void destroyContext(ContextEntry entry) {
+        // 上下文中的程序随之销毁
+        ProgramCache.getInstance().onContextDestroyed(entry.context);
+        GlCapabilities.onContextDestroyed(entry.context);
+        if (!EGL14.eglDestroyContext(eglDisplay, entry.context)) {
+            Log.e(TAG, "eglDestroyContext: " + EGL14.eglGetError());
+        }
+        releaseDisplay();
+    }
+}
@@ -39,6 +39,23 @@ public class EglSurface {
         egl.swap(eglSurface);
     }
 
+    /**
+     * 设置时间戳后交换缓冲区，编码器使用该时间戳作为帧的 PTS，而不是 swap 时的系统时间
+     *
+     * @param presentationTimeNs 帧的时间戳，单位：纳秒
+     */
+    public void swap(long presentationTimeNs) {
+        setPresentationTime(presentationTimeNs);
+        egl.swap(eglSurface);
+    }
+
+    /**
+     * 设置下一次 swap 的帧的时间戳，单位：纳秒
+     */
+    public void setPresentationTime(long presentationTimeNs) {
+        egl.setPresentationTime(eglSurface, presentationTimeNs);
+    }
+
     public EGLContext getContext() {
         return egl.getContext();
     }
@@ -4,6 +4,7 @@ import android.opengl.EGL14;
 import android.opengl.EGLConfig;
 import android.opengl.EGLContext;
 import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
 import android.opengl.EGLSurface;
 import android.util.Log;
 
@@ -12,13 +13,10 @@ public class EglWrapper {
     private static final boolean DEBUG = false;
     private static final String TAG = "EglWrapper";
 
-    // 定义用于可记录Surface的EGL属性
-    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
-
     private EGLConfig eglConfig = null;  // EGL配置信息
     private EGLContext eglContext = EGL14.EGL_NO_CONTEXT;  // EGL上下文
     private EGLDisplay eglDisplay = EGL14.EGL_NO_DISPLAY;  // EGL显示
-    private EGLContext defaultContext = EGL14.EGL_NO_CONTEXT;  // 默认的EGL上下文
+    private int clientVersion;  // 上下文的 OpenGL ES 主版本
 
     // 构造函数，初始化EGL环境
     public EglWrapper(final EGLContext shared_context, final boolean with_depth_buffer, final boolean isRecordable) {
@@ -26,13 +24,18 @@ public class EglWrapper {
         init(shared_context, with_depth_buffer, isRecordable);
     }
 
-    // 释放EGL资源
+    // 释放EGL资源：上下文归还给 EglManager 的空闲池，显示由引用计数决定是否终止
     public void release() {
+        release(true);
+    }
+
+    // 释放EGL资源，reusable 为 false 时上下文直接销毁，不放入空闲池
+    public void release(final boolean reusable) {
         if (DEBUG) Log.v(TAG, "release:");
         if (eglDisplay != EGL14.EGL_NO_DISPLAY) {
-            destroyContext();  // 销毁EGL上下文
-            EGL14.eglTerminate(eglDisplay);  // 终止EGL显示
+            destroyContext(reusable);  // 归还EGL上下文
             EGL14.eglReleaseThread();  // 释放EGL线程
+            EglManager.getInstance().releaseDisplay();
         }
         eglDisplay = EGL14.EGL_NO_DISPLAY;
         eglContext = EGL14.EGL_NO_CONTEXT;
@@ -51,6 +54,11 @@ public class EglWrapper {
         return eglContext;
     }
 
+    // 获取上下文的 OpenGL ES 主版本（3 或 2），可用的功能以当前上下文的 GlCapabilities 为准
+    public int getClientVersion() {
+        return clientVersion;
+    }
+
     // 查询Surface的属性
     int querySurface(final EGLSurface eglSurface, final int what) {
         final int[] value = new int[1];
@@ -65,31 +73,32 @@ public class EglWrapper {
             throw new RuntimeException("EGL already set up");
         }
 
-        eglDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);  // 获取EGL显示
-        if (eglDisplay == EGL14.EGL_NO_DISPLAY) {
-            throw new RuntimeException("eglGetDisplay failed");
-        }
-
-        final int[] version = new int[2];
-        if (!EGL14.eglInitialize(eglDisplay, version, 0, version, 1)) {
-            eglDisplay = null;
-            throw new RuntimeException("eglInitialize failed");
-        }
+        // 显示、配置和上下文由进程内共享的 EglManager 管理
+        final EglManager manager = EglManager.getInstance();
+        eglDisplay = manager.acquireDisplay();  // 获取EGL显示
 
-        shared_context = shared_context != null ? shared_context : EGL14.EGL_NO_CONTEXT;
         if (eglContext == EGL14.EGL_NO_CONTEXT) {
-            eglConfig = getConfig(with_depth_buffer, isRecordable);  // 获取EGL配置
+            eglConfig = manager.chooseConfig(with_depth_buffer, isRecordable);  // 获取EGL配置
             if (eglConfig == null) {
+                manager.releaseDisplay();
+                eglDisplay = EGL14.EGL_NO_DISPLAY;
                 throw new RuntimeException("chooseConfig failed");
             }
-            // 创建EGL渲染上下文
-            eglContext = createContext(shared_context);
+            // 获取EGL渲染上下文（优先复用空闲的上下文）
+            try {
+                eglContext = manager.acquireContext(shared_context, eglConfig);
+            } catch (RuntimeException e) {
+                manager.releaseDisplay();
+                eglDisplay = EGL14.EGL_NO_DISPLAY;
+                throw e;
+            }
         }
 
         // 确保EGL上下文成功创建
         final int[] values = new int[1];
         EGL14.eglQueryContext(eglDisplay, eglContext, EGL14.EGL_CONTEXT_CLIENT_VERSION, values, 0);
-        if (DEBUG) Log.d(TAG, "EGLContext created, client version " + values[0]);
+        clientVersion = values[0];
+        if (DEBUG) Log.d(TAG, "EGLContext created, client version " + clientVersion);
         makeDefault();  // 设置默认上下文
     }
 
@@ -132,33 +141,25 @@ public class EglWrapper {
         return EGL14.EGL_SUCCESS;
     }
 
-    // 创建EGL上下文
-    private EGLContext createContext(final EGLContext shared_context) {
-        final int[] attrib_list = {
-                EGL14.EGL_CONTEXT_CLIENT_VERSION, 2,  // OpenGL ES 2.0
-                EGL14.EGL_NONE
-        };
-        final EGLContext context = EGL14.eglCreateContext(eglDisplay, eglConfig, shared_context, attrib_list, 0);
-        checkEglError("eglCreateContext");
-        return context;
+    // 设置下一次 swap 的帧的时间戳，MediaCodec 的输入 Surface 以它作为编码帧的 PTS
+    boolean setPresentationTime(final EGLSurface surface, final long presentationTimeNs) {
+        if (!EGLExt.eglPresentationTimeANDROID(eglDisplay, surface, presentationTimeNs)) {
+            if (DEBUG) Log.w(TAG, "eglPresentationTimeANDROID:err=" + EGL14.eglGetError());
+            return false;
+        }
+        return true;
     }
 
-    // 销毁EGL上下文
-    private void destroyContext() {
-        if (DEBUG) Log.v(TAG, "destroyContext:");
+    // 上下文是否为当前线程的当前上下文
+    public boolean isCurrent() {
+        return eglContext != EGL14.EGL_NO_CONTEXT && eglContext.equals(EGL14.eglGetCurrentContext());
+    }
 
-        if (!EGL14.eglDestroyContext(eglDisplay, eglContext)) {
-            Log.e("destroyContext", "display:" + eglDisplay + " context: " + eglContext);
-            Log.e(TAG, "eglDestroyContex:" + EGL14.eglGetError());
-        }
+    // 归还EGL上下文
+    private void destroyContext(final boolean reusable) {
+        if (DEBUG) Log.v(TAG, "destroyContext:");
+        EglManager.getInstance().releaseContext(eglContext, reusable);
         eglContext = EGL14.EGL_NO_CONTEXT;
-        if (defaultContext != EGL14.EGL_NO_CONTEXT) {
-            if (!EGL14.eglDestroyContext(eglDisplay, defaultContext)) {
-                Log.e("destroyContext", "display:" + eglDisplay + " context: " + defaultContext);
-                Log.e(TAG, "eglDestroyContex:" + EGL14.eglGetError());
-            }
-            defaultContext = EGL14.EGL_NO_CONTEXT;
-        }
     }
 
     EGLSurface createWindowSurface(final Object surface) {
@@ -188,53 +189,4 @@ public class EglWrapper {
         surface = EGL14.EGL_NO_SURFACE;
         if (DEBUG) Log.v(TAG, "destroySurface:finished");
     }
-
-    private void checkEglError(final String msg) {
-        int error;
-        if ((error = EGL14.eglGetError()) != EGL14.EGL_SUCCESS) {
-            throw new RuntimeException(msg + ": EGL error: 0x" + Integer.toHexString(error));
-        }
-    }
-
-    @SuppressWarnings("unused")
-    private EGLConfig getConfig(final boolean with_depth_buffer, final boolean isRecordable) {
-        final int[] attribList = {
-                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
-                EGL14.EGL_RED_SIZE, 8,
-                EGL14.EGL_GREEN_SIZE, 8,
-                EGL14.EGL_BLUE_SIZE, 8,
-                EGL14.EGL_ALPHA_SIZE, 8,
-                EGL14.EGL_NONE, EGL14.EGL_NONE,    //EGL14.EGL_STENCIL_SIZE, 8,
-                EGL14.EGL_NONE, EGL14.EGL_NONE,    //EGL_RECORDABLE_ANDROID, 1,	// 此标志需要录制MediaCodec
-                EGL14.EGL_NONE, EGL14.EGL_NONE,    //	with_depth_buffer ? EGL14.EGL_DEPTH_SIZE : EGL14.EGL_NONE,
-                // with_depth_buffer ? 16 : 0,
-                EGL14.EGL_NONE
-        };
-        int offset = 10;
-        if (false) {
-            attribList[offset++] = EGL14.EGL_STENCIL_SIZE;
-            attribList[offset++] = 8;
-        }
-        if (with_depth_buffer) {
-            attribList[offset++] = EGL14.EGL_DEPTH_SIZE;
-            attribList[offset++] = 16;
-        }
-        if (isRecordable) {// MediaCodecの入力用Surfaceの場合
-            attribList[offset++] = EGL_RECORDABLE_ANDROID;
-            attribList[offset++] = 1;
-        }
-        for (int i = attribList.length - 1; i >= offset; i--) {
-            attribList[i] = EGL14.EGL_NONE;
-        }
-        final EGLConfig[] configs = new EGLConfig[1];
-        final int[] numConfigs = new int[1];
-        if (!EGL14.eglChooseConfig(eglDisplay, attribList, 0, configs, 0, configs.length, numConfigs, 0)) {
-            // XXX，最好退回到RGB565
-            Log.w(TAG, "unable to find RGBA8888 / " + " EGLConfig");
-            return null;
-        }
-        return configs[0];
-    }
-
 }
-
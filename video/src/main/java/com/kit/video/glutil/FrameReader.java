@@ -0,0 +1,263 @@
+package com.kit.video.glutil;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 把渲染结果读回 CPU（缩略图、识别、软件编码等）
+ * <p>
+ * OpenGL ES 3.0 以上使用 {@value #RING_SIZE} 个像素缓冲对象（PBO）组成的环：glReadPixels 只是把复制命令放入队列，
+ * 立即返回，GPU 完成后（用 fence 判断）再映射缓冲取出数据，结果比读取晚 1~2 帧送达，渲染线程不需要等待 GPU。
+ * 环满时最早的一帧会被等待完成，此时它通常早已完成。OpenGL ES 2.0 没有 PBO，退化为同步的 glReadPixels，立即送达。
+ * <p>
+ * 像素为 RGBA8888，行从下到上排列（GL 的坐标系）。数据放在池化的直接缓冲中，
+ * 使用者处理完后调用 {@link Frame#release()} 归还（可以在其他线程中调用），不归还时会分配新的缓冲。
+ * 除 {@link Frame#release()} 外的方法都需要在 GL 线程中调用。
+ */
+public class FrameReader {
+    private static final String TAG = "FrameReader";
+    private static final int RING_SIZE = 3;
+    private static final int BYTES_PER_PIXEL = 4;
+    // 池中最多保留的空闲缓冲
+    private static final int MAX_POOLED_BUFFERS = RING_SIZE + 2;
+
+    public interface Callback {
+        /**
+         * 一帧数据读取完成，在 GL 线程中调用
+         */
+        void onFrame(Frame frame);
+    }
+
+    /**
+     * 读回的一帧
+     */
+    public static final class Frame {
+        private final FrameReader reader;
+        private final ByteBuffer pixels;
+        private final int width;
+        private final int height;
+        private final long timestampNs;
+        private boolean released;
+
+        Frame(FrameReader reader, ByteBuffer pixels, int width, int height, long timestampNs) {
+            this.reader = reader;
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.timestampNs = timestampNs;
+        }
+
+        /**
+         * RGBA8888 像素，行从下到上排列，每行 width * 4 字节
+         */
+        public ByteBuffer getPixels() {
+            return pixels;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * 读取时传入的时间戳，单位：纳秒
+         */
+        public long getTimestampNs() {
+            return timestampNs;
+        }
+
+        /**
+         * 归还像素缓冲，之后不能再访问 {@link #getPixels()}；重复调用会被忽略，同一个缓冲不会被两次放入池中
+         */
+        public void release() {
+            synchronized (this) {
+                if (released) return;
+                released = true;
+            }
+            reader.recycle(pixels);
+        }
+    }
+
+    /**
+     * 环中的一个 PBO 和它对应的读取请求
+     */
+    private static final class PendingRead {
+        final int buffer;
+        GlFence fence;
+        long timestampNs;
+
+        PendingRead(int buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private final GlBinding gl;
+    private final int width;
+    private final int height;
+    private final int frameSize;
+    private final Callback callback;
+    private final ConcurrentLinkedQueue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<PendingRead> freeReads = new ArrayDeque<>();
+    private final ArrayDeque<PendingRead> pendingReads = new ArrayDeque<>();
+    private boolean usePbo;
+    private boolean isSetup;
+
+    /**
+     * @param gl       与同一上下文中其他渲染器共用的 GL 调用
+     * @param width    读取区域的宽度
+     * @param height   读取区域的高度
+     * @param callback 数据送达的回调
+     */
+    public FrameReader(GlBinding gl, int width, int height, Callback callback) {
+        this.gl = gl;
+        this.width = width;
+        this.height = height;
+        this.frameSize = width * height * BYTES_PER_PIXEL;
+        this.callback = callback;
+    }
+
+    /**
+     * 创建 PBO（OpenGL ES 3.0 以上）
+     */
+    public void setup() {
+        usePbo = GlCapabilities.query(gl).supportsPixelBufferObjects();
+        if (usePbo) {
+            int[] buffers = new int[RING_SIZE];
+            gl.glGenBuffers(RING_SIZE, buffers, 0);
+            for (int buffer : buffers) {
+                gl.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, buffer);
+                gl.glBufferData(GLES30.GL_PIXEL_PACK_BUFFER, frameSize, null, GLES30.GL_STREAM_READ);
+                freeReads.add(new PendingRead(buffer));
+            }
+            gl.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+            ShaderUtil.checkGlError("FrameReader setup");
+        }
+        isSetup = true;
+        Log.d(TAG, "readback " + width + "x" + height + (usePbo ? " via PBO ring" : " via glReadPixels"));
+    }
+
+    /**
+     * 是否为异步读取（使用 PBO）
+     */
+    public boolean isAsync() {
+        return usePbo;
+    }
+
+    /**
+     * 读取帧缓冲左下角 width x height 的区域，并送达已经完成的读取
+     *
+     * @param framebuffer 帧缓冲，0 表示当前 EGLSurface（需在 swap 之前读取）
+     * @param timestampNs 随数据送达的时间戳
+     */
+    public void read(int framebuffer, long timestampNs) {
+        if (!isSetup) {
+            throw new IllegalStateException("setup() has not been called");
+        }
+        gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+        if (!usePbo) {
+            ByteBuffer pixels = obtainBuffer();
+            GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixels);
+            ShaderUtil.checkGlError("glReadPixels");
+            callback.onFrame(new Frame(this, pixels, width, height, timestampNs));
+            return;
+        }
+
+        deliverCompleted(false);
+        if (freeReads.isEmpty()) {
+            // 环满：等待最早的读取完成
+            complete(pendingReads.poll(), true);
+        }
+        PendingRead read = freeReads.poll();
+        gl.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, read.buffer);
+        // 绑定了 PIXEL_PACK_BUFFER 时最后一个参数是缓冲内的偏移，调用立即返回
+        GLES30.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, 0);
+        gl.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+        read.fence = GlFence.create();
+        read.timestampNs = timestampNs;
+        pendingReads.add(read);
+        ShaderUtil.checkGlError("FrameReader read");
+    }
+
+    /**
+     * 等待并送达所有未完成的读取（如停止录制时），需要上下文仍是当前上下文
+     */
+    public void flush() {
+        deliverCompleted(true);
+    }
+
+    private void deliverCompleted(boolean wait) {
+        while (!pendingReads.isEmpty()) {
+            PendingRead read = pendingReads.peek();
+            if (!wait && !read.fence.isSignaled()) return;
+            complete(pendingReads.poll(), true);
+        }
+    }
+
+    /**
+     * 映射 PBO，把数据复制到池化的缓冲中送达（GPU 未完成时 glMapBufferRange 会阻塞）
+     */
+    private void complete(PendingRead read, boolean deliver) {
+        read.fence.release();
+        read.fence = null;
+        if (deliver) {
+            gl.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, read.buffer);
+            Buffer mapped = GLES30.glMapBufferRange(GLES30.GL_PIXEL_PACK_BUFFER, 0, frameSize, GLES30.GL_MAP_READ_BIT);
+            if (mapped != null) {
+                ByteBuffer pixels = obtainBuffer();
+                pixels.put((ByteBuffer) mapped).flip();
+                GLES30.glUnmapBuffer(GLES30.GL_PIXEL_PACK_BUFFER);
+                gl.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+                callback.onFrame(new Frame(this, pixels, width, height, read.timestampNs));
+            } else {
+                gl.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+                Log.e(TAG, "glMapBufferRange failed: 0x" + Integer.toHexString(gl.glGetError()));
+            }
+        }
+        freeReads.add(read);
+    }
+
+    private ByteBuffer obtainBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(frameSize).order(ByteOrder.nativeOrder());
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private void recycle(ByteBuffer buffer) {
+        if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+            bufferPool.offer(buffer);
+        }
+    }
+
+    /**
+     * 丢弃未完成的读取并删除 PBO
+     */
+    public void release() {
+        while (!pendingReads.isEmpty()) {
+            complete(pendingReads.poll(), false);
+        }
+        if (!freeReads.isEmpty()) {
+            int[] buffers = new int[freeReads.size()];
+            int i = 0;
+            for (PendingRead read : freeReads) {
+                buffers[i++] = read.buffer;
+            }
+            gl.glDeleteBuffers(buffers.length, buffers, 0);
+            freeReads.clear();
+        }
+        bufferPool.clear();
+        isSetup = false;
+    }
+}
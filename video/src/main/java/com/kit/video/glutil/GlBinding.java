@@ -0,0 +1,90 @@
+package com.kit.video.glutil;
+
+import java.nio.Buffer;
+
+/**
+ * 渲染器使用的 GL 调用
+ * <p>
+ * 渲染器通过该接口调用 GL，而不是直接调用 GLES20 的静态方法，这样可以插入状态缓存（{@link GlStateCache}）、
+ * 调用计数（{@link CountingGlBinding}），也可以在测试中替换为不依赖 GPU 的假实现。方法与 GLES20 的同名方法一致。
+ */
+public interface GlBinding {
+    void glActiveTexture(int texture);
+
+    void glBindTexture(int target, int texture);
+
+    void glTexParameteri(int target, int pname, int param);
+
+    void glGenTextures(int n, int[] textures, int offset);
+
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format,
+                      int type, Buffer pixels);
+
+    void glDeleteTextures(int n, int[] textures, int offset);
+
+    void glUseProgram(int program);
+
+    void glDeleteProgram(int program);
+
+    void glUniform1i(int location, int x);
+
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glDisableVertexAttribArray(int index);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr);
+
+    /**
+     * 从当前绑定的 GL_ARRAY_BUFFER 读取顶点属性，offset 为字节偏移
+     */
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+
+    void glGenBuffers(int n, int[] buffers, int offset);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBufferData(int target, int size, Buffer data, int usage);
+
+    void glDeleteBuffers(int n, int[] buffers, int offset);
+
+    /**
+     * 顶点数组对象（VAO）需要 OpenGL ES 3.0
+     */
+    void glGenVertexArrays(int n, int[] arrays, int offset);
+
+    void glBindVertexArray(int array);
+
+    void glDeleteVertexArrays(int n, int[] arrays, int offset);
+
+    String glGetString(int name);
+
+    int glGetUniformLocation(int program, String name);
+
+    void glUniform1f(int location, float x);
+
+    void glUniform2f(int location, float x, float y);
+
+    void glUniform4f(int location, float x, float y, float z, float w);
+
+    void glGenFramebuffers(int n, int[] framebuffers, int offset);
+
+    void glBindFramebuffer(int target, int framebuffer);
+
+    void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+
+    int glCheckFramebufferStatus(int target);
+
+    void glDeleteFramebuffers(int n, int[] framebuffers, int offset);
+
+    void glViewport(int x, int y, int width, int height);
+
+    void glClear(int mask);
+
+    void glDrawArrays(int mode, int first, int count);
+
+    void glFlush();
+
+    int glGetError();
+}
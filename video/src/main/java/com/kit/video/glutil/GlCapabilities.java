@@ -0,0 +1,159 @@
+package com.kit.video.glutil;
+
+import android.opengl.EGL14;
+import android.opengl.EGLContext;
+import android.opengl.GLES20;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 当前 GL 上下文支持的功能，渲染器据此选择更快的实现（VAO、PBO、栅栏、程序二进制等），不支持时退回 OpenGL ES 2.0 的做法
+ * <p>
+ * 版本来自 GL_VERSION 而不是创建上下文时请求的版本：请求 2.0 的上下文在很多设备上实际也是 3.x。
+ * {@link #current()} 按 EGL 上下文缓存，可以每帧调用；{@link #query(GlBinding)} 每次都查询，便于在测试中使用假的 {@link GlBinding}。
+ */
+public final class GlCapabilities {
+    private static final Map<EGLContext, GlCapabilities> CONTEXT_CAPABILITIES = new HashMap<>();
+
+    private final int majorVersion;
+    private final int minorVersion;
+    private final Set<String> extensions;
+
+    private GlCapabilities(int majorVersion, int minorVersion, Set<String> extensions) {
+        this.majorVersion = majorVersion;
+        this.minorVersion = minorVersion;
+        this.extensions = extensions;
+    }
+
+    /**
+     * 查询 gl 所在上下文的功能
+     */
+    public static GlCapabilities query(GlBinding gl) {
+        return parse(gl.glGetString(GLES20.GL_VERSION), gl.glGetString(GLES20.GL_EXTENSIONS));
+    }
+
+    /**
+     * 当前线程的上下文的功能，按上下文缓存
+     *
+     * @throws IllegalStateException 当前线程没有 EGL 上下文
+     */
+    public static GlCapabilities current() {
+        EGLContext context = EGL14.eglGetCurrentContext();
+        if (context == null || context.equals(EGL14.EGL_NO_CONTEXT)) {
+            throw new IllegalStateException("No current EGL context");
+        }
+        synchronized (CONTEXT_CAPABILITIES) {
+            GlCapabilities capabilities = CONTEXT_CAPABILITIES.get(context);
+            if (capabilities == null) {
+                capabilities = query(Gles20Binding.INSTANCE);
+                CONTEXT_CAPABILITIES.put(context, capabilities);
+            }
+            return capabilities;
+        }
+    }
+
+    /**
+     * 上下文销毁时由 {@link EglManager} 调用，句柄可能被新的上下文复用
+     */
+    static void onContextDestroyed(EGLContext context) {
+        synchronized (CONTEXT_CAPABILITIES) {
+            CONTEXT_CAPABILITIES.remove(context);
+        }
+    }
+
+    /**
+     * 解析 GL_VERSION（形如 "OpenGL ES 3.2 V@0502.0"）和 GL_EXTENSIONS（空格分隔），无法识别的版本视为 2.0
+     */
+    static GlCapabilities parse(String version, String extensionList) {
+        int major = 2;
+        int minor = 0;
+        String prefix = "OpenGL ES ";
+        if (version != null && version.startsWith(prefix) && version.length() >= prefix.length() + 3
+                && version.charAt(prefix.length() + 1) == '.') {
+            char majorChar = version.charAt(prefix.length());
+            char minorChar = version.charAt(prefix.length() + 2);
+            if (Character.isDigit(majorChar) && Character.isDigit(minorChar)) {
+                major = majorChar - '0';
+                minor = minorChar - '0';
+            }
+        }
+        Set<String> extensions = new HashSet<>();
+        if (extensionList != null) {
+            for (String extension : extensionList.split(" ")) {
+                if (!extension.isEmpty()) extensions.add(extension);
+            }
+        }
+        return new GlCapabilities(major, minor, Collections.unmodifiableSet(extensions));
+    }
+
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    public boolean isGles3() {
+        return majorVersion >= 3;
+    }
+
+    /**
+     * 顶点数组对象（glGenVertexArrays），Java 层只能使用 3.0 的核心接口
+     */
+    public boolean supportsVertexArrayObjects() {
+        return isGles3();
+    }
+
+    /**
+     * 像素缓冲对象（GL_PIXEL_PACK_BUFFER），用于异步读回
+     */
+    public boolean supportsPixelBufferObjects() {
+        return isGles3();
+    }
+
+    /**
+     * 栅栏同步对象（glFenceSync）
+     */
+    public boolean supportsFenceSync() {
+        return isGles3();
+    }
+
+    /**
+     * 读取和加载程序二进制（glGetProgramBinary），还需要驱动至少支持一种二进制格式
+     */
+    public boolean supportsProgramBinary() {
+        return isGles3();
+    }
+
+    /**
+     * 不可变的纹理存储（glTexStorage2D）
+     */
+    public boolean supportsTextureStorage() {
+        return isGles3();
+    }
+
+    /**
+     * 实例化绘制（glDrawArraysInstanced）
+     */
+    public boolean supportsInstancing() {
+        return isGles3();
+    }
+
+    public boolean hasExtension(String name) {
+        return extensions.contains(name);
+    }
+
+    public Set<String> getExtensions() {
+        return extensions;
+    }
+
+    @Override
+    public String toString() {
+        return "OpenGL ES " + majorVersion + "." + minorVersion + ", " + extensions.size() + " extensions";
+    }
+}
@@ -0,0 +1,81 @@
+package com.kit.video.glutil;
+
+import android.opengl.EGL14;
+import android.opengl.EGLContext;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+/**
+ * GL 命令的栅栏，用于在共享上下文的线程之间，或 CPU 与 GPU 之间同步
+ * <p>
+ * 生产者在 GL 线程中绘制完成后调用 {@link #create()}，把栅栏随纹理交给消费者；消费者在自己的 GL 线程中调用
+ * {@link #waitOnGpu()}，让 GPU 等到生产者的命令执行完再读取纹理，CPU 不需要阻塞。{@link #isSignaled()} 和
+ * {@link #clientWait(long)} 供 CPU 判断 GPU 是否已完成。
+ * <p>
+ * 栅栏需要 OpenGL ES 3.0（glFenceSync）。OpenGL ES 2.0 上 {@link #create()} 退化为 glFlush，
+ * 此时等待总是立即返回，{@link #isSignaled()} 总是返回 true。
+ */
+public final class GlFence {
+    private long sync;
+
+    private GlFence(long sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * 在当前上下文的命令流中插入栅栏，并把命令提交给 GPU（其他上下文才能等待它）
+     * <p>
+     * 当前线程没有上下文时返回不等待的栅栏。
+     */
+    public static GlFence create() {
+        EGLContext context = EGL14.eglGetCurrentContext();
+        if (context == null || context.equals(EGL14.EGL_NO_CONTEXT)) {
+            return new GlFence(0);
+        }
+        if (!GlCapabilities.current().supportsFenceSync()) {
+            GLES20.glFlush();
+            return new GlFence(0);
+        }
+        long sync = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        // 栅栏之前的命令需要提交，否则其他上下文可能永远等不到它
+        GLES20.glFlush();
+        return new GlFence(sync);
+    }
+
+    /**
+     * 让当前上下文之后的 GL 命令在 GPU 上等待栅栏，调用立即返回；之后可以马上 {@link #release()}
+     */
+    public void waitOnGpu() {
+        if (sync != 0) {
+            GLES30.glWaitSync(sync, 0, GLES30.GL_TIMEOUT_IGNORED);
+        }
+    }
+
+    /**
+     * GPU 是否已执行完栅栏之前的命令，不阻塞
+     */
+    public boolean isSignaled() {
+        return clientWait(0);
+    }
+
+    /**
+     * 在 CPU 上等待栅栏，最多等待 timeoutNs
+     *
+     * @return 栅栏是否已触发（超时返回 false）
+     */
+    public boolean clientWait(long timeoutNs) {
+        if (sync == 0) return true;
+        int status = GLES30.glClientWaitSync(sync, 0, timeoutNs);
+        return status == GLES30.GL_ALREADY_SIGNALED || status == GLES30.GL_CONDITION_SATISFIED;
+    }
+
+    /**
+     * 删除栅栏（已发出的等待不受影响），需要当前线程有同一共享组的上下文
+     */
+    public void release() {
+        if (sync != 0) {
+            GLES30.glDeleteSync(sync);
+            sync = 0;
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.kit.video.glutil;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 跟踪 GL 状态的 {@link GlBinding}：与当前状态相同的绑定、纹理参数、uniform、缓冲区、帧缓冲、视口和顶点属性设置不再发给驱动
+ * <p>
+ * 缓存的是通过本对象设置的状态，因此一个上下文只能有一个实例，并且所有 GL 调用都要经过它。
+ * 其他代码（或共享上下文）直接修改了 GL 状态后，调用 {@link #invalidate()} 或 {@link #invalidateTexture(int)}。
+ * 纹理参数只缓存通过本对象 glGenTextures 创建的纹理：外部传入的纹理（如共享上下文中的输入纹理）可能被生产者修改，
+ * 或删除后名称被复用，它们的参数总是转发。状态未知时一律转发，保证结果与不使用缓存时相同。
+ */
+public class GlStateCache implements GlBinding {
+    private static final int MAX_TEXTURE_UNITS = 16;
+    private static final int MAX_VERTEX_ATTRIBS = 16;
+    private static final int UNKNOWN = -1;
+    // 缓存的纹理参数：MIN_FILTER、MAG_FILTER、WRAP_S、WRAP_T
+    private static final int[] CACHED_TEX_PARAMS = {
+            GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_TEXTURE_WRAP_T
+    };
+
+    /**
+     * 一个程序的 uniform 值（uniform 属于程序对象，切换程序后仍然保留）
+     */
+    private static final class ProgramState {
+        int[] intValues = new int[0];
+        boolean[] intKnown = new boolean[0];
+        float[][] matrixValues = new float[0][];
+
+        void ensure(int location) {
+            if (location >= intValues.length) {
+                int capacity = Math.max(location + 1, intValues.length * 2);
+                intValues = Arrays.copyOf(intValues, capacity);
+                intKnown = Arrays.copyOf(intKnown, capacity);
+                matrixValues = Arrays.copyOf(matrixValues, capacity);
+            }
+        }
+    }
+
+    private final GlBinding delegate;
+    private int activeTextureUnit;
+    private final int[] boundTexture2d = new int[MAX_TEXTURE_UNITS];
+    private final int[] boundTextureExternal = new int[MAX_TEXTURE_UNITS];
+    private final Map<Integer, int[]> textureParams = new HashMap<>();
+    // 通过本对象创建、尚未删除的纹理，只有它们的参数会被缓存
+    private final Set<Integer> ownedTextures = new HashSet<>();
+    private int currentProgram;
+    private final Map<Integer, ProgramState> programStates = new HashMap<>();
+    private final int[] attribEnabled = new int[MAX_VERTEX_ATTRIBS];
+    private int boundArrayBuffer;
+    private int boundFramebuffer;
+    private final int[] viewport = new int[4];
+    private boolean viewportKnown;
+    private int boundVertexArray;
+    // 顶点属性指针：客户端数组（attribPointers，偏移为 position）或缓冲区对象（attribBuffers，偏移为字节偏移）
+    private final boolean[] attribKnown = new boolean[MAX_VERTEX_ATTRIBS];
+    private final Buffer[] attribPointers = new Buffer[MAX_VERTEX_ATTRIBS];
+    private final int[] attribBuffers = new int[MAX_VERTEX_ATTRIBS];
+    private final int[] attribOffsets = new int[MAX_VERTEX_ATTRIBS];
+    // 分量数和是否归一化
+    private final int[] attribFormats = new int[MAX_VERTEX_ATTRIBS];
+    private final int[] attribTypes = new int[MAX_VERTEX_ATTRIBS];
+    private final int[] attribStrides = new int[MAX_VERTEX_ATTRIBS];
+
+    public GlStateCache(GlBinding delegate) {
+        this.delegate = delegate;
+        invalidate();
+    }
+
+    /**
+     * 清空所有缓存的状态，之后的调用都会转发
+     */
+    public void invalidate() {
+        activeTextureUnit = UNKNOWN;
+        Arrays.fill(boundTexture2d, UNKNOWN);
+        Arrays.fill(boundTextureExternal, UNKNOWN);
+        textureParams.clear();
+        currentProgram = UNKNOWN;
+        programStates.clear();
+        boundArrayBuffer = UNKNOWN;
+        boundFramebuffer = UNKNOWN;
+        viewportKnown = false;
+        boundVertexArray = UNKNOWN;
+        invalidateVertexAttribs();
+    }
+
+    private void invalidateVertexAttribs() {
+        Arrays.fill(attribEnabled, UNKNOWN);
+        Arrays.fill(attribKnown, false);
+        Arrays.fill(attribPointers, null);
+    }
+
+    /**
+     * 纹理的参数被其他代码修改（或纹理被删除后名称被复用）时调用
+     */
+    public void invalidateTexture(int texture) {
+        textureParams.remove(texture);
+    }
+
+    private int[] boundTextures(int target) {
+        if (target == GLES20.GL_TEXTURE_2D) return boundTexture2d;
+        if (target == GLES11Ext.GL_TEXTURE_EXTERNAL_OES) return boundTextureExternal;
+        return null;
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        int unit = texture - GLES20.GL_TEXTURE0;
+        if (unit == activeTextureUnit) return;
+        delegate.glActiveTexture(texture);
+        activeTextureUnit = unit >= 0 && unit < MAX_TEXTURE_UNITS ? unit : UNKNOWN;
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        int[] bound = boundTextures(target);
+        if (bound == null || activeTextureUnit == UNKNOWN) {
+            delegate.glBindTexture(target, texture);
+            if (bound != null) Arrays.fill(bound, UNKNOWN);
+            return;
+        }
+        if (bound[activeTextureUnit] == texture) return;
+        delegate.glBindTexture(target, texture);
+        bound[activeTextureUnit] = texture;
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        int[] bound = boundTextures(target);
+        int texture = bound != null && activeTextureUnit != UNKNOWN ? bound[activeTextureUnit] : UNKNOWN;
+        int slot = -1;
+        for (int i = 0; i < CACHED_TEX_PARAMS.length; i++) {
+            if (CACHED_TEX_PARAMS[i] == pname) slot = i;
+        }
+        // 纹理 0 是默认纹理，其他代码创建的纹理状态不可信，都不缓存
+        if (texture <= 0 || slot < 0 || !ownedTextures.contains(texture)) {
+            delegate.glTexParameteri(target, pname, param);
+            return;
+        }
+        int[] params = textureParams.get(texture);
+        if (params == null) {
+            params = new int[CACHED_TEX_PARAMS.length];
+            Arrays.fill(params, UNKNOWN);
+            textureParams.put(texture, params);
+        }
+        if (params[slot] == param) return;
+        delegate.glTexParameteri(target, pname, param);
+        params[slot] = param;
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        delegate.glGenTextures(n, textures, offset);
+        for (int i = offset; i < offset + n; i++) {
+            // 新纹理的参数是默认值，但名称可能刚被其他代码删除过，从未知开始
+            textureParams.remove(textures[i]);
+            ownedTextures.add(textures[i]);
+        }
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format,
+                             int type, Buffer pixels) {
+        delegate.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        delegate.glDeleteTextures(n, textures, offset);
+        for (int i = offset; i < offset + n; i++) {
+            textureParams.remove(textures[i]);
+            ownedTextures.remove(textures[i]);
+            // 删除的纹理如果正被绑定，绑定会恢复为 0
+            for (int unit = 0; unit < MAX_TEXTURE_UNITS; unit++) {
+                if (boundTexture2d[unit] == textures[i]) boundTexture2d[unit] = 0;
+                if (boundTextureExternal[unit] == textures[i]) boundTextureExternal[unit] = 0;
+            }
+        }
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (program == currentProgram) return;
+        delegate.glUseProgram(program);
+        currentProgram = program;
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        delegate.glDeleteProgram(program);
+        programStates.remove(program);
+        if (program == currentProgram) currentProgram = UNKNOWN;
+    }
+
+    private ProgramState programState(int location) {
+        if (currentProgram <= 0 || location < 0) return null;
+        ProgramState state = programStates.get(currentProgram);
+        if (state == null) {
+            state = new ProgramState();
+            programStates.put(currentProgram, state);
+        }
+        state.ensure(location);
+        return state;
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        ProgramState state = programState(location);
+        if (state == null) {
+            delegate.glUniform1i(location, x);
+            return;
+        }
+        if (state.intKnown[location] && state.intValues[location] == x) return;
+        delegate.glUniform1i(location, x);
+        state.intValues[location] = x;
+        state.intKnown[location] = true;
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        ProgramState state = programState(location);
+        if (state == null || count != 1 || transpose) {
+            delegate.glUniformMatrix4fv(location, count, transpose, value, offset);
+            return;
+        }
+        float[] cached = state.matrixValues[location];
+        if (cached != null && matrixEquals(cached, value, offset)) return;
+        delegate.glUniformMatrix4fv(location, count, transpose, value, offset);
+        if (cached == null) {
+            cached = new float[16];
+            state.matrixValues[location] = cached;
+        }
+        System.arraycopy(value, offset, cached, 0, 16);
+    }
+
+    private static boolean matrixEquals(float[] cached, float[] value, int offset) {
+        for (int i = 0; i < 16; i++) {
+            if (cached[i] != value[offset + i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        if (index < MAX_VERTEX_ATTRIBS && attribEnabled[index] == 1) return;
+        delegate.glEnableVertexAttribArray(index);
+        if (index < MAX_VERTEX_ATTRIBS) attribEnabled[index] = 1;
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        if (index < MAX_VERTEX_ATTRIBS && attribEnabled[index] == 0) return;
+        delegate.glDisableVertexAttribArray(index);
+        if (index < MAX_VERTEX_ATTRIBS) attribEnabled[index] = 0;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        // 客户端数组要求没有绑定 GL_ARRAY_BUFFER 和 VAO；VAO 状态未知时不调用，避免在 GLES2 上下文中调用 GLES3 方法
+        if (boundVertexArray > 0) glBindVertexArray(0);
+        glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        if (index >= MAX_VERTEX_ATTRIBS) {
+            delegate.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+            return;
+        }
+        // 客户端数组在绘制时才读取，同一个 Buffer 的同一位置指向同一块内存
+        if (isSamePointer(index, ptr, 0, ptr.position(), size, type, normalized, stride)) return;
+        delegate.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+        setPointer(index, ptr, 0, ptr.position(), size, type, normalized, stride);
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        if (index >= MAX_VERTEX_ATTRIBS || boundArrayBuffer == UNKNOWN) {
+            delegate.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+            if (index < MAX_VERTEX_ATTRIBS) attribKnown[index] = false;
+            return;
+        }
+        if (isSamePointer(index, null, boundArrayBuffer, offset, size, type, normalized, stride)) return;
+        delegate.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+        setPointer(index, null, boundArrayBuffer, offset, size, type, normalized, stride);
+    }
+
+    private boolean isSamePointer(int index, Buffer ptr, int buffer, int offset, int size, int type, boolean normalized, int stride) {
+        return attribKnown[index] && attribPointers[index] == ptr && attribBuffers[index] == buffer
+                && attribOffsets[index] == offset && attribFormats[index] == (size | (normalized ? 0x100 : 0))
+                && attribTypes[index] == type && attribStrides[index] == stride;
+    }
+
+    private void setPointer(int index, Buffer ptr, int buffer, int offset, int size, int type, boolean normalized, int stride) {
+        attribKnown[index] = true;
+        attribPointers[index] = ptr;
+        attribBuffers[index] = buffer;
+        attribOffsets[index] = offset;
+        attribFormats[index] = size | (normalized ? 0x100 : 0);
+        attribTypes[index] = type;
+        attribStrides[index] = stride;
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        delegate.glGenBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        if (target != GLES20.GL_ARRAY_BUFFER) {
+            delegate.glBindBuffer(target, buffer);
+            return;
+        }
+        if (buffer == boundArrayBuffer) return;
+        delegate.glBindBuffer(target, buffer);
+        boundArrayBuffer = buffer;
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        delegate.glBufferData(target, size, data, usage);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        delegate.glDeleteBuffers(n, buffers, offset);
+        for (int i = offset; i < offset + n; i++) {
+            // 删除的缓冲区如果正被绑定，绑定会恢复为 0；指向它的顶点属性不再可信
+            if (buffers[i] == boundArrayBuffer) boundArrayBuffer = 0;
+            for (int index = 0; index < MAX_VERTEX_ATTRIBS; index++) {
+                if (attribBuffers[index] == buffers[i]) attribKnown[index] = false;
+            }
+        }
+    }
+
+    @Override
+    public void glGenVertexArrays(int n, int[] arrays, int offset) {
+        delegate.glGenVertexArrays(n, arrays, offset);
+    }
+
+    @Override
+    public void glBindVertexArray(int array) {
+        if (array == boundVertexArray) return;
+        delegate.glBindVertexArray(array);
+        boundVertexArray = array;
+        // 顶点属性的启用状态和指针属于 VAO，切换后未知
+        invalidateVertexAttribs();
+    }
+
+    @Override
+    public void glDeleteVertexArrays(int n, int[] arrays, int offset) {
+        delegate.glDeleteVertexArrays(n, arrays, offset);
+        for (int i = offset; i < offset + n; i++) {
+            if (arrays[i] == boundVertexArray) {
+                boundVertexArray = 0;
+                invalidateVertexAttribs();
+            }
+        }
+    }
+
+    @Override
+    public String glGetString(int name) {
+        return delegate.glGetString(name);
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        return delegate.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        delegate.glUniform1f(location, x);
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        delegate.glUniform2f(location, x, y);
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+        delegate.glUniform4f(location, x, y, z, w);
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        delegate.glGenFramebuffers(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        delegate.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        return delegate.glCheckFramebufferStatus(target);
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        if (target != GLES20.GL_FRAMEBUFFER) {
+            delegate.glBindFramebuffer(target, framebuffer);
+            return;
+        }
+        if (framebuffer == boundFramebuffer) return;
+        delegate.glBindFramebuffer(target, framebuffer);
+        boundFramebuffer = framebuffer;
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        delegate.glDeleteFramebuffers(n, framebuffers, offset);
+        for (int i = offset; i < offset + n; i++) {
+            if (framebuffers[i] == boundFramebuffer) boundFramebuffer = 0;
+        }
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        if (viewportKnown && viewport[0] == x && viewport[1] == y && viewport[2] == width && viewport[3] == height) return;
+        delegate.glViewport(x, y, width, height);
+        viewport[0] = x;
+        viewport[1] = y;
+        viewport[2] = width;
+        viewport[3] = height;
+        viewportKnown = true;
+    }
+
+    @Override
+    public void glClear(int mask) {
+        delegate.glClear(mask);
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        delegate.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void glFlush() {
+        delegate.glFlush();
+    }
+
+    @Override
+    public int glGetError() {
+        return delegate.glGetError();
+    }
+}
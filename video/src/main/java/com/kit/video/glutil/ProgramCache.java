@@ -0,0 +1,294 @@
+package com.kit.video.glutil;
+
+import android.content.Context;
+import android.opengl.EGL14;
+import android.opengl.EGLContext;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 着色器程序缓存，按着色器源码（和属性位置）的哈希查找
+ * <p>
+ * 内存中按 EGL 上下文保存已链接的程序：EglManager 复用上下文时，重新开始录制不需要再编译。
+ * 只有 {@link EglManager} 管理的上下文才会缓存，它们销毁时由 EglManager 调用 {@link #onContextDestroyed(EGLContext)}；
+ * 其他上下文（如应用自己的 GL 线程）销毁时缓存得不到通知，句柄还可能被新的上下文复用，因此不缓存，
+ * 程序归使用者所有。使用者用 {@link #isCached(int)} 判断，未缓存的程序需要自己删除。
+ * <p>
+ * 磁盘缓存默认关闭，应用在启动时（如 Application.onCreate）调用 {@link #enableDiskCache(Context)}
+ * 或 {@link #setDiskCacheDirectory(File)} 开启。设置了目录并且上下文为 OpenGL ES 3.0 以上时，
+ * 还会把程序的二进制保存到磁盘，下次启动进程直接加载，省去编译和链接。二进制与驱动相关，
+ * 目录中记录了驱动的厂商、渲染器和版本，驱动变化（如系统升级）时清空整个目录；加载失败的二进制会被删除并重新编译。
+ */
+public class ProgramCache {
+    private static final String TAG = "ProgramCache";
+    private static final String DRIVER_FILE_NAME = "driver";
+    private static final String BINARY_SUFFIX = ".bin";
+    private static final String DISK_CACHE_DIRECTORY = "gl_programs";
+
+    private static final ProgramCache INSTANCE = new ProgramCache();
+
+    private final Map<EGLContext, Map<String, Integer>> contextPrograms = new HashMap<>();
+    private File diskCacheDirectory;
+    // 已与当前驱动核对过的目录，每个进程只核对一次
+    private boolean diskCacheVerified;
+
+    private ProgramCache() {
+    }
+
+    public static ProgramCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 把程序二进制保存到应用的代码缓存目录（Context.getCodeCacheDir()，系统升级后会被清空）
+     */
+    public void enableDiskCache(Context context) {
+        setDiskCacheDirectory(new File(context.getCodeCacheDir(), DISK_CACHE_DIRECTORY));
+    }
+
+    /**
+     * 设置保存程序二进制的目录，为 null 时只使用内存缓存
+     */
+    public synchronized void setDiskCacheDirectory(@Nullable File directory) {
+        this.diskCacheDirectory = directory;
+        this.diskCacheVerified = false;
+    }
+
+    /**
+     * 获取当前上下文中由这些源码链接成的程序，没有时从磁盘加载或编译
+     * <p>
+     * 上下文不由 {@link EglManager} 管理时每次都返回新的程序，由调用方删除，见 {@link #isCached(int)}。
+     *
+     * @param attributeLocations 属性的位置，可以为 null
+     * @return 程序，失败时返回 0
+     */
+    public int getProgram(String vertexSource, String fragmentSource,
+                          @Nullable Map<String, Integer> attributeLocations) {
+        EGLContext context = EGL14.eglGetCurrentContext();
+        if (context == null || context.equals(EGL14.EGL_NO_CONTEXT)) {
+            throw new ShaderUtil.GlRuntimeException("No current EGL context");
+        }
+        // 在本对象的锁之外查询：EglManager 持有自己的锁销毁上下文时会调用 onContextDestroyed
+        boolean managed = EglManager.getInstance().getClientVersion(context) != 0;
+        synchronized (this) {
+            return getProgram(context, managed, vertexSource, fragmentSource, attributeLocations);
+        }
+    }
+
+    private int getProgram(EGLContext context, boolean managed, String vertexSource, String fragmentSource,
+                           @Nullable Map<String, Integer> attributeLocations) {
+        Map<String, Integer> programs = null;
+        if (managed) {
+            programs = contextPrograms.get(context);
+            if (programs == null) {
+                programs = new HashMap<>();
+                contextPrograms.put(context, programs);
+            }
+        }
+        String key = computeKey(vertexSource, fragmentSource, attributeLocations);
+        Integer cached = programs != null ? programs.get(key) : null;
+        if (cached != null) return cached;
+
+        boolean binarySupported = isBinarySupported();
+        int program = binarySupported ? loadBinary(key) : 0;
+        if (program == 0) {
+            program = ShaderUtil.createProgram(vertexSource, fragmentSource, attributeLocations);
+            if (program == 0) return 0;
+            if (binarySupported) saveBinary(key, program);
+        }
+        if (programs != null) programs.put(key, program);
+        return program;
+    }
+
+    /**
+     * 程序是否由缓存持有（属于当前上下文）；返回 false 时程序归调用方所有，不再使用时需要删除
+     */
+    public synchronized boolean isCached(int program) {
+        Map<String, Integer> programs = contextPrograms.get(EGL14.eglGetCurrentContext());
+        return programs != null && programs.containsValue(program);
+    }
+
+    /**
+     * 上下文已销毁，其中的程序随之失效
+     */
+    public synchronized void onContextDestroyed(EGLContext context) {
+        contextPrograms.remove(context);
+    }
+
+    /**
+     * 删除当前上下文中缓存的所有程序（上下文保留但不再渲染时释放显存）
+     */
+    public synchronized void clearCurrentContext() {
+        Map<String, Integer> programs = contextPrograms.remove(EGL14.eglGetCurrentContext());
+        if (programs == null) return;
+        for (int program : programs.values()) {
+            GLES20.glDeleteProgram(program);
+        }
+    }
+
+    private boolean isBinarySupported() {
+        if (diskCacheDirectory == null) return false;
+        if (!GlCapabilities.current().supportsProgramBinary()) return false;
+        int[] formats = new int[1];
+        GLES20.glGetIntegerv(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+        if (formats[0] == 0) return false;
+        return verifyDiskCache();
+    }
+
+    /**
+     * 驱动变化后旧的二进制全部作废，清空目录
+     */
+    private boolean verifyDiskCache() {
+        if (diskCacheVerified) return true;
+        File directory = diskCacheDirectory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Unable to create " + directory);
+            diskCacheDirectory = null;
+            return false;
+        }
+        String driver = GLES20.glGetString(GLES20.GL_VENDOR) + "\n" + GLES20.glGetString(GLES20.GL_RENDERER)
+                + "\n" + GLES20.glGetString(GLES20.GL_VERSION);
+        try {
+            if (resetIfDriverChanged(directory, driver)) {
+                Log.d(TAG, "GL driver changed, program binaries discarded");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Program binary cache disabled", e);
+            diskCacheDirectory = null;
+            return false;
+        }
+        diskCacheVerified = true;
+        return true;
+    }
+
+    /**
+     * 目录中记录的驱动与 driver 不同（或没有记录）时，删除所有文件并记录新的驱动
+     *
+     * @return 是否清空了目录
+     */
+    static boolean resetIfDriverChanged(File directory, String driver) throws IOException {
+        File driverFile = new File(directory, DRIVER_FILE_NAME);
+        if (driver.equals(readString(driverFile))) return false;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) Log.w(TAG, "Unable to delete " + file);
+            }
+        }
+        writeAtomically(driverFile, driver.getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
+    private int loadBinary(String key) {
+        File file = new File(diskCacheDirectory, key + BINARY_SUFFIX);
+        if (!file.isFile()) return 0;
+        int format;
+        byte[] data;
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            format = input.readInt();
+            data = new byte[input.readInt()];
+            input.readFully(data);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read " + file, e);
+            file.delete();
+            return 0;
+        }
+        ByteBuffer binary = ByteBuffer.allocateDirect(data.length).order(ByteOrder.nativeOrder());
+        binary.put(data).position(0);
+        int program = GLES20.glCreateProgram();
+        GLES30.glProgramBinary(program, format, binary, data.length);
+        int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] != GLES20.GL_TRUE) {
+            // 格式不被接受时会产生 GL_INVALID_ENUM，清除掉以免被之后的检查误报
+            GLES20.glGetError();
+            GLES20.glDeleteProgram(program);
+            Log.w(TAG, "Discarding stale program binary " + file.getName());
+            file.delete();
+            return 0;
+        }
+        return program;
+    }
+
+    private void saveBinary(String key, int program) {
+        int[] length = new int[1];
+        GLES20.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0) return;
+        ByteBuffer binary = ByteBuffer.allocateDirect(length[0]).order(ByteOrder.nativeOrder());
+        int[] format = new int[1];
+        GLES30.glGetProgramBinary(program, length[0], length, 0, format, 0, binary);
+        if (GLES20.glGetError() != GLES20.GL_NO_ERROR || length[0] <= 0) return;
+        byte[] content = new byte[8 + length[0]];
+        ByteBuffer.wrap(content).putInt(format[0]).putInt(length[0]);
+        binary.position(0);
+        binary.get(content, 8, length[0]);
+        try {
+            writeAtomically(new File(diskCacheDirectory, key + BINARY_SUFFIX), content);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to save program binary", e);
+        }
+    }
+
+    /**
+     * 先写入临时文件再重命名，其他进程不会读到写了一半的二进制
+     */
+    private static void writeAtomically(File file, byte[] data) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            output.write(data);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to rename " + temp + " to " + file);
+        }
+    }
+
+    @Nullable
+    private static String readString(File file) throws IOException {
+        if (!file.isFile()) return null;
+        byte[] data = new byte[(int) file.length()];
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            input.readFully(data);
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 源码和属性位置的 SHA-1，属性按名称排序
+     */
+    static String computeKey(String vertexSource, String fragmentSource, @Nullable Map<String, Integer> attributeLocations) {
+        StringBuilder text = new StringBuilder(vertexSource.length() + fragmentSource.length() + 64);
+        text.append(vertexSource).append('\0').append(fragmentSource).append('\0');
+        if (attributeLocations != null) {
+            for (Map.Entry<String, Integer> entry : new TreeMap<>(attributeLocations).entrySet()) {
+                text.append(entry.getKey()).append('=').append(entry.getValue()).append(';');
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.kit.video.glutil;
+
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+
+/**
+ * 全屏四边形的顶点数据，初始化时一次性上传到 VBO，渲染时不再从客户端内存复制
+ * <p>
+ * 纹理坐标的 8 种变体（旋转 0/90/180/270 度，是否上下翻转）预先计算好，交错存放在同一个 VBO 中，
+ * 切换变体只需要改变属性指针的偏移量。在 OpenGL ES 3.0 上下文中每种变体还对应一个 VAO，
+ * 渲染时只需一次 glBindVertexArray。顶点顺序与 {@link CommonShaders#SQUARE_VERTICES} 相同，用 GL_TRIANGLE_STRIP 绘制。
+ */
+public class QuadGeometry {
+    public static final int VERTEX_COUNT = 4;
+    // 每个顶点：位置 (x, y) + 纹理坐标 (s, t)
+    private static final int FLOATS_PER_VERTEX = 4;
+    private static final int STRIDE = FLOATS_PER_VERTEX * 4;
+    private static final int VARIANT_BYTES = VERTEX_COUNT * STRIDE;
+    private static final int VARIANT_COUNT = 8;
+    private static final float[] POSITIONS = {
+            -1.0f, -1.0f,  // bottom left
+            1.0f, -1.0f,   // bottom right
+            -1.0f, 1.0f,   // top left
+            1.0f, 1.0f     // top right
+    };
+    private static final float[] TEXTURE_COORDINATES = {
+            0.0f, 0.0f, // bottom left
+            1.0f, 0.0f, // bottom right
+            0.0f, 1.0f, // top left
+            1.0f, 1.0f  // top right
+    };
+
+    private final GlBinding gl;
+    private final int positionAttrib;
+    private final int textureCoordinateAttrib;
+    private final int[] vbo = new int[1];
+    private final int[] vaos = new int[VARIANT_COUNT];
+    private boolean useVao;
+
+    /**
+     * @param positionAttrib          位置属性的位置
+     * @param textureCoordinateAttrib 纹理坐标属性的位置
+     */
+    public QuadGeometry(GlBinding gl, int positionAttrib, int textureCoordinateAttrib) {
+        this.gl = gl;
+        this.positionAttrib = positionAttrib;
+        this.textureCoordinateAttrib = textureCoordinateAttrib;
+    }
+
+    /**
+     * 创建 VBO（OpenGL ES 3.0 上下文中同时创建 VAO），需在 GL 线程中调用
+     */
+    public void setup() {
+        gl.glGenBuffers(1, vbo, 0);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+        FloatBuffer data = ShaderUtil.floatBuffer(VARIANT_COUNT * VERTEX_COUNT * FLOATS_PER_VERTEX);
+        for (int variant = 0; variant < VARIANT_COUNT; variant++) {
+            float[] textureCoordinates = computeTextureCoordinates((variant & 3) * 90, (variant & 4) != 0);
+            for (int i = 0; i < VERTEX_COUNT; i++) {
+                data.put(POSITIONS, i * 2, 2);
+                data.put(textureCoordinates, i * 2, 2);
+            }
+        }
+        data.position(0);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, data.capacity() * 4, data, GLES20.GL_STATIC_DRAW);
+
+        useVao = GlCapabilities.query(gl).supportsVertexArrayObjects();
+        if (useVao) {
+            gl.glGenVertexArrays(VARIANT_COUNT, vaos, 0);
+            for (int variant = 0; variant < VARIANT_COUNT; variant++) {
+                gl.glBindVertexArray(vaos[variant]);
+                setAttribPointers(variant);
+            }
+            gl.glBindVertexArray(0);
+        }
+        ShaderUtil.checkGlError("QuadGeometry setup");
+    }
+
+    /**
+     * 绑定指定变体的顶点数据，之后可以调用 glDrawArrays(GL_TRIANGLE_STRIP, 0, {@value #VERTEX_COUNT})
+     *
+     * @param rotation 纹理顺时针旋转的角度：0、90、180 或 270
+     * @param flipY    是否上下翻转（先翻转再旋转）
+     */
+    public void bind(int rotation, boolean flipY) {
+        int variant = variantIndex(rotation, flipY);
+        if (useVao) {
+            gl.glBindVertexArray(vaos[variant]);
+        } else {
+            setAttribPointers(variant);
+        }
+    }
+
+    /**
+     * 删除 VBO 和 VAO，需在 GL 线程中调用
+     */
+    public void release() {
+        if (useVao) {
+            gl.glDeleteVertexArrays(VARIANT_COUNT, vaos, 0);
+            useVao = false;
+        }
+        if (vbo[0] != 0) {
+            gl.glDeleteBuffers(1, vbo, 0);
+            vbo[0] = 0;
+        }
+    }
+
+    private void setAttribPointers(int variant) {
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vbo[0]);
+        int offset = variant * VARIANT_BYTES;
+        gl.glEnableVertexAttribArray(positionAttrib);
+        gl.glVertexAttribPointer(positionAttrib, 2, GLES20.GL_FLOAT, false, STRIDE, offset);
+        gl.glEnableVertexAttribArray(textureCoordinateAttrib);
+        gl.glVertexAttribPointer(textureCoordinateAttrib, 2, GLES20.GL_FLOAT, false, STRIDE, offset + 2 * 4);
+    }
+
+    private static int variantIndex(int rotation, boolean flipY) {
+        int steps = ((rotation % 360 + 360) % 360) / 90;
+        return steps | (flipY ? 4 : 0);
+    }
+
+    /**
+     * 计算纹理坐标：先上下翻转 (s, t) -> (s, 1 - t)，再每顺时针旋转 90 度做一次 (s, t) -> (1 - t, s)
+     */
+    static float[] computeTextureCoordinates(int rotation, boolean flipY) {
+        float[] result = TEXTURE_COORDINATES.clone();
+        int steps = ((rotation % 360 + 360) % 360) / 90;
+        for (int i = 0; i < result.length; i += 2) {
+            float s = result[i];
+            float t = flipY ? 1.0f - result[i + 1] : result[i + 1];
+            for (int step = 0; step < steps; step++) {
+                float rotated = 1.0f - t;
+                t = s;
+                s = rotated;
+            }
+            result[i] = s;
+            result[i + 1] = t;
+        }
+        return result;
+    }
+}
@@ -7,6 +7,8 @@ import android.util.Log;
 
 import androidx.annotation.Nullable;
 
+import com.kit.video.BuildConfig;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -171,8 +173,37 @@ public class ShaderUtil {
         return buffer;
     }
 
-    /** Calls {@link GLES20#glGetError} and raises an exception if there was an error. */
+    /**
+     * Whether {@link #checkGlError} calls are compiled in. glGetError forces the driver to
+     * synchronize with the GPU command stream, so only debug builds check; release builds compile
+     * the checks out entirely.
+     */
+    public static final boolean GL_ERROR_CHECKS = BuildConfig.DEBUG;
+
+    private static volatile int errorCheckInterval = 1;
+    private static int errorCheckCounter;
+
+    /**
+     * Sets how often {@link #checkGlError} actually queries the error state.
+     *
+     * @param interval 1 checks every call (default in debug builds), n checks one of every n calls, 0 disables checks.
+     */
+    public static void setGlErrorCheckInterval(int interval) {
+        errorCheckInterval = Math.max(0, interval);
+    }
+
+    /**
+     * Calls {@link GLES20#glGetError} and raises an exception if there was an error. Subject to
+     * {@link #GL_ERROR_CHECKS} and {@link #setGlErrorCheckInterval(int)}; a sampled check reports
+     * any error raised since the previous query, so the message names the call site that noticed it.
+     */
     public static void checkGlError(String msg) {
+        if (!GL_ERROR_CHECKS) return;
+        int interval = errorCheckInterval;
+        if (interval != 1) {
+            // 计数器不需要精确，多线程下偶尔多查或少查一次没有影响
+            if (interval == 0 || ++errorCheckCounter % interval != 0) return;
+        }
         int error = GLES20.glGetError();
         if (error != GLES20.GL_NO_ERROR) {
             throw new GlRuntimeException(msg + ": GL error: 0x" + Integer.toHexString(error), error);
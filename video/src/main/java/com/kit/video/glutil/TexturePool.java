@@ -0,0 +1,260 @@
+package com.kit.video.glutil;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * 纹理和帧缓冲池，在同一个 EGL 上下文中复用中间结果的纹理，避免在渲染循环中调用 glTexImage2D 分配显存
+ * <p>
+ * 空闲的纹理按尺寸和格式分桶，{@link #acquire} 优先从对应的桶中取出最近归还的纹理。
+ * 预算只限制空闲纹理占用的显存：空闲纹理超出预算时按最近最少使用的顺序删除；正在使用的纹理不计入预算，
+ * 也不会被删除，所以总占用可能超过预算。所有方法都需要在创建池的上下文的 GL 线程中调用。
+ */
+public class TexturePool {
+    private static final String TAG = "TexturePool";
+    // 默认预算：约 4 张 1080p 的 RGBA 纹理
+    public static final long DEFAULT_MAX_BYTES = 4L * 1920 * 1088 * 4;
+
+    /**
+     * 池中的纹理，可选地带有一个以它为颜色附件的帧缓冲
+     */
+    public static final class Texture {
+        private final int textureId;
+        private final int width;
+        private final int height;
+        private final int format;
+        private final long key;
+        private final long byteSize;
+        private int framebufferId;
+        private boolean inUse;
+
+        Texture(int textureId, int width, int height, int format, long key, long byteSize) {
+            this.textureId = textureId;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.key = key;
+            this.byteSize = byteSize;
+        }
+
+        public int getTextureId() {
+            return textureId;
+        }
+
+        /**
+         * 帧缓冲，通过 {@link #acquireFramebuffer} 获取时才会创建，否则为 0
+         */
+        public int getFramebufferId() {
+            return framebufferId;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getFormat() {
+            return format;
+        }
+    }
+
+    private final GlBinding gl;
+    private final long maxBytes;
+    private final Map<Long, ArrayDeque<Texture>> idleBuckets = new HashMap<>();
+    // 空闲纹理，按归还的先后顺序排列，最前面的最久未使用
+    private final LinkedHashSet<Texture> idleTextures = new LinkedHashSet<>();
+    private long allocatedBytes;
+    private long idleBytes;
+    private int allocationCount;
+
+    public TexturePool(GlBinding gl) {
+        this(gl, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param gl       与同一上下文中其他渲染器共用的 GL 调用
+     * @param maxBytes 空闲纹理的显存预算，单位：字节
+     */
+    public TexturePool(GlBinding gl, long maxBytes) {
+        this.gl = gl;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 获取 RGBA 纹理
+     */
+    public Texture acquire(int width, int height) {
+        return acquire(width, height, GLES20.GL_RGBA);
+    }
+
+    /**
+     * 获取纹理，内容未定义
+     *
+     * @param format GL_RGBA、GL_RGB、GL_LUMINANCE 等（类型均为 GL_UNSIGNED_BYTE）
+     */
+    public Texture acquire(int width, int height, int format) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid texture size " + width + "x" + height);
+        }
+        long key = bucketKey(width, height, format);
+        ArrayDeque<Texture> bucket = idleBuckets.get(key);
+        Texture texture = bucket != null ? bucket.pollLast() : null;
+        if (texture != null) {
+            idleTextures.remove(texture);
+            idleBytes -= texture.byteSize;
+        } else {
+            texture = allocate(width, height, format, key);
+        }
+        texture.inUse = true;
+        return texture;
+    }
+
+    /**
+     * 获取带帧缓冲的 RGBA 纹理，用于渲染中间结果
+     */
+    public Texture acquireFramebuffer(int width, int height) {
+        Texture texture = acquire(width, height, GLES20.GL_RGBA);
+        if (texture.framebufferId == 0) {
+            int[] framebuffer = new int[1];
+            gl.glGenFramebuffers(1, framebuffer, 0);
+            gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer[0]);
+            gl.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D,
+                    texture.textureId, 0);
+            int status = gl.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+            if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+                gl.glDeleteFramebuffers(1, framebuffer, 0);
+                release(texture);
+                throw new ShaderUtil.GlRuntimeException("Framebuffer incomplete: 0x" + Integer.toHexString(status));
+            }
+            texture.framebufferId = framebuffer[0];
+        }
+        return texture;
+    }
+
+    /**
+     * 归还纹理，之后不能再使用；空闲纹理超出预算时删除最久未使用的
+     */
+    public void release(Texture texture) {
+        if (!texture.inUse) {
+            throw new IllegalStateException("Texture " + texture.textureId + " already released");
+        }
+        texture.inUse = false;
+        ArrayDeque<Texture> bucket = idleBuckets.get(texture.key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            idleBuckets.put(texture.key, bucket);
+        }
+        bucket.addLast(texture);
+        idleTextures.add(texture);
+        idleBytes += texture.byteSize;
+        evict(maxBytes);
+    }
+
+    /**
+     * 删除所有空闲纹理（如分辨率变化后旧尺寸的纹理不再需要时）
+     */
+    public void trim() {
+        evict(0);
+    }
+
+    /**
+     * 上下文销毁前调用，删除所有空闲纹理；仍在使用的纹理会被记录在日志中
+     */
+    public void clear() {
+        trim();
+        if (allocatedBytes > 0) {
+            Log.w(TAG, (allocatedBytes / 1024) + " KiB of textures still in use");
+        }
+    }
+
+    /**
+     * 所有纹理（包括正在使用的）占用的显存，单位：字节
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * 空闲纹理占用的显存，单位：字节
+     */
+    public long getIdleBytes() {
+        return idleBytes;
+    }
+
+    /**
+     * 累计分配的纹理数量，稳定渲染时不应增长
+     */
+    public int getAllocationCount() {
+        return allocationCount;
+    }
+
+    private Texture allocate(int width, int height, int format, long key) {
+        long byteSize = (long) width * height * bytesPerPixel(format);
+        // 新纹理不能复用空闲纹理，先按它的大小多删除一些，避免新旧纹理同时占用显存
+        evict(Math.max(0, maxBytes - byteSize));
+        int[] id = new int[1];
+        gl.glGenTextures(1, id, 0);
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, id[0]);
+        gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, format, width, height, 0, format, GLES20.GL_UNSIGNED_BYTE, null);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        ShaderUtil.checkGlError("TexturePool allocate");
+        allocatedBytes += byteSize;
+        allocationCount++;
+        return new Texture(id[0], width, height, format, key, byteSize);
+    }
+
+    /**
+     * 删除最久未使用的空闲纹理，直到空闲纹理的占用不超过 limit
+     */
+    private void evict(long limit) {
+        for (Iterator<Texture> it = idleTextures.iterator(); it.hasNext() && idleBytes > limit; ) {
+            Texture texture = it.next();
+            it.remove();
+            ArrayDeque<Texture> bucket = idleBuckets.get(texture.key);
+            bucket.remove(texture);
+            if (bucket.isEmpty()) idleBuckets.remove(texture.key);
+            idleBytes -= texture.byteSize;
+            allocatedBytes -= texture.byteSize;
+            delete(texture);
+        }
+    }
+
+    private void delete(Texture texture) {
+        if (texture.framebufferId != 0) {
+            gl.glDeleteFramebuffers(1, new int[]{texture.framebufferId}, 0);
+            texture.framebufferId = 0;
+        }
+        gl.glDeleteTextures(1, new int[]{texture.textureId}, 0);
+    }
+
+    private static long bucketKey(int width, int height, int format) {
+        return ((long) format << 40) | ((long) width << 20) | height;
+    }
+
+    private static int bytesPerPixel(int format) {
+        switch (format) {
+            case GLES20.GL_RGB:
+                return 3;
+            case GLES20.GL_LUMINANCE_ALPHA:
+                return 2;
+            case GLES20.GL_LUMINANCE:
+            case GLES20.GL_ALPHA:
+                return 1;
+            default:
+                return 4;
+        }
+    }
+}
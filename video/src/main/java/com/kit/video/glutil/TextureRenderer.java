@@ -2,9 +2,7 @@ package com.kit.video.glutil;
 
 
 
-import static com.kit.video.glutil.CommonShaders.FLIPPED_TEXTURE_VERTICES;
-import static com.kit.video.glutil.CommonShaders.TEXTURE_VERTICES;
-
+import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 import android.opengl.Matrix;
 
@@ -24,22 +22,47 @@ public class TextureRenderer {
     private int frameUniform;
     private int textureTransformUniform;
     private final float[] textureTransformMatrix = new float[16];
+    // 外部纹理（samplerExternalOES）的程序，第一次使用时创建
+    private int externalProgram = 0;
+    private int externalFrameUniform;
+    private int externalTransformUniform;
     private boolean flipY;
+    private int rotation;
+    private QuadGeometry quadGeometry;
+    private final GlBinding gl;
+
+    public TextureRenderer() {
+        this(new GlStateCache(Gles20Binding.INSTANCE));
+    }
+
+    /**
+     * @param gl 渲染时使用的 GL 调用，如包装了 {@link CountingGlBinding} 的 {@link GlStateCache}
+     */
+    public TextureRenderer(GlBinding gl) {
+        this.gl = gl;
+    }
 
     /**
      * Call this to setup the shader program before rendering.
+     *
+     * <p>外部纹理（GL_TEXTURE_EXTERNAL_OES）的程序在第一次调用 {@link #renderExternal} 时才编译。
      */
     public void setup() {
+        program = createProgram(CommonShaders.FRAGMENT_SHADER);
+        frameUniform = gl.glGetUniformLocation(program, "video_frame");
+        textureTransformUniform = gl.glGetUniformLocation(program, "texture_transform");
+        ShaderUtil.checkGlError("glGetUniformLocation");
+        Matrix.setIdentityM(textureTransformMatrix, 0 /* offset */);
+        quadGeometry = new QuadGeometry(gl, ATTRIB_POSITION, ATTRIB_TEXTURE_COORDINATE);
+        quadGeometry.setup();
+    }
+
+    private static int createProgram(String fragmentShader) {
         Map<String, Integer> attributeLocations = new HashMap<>();
         attributeLocations.put("position", ATTRIB_POSITION);
         attributeLocations.put("texture_coordinate", ATTRIB_TEXTURE_COORDINATE);
-        program =
-                ShaderUtil.createProgram(
-                        CommonShaders.VERTEX_SHADER, CommonShaders.FRAGMENT_SHADER, attributeLocations);
-        frameUniform = GLES20.glGetUniformLocation(program, "video_frame");
-        textureTransformUniform = GLES20.glGetUniformLocation(program, "texture_transform");
-        ShaderUtil.checkGlError("glGetUniformLocation");
-        Matrix.setIdentityM(textureTransformMatrix, 0 /* offset */);
+        // EglManager 管理的上下文中程序由缓存持有，复用上下文时不需要重新编译
+        return ProgramCache.getInstance().getProgram(CommonShaders.VERTEX_SHADER, fragmentShader, attributeLocations);
     }
 
     /**
@@ -50,6 +73,13 @@ public class TextureRenderer {
         flipY = flip;
     }
 
+    /**
+     * 纹理顺时针旋转的角度（0、90、180 或 270），与 {@link #setFlipY} 同时设置时先翻转再旋转
+     */
+    public void setRotation(int degrees) {
+        rotation = degrees;
+    }
+
     /**
      * Renders a texture to the framebuffer.
      *
@@ -59,54 +89,75 @@ public class TextureRenderer {
      * 如果在该方法后面再去调用GL方法的话，会出现预想不到的渲染情况
      */
     public void render(int textureName, boolean flush) {
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        ShaderUtil.checkGlError("glActiveTexture");
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureName);
-        ShaderUtil.checkGlError("glBindTexture");
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-        ShaderUtil.checkGlError("glTexParameteri");
-
-        GLES20.glUseProgram(program);
-        ShaderUtil.checkGlError("glUseProgram");
-        GLES20.glUniform1i(frameUniform, 0);
-        ShaderUtil.checkGlError("glUniform1i");
-        GLES20.glUniformMatrix4fv(textureTransformUniform, 1, false, textureTransformMatrix, 0);
-        ShaderUtil.checkGlError("glUniformMatrix4fv");
-        GLES20.glEnableVertexAttribArray(ATTRIB_POSITION);
-        GLES20.glVertexAttribPointer(
-                ATTRIB_POSITION, 2, GLES20.GL_FLOAT, false, 0, CommonShaders.SQUARE_VERTICES);
-
-        GLES20.glEnableVertexAttribArray(ATTRIB_TEXTURE_COORDINATE);
-        GLES20.glVertexAttribPointer(
-                ATTRIB_TEXTURE_COORDINATE,
-                2,
-                GLES20.GL_FLOAT,
-                false,
-                0,
-                flipY ? FLIPPED_TEXTURE_VERTICES : TEXTURE_VERTICES);
-        ShaderUtil.checkGlError("program setup");
-
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-        ShaderUtil.checkGlError("glDrawArrays");
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
-        ShaderUtil.checkGlError("glBindTexture");
+        draw(GLES20.GL_TEXTURE_2D, textureName, program, frameUniform, textureTransformUniform, textureTransformMatrix);
+        if (flush) {
+            gl.glFlush();
+        }
+    }
 
+    /**
+     * 直接渲染外部纹理（SurfaceTexture 的相机或解码器输出），不需要先复制到 2D 纹理
+     *
+     * @param textureName     GL_TEXTURE_EXTERNAL_OES 纹理
+     * @param transformMatrix SurfaceTexture.getTransformMatrix 得到的纹理坐标变换矩阵，为 null 时不变换
+     */
+    public void renderExternal(int textureName, float[] transformMatrix, boolean flush) {
+        if (externalProgram == 0) {
+            externalProgram = createProgram(CommonShaders.FRAGMENT_SHADER_EXTERNAL);
+            externalFrameUniform = gl.glGetUniformLocation(externalProgram, "video_frame");
+            externalTransformUniform = gl.glGetUniformLocation(externalProgram, "texture_transform");
+            ShaderUtil.checkGlError("glGetUniformLocation");
+        }
+        draw(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textureName, externalProgram, externalFrameUniform, externalTransformUniform,
+                transformMatrix != null ? transformMatrix : textureTransformMatrix);
         if (flush) {
-            GLES20.glFlush();
+            gl.glFlush();
         }
     }
 
+    private void draw(int target, int textureName, int programId, int samplerUniform, int transformUniform, float[] transformMatrix) {
+        gl.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        // 通过状态缓存调用，与上一帧相同的绑定、纹理参数和 uniform 不会再发给驱动
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(target, textureName);
+        // 外部纹理只支持 CLAMP_TO_EDGE 和不使用 mipmap 的过滤方式，这里的参数对两种纹理都有效
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        gl.glUseProgram(programId);
+        gl.glUniform1i(samplerUniform, 0);
+        gl.glUniformMatrix4fv(transformUniform, 1, false, transformMatrix, 0);
+        // 顶点数据已在 VBO 中（GLES3 上为 VAO），只需选择翻转/旋转的变体
+        quadGeometry.bind(rotation, flipY);
+
+        gl.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, QuadGeometry.VERTEX_COUNT);
+        // 每帧只检查一次错误（可通过 ShaderUtil 降低频率或关闭）
+        ShaderUtil.checkGlError("render");
+    }
+
     /**
-     * Call this to delete the shader program.
+     * Call this to delete the vertex buffers.
      *
-     * <p>This is only necessary if one wants to release the program while keeping the context around.
+     * <p>Programs cached by {@link ProgramCache} stay in the context for the next renderer; programs created in a
+     * context that {@link EglManager} does not manage belong to this renderer and are deleted here.
      */
     public void release() {
-        GLES20.glDeleteProgram(program);
+        deleteProgram(program);
+        deleteProgram(externalProgram);
+        program = 0;
+        externalProgram = 0;
+        if (quadGeometry != null) {
+            quadGeometry.release();
+            quadGeometry = null;
+        }
+    }
+
+    private void deleteProgram(int programId) {
+        if (programId != 0 && !ProgramCache.getInstance().isCached(programId)) {
+            gl.glDeleteProgram(programId);
+        }
     }
-}
\ No newline at end of file
+}
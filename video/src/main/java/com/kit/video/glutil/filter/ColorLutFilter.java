@@ -0,0 +1,97 @@
+package com.kit.video.glutil.filter;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import com.kit.video.glutil.GlBinding;
+import com.kit.video.glutil.ShaderUtil;
+
+/**
+ * 颜色查找表（LUT）滤镜
+ * <p>
+ * 查找表为 512x512 的图片，由 8x8 个 64x64 的格子组成，对应 64x64x64 的 RGB 立方体：
+ * 格子的序号为蓝色分量，格子内的横、纵坐标分别为红色和绿色分量。
+ */
+public class ColorLutFilter extends GlFilter {
+    private static final String SHADER =
+            "uniform sampler2D $lut;\n"
+                    + "uniform float $intensity;\n"
+                    + "\n"
+                    + "vec4 $apply(vec4 color, vec2 coord) {\n"
+                    + "  float blue = color.b * 63.0;\n"
+                    + "  vec2 quad1;\n"
+                    + "  quad1.y = floor(floor(blue) / 8.0);\n"
+                    + "  quad1.x = floor(blue) - quad1.y * 8.0;\n"
+                    + "  vec2 quad2;\n"
+                    + "  quad2.y = floor(ceil(blue) / 8.0);\n"
+                    + "  quad2.x = ceil(blue) - quad2.y * 8.0;\n"
+                    // 取格子内像素的中心，避免与相邻格子插值
+                    + "  vec2 inner = 0.5 / 512.0 + (0.125 - 1.0 / 512.0) * color.rg;\n"
+                    + "  vec4 color1 = texture2D($lut, quad1 * 0.125 + inner);\n"
+                    + "  vec4 color2 = texture2D($lut, quad2 * 0.125 + inner);\n"
+                    + "  vec4 mapped = mix(color1, color2, fract(blue));\n"
+                    + "  return mix(color, vec4(mapped.rgb, color.a), $intensity);\n"
+                    + "}\n";
+
+    private final Bitmap lutBitmap;
+    private int lutTexture;
+    private boolean ownsTexture;
+    private float intensity = 1.0f;
+
+    /**
+     * @param lutBitmap 查找表图片，在 {@link #setup} 时上传为纹理
+     */
+    public ColorLutFilter(Bitmap lutBitmap) {
+        super(Kind.COLOR);
+        this.lutBitmap = lutBitmap;
+    }
+
+    /**
+     * @param lutTexture 已上传的查找表纹理，由调用方管理
+     */
+    public ColorLutFilter(int lutTexture) {
+        super(Kind.COLOR);
+        this.lutBitmap = null;
+        this.lutTexture = lutTexture;
+    }
+
+    /**
+     * 设置滤镜强度，0 为原图，1 为完全应用查找表
+     */
+    public void setIntensity(float intensity) {
+        this.intensity = Math.max(0.0f, Math.min(1.0f, intensity));
+    }
+
+    @Override
+    public String getShaderSource() {
+        return SHADER;
+    }
+
+    @Override
+    public int getTextureCount() {
+        return 1;
+    }
+
+    @Override
+    public void setup(GlBinding gl) {
+        if (lutBitmap != null && lutTexture == 0) {
+            lutTexture = ShaderUtil.createRgbaTexture(lutBitmap);
+            ownsTexture = true;
+        }
+    }
+
+    @Override
+    public void setUniforms(FilterUniforms uniforms) {
+        uniforms.setTexture("lut", GLES20.GL_TEXTURE_2D, lutTexture);
+        uniforms.set1f("intensity", intensity);
+    }
+
+    @Override
+    public void release(GlBinding gl) {
+        if (ownsTexture) {
+            gl.glDeleteTextures(1, new int[]{lutTexture}, 0);
+            lutTexture = 0;
+            ownsTexture = false;
+        }
+    }
+}
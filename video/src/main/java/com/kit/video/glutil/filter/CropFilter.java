@@ -0,0 +1,46 @@
+package com.kit.video.glutil.filter;
+
+/**
+ * 裁剪并缩放：把输入中的一个矩形区域拉伸到整个输出
+ * <p>
+ * 区域使用归一化坐标，原点在左上角，(0, 0, 1, 1) 为整个画面。
+ */
+public class CropFilter extends GlFilter {
+    private static final String SHADER =
+            "uniform vec4 $rect;\n"
+                    + "\n"
+                    + "vec2 $apply(vec2 coord) {\n"
+                    + "  return $rect.xy + coord * $rect.zw;\n"
+                    + "}\n";
+
+    private float left;
+    private float top;
+    private float right;
+    private float bottom;
+
+    public CropFilter(float left, float top, float right, float bottom) {
+        super(Kind.COORDINATE);
+        setRect(left, top, right, bottom);
+    }
+
+    public void setRect(float left, float top, float right, float bottom) {
+        if (right <= left || bottom <= top) {
+            throw new IllegalArgumentException("Empty crop rect");
+        }
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    @Override
+    public String getShaderSource() {
+        return SHADER;
+    }
+
+    @Override
+    public void setUniforms(FilterUniforms uniforms) {
+        // 纹理坐标的原点在左下角
+        uniforms.set4f("rect", left, 1.0f - bottom, right - left, bottom - top);
+    }
+}
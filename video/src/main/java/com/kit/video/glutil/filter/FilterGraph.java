@@ -0,0 +1,223 @@
+package com.kit.video.glutil.filter;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.util.Log;
+
+import com.kit.video.glutil.CommonShaders;
+import com.kit.video.glutil.GlBinding;
+import com.kit.video.glutil.GlStateCache;
+import com.kit.video.glutil.ProgramCache;
+import com.kit.video.glutil.QuadGeometry;
+import com.kit.video.glutil.ShaderUtil;
+import com.kit.video.glutil.TexturePool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GPU 滤镜链：按顺序对输入纹理应用一组滤镜，并绘制到目标帧缓冲
+ * <p>
+ * 滤镜由 {@link FilterShaderBuilder} 划分为渲染通道，可以合并的滤镜在同一个着色器中一次完成。
+ * 中间结果在两个帧缓冲之间交替写入（ping-pong），帧缓冲从 {@link TexturePool} 中获取，用完立即归还，
+ * 稳定渲染时不会分配新的纹理。所有方法都需要在 GL 线程中调用。
+ */
+public class FilterGraph {
+    private static final String TAG = "FilterGraph";
+    private static final int ATTRIB_POSITION = 1;
+    private static final int ATTRIB_TEXTURE_COORDINATE = 2;
+
+    /**
+     * 一个通道的着色器程序（输入为 2D 纹理或外部纹理时分别编译）
+     */
+    private static final class PassProgram {
+        final int program;
+        final FilterUniforms uniforms;
+        final int samplerUniform;
+        final int transformUniform;
+        final int texelSizeUniform;
+
+        PassProgram(GlBinding gl, int program) {
+            this.program = program;
+            this.uniforms = new FilterUniforms(gl, program);
+            this.samplerUniform = gl.glGetUniformLocation(program, FilterShaderBuilder.INPUT_SAMPLER);
+            this.transformUniform = gl.glGetUniformLocation(program, FilterShaderBuilder.INPUT_TRANSFORM);
+            this.texelSizeUniform = gl.glGetUniformLocation(program, FilterShaderBuilder.TEXEL_SIZE);
+        }
+    }
+
+    private final GlBinding gl;
+    private final List<GlFilter> filters = new ArrayList<>();
+    private final float[] identityMatrix = new float[16];
+    private final TexturePool texturePool;
+    private final Map<String, PassProgram> programs = new HashMap<>();
+    private List<FilterShaderBuilder.Pass> passes;
+    private QuadGeometry quadGeometry;
+    private boolean isSetup;
+
+    /**
+     * @param gl          与同一上下文中其他渲染器共用的 GL 调用（同一个 {@link GlStateCache}）
+     * @param texturePool 同一上下文的纹理池，提供中间结果的帧缓冲
+     */
+    public FilterGraph(GlBinding gl, TexturePool texturePool) {
+        this.gl = gl;
+        this.texturePool = texturePool;
+        Matrix.setIdentityM(identityMatrix, 0);
+    }
+
+    /**
+     * 在滤镜链末尾添加滤镜，需在 {@link #setup()} 之前调用
+     */
+    public void addFilter(GlFilter filter) {
+        if (isSetup) {
+            throw new IllegalStateException("Filters must be added before setup");
+        }
+        filters.add(filter);
+    }
+
+    public List<GlFilter> getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+
+    /**
+     * 创建滤镜的资源并划分渲染通道，着色器在第一次使用时编译
+     */
+    public void setup() {
+        for (GlFilter filter : filters) {
+            filter.setup(gl);
+        }
+        passes = FilterShaderBuilder.plan(filters);
+        quadGeometry = new QuadGeometry(gl, ATTRIB_POSITION, ATTRIB_TEXTURE_COORDINATE);
+        quadGeometry.setup();
+        // 滤镜可能通过 ShaderUtil 直接调用 GLES20 创建纹理，绕过了状态缓存
+        invalidateStateCache();
+        isSetup = true;
+        Log.d(TAG, filters.size() + " filters in " + passes.size() + " passes");
+    }
+
+    /**
+     * 渲染通道的数量（合并后）
+     */
+    public int getPassCount() {
+        return passes != null ? passes.size() : 0;
+    }
+
+    /**
+     * 对输入纹理应用滤镜链，绘制到 outputFramebuffer
+     *
+     * @param texture         输入纹理
+     * @param external        输入是否为外部纹理（GL_TEXTURE_EXTERNAL_OES）
+     * @param transformMatrix 输入的纹理坐标变换（SurfaceTexture.getTransformMatrix），为 null 时不变换
+     * @param inputWidth      输入纹理的宽度，用于计算 texel_size
+     * @param inputHeight     输入纹理的高度
+     * @param outputFramebuffer 目标帧缓冲，0 表示当前 EGLSurface
+     */
+    public void render(int texture, boolean external, float[] transformMatrix, int inputWidth, int inputHeight,
+                       int outputFramebuffer, int outputWidth, int outputHeight) {
+        if (!isSetup) {
+            throw new IllegalStateException("setup() has not been called");
+        }
+        int inputTexture = texture;
+        boolean inputExternal = external;
+        float[] inputTransform = transformMatrix != null ? transformMatrix : identityMatrix;
+        int width = inputWidth;
+        int height = inputHeight;
+        TexturePool.Texture previous = null;
+        for (int i = 0; i < passes.size(); i++) {
+            boolean last = i == passes.size() - 1;
+            // 中间结果与输出同样大小，两个通道交替使用池中的两个帧缓冲
+            TexturePool.Texture target = last ? null : texturePool.acquireFramebuffer(outputWidth, outputHeight);
+            gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, target != null ? target.getFramebufferId() : outputFramebuffer);
+            gl.glViewport(0, 0, outputWidth, outputHeight);
+            drawPass(i, inputTexture, inputExternal, inputTransform, width, height);
+            if (previous != null) {
+                texturePool.release(previous);
+            }
+            previous = target;
+            if (target != null) {
+                inputTexture = target.getTextureId();
+                inputExternal = false;
+                inputTransform = identityMatrix;
+                width = target.getWidth();
+                height = target.getHeight();
+            }
+        }
+        ShaderUtil.checkGlError("FilterGraph render");
+    }
+
+    private void drawPass(int index, int texture, boolean external, float[] transform, int width, int height) {
+        FilterShaderBuilder.Pass pass = passes.get(index);
+        PassProgram program = obtainProgram(index, pass, external);
+        int target = external ? GLES11Ext.GL_TEXTURE_EXTERNAL_OES : GLES20.GL_TEXTURE_2D;
+
+        gl.glUseProgram(program.program);
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(target, texture);
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(target, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        gl.glUniform1i(program.samplerUniform, 0);
+        gl.glUniformMatrix4fv(program.transformUniform, 1, false, transform, 0);
+        gl.glUniform2f(program.texelSizeUniform, 1.0f / width, 1.0f / height);
+
+        program.uniforms.reset(1);
+        List<GlFilter> passFilters = pass.getFilters();
+        for (int i = 0; i < passFilters.size(); i++) {
+            program.uniforms.setPrefix(FilterShaderBuilder.prefix(pass.getFirstIndex() + i));
+            passFilters.get(i).setUniforms(program.uniforms);
+        }
+
+        quadGeometry.bind(0, false);
+        gl.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, QuadGeometry.VERTEX_COUNT);
+    }
+
+    private PassProgram obtainProgram(int index, FilterShaderBuilder.Pass pass, boolean external) {
+        String key = index + (external ? "/oes" : "/2d");
+        PassProgram program = programs.get(key);
+        if (program == null) {
+            Map<String, Integer> attributeLocations = new HashMap<>();
+            attributeLocations.put("position", ATTRIB_POSITION);
+            attributeLocations.put("texture_coordinate", ATTRIB_TEXTURE_COORDINATE);
+            String fragmentShader = FilterShaderBuilder.buildFragmentShader(pass, external);
+            int id = ProgramCache.getInstance().getProgram(CommonShaders.VERTEX_SHADER_NO_TRANSFORM, fragmentShader,
+                    attributeLocations);
+            if (id == 0) {
+                throw new ShaderUtil.GlRuntimeException("Unable to compile filter pass " + index + ":\n" + fragmentShader);
+            }
+            program = new PassProgram(gl, id);
+            programs.put(key, program);
+        }
+        return program;
+    }
+
+    private void invalidateStateCache() {
+        if (gl instanceof GlStateCache) {
+            ((GlStateCache) gl).invalidate();
+        }
+    }
+
+    /**
+     * 释放帧缓冲和滤镜的资源；{@link ProgramCache} 缓存的着色器程序留在上下文中，其余的程序在这里删除
+     */
+    public void release() {
+        for (PassProgram program : programs.values()) {
+            if (!ProgramCache.getInstance().isCached(program.program)) {
+                gl.glDeleteProgram(program.program);
+            }
+        }
+        programs.clear();
+        for (GlFilter filter : filters) {
+            filter.release(gl);
+        }
+        if (quadGeometry != null) {
+            quadGeometry.release();
+            quadGeometry = null;
+        }
+        isSetup = false;
+    }
+}
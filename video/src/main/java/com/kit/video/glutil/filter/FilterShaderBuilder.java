@@ -0,0 +1,148 @@
+package com.kit.video.glutil.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 把滤镜链划分为渲染通道，并为每个通道生成合并后的片段着色器
+ * <p>
+ * 每个滤镜对应一个 GLSL 函数 {@code vec4 stageN(vec2 coord)}，返回经过前 N 个滤镜处理后 coord 位置的颜色，
+ * stage0 直接读取输入纹理。颜色滤镜和坐标滤镜只在当前位置调用上一级，代价是常数；采样滤镜会多次调用上一级，
+ * 如果上一级中还有采样或颜色滤镜，这些计算会被重复执行，因此这种情况下从采样滤镜开始新的通道，
+ * 中间结果写入帧缓冲。通道使用的纹理单元超过 {@link #MAX_TEXTURE_UNITS} 时同样拆分。
+ * <p>
+ * 纯 Java 实现，可以在没有 GPU 的环境中测试。
+ */
+public final class FilterShaderBuilder {
+    /**
+     * OpenGL ES 2.0 保证片段着色器至少可以使用 8 个纹理单元，其中一个用于输入纹理
+     */
+    public static final int MAX_TEXTURE_UNITS = 8;
+    public static final String INPUT_SAMPLER = "input_frame";
+    public static final String INPUT_TRANSFORM = "input_transform";
+    public static final String TEXEL_SIZE = "texel_size";
+
+    /**
+     * 一个渲染通道：一组合并到同一个着色器中的滤镜
+     */
+    public static final class Pass {
+        private final List<GlFilter> filters;
+        private final int firstIndex;
+
+        Pass(List<GlFilter> filters, int firstIndex) {
+            this.filters = Collections.unmodifiableList(filters);
+            this.firstIndex = firstIndex;
+        }
+
+        public List<GlFilter> getFilters() {
+            return filters;
+        }
+
+        /**
+         * 第一个滤镜在整个滤镜链中的位置，用于生成前缀
+         */
+        public int getFirstIndex() {
+            return firstIndex;
+        }
+    }
+
+    private FilterShaderBuilder() {
+    }
+
+    /**
+     * 滤镜在 GLSL 代码中的前缀
+     *
+     * @param index 滤镜在整个滤镜链中的位置
+     */
+    public static String prefix(int index) {
+        return "f" + index + "_";
+    }
+
+    /**
+     * 把滤镜链划分为尽量少的渲染通道，没有滤镜时返回一个直接复制的通道
+     */
+    public static List<Pass> plan(List<GlFilter> filters) {
+        List<Pass> passes = new ArrayList<>();
+        List<GlFilter> current = new ArrayList<>();
+        int firstIndex = 0;
+        boolean hasPerSampleWork = false;
+        int textureUnits = 1;
+        for (int i = 0; i < filters.size(); i++) {
+            GlFilter filter = filters.get(i);
+            boolean split = filter.getKind() == GlFilter.Kind.SAMPLE && hasPerSampleWork;
+            if (textureUnits + filter.getTextureCount() > MAX_TEXTURE_UNITS) {
+                split = true;
+            }
+            if (split && !current.isEmpty()) {
+                passes.add(new Pass(current, firstIndex));
+                current = new ArrayList<>();
+                firstIndex = i;
+                hasPerSampleWork = false;
+                textureUnits = 1;
+            }
+            current.add(filter);
+            textureUnits += filter.getTextureCount();
+            if (filter.getKind() != GlFilter.Kind.COORDINATE) {
+                hasPerSampleWork = true;
+            }
+        }
+        passes.add(new Pass(current, firstIndex));
+        return passes;
+    }
+
+    /**
+     * 生成通道的片段着色器，顶点着色器使用 {@link com.kit.video.glutil.CommonShaders#VERTEX_SHADER_NO_TRANSFORM}
+     *
+     * @param externalInput 输入是否为外部纹理（GL_TEXTURE_EXTERNAL_OES）
+     */
+    public static String buildFragmentShader(Pass pass, boolean externalInput) {
+        StringBuilder source = new StringBuilder(1024);
+        if (externalInput) {
+            source.append("#extension GL_OES_EGL_image_external : require\n");
+        }
+        source.append("precision mediump float;\n");
+        source.append("varying mediump vec2 sample_coordinate;\n");
+        source.append("uniform ").append(externalInput ? "samplerExternalOES " : "sampler2D ").append(INPUT_SAMPLER).append(";\n");
+        // 输入纹理坐标的变换（SurfaceTexture.getTransformMatrix），在坐标滤镜之后应用
+        source.append("uniform mat4 ").append(INPUT_TRANSFORM).append(";\n");
+        source.append("uniform vec2 ").append(TEXEL_SIZE).append(";\n");
+        source.append("\n");
+        source.append("vec4 stage0(vec2 coord) {\n");
+        source.append("  return texture2D(").append(INPUT_SAMPLER).append(", (").append(INPUT_TRANSFORM)
+                .append(" * vec4(coord, 0.0, 1.0)).xy);\n");
+        source.append("}\n");
+
+        List<GlFilter> filters = pass.getFilters();
+        for (int i = 0; i < filters.size(); i++) {
+            GlFilter filter = filters.get(i);
+            String prefix = prefix(pass.getFirstIndex() + i);
+            String previous = "stage" + i;
+            source.append("\n");
+            if (filter.getKind() == GlFilter.Kind.SAMPLE) {
+                source.append("vec4 ").append(prefix).append("input(vec2 coord) {\n");
+                source.append("  return ").append(previous).append("(coord);\n");
+                source.append("}\n");
+            }
+            source.append(filter.getShaderSource().replace("$", prefix));
+            source.append("\nvec4 stage").append(i + 1).append("(vec2 coord) {\n");
+            switch (filter.getKind()) {
+                case COLOR:
+                    source.append("  return ").append(prefix).append("apply(").append(previous).append("(coord), coord);\n");
+                    break;
+                case COORDINATE:
+                    source.append("  return ").append(previous).append("(").append(prefix).append("apply(coord));\n");
+                    break;
+                case SAMPLE:
+                    source.append("  return ").append(prefix).append("apply(coord);\n");
+                    break;
+            }
+            source.append("}\n");
+        }
+
+        source.append("\nvoid main() {\n");
+        source.append("  gl_FragColor = stage").append(filters.size()).append("(sample_coordinate);\n");
+        source.append("}\n");
+        return source.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.kit.video.glutil.filter;
+
+import android.opengl.GLES20;
+
+import com.kit.video.glutil.GlBinding;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 设置滤镜 uniform：自动加上滤镜的前缀，缓存 uniform 的位置，并为纹理分配纹理单元
+ */
+public class FilterUniforms {
+    private final GlBinding gl;
+    private final int program;
+    private final Map<String, Integer> locations = new HashMap<>();
+    private String prefix = "";
+    private int nextTextureUnit;
+
+    FilterUniforms(GlBinding gl, int program) {
+        this.gl = gl;
+        this.program = program;
+    }
+
+    /**
+     * 开始一次绘制，纹理单元从 firstTextureUnit 开始分配
+     */
+    void reset(int firstTextureUnit) {
+        nextTextureUnit = firstTextureUnit;
+    }
+
+    void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    private int location(String name) {
+        String key = prefix + name;
+        Integer location = locations.get(key);
+        if (location == null) {
+            location = gl.glGetUniformLocation(program, key);
+            locations.put(key, location);
+        }
+        return location;
+    }
+
+    public void set1f(String name, float x) {
+        gl.glUniform1f(location(name), x);
+    }
+
+    public void set2f(String name, float x, float y) {
+        gl.glUniform2f(location(name), x, y);
+    }
+
+    public void set4f(String name, float x, float y, float z, float w) {
+        gl.glUniform4f(location(name), x, y, z, w);
+    }
+
+    public void set1i(String name, int x) {
+        gl.glUniform1i(location(name), x);
+    }
+
+    public void setMatrix4(String name, float[] matrix) {
+        gl.glUniformMatrix4fv(location(name), 1, false, matrix, 0);
+    }
+
+    /**
+     * 把纹理绑定到下一个空闲的纹理单元，并设置 sampler uniform
+     */
+    public void setTexture(String name, int target, int texture) {
+        int unit = nextTextureUnit++;
+        gl.glActiveTexture(GLES20.GL_TEXTURE0 + unit);
+        gl.glBindTexture(target, texture);
+        gl.glUniform1i(location(name), unit);
+    }
+}
@@ -0,0 +1,60 @@
+package com.kit.video.glutil.filter;
+
+/**
+ * 一维高斯模糊，横向和纵向各用一个滤镜（可分离卷积），两者之间需要一次中间结果
+ * <p>
+ * 9 个采样点，权重取自二项式分布，采样间距随半径变化。
+ */
+public class GaussianBlurFilter extends GlFilter {
+    private static final String SHADER =
+            "uniform vec2 $direction;\n"
+                    + "\n"
+                    + "vec4 $apply(vec2 coord) {\n"
+                    + "  vec2 offset = $direction * texel_size;\n"
+                    + "  vec4 sum = $input(coord) * 0.2270270270;\n"
+                    + "  sum += ($input(coord + offset) + $input(coord - offset)) * 0.1945945946;\n"
+                    + "  sum += ($input(coord + 2.0 * offset) + $input(coord - 2.0 * offset)) * 0.1216216216;\n"
+                    + "  sum += ($input(coord + 3.0 * offset) + $input(coord - 3.0 * offset)) * 0.0540540541;\n"
+                    + "  sum += ($input(coord + 4.0 * offset) + $input(coord - 4.0 * offset)) * 0.0162162162;\n"
+                    + "  return sum;\n"
+                    + "}\n";
+
+    private final boolean horizontal;
+    private float radius;
+
+    private GaussianBlurFilter(boolean horizontal, float radius) {
+        super(Kind.SAMPLE);
+        this.horizontal = horizontal;
+        setRadius(radius);
+    }
+
+    /**
+     * @param radius 模糊半径，单位：像素
+     */
+    public static GaussianBlurFilter horizontal(float radius) {
+        return new GaussianBlurFilter(true, radius);
+    }
+
+    /**
+     * @param radius 模糊半径，单位：像素
+     */
+    public static GaussianBlurFilter vertical(float radius) {
+        return new GaussianBlurFilter(false, radius);
+    }
+
+    public void setRadius(float radius) {
+        this.radius = Math.max(0.0f, radius);
+    }
+
+    @Override
+    public String getShaderSource() {
+        return SHADER;
+    }
+
+    @Override
+    public void setUniforms(FilterUniforms uniforms) {
+        // 中心两侧各 4 个采样点覆盖整个半径
+        float spacing = radius / 4.0f;
+        uniforms.set2f("direction", horizontal ? spacing : 0.0f, horizontal ? 0.0f : spacing);
+    }
+}
@@ -0,0 +1,63 @@
+package com.kit.video.glutil.filter;
+
+import com.kit.video.glutil.GlBinding;
+
+/**
+ * 滤镜：提供一段 GLSL 代码，由 {@link FilterShaderBuilder} 与相邻的滤镜合并到同一个片段着色器中
+ * <p>
+ * 代码中的 {@code $} 会被替换为滤镜的唯一前缀（如 {@code f2_}），uniform 和函数都应以 {@code $} 开头，
+ * 避免与其他滤镜冲突。入口函数名为 {@code $apply}，签名取决于滤镜的类型：
+ * <ul>
+ *     <li>{@link Kind#COLOR}：{@code vec4 $apply(vec4 color, vec2 coord)}，逐像素处理颜色，coord 为输出位置；</li>
+ *     <li>{@link Kind#COORDINATE}：{@code vec2 $apply(vec2 coord)}，把输出位置映射为读取上游的位置（如裁剪、缩放）；</li>
+ *     <li>{@link Kind#SAMPLE}：{@code vec4 $apply(vec2 coord)}，通过 {@code $input(vec2)} 读取上游任意位置的颜色（如模糊、锐化），
+ *     可以使用全局的 {@code texel_size}（输入纹理一个像素的大小）。</li>
+ * </ul>
+ * 类型决定了能否与前面的滤镜合并，见 {@link FilterShaderBuilder#plan}。
+ */
+public abstract class GlFilter {
+    public enum Kind {
+        COLOR,
+        COORDINATE,
+        SAMPLE
+    }
+
+    private final Kind kind;
+
+    protected GlFilter(Kind kind) {
+        this.kind = kind;
+    }
+
+    public final Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * 滤镜的 GLSL 代码（uniform 声明和 $apply 函数）
+     */
+    public abstract String getShaderSource();
+
+    /**
+     * 滤镜使用的纹理单元数量（不含输入纹理）
+     */
+    public int getTextureCount() {
+        return 0;
+    }
+
+    /**
+     * 创建滤镜需要的 GL 资源（如查找表纹理），在 GL 线程中调用
+     */
+    public void setup(GlBinding gl) {
+    }
+
+    /**
+     * 每次绘制前设置 uniform，名称不带前缀
+     */
+    public abstract void setUniforms(FilterUniforms uniforms);
+
+    /**
+     * 释放 {@link #setup} 中创建的 GL 资源，在 GL 线程中调用
+     */
+    public void release(GlBinding gl) {
+    }
+}
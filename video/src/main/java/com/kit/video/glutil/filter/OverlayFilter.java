@@ -0,0 +1,106 @@
+package com.kit.video.glutil.filter;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import com.kit.video.glutil.GlBinding;
+import com.kit.video.glutil.ShaderUtil;
+
+/**
+ * 叠加图片（水印、贴纸等）：把一张预乘 alpha 的图片按指定位置和透明度混合到画面上
+ * <p>
+ * 位置使用归一化坐标，原点在左上角。
+ */
+public class OverlayFilter extends GlFilter {
+    private static final String SHADER =
+            "uniform sampler2D $overlay;\n"
+                    + "uniform vec4 $rect;\n"
+                    + "uniform float $alpha;\n"
+                    + "\n"
+                    + "vec4 $apply(vec4 color, vec2 coord) {\n"
+                    + "  vec2 p = (vec2(coord.x, 1.0 - coord.y) - $rect.xy) / $rect.zw;\n"
+                    + "  if (p.x < 0.0 || p.x > 1.0 || p.y < 0.0 || p.y > 1.0) {\n"
+                    + "    return color;\n"
+                    + "  }\n"
+                    // Bitmap 的第一行在纹理坐标 t = 0 处
+                    + "  vec4 o = texture2D($overlay, p) * $alpha;\n"
+                    + "  return color * (1.0 - o.a) + o;\n"
+                    + "}\n";
+
+    private final Bitmap bitmap;
+    private int texture;
+    private boolean ownsTexture;
+    private float left;
+    private float top;
+    private float right;
+    private float bottom;
+    private float alpha = 1.0f;
+
+    /**
+     * @param bitmap 叠加的图片，在 {@link #setup} 时上传为纹理
+     */
+    public OverlayFilter(Bitmap bitmap, float left, float top, float right, float bottom) {
+        super(Kind.COLOR);
+        this.bitmap = bitmap;
+        setRect(left, top, right, bottom);
+    }
+
+    /**
+     * @param texture 已上传的纹理（第一行在 t = 0 处，预乘 alpha），由调用方管理
+     */
+    public OverlayFilter(int texture, float left, float top, float right, float bottom) {
+        super(Kind.COLOR);
+        this.bitmap = null;
+        this.texture = texture;
+        setRect(left, top, right, bottom);
+    }
+
+    public void setRect(float left, float top, float right, float bottom) {
+        if (right <= left || bottom <= top) {
+            throw new IllegalArgumentException("Empty overlay rect");
+        }
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public void setAlpha(float alpha) {
+        this.alpha = Math.max(0.0f, Math.min(1.0f, alpha));
+    }
+
+    @Override
+    public String getShaderSource() {
+        return SHADER;
+    }
+
+    @Override
+    public int getTextureCount() {
+        return 1;
+    }
+
+    @Override
+    public void setup(GlBinding gl) {
+        if (bitmap != null && texture == 0) {
+            // GLUtils.texImage2D 上传的 Bitmap 为预乘 alpha
+            texture = ShaderUtil.createRgbaTexture(bitmap);
+            ownsTexture = true;
+        }
+    }
+
+    @Override
+    public void setUniforms(FilterUniforms uniforms) {
+        uniforms.setTexture("overlay", GLES20.GL_TEXTURE_2D, texture);
+        uniforms.set4f("rect", left, top, right - left, bottom - top);
+        uniforms.set1f("alpha", alpha);
+    }
+
+    @Override
+    public void release(GlBinding gl) {
+        if (ownsTexture) {
+            gl.glDeleteTextures(1, new int[]{texture}, 0);
+            texture = 0;
+            ownsTexture = false;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.kit.video.glutil.filter;
+
+/**
+ * 锐化滤镜：原图加上拉普拉斯算子（上下左右 4 个相邻像素）的结果
+ */
+public class SharpenFilter extends GlFilter {
+    private static final String SHADER =
+            "uniform float $amount;\n"
+                    + "\n"
+                    + "vec4 $apply(vec2 coord) {\n"
+                    + "  vec4 center = $input(coord);\n"
+                    + "  vec4 neighbors = $input(coord + vec2(texel_size.x, 0.0))\n"
+                    + "      + $input(coord - vec2(texel_size.x, 0.0))\n"
+                    + "      + $input(coord + vec2(0.0, texel_size.y))\n"
+                    + "      + $input(coord - vec2(0.0, texel_size.y));\n"
+                    + "  vec3 sharpened = center.rgb * (1.0 + 4.0 * $amount) - neighbors.rgb * $amount;\n"
+                    + "  return vec4(clamp(sharpened, 0.0, 1.0), center.a);\n"
+                    + "}\n";
+
+    private float amount;
+
+    /**
+     * @param amount 锐化强度，0 为原图
+     */
+    public SharpenFilter(float amount) {
+        super(Kind.SAMPLE);
+        this.amount = amount;
+    }
+
+    public void setAmount(float amount) {
+        this.amount = amount;
+    }
+
+    @Override
+    public String getShaderSource() {
+        return SHADER;
+    }
+
+    @Override
+    public void setUniforms(FilterUniforms uniforms) {
+        uniforms.set1f("amount", amount);
+    }
+}
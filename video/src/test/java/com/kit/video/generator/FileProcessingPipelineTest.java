@@ -0,0 +1,231 @@
+package com.kit.video.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.InputHandler;
+import com.kit.video.generator.base.OutputHandler;
+import com.kit.video.generator.base.PcmFormat;
+import com.kit.video.generator.base.PixelFormat;
+import com.kit.video.generator.input.RawVideoInputHandler;
+import com.kit.video.generator.out.RawOutputHandler;
+import com.kit.video.generator.out.RawVideoEncoder;
+import com.kit.video.generator.raw.Y4mReader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用软件输入输出在普通 JVM 上端到端运行整个管道：调度、音视频交错和结束帧
+ */
+public class FileProcessingPipelineTest {
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+    private static final int FRAME_COUNT = 10;
+    private static final PcmFormat AUDIO_FORMAT = new PcmFormat(44100, 1);
+    // 每块音频对应一帧视频（30 fps）
+    private static final int AUDIO_BLOCK_FRAMES = 1470;
+
+    private File directory;
+    private FileProcessingPipeline pipeline;
+
+    /**
+     * 按块输出单声道 PCM，结束后返回结束帧，之后返回 null
+     */
+    private static final class PcmInput implements InputHandler {
+        private final int blocks;
+        private int index;
+        private boolean ended;
+
+        PcmInput(int blocks) {
+            this.blocks = blocks;
+        }
+
+        @Override
+        public boolean initialize() {
+            return true;
+        }
+
+        @Override
+        public FrameData getData() {
+            if (ended) return null;
+            long pts = AUDIO_FORMAT.framesToUs((long) index * AUDIO_BLOCK_FRAMES);
+            if (index == blocks) {
+                ended = true;
+                return new FrameData(true, pts);
+            }
+            ByteBuffer data = ByteBuffer.allocate(AUDIO_BLOCK_FRAMES * 2).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < AUDIO_BLOCK_FRAMES; i++) {
+                data.putShort((short) (index * 100 + i % 100));
+            }
+            data.flip();
+            FrameData frame = new FrameData(data, pts);
+            frame.setPcmFormat(AUDIO_FORMAT);
+            index++;
+            return frame;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    /**
+     * 记录写入的时间戳和结束帧，再交给实际的输出
+     */
+    private static final class RecordingOutput implements OutputHandler {
+        private final OutputHandler delegate;
+        final List<Long> videoPts = new ArrayList<>();
+        final List<Long> audioPts = new ArrayList<>();
+        boolean videoEnded;
+        boolean audioEnded;
+        // 视频结束帧到达时音频是否已经结束
+        boolean audioEndedBeforeVideo;
+        boolean framesAfterEnd;
+        final CountDownLatch released = new CountDownLatch(1);
+
+        RecordingOutput(OutputHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean initialize() {
+            return delegate.initialize();
+        }
+
+        @Override
+        public void writeVideoFrame(FrameData frame) {
+            if (videoEnded) framesAfterEnd = true;
+            if (frame.isEndOfStream()) {
+                videoEnded = true;
+                audioEndedBeforeVideo = audioEnded;
+            } else {
+                videoPts.add(frame.getPts());
+            }
+            delegate.writeVideoFrame(frame);
+        }
+
+        @Override
+        public void writeAudioFrame(FrameData frame) {
+            if (audioEnded) framesAfterEnd = true;
+            if (frame.isEndOfStream()) {
+                audioEnded = true;
+            } else {
+                audioPts.add(frame.getPts());
+            }
+            delegate.writeAudioFrame(frame);
+        }
+
+        @Override
+        public void release() {
+            delegate.release();
+            released.countDown();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("pipeline").toFile();
+        pipeline = new FileProcessingPipeline();
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.stop();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void rawFilesRunThroughWholePipeline() throws Exception {
+        File input = new File(directory, "in.y4m");
+        writeInput(input);
+        File videoOut = new File(directory, "out.y4m");
+        File audioOut = new File(directory, "out.wav");
+        RecordingOutput output = new RecordingOutput(new RawOutputHandler(videoOut.getPath(), audioOut.getPath(),
+                WIDTH, HEIGHT, 30, 1, AUDIO_FORMAT.getSampleRate(), AUDIO_FORMAT.getChannelCount()));
+
+        assertTrue(pipeline.start(new RawVideoInputHandler(input.getPath()), new PcmInput(FRAME_COUNT), output));
+        assertTrue("pipeline did not finish", output.released.await(10, TimeUnit.SECONDS));
+
+        assertEquals(FRAME_COUNT, output.videoPts.size());
+        for (int i = 1; i < output.videoPts.size(); i++) {
+            assertTrue("video PTS not increasing at " + i, output.videoPts.get(i) > output.videoPts.get(i - 1));
+        }
+        assertEquals(FRAME_COUNT, output.audioPts.size());
+        for (int i = 1; i < output.audioPts.size(); i++) {
+            assertTrue("audio PTS not increasing at " + i, output.audioPts.get(i) > output.audioPts.get(i - 1));
+        }
+        // 音频的结束帧在视频的结束帧之前提交，结束之后没有数据
+        assertTrue(output.videoEnded);
+        assertTrue(output.audioEnded);
+        assertTrue(output.audioEndedBeforeVideo);
+        assertFalse(output.framesAfterEnd);
+
+        Y4mReader reader = new Y4mReader(videoOut.getPath());
+        try {
+            int frameSize = PixelFormat.I420.getFrameSize(WIDTH, HEIGHT);
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                ByteBuffer frame = reader.readFrame();
+                assertEquals(frameSize, frame.remaining());
+                assertEquals((byte) (i * 10), frame.get(0));
+            }
+            assertNull(reader.readFrame());
+        } finally {
+            reader.close();
+        }
+        ByteBuffer wav = ByteBuffer.wrap(Files.readAllBytes(audioOut.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(FRAME_COUNT * AUDIO_BLOCK_FRAMES * 2, wav.getInt(40));
+        assertEquals((short) 100, wav.getShort(44 + AUDIO_BLOCK_FRAMES * 2));
+    }
+
+    @Test
+    public void videoOnlyPipelineFinishes() throws Exception {
+        File input = new File(directory, "in.y4m");
+        writeInput(input);
+        File videoOut = new File(directory, "out.y4m");
+        RecordingOutput output = new RecordingOutput(new RawOutputHandler(videoOut.getPath(), null,
+                WIDTH, HEIGHT, 30, 1, AUDIO_FORMAT.getSampleRate(), AUDIO_FORMAT.getChannelCount()));
+
+        assertTrue(pipeline.start(new RawVideoInputHandler(input.getPath()), null, output));
+        assertTrue("pipeline did not finish", output.released.await(10, TimeUnit.SECONDS));
+        assertEquals(FRAME_COUNT, output.videoPts.size());
+        assertTrue(output.videoEnded);
+        assertTrue(output.audioPts.isEmpty());
+        assertFalse(output.audioEnded);
+    }
+
+    private static void writeInput(File file) throws Exception {
+        RawVideoEncoder encoder = new RawVideoEncoder(file.getPath(), WIDTH, HEIGHT, 30, 1);
+        encoder.initialize();
+        int frameSize = PixelFormat.I420.getFrameSize(WIDTH, HEIGHT);
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            ByteBuffer frame = ByteBuffer.allocate(frameSize);
+            for (int j = 0; j < frameSize; j++) {
+                frame.put((byte) (i * 10 + j % 7));
+            }
+            frame.flip();
+            encoder.writeFrame(new FrameData(frame, i * 33_333L));
+        }
+        encoder.writeFrame(new FrameData(true, FRAME_COUNT * 33_333L));
+        encoder.release();
+    }
+}
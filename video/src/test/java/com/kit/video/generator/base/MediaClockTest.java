@@ -0,0 +1,108 @@
+package com.kit.video.generator.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MediaClockTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BLOCK = 1024;
+
+    private long nowNs;
+    private MediaClock clock;
+
+    @Before
+    public void setUp() {
+        nowNs = 5_000_000_000L;
+        clock = new MediaClock(() -> nowNs);
+        clock.setAudioSampleRate(SAMPLE_RATE);
+        clock.start();
+    }
+
+    @Test
+    public void audioPtsFollowsSampleCount() {
+        long first = -1;
+        for (int i = 0; i < 100; i++) {
+            // 读取完成的时刻有抖动，PTS 不受影响
+            nowNs += BLOCK * 1_000_000_000L / SAMPLE_RATE + (i % 3 - 1) * 2_000_000L;
+            long ptsUs = clock.nextAudioPtsUs(BLOCK);
+            if (first < 0) first = ptsUs;
+            assertEquals(first + (long) i * BLOCK * 1_000_000 / SAMPLE_RATE, ptsUs);
+        }
+        assertEquals(100L * BLOCK, clock.getAudioSampleCount());
+    }
+
+    @Test
+    public void driftIsCorrectedWithoutJumps() {
+        // 音频设备比系统时钟慢 300 ppm，录制一小时
+        double blockNs = BLOCK * 1e9 / SAMPLE_RATE * (1 + 300e-6);
+        int blocks = (int) (3600e9 / blockNs);
+        double elapsedNs = 0;
+        long lastPtsUs = -1;
+        long maxErrorUs = 0;
+        long base = nowNs;
+        for (int i = 0; i < blocks; i++) {
+            elapsedNs += blockNs;
+            nowNs = base + (long) elapsedNs;
+            long ptsUs = clock.nextAudioPtsUs(BLOCK);
+            assertTrue("PTS went backwards at block " + i, ptsUs > lastPtsUs);
+            if (lastPtsUs >= 0) {
+                // 每块的调整不超过 1 ms
+                long deltaUs = ptsUs - lastPtsUs;
+                assertTrue("jump of " + deltaUs + "us at block " + i, Math.abs(deltaUs - 21_333) <= 1_001);
+            }
+            lastPtsUs = ptsUs;
+            // 这一块第一个采样的真实采集时刻
+            long actualUs = (long) ((elapsedNs - blockNs) / 1000);
+            maxErrorUs = Math.max(maxErrorUs, Math.abs(ptsUs - actualUs));
+        }
+        assertTrue("max error " + maxErrorUs + "us", maxErrorUs < 15_000);
+    }
+
+    @Test
+    public void driftAccumulatesWhenCorrectionIsOff() {
+        clock.setDriftCorrection(false);
+        double blockNs = BLOCK * 1e9 / SAMPLE_RATE * (1 + 300e-6);
+        double elapsedNs = 0;
+        long base = nowNs;
+        long ptsUs = 0;
+        int blocks = (int) (600e9 / blockNs);
+        for (int i = 0; i < blocks; i++) {
+            elapsedNs += blockNs;
+            nowNs = base + (long) elapsedNs;
+            ptsUs = clock.nextAudioPtsUs(BLOCK);
+        }
+        long actualUs = (long) ((elapsedNs - blockNs) / 1000);
+        // 10 分钟 300 ppm 约 180 ms
+        assertTrue(actualUs - ptsUs > 150_000);
+    }
+
+    @Test
+    public void lostSamplesReanchorForward() {
+        long blockNs = BLOCK * 1_000_000_000L / SAMPLE_RATE;
+        nowNs += blockNs;
+        long firstUs = clock.nextAudioPtsUs(BLOCK);
+        nowNs += blockNs;
+        long secondUs = clock.nextAudioPtsUs(BLOCK);
+        // 录音溢出：0.5 秒的采样丢失
+        nowNs += 500_000_000L + blockNs;
+        long thirdUs = clock.nextAudioPtsUs(BLOCK);
+        assertEquals(secondUs - firstUs, thirdUs - secondUs);
+        nowNs += blockNs;
+        long fourthUs = clock.nextAudioPtsUs(BLOCK);
+        assertTrue("gap not skipped: " + (fourthUs - thirdUs), fourthUs - thirdUs > 500_000);
+    }
+
+    @Test
+    public void videoTimestampsAreMonotonic() {
+        long startNs = nowNs;
+        assertEquals(10_000, clock.mapVideoTimestampUs(startNs + 10_000_000L));
+        assertEquals(10_001, clock.mapVideoTimestampUs(startNs + 10_000_000L));
+        assertEquals(10_002, clock.mapVideoTimestampUs(startNs + 5_000_000L));
+        assertEquals(43_333, clock.mapVideoTimestampUs(startNs + 43_333_000L));
+        nowNs = startNs + 50_000_000L;
+        assertEquals(50_000, clock.mapVideoTimestampUs(0));
+    }
+}
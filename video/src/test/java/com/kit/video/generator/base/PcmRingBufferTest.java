@@ -0,0 +1,89 @@
+package com.kit.video.generator.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class PcmRingBufferTest {
+
+    private static void write(PcmRingBuffer ring, int value, long ptsUs) {
+        ByteBuffer slot = ring.beginWrite();
+        assertNotNull(slot);
+        slot.putInt(value).flip();
+        ring.endWrite(ptsUs);
+    }
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new PcmRingBuffer(5, 16).getCapacity());
+        assertEquals(4, new PcmRingBuffer(4, 16).getCapacity());
+    }
+
+    @Test
+    public void fullBufferRejectsWrites() {
+        PcmRingBuffer ring = new PcmRingBuffer(2, 16);
+        write(ring, 1, 0);
+        write(ring, 2, 10);
+        assertNull(ring.beginWrite());
+        ring.advance();
+        assertNotNull(ring.beginWrite());
+    }
+
+    @Test
+    public void remainingSlotsAreDrainedInOrder() {
+        // 生产者停止后，消费者仍能按顺序取完已发布的数据，之后为空
+        PcmRingBuffer ring = new PcmRingBuffer(4, 16);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 3; i++) {
+                write(ring, round * 10 + i, (round * 10 + i) * 1000L);
+            }
+            assertEquals(3, ring.size());
+            for (int i = 0; i < 3; i++) {
+                ByteBuffer slot = ring.peek();
+                assertNotNull(slot);
+                assertEquals(round * 10 + i, slot.duplicate().getInt());
+                assertEquals((round * 10 + i) * 1000L, ring.peekPtsUs());
+                ring.advance();
+            }
+            assertNull(ring.peek());
+            assertEquals(0, ring.size());
+        }
+    }
+
+    @Test
+    public void clearDiscardsUnreadSlots() {
+        PcmRingBuffer ring = new PcmRingBuffer(4, 16);
+        write(ring, 1, 0);
+        write(ring, 2, 10);
+        ring.clear();
+        assertNull(ring.peek());
+        write(ring, 3, 20);
+        assertEquals(3, ring.peek().duplicate().getInt());
+    }
+
+    @Test
+    public void peekReturnsReadOnlyViewThatConsumerMayMove() {
+        PcmRingBuffer ring = new PcmRingBuffer(2, 16);
+        write(ring, 7, 0);
+        ByteBuffer view = ring.peek();
+        assertTrue(view.isReadOnly());
+        // 消费者读完移动了 position，再次 peek 仍得到完整的数据
+        assertEquals(7, view.getInt());
+        assertEquals(0, view.remaining());
+        assertEquals(4, ring.peek().remaining());
+        assertEquals(7, ring.peek().getInt());
+        ring.advance();
+
+        // 生产者复用该槽时不受消费者留下的 position 影响
+        write(ring, 8, 10);
+        write(ring, 9, 20);
+        assertEquals(8, ring.peek().getInt());
+        ring.advance();
+        assertEquals(9, ring.peek().getInt());
+    }
+}
@@ -0,0 +1,88 @@
+package com.kit.video.generator.container;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class EbmlWriterTest {
+
+    private static byte[] bytes(EbmlWriter writer) {
+        ByteBuffer data = writer.toByteBuffer();
+        byte[] result = new byte[data.remaining()];
+        data.get(result);
+        return result;
+    }
+
+    private static byte[] size(long value) {
+        EbmlWriter writer = new EbmlWriter(16);
+        writer.writeSize(value);
+        return bytes(writer);
+    }
+
+    @Test
+    public void sizeUsesShortestVint() {
+        assertArrayEquals(new byte[]{(byte) 0x80}, size(0));
+        assertArrayEquals(new byte[]{(byte) 0xFE}, size(126));
+        // 127 在 1 字节中是全 1 的“未知长度”，需要 2 字节
+        assertArrayEquals(new byte[]{0x40, 0x7F}, size(127));
+        assertArrayEquals(new byte[]{0x7F, (byte) 0xFE}, size(16382));
+        assertArrayEquals(new byte[]{0x20, 0x3F, (byte) 0xFF}, size(16383));
+    }
+
+    @Test
+    public void idLengthFollowsLeadingByte() {
+        EbmlWriter writer = new EbmlWriter(16);
+        writer.writeId(MatroskaIds.VOID);
+        writer.writeId(MatroskaIds.SEEK);
+        writer.writeId(MatroskaIds.TIMECODE_SCALE);
+        writer.writeId(MatroskaIds.SEGMENT);
+        assertArrayEquals(new byte[]{(byte) 0xEC, 0x4D, (byte) 0xBB, 0x2A, (byte) 0xD7, (byte) 0xB1,
+                0x18, 0x53, (byte) 0x80, 0x67}, bytes(writer));
+    }
+
+    @Test
+    public void unsignedIntegerUsesMinimalLength() {
+        EbmlWriter writer = new EbmlWriter(16);
+        writer.writeUInt(MatroskaIds.TRACK_NUMBER, 0);
+        writer.writeUInt(MatroskaIds.TRACK_NUMBER, 0x1234);
+        assertArrayEquals(new byte[]{(byte) 0xD7, (byte) 0x81, 0, (byte) 0xD7, (byte) 0x82, 0x12, 0x34},
+                bytes(writer));
+    }
+
+    @Test
+    public void voidHasRequestedTotalSize() {
+        for (int total : new int[]{2, 3, 128, 129, 200}) {
+            EbmlWriter writer = new EbmlWriter(4);
+            writer.writeVoid(total);
+            assertEquals("total " + total, total, writer.size());
+            byte[] data = bytes(writer);
+            assertEquals((byte) 0xEC, data[0]);
+            long dataSize = total <= 128 ? data[1] & 0x7F : ByteBuffer.wrap(data, 1, 8).getLong() & 0x00FFFFFFFFFFFFFFL;
+            int headerSize = total <= 128 ? 2 : 9;
+            assertEquals("total " + total, total - headerSize, dataSize);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void voidRejectsOneByte() {
+        new EbmlWriter(4).writeVoid(1);
+    }
+
+    @Test
+    public void masterSizeIsBackfilled() {
+        EbmlWriter writer = new EbmlWriter(4);
+        int outer = writer.startMaster(MatroskaIds.TRACKS);
+        int inner = writer.startMaster(MatroskaIds.TRACK_ENTRY);
+        writer.writeUInt(MatroskaIds.TRACK_NUMBER, 1);
+        writer.endMaster(inner);
+        writer.endMaster(outer);
+        ByteBuffer data = writer.toByteBuffer();
+        // TRACKS：4 字节 ID + 8 字节长度，内容为 TRACK_ENTRY（1 + 8 + 3）
+        assertEquals(4 + 8 + 12, data.remaining());
+        assertEquals(0x0100000000000000L | 12, data.getLong(4));
+        assertEquals(0x0100000000000000L | 3, data.getLong(13));
+    }
+}
@@ -0,0 +1,211 @@
+package com.kit.video.generator.container;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析写出的分片 MP4，检查盒子的嵌套、esds 和 trun 的内容
+ */
+public class FragmentedMp4WriterTest {
+    private static final byte[] SPS = {0, 0, 0, 1, 0x67, 0x42, (byte) 0xC0, 0x1F, 0x11};
+    private static final byte[] PPS = {0, 0, 0, 1, 0x68, (byte) 0xCE, 0x3C, (byte) 0x80};
+    // AAC-LC、44100 Hz、双声道
+    private static final byte[] ASC = {0x12, 0x10};
+
+    /**
+     * 读出的盒子：类型、起始位置和总长度
+     */
+    private static final class Box {
+        final String type;
+        final int offset;
+        final int size;
+
+        Box(String type, int offset, int size) {
+            this.type = type;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        int end() {
+            return offset + size;
+        }
+    }
+
+    private static List<Box> boxes(byte[] data, int from, int to) {
+        List<Box> result = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int offset = from;
+        while (offset < to) {
+            int size = buffer.getInt(offset);
+            assertTrue("box size " + size, size >= 8);
+            String type = new String(data, offset + 4, 4, StandardCharsets.US_ASCII);
+            result.add(new Box(type, offset, size));
+            offset += size;
+        }
+        assertEquals("boxes overflow their parent", to, offset);
+        return result;
+    }
+
+    private static List<Box> children(byte[] data, Box parent, int headerSize) {
+        return boxes(data, parent.offset + headerSize, parent.end());
+    }
+
+    private static Box find(List<Box> boxes, String type) {
+        for (Box box : boxes) {
+            if (box.type.equals(type)) return box;
+        }
+        throw new AssertionError("Missing box " + type);
+    }
+
+    private static List<Box> findAll(List<Box> boxes, String type) {
+        List<Box> result = new ArrayList<>();
+        for (Box box : boxes) {
+            if (box.type.equals(type)) result.add(box);
+        }
+        return result;
+    }
+
+    private static byte[] initSegment(boolean video, boolean audio) {
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(Channels.newChannel(new ByteArrayOutputStream()));
+        if (video) writer.addVideoTrack(320, 240, SPS, PPS);
+        if (audio) writer.addAudioTrack(44100, 2, ASC);
+        ByteBuffer init = writer.getInitSegment();
+        byte[] data = new byte[init.remaining()];
+        init.get(data);
+        return data;
+    }
+
+    @Test
+    public void esdsMatchesReferenceLayout() {
+        byte[] data = initSegment(false, true);
+        Box moov = find(boxes(data, 0, data.length), "moov");
+        Box trak = find(children(data, moov, 8), "trak");
+        Box mdia = find(children(data, trak, 8), "mdia");
+        Box minf = find(children(data, mdia, 8), "minf");
+        Box stbl = find(children(data, minf, 8), "stbl");
+        Box stsd = find(children(data, stbl, 8), "stsd");
+        // stsd：全盒子头部 12 字节 + entry_count 4 字节；mp4a 的采样描述 28 字节之后是 esds
+        Box mp4a = find(children(data, stsd, 16), "mp4a");
+        Box esds = find(children(data, mp4a, 36), "esds");
+        byte[] expected = {
+                0, 0, 0, 39, 'e', 's', 'd', 's', 0, 0, 0, 0,
+                0x03, 25, 0, 0, 0,
+                0x04, 17, 0x40, 0x15, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                0x05, 2, 0x12, 0x10,
+                0x06, 1, 0x02,
+        };
+        byte[] actual = new byte[esds.size];
+        System.arraycopy(data, esds.offset, actual, 0, esds.size);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void initSegmentBoxesAreNested() {
+        byte[] data = initSegment(true, true);
+        List<Box> top = boxes(data, 0, data.length);
+        assertEquals(2, top.size());
+        assertEquals("ftyp", top.get(0).type);
+        List<Box> moov = children(data, top.get(1), 8);
+        assertEquals("mvhd", moov.get(0).type);
+        assertEquals(2, findAll(moov, "trak").size());
+        List<Box> mvex = children(data, find(moov, "mvex"), 8);
+        assertEquals(2, findAll(mvex, "trex").size());
+        for (Box trak : findAll(moov, "trak")) {
+            Box mdia = find(children(data, trak, 8), "mdia");
+            Box stbl = find(children(data, find(children(data, mdia, 8), "minf"), 8), "stbl");
+            assertEquals(5, children(data, stbl, 8).size());
+        }
+    }
+
+    @Test
+    public void fragmentsStartAtKeyFrames() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(Channels.newChannel(output), 1_000_000);
+        List<Integer> sizes = new ArrayList<>();
+        writer.setFragmentListener((sequenceNumber, startUs, durationUs, independent, size) -> {
+            assertEquals(sizes.size() + 1, sequenceNumber);
+            assertTrue(independent);
+            sizes.add(size);
+        });
+        int video = writer.addVideoTrack(320, 240, SPS, PPS);
+        int audio = writer.addAudioTrack(44100, 2, ASC);
+        writer.start();
+        byte[] frame = {0, 0, 0, 1, 0x65, 1, 2, 3};
+        byte[] packet = new byte[20];
+        for (int i = 0; i < 90; i++) {
+            long ptsUs = i * 1_000_000L / 30;
+            writer.writeSample(video, ByteBuffer.wrap(frame), ptsUs, i % 30 == 0);
+            writer.writeSample(audio, ByteBuffer.wrap(packet), ptsUs, true);
+        }
+        writer.close();
+        assertEquals(3, sizes.size());
+
+        byte[] data = output.toByteArray();
+        List<Box> top = boxes(data, 0, data.length);
+        assertEquals(2 + 2 * 3, top.size());
+        for (int f = 0; f < 3; f++) {
+            Box moof = top.get(2 + 2 * f);
+            Box mdat = top.get(3 + 2 * f);
+            assertEquals("moof", moof.type);
+            assertEquals("mdat", mdat.type);
+            assertEquals((int) sizes.get(f), moof.size + mdat.size);
+            List<Box> trafs = findAll(children(data, moof, 8), "traf");
+            assertEquals(2, trafs.size());
+            // 视频样本转换为长度前缀格式：4 + 4 字节
+            Box videoTrun = find(children(data, trafs.get(0), 8), "trun");
+            ByteBuffer trun = ByteBuffer.wrap(data, videoTrun.offset, videoTrun.size);
+            assertEquals(30, trun.getInt(videoTrun.offset + 12));
+            int dataOffset = trun.getInt(videoTrun.offset + 16);
+            assertEquals(mdat.offset + 8, moof.offset + dataOffset);
+            assertEquals(8, trun.getInt(videoTrun.offset + 24));
+            assertEquals(4, ByteBuffer.wrap(data).getInt(mdat.offset + 8));
+            assertEquals(0x65, data[mdat.offset + 12]);
+        }
+    }
+
+    @Test
+    public void compositionOffsetsFollowDecodeOrder() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FragmentedMp4Writer writer = new FragmentedMp4Writer(Channels.newChannel(output));
+        int video = writer.addVideoTrack(320, 240, SPS, PPS);
+        writer.start();
+        int initSize = output.size();
+        byte[] frame = {0, 0, 0, 1, 0x41, 1};
+        long frameUs = 1_000_000L / 30;
+        // 解码顺序 I0 P3 B1 B2，解码时间比显示时间早一帧
+        long[] pts = {0, 3, 1, 2};
+        for (int i = 0; i < pts.length; i++) {
+            writer.writeSample(video, ByteBuffer.wrap(frame), pts[i] * frameUs, (i - 1) * frameUs, i == 0);
+        }
+        writer.close();
+
+        byte[] data = output.toByteArray();
+        List<Box> fragment = boxes(data, initSize, data.length);
+        Box traf = find(children(data, fragment.get(0), 8), "traf");
+        List<Box> trafChildren = children(data, traf, 8);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        Box tfdt = find(trafChildren, "tfdt");
+        // 解码时间平移到第一帧的显示时间
+        assertEquals(0, buffer.getLong(tfdt.offset + 12));
+        Box trun = find(trafChildren, "trun");
+        assertEquals(1, data[trun.offset + 8]);
+        int ticks = 3000;
+        int[] expectedOffsets = {0, 2 * ticks, -ticks, -ticks};
+        for (int i = 0; i < pts.length; i++) {
+            int entry = trun.offset + 20 + i * 16;
+            assertEquals(ticks, buffer.getInt(entry));
+            assertEquals(i == 0 ? 0x02000000 : 0x01010000, buffer.getInt(entry + 8));
+            assertEquals(expectedOffsets[i], buffer.getInt(entry + 12));
+        }
+    }
+}
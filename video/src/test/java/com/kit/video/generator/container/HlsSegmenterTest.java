@@ -0,0 +1,129 @@
+package com.kit.video.generator.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class HlsSegmenterTest {
+    private static final byte[] SPS = {0, 0, 0, 1, 0x67, 0x42, (byte) 0xC0, 0x1F};
+    private static final byte[] PPS = {0, 0, 0, 1, 0x68, (byte) 0xCE, 0x3C, (byte) 0x80};
+    private static final byte[] ASC = {0x12, 0x10};
+    private static final long FRAME_US = 1_000_000L / 30;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("hls-segmenter").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private String readPlaylist() throws Exception {
+        return new String(Files.readAllBytes(new File(directory, HlsSegmenter.PLAYLIST_NAME).toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 从第 fromSecond 秒开始写入 seconds 秒 30 fps 的视频和音频，每 keyFrameInterval 帧一个关键帧，
+     * keyFrameRequest[0] 为 true 时下一帧是关键帧
+     */
+    private static void writeFrames(HlsSegmenter segmenter, int video, int audio, int fromSecond, int seconds,
+                                    int keyFrameInterval, boolean[] keyFrameRequest) throws Exception {
+        byte[] frame = {0, 0, 0, 1, 0x65, 1, 2, 3};
+        byte[] packet = new byte[16];
+        for (int i = fromSecond * 30; i < (fromSecond + seconds) * 30; i++) {
+            boolean keyFrame = i % keyFrameInterval == 0 || keyFrameRequest[0];
+            keyFrameRequest[0] = false;
+            segmenter.writeSample(video, ByteBuffer.wrap(frame), i * FRAME_US, keyFrame);
+            segmenter.writeSample(audio, ByteBuffer.wrap(packet), i * FRAME_US, true);
+        }
+    }
+
+    @Test
+    public void segmentsRollOverAndExpire() throws Exception {
+        HlsSegmenter segmenter = new HlsSegmenter(directory, 2_000_000, 3);
+        int video = segmenter.addVideoTrack(320, 240, SPS, PPS);
+        int audio = segmenter.addAudioTrack(44100, 2, ASC);
+        segmenter.start();
+        assertTrue(new File(directory, HlsSegmenter.INIT_SEGMENT_NAME).isFile());
+
+        writeFrames(segmenter, video, audio, 0, 7, 60, new boolean[1]);
+        // 0~6 秒的 3 个分片已经写出，第 4 个还在内存中
+        String live = readPlaylist();
+        assertTrue(live.contains("#EXT-X-MEDIA-SEQUENCE:1\n"));
+        assertTrue(live.contains("segment3.m4s"));
+        assertFalse(live.contains("#EXT-X-ENDLIST"));
+
+        writeFrames(segmenter, video, audio, 7, 5, 60, new boolean[1]);
+        segmenter.close();
+
+        String playlist = readPlaylist();
+        assertEquals("#EXTM3U\n"
+                + "#EXT-X-VERSION:7\n"
+                + "#EXT-X-TARGETDURATION:2\n"
+                + "#EXT-X-MEDIA-SEQUENCE:4\n"
+                + "#EXT-X-INDEPENDENT-SEGMENTS\n"
+                + "#EXT-X-MAP:URI=\"init.mp4\"\n"
+                + "#EXTINF:2.000,\nsegment4.m4s\n"
+                + "#EXTINF:2.000,\nsegment5.m4s\n"
+                + "#EXTINF:2.000,\nsegment6.m4s\n"
+                + "#EXT-X-ENDLIST\n", playlist);
+        // 移出播放列表的分片再保留 2 个，更早的被删除
+        assertFalse(new File(directory, HlsSegmenter.getSegmentName(1)).exists());
+        for (int i = 2; i <= 6; i++) {
+            File segment = new File(directory, HlsSegmenter.getSegmentName(i));
+            assertTrue(segment.getName(), segment.isFile());
+            byte[] data = Files.readAllBytes(segment.toPath());
+            assertEquals("moof", new String(data, 4, 4, StandardCharsets.US_ASCII));
+        }
+        String[] names = directory.list();
+        for (String name : names) {
+            assertFalse(name, name.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    public void keyFrameIsRequestedAtSegmentBoundary() throws Exception {
+        HlsSegmenter segmenter = new HlsSegmenter(directory, 2_000_000, 10);
+        final boolean[] keyFrameRequest = new boolean[1];
+        final int[] requests = new int[1];
+        segmenter.setKeyFrameRequester(() -> {
+            keyFrameRequest[0] = true;
+            requests[0]++;
+        });
+        int video = segmenter.addVideoTrack(320, 240, SPS, PPS);
+        int audio = segmenter.addAudioTrack(44100, 2, ASC);
+        segmenter.start();
+        // 编码器自己每 10 秒才输出关键帧
+        writeFrames(segmenter, video, audio, 0, 10, 300, keyFrameRequest);
+        segmenter.close();
+
+        String playlist = readPlaylist();
+        int segments = playlist.split("#EXTINF:", -1).length - 1;
+        // 解码时间达到目标时长的 95% 的第 58 帧发出请求，下一帧是关键帧，每个分片 59 帧；最后剩下 5 帧
+        assertEquals(6, segments);
+        assertEquals(5, requests[0]);
+        assertTrue(playlist, playlist.contains("#EXTINF:1.967,\nsegment1.m4s\n"));
+        assertTrue(playlist, playlist.contains("#EXTINF:0.167,\nsegment6.m4s\n"));
+        assertTrue(playlist.contains("#EXT-X-TARGETDURATION:2\n"));
+    }
+}
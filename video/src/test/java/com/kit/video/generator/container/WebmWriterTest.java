@@ -0,0 +1,185 @@
+package com.kit.video.generator.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析写出的 WebM，检查元素长度和 SeekHead、Cues 中的偏移
+ */
+public class WebmWriterTest {
+    private File file;
+
+    /**
+     * 读出的元素：ID、头部的起始位置、数据的起始位置和长度
+     */
+    private static final class Element {
+        final int id;
+        final int offset;
+        final int dataOffset;
+        final long size;
+
+        Element(int id, int offset, int dataOffset, long size) {
+            this.id = id;
+            this.offset = offset;
+            this.dataOffset = dataOffset;
+            this.size = size;
+        }
+
+        int end() {
+            return (int) (dataOffset + size);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("webm-writer", ".webm");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static Element readElement(byte[] data, int offset) {
+        int first = data[offset] & 0xFF;
+        int idLength = Integer.numberOfLeadingZeros(first) - 23;
+        int id = 0;
+        for (int i = 0; i < idLength; i++) {
+            id = (id << 8) | (data[offset + i] & 0xFF);
+        }
+        int sizeOffset = offset + idLength;
+        int sizeLength = Integer.numberOfLeadingZeros(data[sizeOffset] & 0xFF) - 23;
+        long size = (data[sizeOffset] & 0xFF) & (0xFF >> sizeLength);
+        for (int i = 1; i < sizeLength; i++) {
+            size = (size << 8) | (data[sizeOffset + i] & 0xFF);
+        }
+        return new Element(id, offset, sizeOffset + sizeLength, size);
+    }
+
+    private static List<Element> children(byte[] data, Element parent) {
+        List<Element> result = new ArrayList<>();
+        for (int offset = parent.dataOffset; offset < parent.end(); ) {
+            Element child = readElement(data, offset);
+            result.add(child);
+            offset = child.end();
+        }
+        assertEquals("children overflow " + Integer.toHexString(parent.id), parent.end(),
+                result.isEmpty() ? parent.end() : result.get(result.size() - 1).end());
+        return result;
+    }
+
+    private static Element find(List<Element> elements, int id) {
+        for (Element element : elements) {
+            if (element.id == id) return element;
+        }
+        throw new AssertionError("Missing element " + Integer.toHexString(id));
+    }
+
+    private static long readUInt(byte[] data, Element element) {
+        long value = 0;
+        for (int i = 0; i < element.size; i++) {
+            value = (value << 8) | (data[element.dataOffset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private byte[] writeFile() throws Exception {
+        try (WebmWriter writer = new WebmWriter(file.getPath())) {
+            int video = writer.addVideoTrack(WebmWriter.CODEC_VP9, 320, 240, null);
+            int audio = writer.addAudioTrack(WebmWriter.CODEC_OPUS, 48000, 2, new byte[19], 6_500_000, 80_000_000);
+            writer.start();
+            byte[] frame = new byte[200];
+            byte[] packet = new byte[40];
+            // 3 秒视频，每秒一个关键帧；音频每 20 毫秒一包
+            for (int i = 0; i < 90; i++) {
+                long ptsUs = i * 1_000_000L / 30;
+                writer.writeSample(video, ByteBuffer.wrap(frame), ptsUs, i % 30 == 0);
+                for (long audioUs = ptsUs; audioUs < ptsUs + 33_333; audioUs += 20_000) {
+                    writer.writeSample(audio, ByteBuffer.wrap(packet), audioUs, true);
+                }
+            }
+        }
+        return Files.readAllBytes(file.toPath());
+    }
+
+    @Test
+    public void segmentSizeCoversFile() throws Exception {
+        byte[] data = writeFile();
+        Element header = readElement(data, 0);
+        assertEquals(MatroskaIds.EBML, header.id);
+        List<Element> headerChildren = children(data, header);
+        assertEquals(7, headerChildren.size());
+
+        Element segment = readElement(data, header.end());
+        assertEquals(MatroskaIds.SEGMENT, segment.id);
+        assertEquals(data.length, segment.end());
+        // Segment 的子元素首尾相接，正好填满 Segment
+        List<Element> top = children(data, segment);
+        assertEquals(MatroskaIds.SEEK_HEAD, top.get(0).id);
+        assertEquals(MatroskaIds.VOID, top.get(1).id);
+        assertEquals(128, top.get(2).offset - top.get(0).offset);
+        assertEquals(MatroskaIds.INFO, top.get(2).id);
+        assertEquals(MatroskaIds.TRACKS, top.get(3).id);
+        assertEquals(MatroskaIds.CUES, top.get(top.size() - 1).id);
+        assertEquals(2, children(data, top.get(3)).size());
+    }
+
+    @Test
+    public void seekHeadPointsAtElements() throws Exception {
+        byte[] data = writeFile();
+        Element segment = readElement(data, readElement(data, 0).end());
+        List<Element> top = children(data, segment);
+        List<Element> seeks = children(data, top.get(0));
+        assertEquals(3, seeks.size());
+        for (Element seek : seeks) {
+            List<Element> fields = children(data, seek);
+            Element seekId = find(fields, MatroskaIds.SEEK_ID);
+            int id = ByteBuffer.wrap(data, seekId.dataOffset, 4).getInt();
+            long position = readUInt(data, find(fields, MatroskaIds.SEEK_POSITION));
+            Element target = readElement(data, (int) (segment.dataOffset + position));
+            assertEquals(Integer.toHexString(id), id, target.id);
+        }
+    }
+
+    @Test
+    public void cuesPointAtKeyFrameClusters() throws Exception {
+        byte[] data = writeFile();
+        Element segment = readElement(data, readElement(data, 0).end());
+        List<Element> top = children(data, segment);
+        int clusters = 0;
+        for (Element element : top) {
+            if (element.id == MatroskaIds.CLUSTER) clusters++;
+        }
+        List<Element> cuePoints = children(data, top.get(top.size() - 1));
+        assertEquals(3, cuePoints.size());
+        assertEquals(clusters, cuePoints.size());
+        long expectedTimeMs = 0;
+        for (Element cuePoint : cuePoints) {
+            List<Element> fields = children(data, cuePoint);
+            assertEquals(expectedTimeMs, readUInt(data, find(fields, MatroskaIds.CUE_TIME)));
+            List<Element> positions = children(data, find(fields, MatroskaIds.CUE_TRACK_POSITIONS));
+            assertEquals(1, readUInt(data, find(positions, MatroskaIds.CUE_TRACK)));
+            long position = readUInt(data, find(positions, MatroskaIds.CUE_CLUSTER_POSITION));
+            Element cluster = readElement(data, (int) (segment.dataOffset + position));
+            assertEquals(MatroskaIds.CLUSTER, cluster.id);
+            List<Element> blocks = children(data, cluster);
+            assertEquals(expectedTimeMs, readUInt(data, find(blocks, MatroskaIds.TIMECODE)));
+            // Cluster 的第一个块是视频关键帧
+            Element first = blocks.get(1);
+            assertEquals(MatroskaIds.SIMPLE_BLOCK, first.id);
+            assertEquals((byte) 0x81, data[first.dataOffset]);
+            assertTrue((data[first.dataOffset + 3] & 0x80) != 0);
+            expectedTimeMs += 1000;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.kit.video.generator.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.InputHandler;
+import com.kit.video.generator.base.PcmFormat;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AudioMixInputHandlerTest {
+    private static final PcmFormat FORMAT = new PcmFormat(44100, 1);
+    // 混合器每次输出的采样帧数
+    private static final int BLOCK = 1024;
+
+    /**
+     * 按给定的起始采样帧和长度输出单声道 PCM，采样值为 (帧号 % 1000) + 1，PTS 与上游一样按采样数截断换算
+     */
+    private static final class FakeInput implements InputHandler {
+        private final ArrayDeque<FrameData> frames = new ArrayDeque<>();
+
+        FakeInput add(long startFrame, int count) {
+            ByteBuffer data = ByteBuffer.allocate(count * 2).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < count; i++) {
+                data.putShort((short) ((startFrame + i) % 1000 + 1));
+            }
+            data.flip();
+            FrameData frame = new FrameData(data, FORMAT.framesToUs(startFrame));
+            frame.setPcmFormat(FORMAT);
+            frames.add(frame);
+            return this;
+        }
+
+        /**
+         * 从 startFrame 开始输出 blocks 块恒定采样值的数据，每块 1024 帧
+         */
+        FakeInput addConstant(long startFrame, int blocks, short value) {
+            for (int b = 0; b < blocks; b++) {
+                addConstantBlock(startFrame + b * BLOCK, value);
+            }
+            return this;
+        }
+
+        FakeInput addConstantBlock(long startFrame, short value) {
+            ByteBuffer data = ByteBuffer.allocate(BLOCK * 2).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < BLOCK; i++) {
+                data.putShort(value);
+            }
+            data.flip();
+            FrameData frame = new FrameData(data, FORMAT.framesToUs(startFrame));
+            frame.setPcmFormat(FORMAT);
+            frames.add(frame);
+            return this;
+        }
+
+        @Override
+        public boolean initialize() {
+            return true;
+        }
+
+        @Override
+        public FrameData getData() {
+            FrameData frame = frames.poll();
+            return frame != null ? frame : new FrameData(true, 0);
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    private static List<Short> drain(AudioMixInputHandler mixer) {
+        List<Short> samples = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            FrameData frame = mixer.getData();
+            if (frame == null) continue;
+            if (frame.isEndOfStream()) return samples;
+            ByteBuffer data = frame.getByteBuffer().duplicate().order(ByteOrder.nativeOrder());
+            while (data.hasRemaining()) {
+                samples.add(data.getShort());
+            }
+            frame.recycle();
+        }
+        throw new AssertionError("mixer did not finish");
+    }
+
+    @Test
+    public void contiguousBlocksAreNotShifted() {
+        // 441 帧的块：按微秒截断的 PTS 换算回采样帧时会差 1 帧
+        FakeInput input = new FakeInput();
+        int total = 0;
+        for (int i = 0; i < 40; i++) {
+            input.add(total, 441);
+            total += 441;
+        }
+        AudioMixInputHandler mixer = new AudioMixInputHandler(FORMAT);
+        mixer.addTrack(input);
+        assertTrue(mixer.initialize());
+        List<Short> samples = drain(mixer);
+        assertTrue(samples.size() >= total);
+        for (int i = 0; i < total; i++) {
+            assertEquals("sample " + i, (short) (i % 1000 + 1), (short) samples.get(i));
+        }
+    }
+
+    @Test
+    public void oneFrameJitterIsTreatedAsContiguous() {
+        FakeInput input = new FakeInput();
+        input.add(0, 1024);
+        // 时间戳早了一帧、晚了一帧的数据仍然紧接着上一块
+        FrameData early = shifted(1024, 1024, -1);
+        FrameData late = shifted(2048, 1024, 1);
+        input.frames.add(early);
+        input.frames.add(late);
+        AudioMixInputHandler mixer = new AudioMixInputHandler(FORMAT);
+        mixer.addTrack(input);
+        mixer.initialize();
+        List<Short> samples = drain(mixer);
+        for (int i = 0; i < 3072; i++) {
+            assertEquals("sample " + i, (short) (i % 1000 + 1), (short) samples.get(i));
+        }
+    }
+
+    @Test
+    public void longGapKeepsTrackOnTimeline() {
+        // 第二轨在 10 秒处中断，20 秒处继续，空隙远大于补静音的上限
+        FakeInput first = new FakeInput();
+        FakeInput second = new FakeInput();
+        long gapStart = 441_000;
+        long gapEnd = 882_000;
+        for (long frame = 0; frame < 900_000; frame += 4410) {
+            first.add(frame, 4410);
+            if (frame < gapStart || frame >= gapEnd) {
+                second.add(frame, 4410);
+            }
+        }
+        AudioMixInputHandler mixer = new AudioMixInputHandler(FORMAT);
+        mixer.addTrack(first);
+        mixer.addTrack(second);
+        mixer.initialize();
+        List<Short> samples = drain(mixer);
+        assertTrue(samples.size() >= 900_000);
+        for (int i = 0; i < 900_000; i += 997) {
+            short single = (short) (i % 1000 + 1);
+            boolean both = i < gapStart || i >= gapEnd;
+            assertEquals("sample " + i, both ? 2 * single : single, (short) samples.get(i));
+        }
+    }
+
+    @Test
+    public void tracksAreSummed() {
+        AudioMixInputHandler mixer = new AudioMixInputHandler(FORMAT);
+        mixer.addTrack(new FakeInput().addConstant(0, 4, (short) 1000));
+        mixer.addTrack(new FakeInput().addConstant(0, 4, (short) 2000));
+        mixer.addTrack(new FakeInput().addConstant(0, 4, (short) -500));
+        mixer.initialize();
+        List<Short> samples = drain(mixer);
+        assertEquals(4 * BLOCK, samples.size());
+        for (short sample : samples) {
+            assertEquals(2500, sample);
+        }
+    }
+
+    @Test
+    public void sumIsClampedToSixteenBits() {
+        AudioMixInputHandler mixer = new AudioMixInputHandler(FORMAT);
+        FakeInput first = new FakeInput().addConstant(0, 2, (short) 20000).addConstant(2 * BLOCK, 2, (short) -20000);
+        FakeInput second = new FakeInput().addConstant(0, 2, (short) 20000).addConstant(2 * BLOCK, 2, (short) -20000);
+        mixer.addTrack(first);
+        mixer.addTrack(second);
+        mixer.initialize();
+        List<Short> samples = drain(mixer);
+        assertEquals(32767, (short) samples.get(0));
+        assertEquals(32767, (short) samples.get(2 * BLOCK - 1));
+        assertEquals(-32768, (short) samples.get(2 * BLOCK));
+        assertEquals(-32768, (short) samples.get(4 * BLOCK - 1));
+    }
+
+    @Test
+    public void trackGainIsApplied() {
+        AudioMixInputHandler mixer = new AudioMixInputHandler(FORMAT);
+        mixer.addTrack(new FakeInput().addConstant(0, 4, (short) 1000)).setGain(0.5f);
+        mixer.addTrack(new FakeInput().addConstant(0, 4, (short) 1000)).setGain(2f);
+        mixer.initialize();
+        for (short sample : drain(mixer)) {
+            assertEquals(2500, sample);
+        }
+    }
+
+    @Test
+    public void envelopeFadesInAndOut() {
+        // 4 块淡入，最后 4 块淡出
+        long fadeUs = FORMAT.framesToUs(4 * BLOCK);
+        long endUs = FORMAT.framesToUs(16 * BLOCK);
+        AudioMixInputHandler mixer = new AudioMixInputHandler(FORMAT);
+        mixer.addTrack(new FakeInput().addConstant(0, 16, (short) 10000))
+                .getEnvelope().fadeIn(0, fadeUs).fadeOut(endUs, fadeUs);
+        mixer.initialize();
+        List<Short> samples = drain(mixer);
+        assertEquals(16 * BLOCK, samples.size());
+        assertEquals(0, (short) samples.get(0));
+        // 块内逐采样过渡，整个淡入是连续的直线
+        assertEquals(5000, samples.get(2 * BLOCK), 10);
+        assertEquals(2500, samples.get(BLOCK), 10);
+        for (int i = 1; i < 4 * BLOCK; i++) {
+            assertTrue("sample " + i, samples.get(i) >= samples.get(i - 1));
+        }
+        for (int i = 4 * BLOCK + 1; i < 12 * BLOCK; i++) {
+            assertEquals(10000, (short) samples.get(i), 1);
+        }
+        assertEquals(5000, samples.get(14 * BLOCK), 10);
+        assertTrue(samples.get(16 * BLOCK - 1) < 20);
+    }
+
+    @Test
+    public void duckingAttacksQuicklyAndReleasesSlowly() {
+        // 人声：20 块静音，40 块有声，再 60 块静音；背景音乐恒定
+        FakeInput voice = new FakeInput()
+                .addConstant(0, 20, (short) 0)
+                .addConstant(20 * BLOCK, 40, (short) 20000)
+                .addConstant(60 * BLOCK, 60, (short) 0);
+        FakeInput music = new FakeInput().addConstant(0, 120, (short) 10000);
+        AudioMixInputHandler mixer = new AudioMixInputHandler(FORMAT);
+        AudioMixInputHandler.Track voiceTrack = mixer.addTrack(voice);
+        // 一块约 23 ms：压低在一两块内完成，恢复需要约 20 块
+        mixer.addTrack(music).duckUnder(voiceTrack, 0.25f, 10_000, 200_000);
+        mixer.initialize();
+        List<Short> samples = drain(mixer);
+        assertEquals(120 * BLOCK, samples.size());
+
+        assertEquals(10000, (short) samples.get(20 * BLOCK - 1));
+        // 人声开始后的几块内背景音乐压低到 25%
+        assertEquals(2500, samples.get(23 * BLOCK) - 20000, 50);
+        assertEquals(2500, samples.get(60 * BLOCK - 1) - 20000, 5);
+        // 人声结束后逐渐恢复，一块之后仍远低于原音量
+        short afterOneBlock = samples.get(61 * BLOCK - 1);
+        assertTrue("release too fast: " + afterOneBlock, afterOneBlock > 2500 && afterOneBlock < 5000);
+        for (int block = 61; block < 120; block++) {
+            assertTrue(samples.get((block + 1) * BLOCK - 1) >= samples.get(block * BLOCK - 1));
+        }
+        assertEquals(10000, samples.get(120 * BLOCK - 1), 100);
+    }
+
+    @Test
+    public void endTrackTruncatesMix() {
+        AudioMixInputHandler mixer = new AudioMixInputHandler(FORMAT);
+        AudioMixInputHandler.Track source = mixer.addTrack(new FakeInput().addConstant(0, 10, (short) 1000));
+        mixer.addTrack(new FakeInput().addConstant(0, 30, (short) 2000));
+        mixer.setEndTrack(source);
+        mixer.initialize();
+        List<Short> samples = drain(mixer);
+        assertEquals(10 * BLOCK, samples.size());
+        assertEquals(3000, (short) samples.get(10 * BLOCK - 1));
+    }
+
+    @Test
+    public void mixRunsUntilLongestTrackEndsByDefault() {
+        AudioMixInputHandler mixer = new AudioMixInputHandler(FORMAT);
+        mixer.addTrack(new FakeInput().addConstant(0, 10, (short) 1000));
+        mixer.addTrack(new FakeInput().addConstant(0, 30, (short) 2000));
+        mixer.initialize();
+        List<Short> samples = drain(mixer);
+        assertEquals(30 * BLOCK, samples.size());
+        assertEquals(3000, (short) samples.get(10 * BLOCK - 1));
+        assertEquals(2000, (short) samples.get(10 * BLOCK));
+    }
+
+    private static FrameData shifted(long startFrame, int count, int shiftFrames) {
+        ByteBuffer data = ByteBuffer.allocate(count * 2).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < count; i++) {
+            data.putShort((short) ((startFrame + i) % 1000 + 1));
+        }
+        data.flip();
+        FrameData frame = new FrameData(data, FORMAT.framesToUs(startFrame + shiftFrames));
+        frame.setPcmFormat(FORMAT);
+        return frame;
+    }
+}
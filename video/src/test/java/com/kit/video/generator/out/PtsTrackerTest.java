@@ -0,0 +1,57 @@
+package com.kit.video.generator.out;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PtsTrackerTest {
+    private static final long FRAME_US = 33_333;
+
+    @Test
+    public void withoutReorderingDtsEqualsPts() {
+        PtsTracker tracker = new PtsTracker(0);
+        for (int i = 0; i < 5; i++) {
+            tracker.onInput(i * FRAME_US);
+        }
+        for (int i = 0; i < 5; i++) {
+            tracker.onOutput(i * FRAME_US);
+            assertEquals(i * FRAME_US, tracker.getPtsUs());
+            assertEquals(i * FRAME_US, tracker.getDtsUs());
+        }
+    }
+
+    @Test
+    public void bFramesGetDecodeTimestamps() {
+        // 一个 B 帧：显示顺序 I0 P2 B1 P4 B3，编码器按 I0 P2 B1 P4 B3 输出
+        PtsTracker tracker = new PtsTracker(FRAME_US);
+        for (int i = 0; i < 5; i++) {
+            tracker.onInput(i * FRAME_US);
+        }
+        long[] outputOrder = {0, 2, 1, 4, 3};
+        long lastDts = Long.MIN_VALUE;
+        for (int i = 0; i < outputOrder.length; i++) {
+            tracker.onOutput(outputOrder[i] * FRAME_US);
+            assertEquals(outputOrder[i] * FRAME_US, tracker.getPtsUs());
+            // 解码时间按输入顺序依次取，再减去重排序延迟
+            assertEquals(i * FRAME_US - FRAME_US, tracker.getDtsUs());
+            assertTrue(tracker.getDtsUs() <= tracker.getPtsUs());
+            assertTrue(tracker.getDtsUs() > lastDts);
+            lastDts = tracker.getDtsUs();
+        }
+    }
+
+    @Test
+    public void encoderOffsetIsRemoved() {
+        // Surface 输入时编码器的时间戳与输入之间有固定偏移
+        PtsTracker tracker = new PtsTracker(0);
+        long offsetUs = 1_000_000_000L;
+        for (int i = 0; i < 3; i++) {
+            tracker.onInput(i * FRAME_US);
+        }
+        for (int i = 0; i < 3; i++) {
+            tracker.onOutput(offsetUs + i * FRAME_US + (i == 1 ? 800 : 0));
+            assertEquals(i * FRAME_US, tracker.getPtsUs());
+        }
+    }
+}
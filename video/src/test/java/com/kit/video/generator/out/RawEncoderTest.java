@@ -0,0 +1,99 @@
+package com.kit.video.generator.out;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.PixelFormat;
+import com.kit.video.generator.raw.Y4mReader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+/**
+ * 软件编码器在普通 JVM 上写出的文件
+ */
+public class RawEncoderTest {
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("raw-encoder").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void y4mRoundTrip() throws Exception {
+        String path = new File(directory, "out.y4m").getPath();
+        RawVideoEncoder encoder = new RawVideoEncoder(path, WIDTH, HEIGHT, 30, 1);
+        encoder.initialize();
+        int frameSize = PixelFormat.I420.getFrameSize(WIDTH, HEIGHT);
+        for (int i = 0; i < 3; i++) {
+            ByteBuffer frame = ByteBuffer.allocate(frameSize);
+            for (int j = 0; j < frameSize; j++) {
+                frame.put((byte) (i * 10 + j % 7));
+            }
+            frame.flip();
+            encoder.writeFrame(new FrameData(frame, i * 33_333L));
+        }
+        encoder.writeFrame(new FrameData(true, 100_000L));
+        encoder.release();
+
+        Y4mReader reader = new Y4mReader(path);
+        try {
+            assertEquals(WIDTH, reader.getWidth());
+            assertEquals(HEIGHT, reader.getHeight());
+            assertEquals(30, reader.getFrameRateNum());
+            for (int i = 0; i < 3; i++) {
+                ByteBuffer frame = reader.readFrame();
+                assertEquals(frameSize, frame.remaining());
+                for (int j = 0; j < frameSize; j++) {
+                    assertEquals((byte) (i * 10 + j % 7), frame.get(j));
+                }
+            }
+            assertNull(reader.readFrame());
+            assertEquals(66_666L, reader.getPresentationTimeUs(2));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void wavHeaderDescribesData() throws Exception {
+        File file = new File(directory, "out.wav");
+        PcmAudioEncoder encoder = new PcmAudioEncoder(file.getPath(), 48000, 2);
+        encoder.initialize();
+        ByteBuffer pcm = ByteBuffer.allocate(1024 * 4);
+        encoder.writeFrame(new FrameData(pcm, 0));
+        encoder.writeFrame(new FrameData(pcm, 21_333L));
+        encoder.writeFrame(new FrameData(true, 42_666L));
+        encoder.release();
+
+        ByteBuffer wav = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(44 + 8192, wav.capacity());
+        assertEquals(36 + 8192, wav.getInt(4));
+        assertEquals(2, wav.getShort(22));
+        assertEquals(48000, wav.getInt(24));
+        assertEquals(48000 * 4, wav.getInt(28));
+        assertEquals(8192, wav.getInt(40));
+    }
+}
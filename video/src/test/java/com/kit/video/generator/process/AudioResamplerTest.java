@@ -0,0 +1,83 @@
+package com.kit.video.generator.process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AudioResamplerTest {
+
+    @Test
+    public void outputLengthFollowsRateRatio() {
+        AudioResampler resampler = new AudioResampler(48000, 44100, 2, AudioResampler.Quality.MEDIUM);
+        short[] in = new short[1024 * 2];
+        short[] out = new short[resampler.getMaxOutputFrames(1024) * 2];
+        long produced = 0;
+        for (int i = 0; i < 100; i++) {
+            produced += resampler.process(in, 1024, out);
+        }
+        long expected = 102400L * 44100 / 48000;
+        // 差值不超过滤波器的延迟
+        assertTrue("produced " + produced, produced <= expected && produced > expected - 100);
+    }
+
+    @Test
+    public void toneIsPreserved() {
+        for (AudioResampler.Quality quality : AudioResampler.Quality.values()) {
+            double error = toneError(quality);
+            assertTrue(quality + " error " + error, error < 8);
+        }
+        assertTrue(toneError(AudioResampler.Quality.HIGH) < toneError(AudioResampler.Quality.LOW));
+    }
+
+    @Test
+    public void channelsStayInterleaved() {
+        AudioResampler resampler = new AudioResampler(32000, 48000, 2, AudioResampler.Quality.LOW);
+        short[] in = new short[512 * 2];
+        for (int i = 0; i < 512; i++) {
+            in[2 * i] = 1000;
+            in[2 * i + 1] = -2000;
+        }
+        short[] out = new short[resampler.getMaxOutputFrames(512) * 2];
+        int frames = 0;
+        for (int i = 0; i < 4; i++) {
+            frames = resampler.process(in, 512, out);
+        }
+        assertTrue(frames > 0);
+        for (int i = 0; i < frames; i++) {
+            assertEquals(1000, out[2 * i], 2);
+            assertEquals(-2000, out[2 * i + 1], 2);
+        }
+    }
+
+    /**
+     * 48 kHz → 44.1 kHz 单声道 1 kHz 正弦波，输出与理想波形的平均绝对误差（LSB）
+     */
+    static double toneError(AudioResampler.Quality quality) {
+        int inputRate = 48000;
+        int outputRate = 44100;
+        double amplitude = 16000;
+        AudioResampler resampler = new AudioResampler(inputRate, outputRate, 1, quality);
+        int block = 480;
+        short[] in = new short[block];
+        short[] out = new short[resampler.getMaxOutputFrames(block)];
+        long inputIndex = 0;
+        long outputIndex = 0;
+        double sum = 0;
+        int count = 0;
+        for (int b = 0; b < 200; b++) {
+            for (int i = 0; i < block; i++, inputIndex++) {
+                in[i] = (short) Math.round(amplitude * Math.sin(2 * Math.PI * 1000 * inputIndex / inputRate));
+            }
+            int produced = resampler.process(in, block, out);
+            for (int i = 0; i < produced; i++, outputIndex++) {
+                // 跳过开头的静音过渡
+                if (outputIndex < outputRate / 100) continue;
+                double expected = amplitude * Math.sin(2 * Math.PI * 1000 * outputIndex / outputRate);
+                sum += Math.abs(out[i] - expected);
+                count++;
+            }
+        }
+        return sum / count;
+    }
+}
@@ -0,0 +1,30 @@
+package com.kit.video.generator.process;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+public class ChannelMixerTest {
+
+    @Test
+    public void stereoToMonoAverages() {
+        short[] out = new short[3];
+        new ChannelMixer(2, 1).mix(new short[]{100, 300, -200, -400, 32767, 32767}, 3, out);
+        assertArrayEquals(new short[]{200, -300, 32767}, out);
+    }
+
+    @Test
+    public void monoToStereoDuplicates() {
+        short[] out = new short[4];
+        new ChannelMixer(1, 2).mix(new short[]{5, -7}, 2, out);
+        assertArrayEquals(new short[]{5, 5, -7, -7}, out);
+    }
+
+    @Test
+    public void surroundFoldsOntoStereo() {
+        // 4 声道：0、2 进入左声道，1、3 进入右声道
+        short[] out = new short[2];
+        new ChannelMixer(4, 2).mix(new short[]{1000, 2000, 3000, 4000}, 1, out);
+        assertArrayEquals(new short[]{2000, 3000}, out);
+    }
+}
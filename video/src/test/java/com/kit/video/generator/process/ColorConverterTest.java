@@ -0,0 +1,101 @@
+package com.kit.video.generator.process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.kit.video.generator.base.FrameLayout;
+import com.kit.video.generator.base.PixelFormat;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+public class ColorConverterTest {
+    private static final int WIDTH = 70;
+    private static final int HEIGHT = 50;
+
+    private final ColorConverter converter = new ColorConverter(new ForkJoinPool(4));
+
+    @Test
+    public void nv12ToI420MovesChromaPlanes() {
+        FrameLayout nv12 = FrameLayout.packed(PixelFormat.NV12, WIDTH, HEIGHT);
+        FrameLayout i420 = FrameLayout.packed(PixelFormat.I420, WIDTH, HEIGHT);
+        ByteBuffer src = pattern(nv12.getFrameSize());
+        ByteBuffer dst = ByteBuffer.allocateDirect(i420.getFrameSize());
+        converter.convert(src, nv12, dst, i420);
+
+        int lumaSize = WIDTH * HEIGHT;
+        int chromaSize = lumaSize / 4;
+        for (int i = 0; i < lumaSize; i++) {
+            assertEquals(src.get(i), dst.get(i));
+        }
+        for (int i = 0; i < chromaSize; i++) {
+            assertEquals(src.get(lumaSize + 2 * i), dst.get(lumaSize + i));
+            assertEquals(src.get(lumaSize + 2 * i + 1), dst.get(lumaSize + chromaSize + i));
+        }
+    }
+
+    @Test
+    public void yuvRoundTripIsLossless() {
+        FrameLayout i420 = FrameLayout.packed(PixelFormat.I420, WIDTH, HEIGHT);
+        FrameLayout nv21 = FrameLayout.packed(PixelFormat.NV21, WIDTH, HEIGHT);
+        ByteBuffer src = pattern(i420.getFrameSize());
+        ByteBuffer middle = ByteBuffer.allocateDirect(nv21.getFrameSize());
+        ByteBuffer dst = ByteBuffer.allocateDirect(i420.getFrameSize());
+        converter.convert(src, i420, middle, nv21);
+        converter.convert(middle, nv21, dst, i420);
+        for (int i = 0; i < i420.getFrameSize(); i++) {
+            assertEquals(src.get(i), dst.get(i));
+        }
+    }
+
+    @Test
+    public void stridedSourceIsCropped() {
+        // 行跨度 96、平面高度 64，可见区域从 (4, 2) 开始
+        FrameLayout padded = new FrameLayout(PixelFormat.NV12, WIDTH, HEIGHT, 96, 64, 4, 2);
+        FrameLayout i420 = FrameLayout.packed(PixelFormat.I420, WIDTH, HEIGHT);
+        ByteBuffer src = pattern(padded.getFrameSize());
+        ByteBuffer dst = ByteBuffer.allocateDirect(i420.getFrameSize());
+        converter.convert(src, padded, dst, i420);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(src.get((row + 2) * 96 + x + 4), dst.get(row * WIDTH + x));
+            }
+        }
+    }
+
+    @Test
+    public void rgbaRoundTripStaysClose() {
+        FrameLayout rgba = FrameLayout.packed(PixelFormat.RGBA, WIDTH, HEIGHT);
+        FrameLayout nv12 = FrameLayout.packed(PixelFormat.NV12, WIDTH, HEIGHT);
+        ByteBuffer src = ByteBuffer.allocateDirect(rgba.getFrameSize());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // 2x2 块内颜色相同，色度下采样不损失信息
+                int value = 40 + ((x / 2 + y / 2) * 7) % 170;
+                src.put((byte) value).put((byte) (255 - value)).put((byte) (value / 2 + 60)).put((byte) 255);
+            }
+        }
+        src.flip();
+        ByteBuffer yuv = ByteBuffer.allocateDirect(nv12.getFrameSize());
+        ByteBuffer dst = ByteBuffer.allocateDirect(rgba.getFrameSize());
+        converter.convert(src, rgba, yuv, nv12);
+        converter.convert(yuv, nv12, dst, rgba);
+        int maxError = 0;
+        for (int i = 0; i < rgba.getFrameSize(); i++) {
+            if (i % 4 == 3) continue;
+            maxError = Math.max(maxError, Math.abs((src.get(i) & 0xFF) - (dst.get(i) & 0xFF)));
+        }
+        assertTrue("max error " + maxError, maxError <= 3);
+    }
+
+    static ByteBuffer pattern(int size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put((byte) (i * 31 + (i >> 8)));
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
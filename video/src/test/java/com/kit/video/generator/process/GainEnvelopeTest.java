@@ -0,0 +1,63 @@
+package com.kit.video.generator.process;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class GainEnvelopeTest {
+    private static final float DELTA = 1e-5f;
+
+    @Test
+    public void emptyEnvelopeIsUnity() {
+        GainEnvelope envelope = new GainEnvelope();
+        assertEquals(1f, envelope.getGain(0), DELTA);
+        assertEquals(1f, envelope.getGain(5_000_000), DELTA);
+    }
+
+    @Test
+    public void pointsAreInterpolatedLinearly() {
+        GainEnvelope envelope = new GainEnvelope()
+                .addPoint(1_000_000, 0.2f)
+                .addPoint(3_000_000, 1.0f);
+        assertEquals(0.2f, envelope.getGain(1_000_000), DELTA);
+        assertEquals(0.6f, envelope.getGain(2_000_000), DELTA);
+        assertEquals(0.4f, envelope.getGain(1_500_000), DELTA);
+        assertEquals(1.0f, envelope.getGain(3_000_000), DELTA);
+    }
+
+    @Test
+    public void endpointsAreHeld() {
+        GainEnvelope envelope = new GainEnvelope()
+                .addPoint(1_000_000, 0.5f)
+                .addPoint(2_000_000, 0.8f);
+        assertEquals(0.5f, envelope.getGain(0), DELTA);
+        assertEquals(0.8f, envelope.getGain(10_000_000), DELTA);
+    }
+
+    @Test
+    public void pointsMayBeAddedOutOfOrder() {
+        // 超过初始容量，并且乱序添加
+        GainEnvelope envelope = new GainEnvelope();
+        for (int i = 9; i >= 0; i--) {
+            envelope.addPoint(i * 1_000_000L, i / 10f);
+        }
+        assertEquals(0.45f, envelope.getGain(4_500_000), DELTA);
+        assertEquals(0.9f, envelope.getGain(9_500_000), DELTA);
+    }
+
+    @Test
+    public void fadeInAndOut() {
+        GainEnvelope envelope = new GainEnvelope()
+                .fadeIn(0, 1_000_000)
+                .fadeOut(10_000_000, 2_000_000);
+        assertEquals(0f, envelope.getGain(0), DELTA);
+        assertEquals(0.25f, envelope.getGain(250_000), DELTA);
+        assertEquals(1f, envelope.getGain(5_000_000), DELTA);
+        assertEquals(0.5f, envelope.getGain(9_000_000), DELTA);
+        assertEquals(0f, envelope.getGain(10_000_000), DELTA);
+        assertEquals(0f, envelope.getGain(12_000_000), DELTA);
+
+        envelope.clear();
+        assertEquals(1f, envelope.getGain(0), DELTA);
+    }
+}
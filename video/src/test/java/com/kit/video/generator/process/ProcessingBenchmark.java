@@ -0,0 +1,189 @@
+package com.kit.video.generator.process;
+
+import com.kit.video.generator.base.FrameData;
+import com.kit.video.generator.base.FrameLayout;
+import com.kit.video.generator.base.InputHandler;
+import com.kit.video.generator.base.PcmFormat;
+import com.kit.video.generator.base.PixelFormat;
+import com.kit.video.generator.input.AudioMixInputHandler;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * CPU 处理阶段的基准测试，在普通 JVM 上运行（不是单元测试，不随 test 任务执行）
+ * <p>
+ * 运行方式：先执行 ./gradlew :video:compileDebugUnitTestJavaWithJavac，再以 test 和 main 的类输出目录为 classpath
+ * 执行 java com.kit.video.generator.process.ProcessingBenchmark [线程数]，默认单线程，结果为单核性能。
+ */
+public class ProcessingBenchmark {
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        System.out.println("threads: " + threads);
+
+        ColorConverter converter = new ColorConverter(pool);
+        int[][] sizes = {{1920, 1080}, {3840, 2160}};
+        for (int[] size : sizes) {
+            benchmarkConversion(converter, PixelFormat.NV12, PixelFormat.I420, size[0], size[1]);
+            benchmarkConversion(converter, PixelFormat.NV12, PixelFormat.RGBA, size[0], size[1]);
+            benchmarkConversion(converter, PixelFormat.RGBA, PixelFormat.NV12, size[0], size[1]);
+        }
+
+        benchmarkScale(pool, 3840, 2160, 1920, 1080, YuvScaler.Filter.AREA);
+        benchmarkScale(pool, 1920, 1080, 1280, 720, YuvScaler.Filter.BILINEAR);
+
+        for (AudioResampler.Quality quality : AudioResampler.Quality.values()) {
+            benchmarkResampler(quality);
+        }
+        benchmarkMix(8);
+        pool.shutdown();
+    }
+
+    private static void benchmarkConversion(ColorConverter converter, PixelFormat from, PixelFormat to, int width, int height) {
+        FrameLayout srcLayout = FrameLayout.packed(from, width, height);
+        FrameLayout dstLayout = FrameLayout.packed(to, width, height);
+        ByteBuffer src = ColorConverterTest.pattern(srcLayout.getFrameSize());
+        ByteBuffer dst = ByteBuffer.allocateDirect(dstLayout.getFrameSize());
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            converter.convert(src, srcLayout, dst, dstLayout);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            converter.convert(src, srcLayout, dst, dstLayout);
+        }
+        report(from + "->" + to + " " + width + "x" + height, (System.nanoTime() - start) / ITERATIONS);
+    }
+
+    private static void benchmarkScale(ForkJoinPool pool, int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+                                       YuvScaler.Filter filter) {
+        YuvScaler scaler = new YuvScaler(0, 0, srcWidth, srcHeight, dstWidth, dstHeight, 0, filter, pool);
+        FrameLayout srcLayout = FrameLayout.packed(PixelFormat.NV12, srcWidth, srcHeight);
+        FrameLayout dstLayout = FrameLayout.packed(PixelFormat.I420, dstWidth, dstHeight);
+        ByteBuffer src = ColorConverterTest.pattern(srcLayout.getFrameSize());
+        ByteBuffer dst = ByteBuffer.allocateDirect(dstLayout.getFrameSize());
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            scaler.scale(src, srcLayout, dst, dstLayout);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            scaler.scale(src, srcLayout, dst, dstLayout);
+        }
+        report("scale " + filter + " " + srcWidth + "x" + srcHeight + "->" + dstWidth + "x" + dstHeight,
+                (System.nanoTime() - start) / ITERATIONS);
+    }
+
+    private static void benchmarkResampler(AudioResampler.Quality quality) {
+        int channels = 2;
+        int block = 1024;
+        AudioResampler resampler = new AudioResampler(48000, 44100, channels, quality);
+        short[] in = new short[block * channels];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = (short) (8000 * Math.sin(i * 0.05));
+        }
+        short[] out = new short[resampler.getMaxOutputFrames(block) * channels];
+        int blocks = 2000;
+        for (int i = 0; i < blocks; i++) {
+            resampler.process(in, block, out);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < blocks; i++) {
+            resampler.process(in, block, out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format(Locale.US, "resample 48k->44.1k stereo %-6s %6.1f M frames/s, error %.1f LSB",
+                quality, blocks * (double) block / seconds / 1e6, AudioResamplerTest.toneError(quality)));
+    }
+
+    /**
+     * 按采样帧数生成立体声正弦波的输入，每次输出同一块数据，不计入混合的耗时
+     */
+    private static final class ToneInput implements InputHandler {
+        private final PcmFormat format;
+        private final ByteBuffer block;
+        private final int blockFrames;
+        private final long totalFrames;
+        private long position;
+
+        ToneInput(PcmFormat format, int blockFrames, long totalFrames, double frequency) {
+            this.format = format;
+            this.blockFrames = blockFrames;
+            this.totalFrames = totalFrames;
+            int channels = format.getChannelCount();
+            block = ByteBuffer.allocateDirect(blockFrames * format.getBytesPerFrame()).order(ByteOrder.nativeOrder());
+            for (int i = 0; i < blockFrames; i++) {
+                short value = (short) (6000 * Math.sin(2 * Math.PI * frequency * i / format.getSampleRate()));
+                for (int c = 0; c < channels; c++) {
+                    block.putShort(value);
+                }
+            }
+            block.flip();
+        }
+
+        @Override
+        public boolean initialize() {
+            return true;
+        }
+
+        @Override
+        public FrameData getData() {
+            if (position >= totalFrames) return new FrameData(true, format.framesToUs(position));
+            FrameData frame = new FrameData(block.duplicate().order(ByteOrder.nativeOrder()), format.framesToUs(position));
+            frame.setPcmFormat(format);
+            position += blockFrames;
+            return frame;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    /**
+     * 多轨混合：每轨带增益和淡入淡出，一半的轨道闪避在第一轨之下，结果为实时速度的倍数
+     */
+    private static void benchmarkMix(int trackCount) {
+        PcmFormat format = new PcmFormat(48000, 2);
+        int seconds = 60;
+        long totalFrames = (long) format.getSampleRate() * seconds;
+        long durationUs = format.framesToUs(totalFrames);
+        // 第一遍预热
+        for (int pass = 0; pass < 2; pass++) {
+            AudioMixInputHandler mixer = new AudioMixInputHandler(format);
+            AudioMixInputHandler.Track key = null;
+            for (int t = 0; t < trackCount; t++) {
+                AudioMixInputHandler.Track track = mixer.addTrack(new ToneInput(format, 960, totalFrames, 220 + 110 * t));
+                track.setGain(1f / trackCount);
+                track.getEnvelope().fadeIn(0, 2_000_000).fadeOut(durationUs, 2_000_000);
+                if (key == null) {
+                    key = track;
+                } else if (t % 2 == 0) {
+                    track.duckUnder(key, 0.3f, 20_000, 300_000);
+                }
+            }
+            mixer.initialize();
+            long start = System.nanoTime();
+            while (true) {
+                FrameData frame = mixer.getData();
+                if (frame == null) continue;
+                if (frame.isEndOfStream()) break;
+                frame.recycle();
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            mixer.release();
+            if (pass == 1) {
+                System.out.println(String.format(Locale.US, "mix %d tracks 48k stereo %8.1fx realtime",
+                        trackCount, seconds / elapsed));
+            }
+        }
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.println(String.format(Locale.US, "%-40s %8.2f ms", name, nanos / 1e6));
+    }
+}
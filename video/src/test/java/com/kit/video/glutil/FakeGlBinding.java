@@ -0,0 +1,40 @@
+package com.kit.video.glutil;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * 不依赖 GPU 的 {@link GlBinding}：glGen* 分配递增的名称，其他调用什么都不做并返回默认值
+ * <p>
+ * 与 {@link CountingGlBinding} 组合使用，检查实际发给驱动的调用。
+ */
+final class FakeGlBinding {
+    private FakeGlBinding() {
+    }
+
+    /**
+     * @param version glGetString(GL_VERSION) 的返回值，如 "OpenGL ES 3.0"
+     */
+    static GlBinding create(String version) {
+        int[] nextName = {1};
+        return (GlBinding) Proxy.newProxyInstance(GlBinding.class.getClassLoader(), new Class<?>[]{GlBinding.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("glGen")) {
+                        int count = (Integer) args[0];
+                        int[] names = (int[]) args[1];
+                        int offset = (Integer) args[2];
+                        for (int i = 0; i < count; i++) {
+                            names[offset + i] = nextName[0]++;
+                        }
+                        return null;
+                    }
+                    if (name.equals("glGetString")) return version;
+                    if (name.equals("glCheckFramebufferStatus")) return 0x8CD5; // GL_FRAMEBUFFER_COMPLETE
+                    if (name.equals("glGetUniformLocation")) return 0;
+                    Class<?> type = method.getReturnType();
+                    if (type == int.class) return 0;
+                    if (type == boolean.class) return false;
+                    return null;
+                });
+    }
+}
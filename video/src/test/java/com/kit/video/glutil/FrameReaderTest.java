@@ -0,0 +1,57 @@
+package com.kit.video.glutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 同步回读（OpenGL ES 2.0）的送达和像素缓冲的归还
+ */
+public class FrameReaderTest {
+    private final List<FrameReader.Frame> frames = new ArrayList<>();
+    private FrameReader reader;
+
+    @Before
+    public void setUp() {
+        reader = new FrameReader(FakeGlBinding.create("OpenGL ES 2.0"), 4, 2, frames::add);
+        reader.setup();
+    }
+
+    @Test
+    public void synchronousReadDeliversImmediately() {
+        assertFalse(reader.isAsync());
+        reader.read(0, 42L);
+        assertEquals(1, frames.size());
+        FrameReader.Frame frame = frames.get(0);
+        assertEquals(4, frame.getWidth());
+        assertEquals(2, frame.getHeight());
+        assertEquals(42L, frame.getTimestampNs());
+        assertEquals(4 * 2 * 4, frame.getPixels().capacity());
+    }
+
+    @Test
+    public void releasedBufferIsReused() {
+        reader.read(0, 0L);
+        frames.get(0).release();
+        reader.read(0, 1L);
+        assertSame(frames.get(0).getPixels(), frames.get(1).getPixels());
+    }
+
+    @Test
+    public void doubleReleaseDoesNotPoolBufferTwice() {
+        reader.read(0, 0L);
+        FrameReader.Frame frame = frames.get(0);
+        frame.release();
+        frame.release();
+        reader.read(0, 1L);
+        reader.read(0, 2L);
+        assertNotSame(frames.get(1).getPixels(), frames.get(2).getPixels());
+    }
+}
@@ -0,0 +1,165 @@
+package com.kit.video.glutil;
+
+import static org.junit.Assert.assertEquals;
+
+import android.opengl.GLES20;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+public class GlStateCacheTest {
+    private CountingGlBinding driver;
+    private GlStateCache gl;
+
+    @Before
+    public void setUp() {
+        driver = new CountingGlBinding(FakeGlBinding.create("OpenGL ES 3.0"));
+        gl = new GlStateCache(driver);
+    }
+
+    @Test
+    public void redundantTextureBindingsAreSkipped() {
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 5);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 5);
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        assertEquals(1, driver.getCallCount("glActiveTexture"));
+        assertEquals(1, driver.getCallCount("glBindTexture"));
+
+        // 每个纹理单元分别记录
+        gl.glActiveTexture(GLES20.GL_TEXTURE1);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 5);
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 5);
+        assertEquals(3, driver.getCallCount("glActiveTexture"));
+        assertEquals(2, driver.getCallCount("glBindTexture"));
+    }
+
+    @Test
+    public void deletedTextureIsUnbound() {
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glDeleteTextures(1, new int[]{7}, 0);
+        // 名称被复用后，绑定和参数都要重新发出
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        assertEquals(2, driver.getCallCount("glBindTexture"));
+        assertEquals(2, driver.getCallCount("glTexParameteri"));
+    }
+
+    @Test
+    public void textureParametersAreCachedPerTexture() {
+        int[] textures = new int[2];
+        gl.glGenTextures(2, textures, 0);
+        assertEquals(1, textures[0]);
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        for (int texture : new int[]{1, 2, 1, 2}) {
+            gl.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+            gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        }
+        assertEquals(4, driver.getCallCount("glTexParameteri"));
+
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 1);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+        gl.invalidateTexture(2);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 2);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        assertEquals(6, driver.getCallCount("glTexParameteri"));
+
+        // 默认纹理 0 不缓存
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        assertEquals(8, driver.getCallCount("glTexParameteri"));
+    }
+
+    @Test
+    public void externalTextureParametersAreAlwaysForwarded() {
+        // 纹理 9 不是通过缓存创建的（如共享上下文中的输入纹理），生产者可能修改参数或复用名称
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 9);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        assertEquals(2, driver.getCallCount("glTexParameteri"));
+
+        // 删除后即使名称被其他代码复用，也不再缓存
+        int[] texture = new int[1];
+        gl.glGenTextures(1, texture, 0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, texture[0]);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glDeleteTextures(1, texture, 0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, texture[0]);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        assertEquals(4, driver.getCallCount("glTexParameteri"));
+    }
+
+    @Test
+    public void uniformsAreCachedPerProgram() {
+        float[] matrix = new float[16];
+        matrix[0] = 1;
+        for (int program : new int[]{3, 4, 3, 4}) {
+            gl.glUseProgram(program);
+            gl.glUniform1i(0, 0);
+            gl.glUniformMatrix4fv(1, 1, false, matrix, 0);
+        }
+        assertEquals(4, driver.getCallCount("glUseProgram"));
+        assertEquals(2, driver.getCallCount("glUniform1i"));
+        assertEquals(2, driver.getCallCount("glUniformMatrix4fv"));
+
+        matrix[5] = 2;
+        gl.glUniformMatrix4fv(1, 1, false, matrix, 0);
+        gl.glUniformMatrix4fv(1, 1, false, matrix, 0);
+        assertEquals(3, driver.getCallCount("glUniformMatrix4fv"));
+
+        // 删除程序后名称可能被复用，uniform 要重新设置
+        gl.glDeleteProgram(4);
+        gl.glUseProgram(4);
+        gl.glUniform1i(0, 0);
+        assertEquals(5, driver.getCallCount("glUseProgram"));
+        assertEquals(3, driver.getCallCount("glUniform1i"));
+    }
+
+    @Test
+    public void clientArrayPointerUnbindsArrayBuffer() {
+        FloatBuffer vertices = FloatBuffer.allocate(8);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 9);
+        gl.glVertexAttribPointer(0, 2, GLES20.GL_FLOAT, false, 0, vertices);
+        gl.glVertexAttribPointer(0, 2, GLES20.GL_FLOAT, false, 0, vertices);
+        assertEquals(2, driver.getCallCount("glBindBuffer"));
+        assertEquals(1, driver.getCallCount("glVertexAttribPointer"));
+
+        // 切换 VAO 后顶点属性未知
+        gl.glBindVertexArray(1);
+        gl.glVertexAttribPointer(0, 2, GLES20.GL_FLOAT, false, 0, vertices);
+        assertEquals(2, driver.getCallCount("glBindVertexArray"));
+        assertEquals(2, driver.getCallCount("glVertexAttribPointer"));
+    }
+
+    @Test
+    public void invalidateForwardsEverythingAgain() {
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 1);
+        gl.glUseProgram(2);
+        gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 3);
+        gl.glViewport(0, 0, 64, 64);
+        driver.reset();
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 1);
+        gl.glUseProgram(2);
+        gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 3);
+        gl.glViewport(0, 0, 64, 64);
+        assertEquals(0, driver.getTotalCallCount());
+
+        gl.invalidate();
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 1);
+        gl.glUseProgram(2);
+        gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 3);
+        gl.glViewport(0, 0, 64, 64);
+        assertEquals(5, driver.getTotalCallCount());
+    }
+}
@@ -0,0 +1,106 @@
+package com.kit.video.glutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 程序缓存的键和磁盘缓存随驱动失效
+ */
+public class ProgramCacheTest {
+    private static final String VERTEX = "attribute vec4 position;\nvoid main() { gl_Position = position; }\n";
+    private static final String FRAGMENT = "void main() { gl_FragColor = vec4(1.0); }\n";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("programs").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void keyIsStableSha1() {
+        String key = ProgramCache.computeKey(VERTEX, FRAGMENT, null);
+        assertEquals(40, key.length());
+        assertTrue(key.matches("[0-9a-f]+"));
+        assertEquals(key, ProgramCache.computeKey(VERTEX, FRAGMENT, new HashMap<>()));
+    }
+
+    @Test
+    public void keyDependsOnSourcesAndAttributeLocations() {
+        String key = ProgramCache.computeKey(VERTEX, FRAGMENT, null);
+        assertFalse(key.equals(ProgramCache.computeKey(VERTEX, FRAGMENT + " ", null)));
+        assertFalse(key.equals(ProgramCache.computeKey(VERTEX + " ", FRAGMENT, null)));
+        // 源码之间有分隔符，内容从一段移到另一段时键也不同
+        assertFalse(ProgramCache.computeKey("ab", "c", null).equals(ProgramCache.computeKey("a", "bc", null)));
+
+        Map<String, Integer> first = new LinkedHashMap<>();
+        first.put("position", 1);
+        first.put("texture_coordinate", 2);
+        Map<String, Integer> second = new LinkedHashMap<>();
+        second.put("texture_coordinate", 2);
+        second.put("position", 1);
+        // 属性按名称排序，与插入顺序无关
+        assertEquals(ProgramCache.computeKey(VERTEX, FRAGMENT, first), ProgramCache.computeKey(VERTEX, FRAGMENT, second));
+
+        second.put("position", 0);
+        assertFalse(ProgramCache.computeKey(VERTEX, FRAGMENT, first).equals(ProgramCache.computeKey(VERTEX, FRAGMENT, second)));
+    }
+
+    @Test
+    public void binariesSurviveSameDriver() throws IOException {
+        assertTrue(ProgramCache.resetIfDriverChanged(directory, "vendor\nrenderer\n3.2"));
+        File binary = writeBinary("abc.bin");
+        assertFalse(ProgramCache.resetIfDriverChanged(directory, "vendor\nrenderer\n3.2"));
+        assertTrue(binary.isFile());
+    }
+
+    @Test
+    public void driverChangeDiscardsBinaries() throws IOException {
+        ProgramCache.resetIfDriverChanged(directory, "vendor\nrenderer\n3.2");
+        File binary = writeBinary("abc.bin");
+        assertTrue(ProgramCache.resetIfDriverChanged(directory, "vendor\nrenderer\n3.2 V@2"));
+        assertFalse(binary.exists());
+        // 新的驱动已记录
+        assertFalse(ProgramCache.resetIfDriverChanged(directory, "vendor\nrenderer\n3.2 V@2"));
+    }
+
+    @Test
+    public void unknownDirectoryContentIsDiscarded() throws IOException {
+        // 没有驱动记录的目录（如旧版本留下的）同样清空
+        File binary = writeBinary("abc.bin");
+        assertTrue(ProgramCache.resetIfDriverChanged(directory, "vendor\nrenderer\n3.2"));
+        assertFalse(binary.exists());
+    }
+
+    private File writeBinary(String name) throws IOException {
+        File file = new File(directory, name);
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(new byte[]{1, 2, 3});
+        }
+        return file;
+    }
+}
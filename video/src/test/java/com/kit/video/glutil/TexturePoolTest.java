@@ -0,0 +1,100 @@
+package com.kit.video.glutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 纹理池的复用和按空闲纹理计算的预算
+ */
+public class TexturePoolTest {
+    // 16x16 的 RGBA 纹理
+    private static final long TEXTURE_BYTES = 16 * 16 * 4;
+
+    private CountingGlBinding driver;
+    private TexturePool pool;
+
+    @Before
+    public void setUp() {
+        driver = new CountingGlBinding(FakeGlBinding.create("OpenGL ES 3.0"));
+        pool = new TexturePool(driver, 2 * TEXTURE_BYTES);
+    }
+
+    @Test
+    public void releasedTextureIsReused() {
+        TexturePool.Texture first = pool.acquire(16, 16);
+        pool.release(first);
+        TexturePool.Texture second = pool.acquire(16, 16);
+        assertSame(first, second);
+        assertEquals(1, pool.getAllocationCount());
+        assertEquals(0, pool.getIdleBytes());
+
+        TexturePool.Texture other = pool.acquire(8, 8);
+        assertNotSame(second, other);
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void texturesInUseDoNotCountAgainstBudget() {
+        TexturePool.Texture a = pool.acquire(16, 16);
+        TexturePool.Texture b = pool.acquire(16, 16);
+        TexturePool.Texture c = pool.acquire(16, 16);
+        assertEquals(3 * TEXTURE_BYTES, pool.getAllocatedBytes());
+
+        // 总占用超过预算，但空闲纹理没有，不应删除
+        pool.release(a);
+        pool.release(b);
+        assertEquals(0, driver.getCallCount("glDeleteTextures"));
+        assertEquals(2 * TEXTURE_BYTES, pool.getIdleBytes());
+
+        // 空闲纹理超出预算，删除最久未使用的 a
+        pool.release(c);
+        assertEquals(1, driver.getCallCount("glDeleteTextures"));
+        assertEquals(2 * TEXTURE_BYTES, pool.getIdleBytes());
+        assertEquals(2 * TEXTURE_BYTES, pool.getAllocatedBytes());
+        assertSame(c, pool.acquire(16, 16));
+        assertSame(b, pool.acquire(16, 16));
+        assertEquals(3, pool.getAllocationCount());
+    }
+
+    @Test
+    public void allocationEvictsIdleTexturesFirst() {
+        TexturePool.Texture a = pool.acquire(16, 16);
+        TexturePool.Texture b = pool.acquire(16, 16);
+        pool.release(a);
+        pool.release(b);
+        assertEquals(0, driver.getCallCount("glDeleteTextures"));
+
+        // 新尺寸无法复用空闲纹理，先腾出一个纹理的空间
+        pool.acquire(8, 8);
+        assertEquals(1, driver.getCallCount("glDeleteTextures"));
+        assertEquals(TEXTURE_BYTES, pool.getIdleBytes());
+        assertSame(b, pool.acquire(16, 16));
+    }
+
+    @Test
+    public void trimDeletesAllIdleTextures() {
+        TexturePool.Texture a = pool.acquireFramebuffer(16, 16);
+        TexturePool.Texture b = pool.acquire(16, 16);
+        pool.release(a);
+        pool.trim();
+        assertEquals(1, driver.getCallCount("glDeleteTextures"));
+        assertEquals(1, driver.getCallCount("glDeleteFramebuffers"));
+        assertEquals(0, pool.getIdleBytes());
+        assertEquals(TEXTURE_BYTES, pool.getAllocatedBytes());
+
+        pool.release(b);
+        pool.clear();
+        assertEquals(0, pool.getAllocatedBytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void doubleReleaseThrows() {
+        TexturePool.Texture texture = pool.acquire(16, 16);
+        pool.release(texture);
+        pool.release(texture);
+    }
+}
@@ -0,0 +1,125 @@
+package com.kit.video.glutil.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 滤镜链的通道划分和着色器合并
+ */
+public class FilterShaderBuilderTest {
+
+    @Test
+    public void emptyChainIsSingleCopyPass() {
+        List<FilterShaderBuilder.Pass> passes = FilterShaderBuilder.plan(Collections.emptyList());
+        assertEquals(1, passes.size());
+        assertTrue(passes.get(0).getFilters().isEmpty());
+
+        String shader = FilterShaderBuilder.buildFragmentShader(passes.get(0), false);
+        assertTrue(shader.contains("gl_FragColor = stage0(sample_coordinate);"));
+        assertFalse(shader.contains("vec4 stage1("));
+    }
+
+    @Test
+    public void colorAndCoordinateFiltersShareOnePass() {
+        GlFilter lut = new ColorLutFilter(1);
+        GlFilter crop = new CropFilter(0.1f, 0.1f, 0.9f, 0.9f);
+        GlFilter overlay = new OverlayFilter(2, 0.0f, 0.0f, 0.5f, 0.5f);
+        List<FilterShaderBuilder.Pass> passes = FilterShaderBuilder.plan(Arrays.asList(lut, crop, overlay));
+        assertEquals(1, passes.size());
+        assertEquals(Arrays.asList(lut, crop, overlay), passes.get(0).getFilters());
+        assertEquals(0, passes.get(0).getFirstIndex());
+    }
+
+    @Test
+    public void sampleFilterAfterCoordinateFilterIsFused() {
+        GlFilter crop = new CropFilter(0.1f, 0.1f, 0.9f, 0.9f);
+        GlFilter sharpen = new SharpenFilter(0.5f);
+        List<FilterShaderBuilder.Pass> passes = FilterShaderBuilder.plan(Arrays.asList(crop, sharpen));
+        assertEquals(1, passes.size());
+    }
+
+    @Test
+    public void sampleFilterAfterPerSampleWorkStartsNewPass() {
+        GlFilter crop = new CropFilter(0.1f, 0.1f, 0.9f, 0.9f);
+        GlFilter blurH = GaussianBlurFilter.horizontal(4.0f);
+        GlFilter blurV = GaussianBlurFilter.vertical(4.0f);
+        List<FilterShaderBuilder.Pass> passes = FilterShaderBuilder.plan(Arrays.asList(crop, blurH, blurV));
+        assertEquals(2, passes.size());
+        assertEquals(Arrays.asList(crop, blurH), passes.get(0).getFilters());
+        assertEquals(0, passes.get(0).getFirstIndex());
+        assertEquals(Collections.singletonList(blurV), passes.get(1).getFilters());
+        assertEquals(2, passes.get(1).getFirstIndex());
+
+        GlFilter lut = new ColorLutFilter(1);
+        passes = FilterShaderBuilder.plan(Arrays.asList(lut, blurH));
+        assertEquals(2, passes.size());
+        assertSame(blurH, passes.get(1).getFilters().get(0));
+    }
+
+    @Test
+    public void textureUnitLimitSplitsPass() {
+        List<GlFilter> overlays = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            overlays.add(new OverlayFilter(i + 1, 0.0f, 0.0f, 0.5f, 0.5f));
+        }
+        List<FilterShaderBuilder.Pass> passes = FilterShaderBuilder.plan(overlays);
+        assertEquals(2, passes.size());
+        // 输入纹理占用一个纹理单元
+        assertEquals(FilterShaderBuilder.MAX_TEXTURE_UNITS - 1, passes.get(0).getFilters().size());
+        assertEquals(2, passes.get(1).getFilters().size());
+        assertEquals(FilterShaderBuilder.MAX_TEXTURE_UNITS - 1, passes.get(1).getFirstIndex());
+    }
+
+    @Test
+    public void fusedShaderChainsStages() {
+        GlFilter crop = new CropFilter(0.1f, 0.1f, 0.9f, 0.9f);
+        GlFilter blurH = GaussianBlurFilter.horizontal(4.0f);
+        GlFilter blurV = GaussianBlurFilter.vertical(4.0f);
+        List<FilterShaderBuilder.Pass> passes = FilterShaderBuilder.plan(Arrays.asList(crop, blurH, blurV));
+
+        String first = FilterShaderBuilder.buildFragmentShader(passes.get(0), false);
+        assertFalse(first.contains("$"));
+        assertTrue(first.contains("uniform sampler2D input_frame;"));
+        assertTrue(first.contains("vec4 stage1(vec2 coord) {\n  return stage0(f0_apply(coord));"));
+        // 采样滤镜通过 f1_input 读取上一级
+        assertTrue(first.contains("vec4 f1_input(vec2 coord) {\n  return stage1(coord);"));
+        assertTrue(first.contains("uniform vec2 f1_direction;"));
+        assertTrue(first.contains("vec4 stage2(vec2 coord) {\n  return f1_apply(coord);"));
+        assertTrue(first.contains("gl_FragColor = stage2(sample_coordinate);"));
+
+        // 第二个通道的前缀沿用滤镜在整个链中的位置，stage 编号从头开始
+        String second = FilterShaderBuilder.buildFragmentShader(passes.get(1), false);
+        assertTrue(second.contains("uniform vec2 f2_direction;"));
+        assertTrue(second.contains("vec4 f2_input(vec2 coord) {\n  return stage0(coord);"));
+        assertFalse(second.contains("f1_"));
+        assertTrue(second.contains("gl_FragColor = stage1(sample_coordinate);"));
+    }
+
+    @Test
+    public void colorFilterReceivesPreviousStage() {
+        GlFilter lut = new ColorLutFilter(1);
+        String shader = FilterShaderBuilder.buildFragmentShader(
+                FilterShaderBuilder.plan(Collections.singletonList(lut)).get(0), false);
+        assertTrue(shader.contains("return f0_apply(stage0(coord), coord);"));
+    }
+
+    @Test
+    public void externalInputUsesOesSampler() {
+        FilterShaderBuilder.Pass pass = FilterShaderBuilder.plan(Collections.emptyList()).get(0);
+        String shader = FilterShaderBuilder.buildFragmentShader(pass, true);
+        assertTrue(shader.startsWith("#extension GL_OES_EGL_image_external : require\n"));
+        assertTrue(shader.contains("uniform samplerExternalOES input_frame;"));
+
+        shader = FilterShaderBuilder.buildFragmentShader(pass, false);
+        assertFalse(shader.contains("GL_OES_EGL_image_external"));
+    }
+}